@@ -2,20 +2,54 @@ package com.loserico.cache;
 
 
 import com.fasterxml.jackson.databind.JavaType;
+import com.loserico.cache.collection.BatchQueueListener;
+import com.loserico.cache.collection.HashFieldSweeper;
+import com.loserico.cache.collection.PatternDeleter;
 import com.loserico.cache.collection.QueueListener;
+import com.loserico.cache.collection.ReliableQueueConsumer;
+import com.loserico.cache.collection.ScanIterator;
+import com.loserico.cache.collection.StreamConsumer;
+import com.loserico.cache.collection.StreamListener;
+import com.loserico.cache.codec.Codec;
 import com.loserico.cache.concurrent.BlockingLock;
 import com.loserico.cache.concurrent.Lock;
+import com.loserico.cache.concurrent.LockManager;
+import com.loserico.cache.concurrent.LockManagerStats;
 import com.loserico.cache.concurrent.NonBlockingLock;
+import com.loserico.cache.concurrent.ReadWriteLock;
+import com.loserico.cache.concurrent.RedisReadWriteLock;
+import com.loserico.cache.concurrent.RedisSemaphore;
+import com.loserico.cache.concurrent.RefreshAhead;
+import com.loserico.cache.concurrent.RefreshAheadStats;
+import com.loserico.cache.concurrent.SegmentIdGenerator;
+import com.loserico.cache.concurrent.Semaphore;
+import com.loserico.cache.concurrent.SingleFlight;
+import com.loserico.cache.concurrent.SingleFlightStats;
+import com.loserico.cache.concurrent.TokenBucketLimiter;
 import com.loserico.cache.exception.JedisValueOperationException;
+import com.loserico.cache.exception.OperationNotSupportedException;
 import com.loserico.cache.factory.JedisOperationFactory;
 import com.loserico.cache.listeners.MessageListener;
+import com.loserico.cache.listeners.SharedSubscriber;
+import com.loserico.cache.local.HotKeyDetector;
+import com.loserico.cache.local.HotKeyStats;
+import com.loserico.cache.local.NearCache;
+import com.loserico.cache.local.NearCacheStats;
+import com.loserico.cache.metrics.MeteredJedisOperations;
+import com.loserico.cache.metrics.MetricsSink;
+import com.loserico.cache.metrics.RedisMetricsSnapshot;
+import com.loserico.cache.operations.AutoPipeline;
+import com.loserico.cache.operations.ChunkedValues;
 import com.loserico.cache.operations.JedisClusterOperations;
 import com.loserico.cache.operations.JedisOperations;
+import com.loserico.cache.operations.JedisPoolOperations;
+import com.loserico.cache.operations.ScriptRegistry;
 import com.loserico.cache.status.HSet;
 import com.loserico.cache.status.TTL;
 import com.loserico.cache.utils.KeyUtils;
 import com.loserico.cache.utils.UnMarshaller;
 import com.loserico.common.lang.concurrent.LoserThreadExecutor;
+import com.loserico.common.lang.resource.PropertyReader;
 import com.loserico.common.lang.utils.IOUtils;
 import com.loserico.common.lang.utils.PrimitiveUtils;
 import com.loserico.json.jackson.JacksonUtils;
@@ -23,10 +57,21 @@ import lombok.extern.slf4j.Slf4j;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.StreamEntry;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.StreamPendingEntry;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -43,19 +88,21 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.loserico.cache.status.HSet.INSERTED;
 import static com.loserico.cache.status.HSet.UPDATED;
 import static com.loserico.cache.utils.ByteUtils.toBytes;
+import static com.loserico.cache.utils.ByteUtils.toValueBytes;
 import static com.loserico.cache.utils.KeyUtils.joinKey;
 import static com.loserico.cache.utils.StringUtils.requireNonEmpty;
 import static com.loserico.cache.utils.UnMarshaller.toList;
 import static com.loserico.cache.utils.UnMarshaller.toLong;
 import static com.loserico.cache.utils.UnMarshaller.toObject;
 import static com.loserico.cache.utils.UnMarshaller.toSeconds;
-import static com.loserico.json.jackson.JacksonUtils.toJson;
 import static java.lang.String.join;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.*;
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
@@ -81,12 +128,90 @@ public final class JedisUtils {
 	public static final String STATUS_SUCCESS = "OK";
 	
 	/**
-	 * 用户缓存lua脚本的sha
+	 * SCAN/HSCAN/SSCAN/ZSCAN 默认的COUNT
 	 */
-	private static final ConcurrentHashMap<String, String> shaHashs = new ConcurrentHashMap<>();
+	public static final int DEFAULT_SCAN_COUNT = 100;
 	
 	private static JedisOperations jedisOperations = JedisOperationFactory.create();
 	
+	/**
+	 * 默认读取classpath下redis.properties文件
+	 */
+	private static final PropertyReader propertyReader = new PropertyReader("redis");
+	
+	/**
+	 * 所有Lua脚本都通过它执行, 启动时把lua-scripts下的脚本预加载到每个master上, NOSCRIPT时自动用EVAL兜底并重新加载
+	 * redis.script.preload 默认true, redis.script.topologyCheckSeconds 默认30
+	 */
+	private static final ScriptRegistry SCRIPTS = ScriptRegistry.create(jedisOperations, propertyReader);
+	
+	/**
+	 * 超过 redis.chunk.threshold 字节的value拆成 redis.chunk.size 字节(默认256KB)的分块存, 读的时候自动拼回来;
+	 * 默认-1不分块, 开启之后set/mset/del/expire这些写命令都要通过Lua脚本顺带清理分块, 所以是可选的
+	 */
+	private static final ChunkedValues CHUNKED = new ChunkedValues(jedisOperations, SCRIPTS,
+			propertyReader.getInt("redis.chunk.threshold", -1),
+			propertyReader.getInt("redis.chunk.size", 256 * 1024));
+	
+	/**
+	 * 进程内一级缓存, 默认不开启, 配置 redis.nearCache.enabled=true 或者调用enableNearCache()开启
+	 */
+	private static volatile NearCache nearCache = NearCache.create(propertyReader, jedisOperations);
+	
+	/**
+	 * 热点key探测, 在本地一级缓存之后、读Redis之前抽样统计, 默认不开启, 配置 redis.hotKey.enabled=true 或者调用enableHotKeyDetector()开启
+	 */
+	private static volatile HotKeyDetector hotKeyDetector = HotKeyDetector.create(propertyReader);
+	
+	/**
+	 * 后台清理过期的hash field, 默认不开启, 配置 redis.hashSweeper.enabled=true 或者调用enableHashSweeper()开启
+	 */
+	private static volatile HashFieldSweeper hashSweeper = HashFieldSweeper.create(propertyReader);
+	
+	/**
+	 * get(key, clazz, supplier)这类方法缓存没命中时用来合并回源
+	 * 租约有效期 redis.singleFlight.leaseSeconds 默认10秒, 等待其他节点回源时每隔 redis.singleFlight.pollMillis 毫秒(默认50)再查一次缓存
+	 */
+	private static final SingleFlight SINGLE_FLIGHT = new SingleFlight(propertyReader.getInt("redis.singleFlight.leaseSeconds", 10),
+			propertyReader.getInt("redis.singleFlight.pollMillis", 50));
+	
+	/**
+	 * getRefreshAhead(...)用来后台提前刷新
+	 * redis.refreshAhead.beta 默认1.0, redis.refreshAhead.threads 默认2, redis.refreshAhead.queueSize 默认1000
+	 */
+	private static final RefreshAhead REFRESH_AHEAD = new RefreshAhead(
+			Double.parseDouble(propertyReader.getString("redis.refreshAhead.beta", "1.0")),
+			propertyReader.getInt("redis.refreshAhead.threads", 2),
+			propertyReader.getInt("redis.refreshAhead.queueSize", 1000),
+			propertyReader.getInt("redis.singleFlight.leaseSeconds", 10));
+	
+	/**
+	 * 所有BlockingLock共用的锁管理器: 一个订阅连接唤醒等锁的线程, 一个线程给所有持有的锁续期
+	 * 锁有效期 redis.lock.leaseSeconds 默认30秒, 每次续期最多 redis.lock.renewBatchSize 把锁(默认100)
+	 */
+	private static final LockManager LOCK_MANAGER = new LockManager(propertyReader.getInt("redis.lock.leaseSeconds", 30),
+			propertyReader.getInt("redis.lock.renewBatchSize", 100));
+	
+	/**
+	 * AFFLUENT.tokenBucket(...)创建的令牌桶限流器, 一个名字一个
+	 */
+	private static final ConcurrentHashMap<String, TokenBucketLimiter> TOKEN_BUCKETS = new ConcurrentHashMap<>();
+	
+	/**
+	 * AFFLUENT.segmentId(...)创建的号段ID生成器, 一个名字一个
+	 */
+	private static final ConcurrentHashMap<String, SegmentIdGenerator> SEGMENT_IDS = new ConcurrentHashMap<>();
+	
+	/**
+	 * 自动Pipeline的异步入口, 第一次调用autoPipeline()时才创建
+	 */
+	private static volatile AutoPipeline autoPipeline;
+	
+	/**
+	 * 整个进程共用的订阅连接, 第一次调用subscriber()时才创建
+	 */
+	private static volatile SharedSubscriber sharedSubscriber;
+	
 	private static final LoserThreadExecutor EXECUTOR = new LoserThreadExecutor(Runtime.getRuntime().availableProcessors() + 1,
 			500,
 			10, MINUTES);
@@ -113,18 +238,18 @@ public final class JedisUtils {
 	 * @return boolean 是否set成功
 	 */
 	public static boolean set(String key, Object value) {
-		return set(toBytes(key), toBytes(value));
+		return set(toBytes(key), toValueBytes(value));
 	}
 	
 	/**
-	 * value是List类型, 通过Jackson序列化成json串
+	 * value是List类型, 和其他对象一样用配置的Codec序列化(默认Jackson序列化成json串)
 	 *
 	 * @param key
 	 * @param values
 	 * @return boolean 是否set成功
 	 */
 	public static boolean set(String key, List<?> values) {
-		return set(key, toJson(values));
+		return set(toBytes(key), toValueBytes(values));
 	}
 	
 	/**
@@ -151,7 +276,7 @@ public final class JedisUtils {
 	 * @return boolean 是否set成功
 	 */
 	public static boolean set(Object key, Object value) {
-		return set(toBytes(key), toBytes(value));
+		return set(toBytes(key), toValueBytes(value));
 	}
 	
 	/**
@@ -162,7 +287,14 @@ public final class JedisUtils {
 	 * @return true表示设置成功
 	 */
 	public static boolean set(byte[] key, byte[] value) {
-		return STATUS_SUCCESS.equals(jedisOperations.set(key, value));
+		if (CHUNKED.isEnabled()) {
+			CHUNKED.set(key, value);
+			invalidate(key);
+			return true;
+		}
+		boolean success = STATUS_SUCCESS.equals(jedisOperations.set(key, value));
+		invalidate(key);
+		return success;
 	}
 	
 	/**
@@ -187,7 +319,7 @@ public final class JedisUtils {
 	 */
 	public static boolean set(String key, Object value, long expires, TimeUnit timeUnit) {
 		Objects.requireNonNull(timeUnit);
-		return set(toBytes(key), toBytes(value), toBytes(expires, timeUnit));
+		return set(toBytes(key), toValueBytes(value), toBytes(expires, timeUnit));
 	}
 	
 	/**
@@ -214,7 +346,36 @@ public final class JedisUtils {
 	public static boolean set(Object key, Object value, long expires, TimeUnit timeUnit) {
 		Objects.requireNonNull(key);
 		Objects.requireNonNull(timeUnit);
-		return set(toBytes(key), toBytes(value), toBytes(expires, timeUnit));
+		return set(toBytes(key), toValueBytes(value), toBytes(expires, timeUnit));
+	}
+	
+	/**
+	 * value用指定的Codec序列化, 读的时候会根据数据头自动选择Codec, 不需要再指定
+	 *
+	 * @param key
+	 * @param value
+	 * @param codec 比如 Codecs.KRYO
+	 * @return boolean 表示是否设置成功
+	 */
+	public static boolean set(String key, Object value, Codec codec) {
+		Objects.requireNonNull(codec);
+		return set(toBytes(key), toBytes(value, codec));
+	}
+	
+	/**
+	 * value用指定的Codec序列化, 同时带过期时间
+	 *
+	 * @param key
+	 * @param value
+	 * @param codec
+	 * @param expires
+	 * @param timeUnit
+	 * @return boolean 表示是否设置成功
+	 */
+	public static boolean set(String key, Object value, Codec codec, long expires, TimeUnit timeUnit) {
+		Objects.requireNonNull(codec);
+		Objects.requireNonNull(timeUnit);
+		return set(toBytes(key), toBytes(value, codec), toBytes(expires, timeUnit));
 	}
 	
 	/**
@@ -225,15 +386,14 @@ public final class JedisUtils {
 	 * @return true 表示设置成功
 	 */
 	public static boolean set(byte[] key, byte[] value, byte[] expires) {
-		String sampleKey = "setExpire.lua";
-		String setExpireSha1 = shaHashs.computeIfAbsent(sampleKey, (x) -> {
-			log.debug("Load script {}", sampleKey);
-			if (jedisOperations instanceof JedisClusterOperations) {
-				jedisOperations.scriptLoad(IOUtils.readClassPathFileAsBytes("/lua-scripts/setExpire.lua"), key);
-			}
-			return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/setExpire.lua"));
-		});
-		long result = (long) jedisOperations.evalsha(toBytes(setExpireSha1), 1, key, value, expires);
+		if (CHUNKED.isEnabled()) {
+			// 和setExpire.lua一样, 过期时间小于1秒相当于马上过期
+			CHUNKED.set(key, value, Integer.parseInt(new String(expires, UTF_8)));
+			invalidate(key);
+			return true;
+		}
+		long result = (long) SCRIPTS.eval("/lua-scripts/setExpire.lua", 1, key, value, expires);
+		invalidate(key);
 		return result == 1;
 	}
 	
@@ -254,15 +414,10 @@ public final class JedisUtils {
 	}
 	
 	public static boolean casNumber(byte[] key, byte[] value, byte[] mode) {
-		String sampleKey = "cas.lua";
-		String setExpireSha1 = shaHashs.computeIfAbsent(sampleKey, (x) -> {
-			log.debug("Load script {}", sampleKey);
-			if (jedisOperations instanceof JedisClusterOperations) {
-				jedisOperations.scriptLoad(IOUtils.readClassPathFileAsBytes("/lua-scripts/cas.lua"), key);
-			}
-			return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/cas.lua"));
-		});
-		long result = (long) jedisOperations.evalsha(toBytes(setExpireSha1), 1, key, value, mode);
+		long result = (long) SCRIPTS.eval("/lua-scripts/cas.lua", 1, key, value, mode);
+		if (result == 1) {
+			invalidate(key);
+		}
 		return result == 1;
 	}
 	
@@ -275,7 +430,7 @@ public final class JedisUtils {
 	 * @return boolean    是否设置成功
 	 */
 	public static boolean setnx(String key, String value) {
-		return 1L == jedisOperations.setnx(toBytes(key), toBytes(value));
+		return setnx(toBytes(key), toBytes(value));
 	}
 	
 	/**
@@ -288,7 +443,7 @@ public final class JedisUtils {
 	 */
 	public static boolean setnx(String key, Object value) {
 		Objects.requireNonNull(key);
-		return 1L == jedisOperations.setnx(toBytes(key), toBytes(value));
+		return setnx(toBytes(key), toValueBytes(value));
 	}
 	
 	/**
@@ -301,7 +456,23 @@ public final class JedisUtils {
 	 */
 	public static boolean setnx(Object key, Object value) {
 		Objects.requireNonNull(key);
-		return 1L == jedisOperations.setnx(toBytes(key), toBytes(value));
+		return setnx(toBytes(key), toValueBytes(value));
+	}
+	
+	/**
+	 * 如果 key 不存在则设置 key=value
+	 * 原子操作
+	 *
+	 * @param key
+	 * @param value
+	 * @return boolean    是否设置成功
+	 */
+	public static boolean setnx(byte[] key, byte[] value) {
+		boolean success = 1L == jedisOperations.setnx(key, value);
+		if (success) {
+			invalidate(key);
+		}
+		return success;
 	}
 	
 	/**
@@ -318,22 +489,17 @@ public final class JedisUtils {
 		Objects.requireNonNull(key);
 		Objects.requireNonNull(timeUnit);
 		
-		String sampleKey = "setnx.lua";
-		String setnxSha1 = shaHashs.computeIfAbsent("setnx.lua", x -> {
-			log.debug("Load script {}", "setnx.lua");
-			if (jedisOperations instanceof JedisClusterOperations) {
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/setnx.lua"), key);
-			}
-			return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/setnx.lua"));
-		});
 		
 		long expireInSeconds = timeUnit.toSeconds(expires);
-		long result = (long) jedisOperations.evalsha(toBytes(setnxSha1),
+		long result = (long) SCRIPTS.eval("/lua-scripts/setnx.lua",
 				1,
 				toBytes(key),
-				toBytes(value),
+				toValueBytes(value),
 				toBytes(expireInSeconds));
 		
+		if (result == 1) {
+			invalidate(toBytes(key));
+		}
 		return result == 1;
 	}
 	
@@ -379,23 +545,73 @@ public final class JedisUtils {
 	 * @return T
 	 */
 	public static <T> T get(String key, Class<T> clazz, Supplier<T> supplier, long expires, TimeUnit timeUnit) {
+		Objects.requireNonNull(timeUnit);
+		
 		T object = get(key, clazz);
-		// 没有命中则调用supplier.get()并回填缓存
-		if (object == null) {
-			// 成功获取锁才调supplier并回填
-			String requestId = UUID.randomUUID().toString();
-			boolean locked = lock(key, requestId, expires, timeUnit);
-			if (locked) {
-				T result = supplier.get();
-				set(key, result, expires, timeUnit);
-				unlock(key, requestId);
-				return result;
-			} else {// 没有获得锁就再从缓存取一遍, 取不到拉倒
-				return get(key, clazz);
+		if (object != null) {
+			return object;
+		}
+		
+		/*
+		 * 没有命中则合并回源: 同一个JVM里同一个key只有一个线程调supplier,
+		 * 不同JVM之间通过单独的租约key协调, 没拿到租约的等拿到的那个回填, 不会直接返回null
+		 */
+		return SINGLE_FLIGHT.load(key,
+				() -> get(key, clazz),
+				supplier,
+				(result) -> set(key, result, expires, timeUnit));
+	}
+	
+	/**
+	 * 和get(key, clazz, supplier, expires, timeUnit)一样, 但是快过期的时候会按XFetch算法概率性地提前在后台刷新,
+	 * 刷新期间所有调用方继续拿旧值, 避免热点key过期瞬间所有节点同时回源
+	 * <p>
+	 * 值会和逻辑过期时间、回源耗时一起存, 所以这个key只能通过getRefreshAhead读
+	 *
+	 * @param key
+	 * @param clazz
+	 * @param supplier
+	 * @param expires  逻辑过期时间
+	 * @param timeUnit
+	 * @return T
+	 */
+	public static <T> T getRefreshAhead(String key, Class<T> clazz, Supplier<T> supplier, long expires, TimeUnit timeUnit) {
+		return getRefreshAhead(key, clazz, supplier, expires, 0, timeUnit);
+	}
+	
+	/**
+	 * 提前刷新 + stale-while-revalidate: Redis里的key实际在 expires + staleWindow 之后才过期,
+	 * 过了expires还在staleWindow内的读直接返回旧值, 同时触发后台刷新
+	 *
+	 * @param key
+	 * @param clazz
+	 * @param supplier
+	 * @param expires     逻辑过期时间
+	 * @param staleWindow 逻辑过期后还允许返回旧值多久
+	 * @param timeUnit
+	 * @return T
+	 */
+	public static <T> T getRefreshAhead(String key, Class<T> clazz, Supplier<T> supplier, long expires, long staleWindow,
+	                                    TimeUnit timeUnit) {
+		Objects.requireNonNull(timeUnit);
+		
+		byte[] rawKey = toBytes(key);
+		RefreshAhead.Entry entry = RefreshAhead.unwrap(getBytes(rawKey));
+		if (entry != null) {
+			if (REFRESH_AHEAD.shouldRefresh(entry)) {
+				REFRESH_AHEAD.refreshAsync(key, () -> loadAndWrap(rawKey, supplier, expires, staleWindow, timeUnit));
 			}
+			return toObject(entry.getValue(), clazz);
 		}
 		
-		return object;
+		return SINGLE_FLIGHT.load(key,
+				() -> {
+					RefreshAhead.Entry cached = RefreshAhead.unwrap(getBytes(rawKey));
+					return cached == null ? null : toObject(cached.getValue(), clazz);
+				},
+				() -> loadAndWrap(rawKey, supplier, expires, staleWindow, timeUnit),
+				(result) -> {
+				});
 	}
 	
 	/**
@@ -423,7 +639,7 @@ public final class JedisUtils {
 	}
 	
 	public static String get(byte[] key) {
-		byte[] value = jedisOperations.get(key);
+		byte[] value = getBytes(key);
 		if (value != null && value.length > 0) {
 			return new String(value, UTF_8);
 		}
@@ -431,10 +647,180 @@ public final class JedisUtils {
 	}
 	
 	public static <T> T get(byte[] key, Class<T> clazz) {
-		byte[] value = jedisOperations.get(key);
+		NearCache l1 = nearCache;
+		if (l1 != null) {
+			return l1.get(key, clazz, JedisUtils::loadBytes);
+		}
+		byte[] value = loadBytes(key);
 		return toObject(value, clazz);
 	}
 	
+	/**
+	 * SCAN惰性遍历keyspace, 集群模式下依次扫描每个master; 同一个key可能返回多次
+	 *
+	 * @param pattern MATCH, null表示不过滤
+	 * @param count   COUNT, 每次大概返回多少个
+	 * @return Stream<String>
+	 */
+	public static Stream<String> scan(String pattern, int count) {
+		ScanParams params = scanParams(pattern, count);
+		List<Function<byte[], ScanResult<byte[]>>> sources = new ArrayList<>();
+		for (String master : jedisOperations.masters()) {
+			sources.add((cursor) -> jedisOperations.scan(master, cursor, params));
+		}
+		return new ScanIterator<>(sources)
+				.stream()
+				.map(UnMarshaller::toString);
+	}
+	
+	/**
+	 * 可以执行SCAN的节点, 单机/哨兵只有一个, 集群模式下是每个master(host:port)
+	 *
+	 * @return List<String>
+	 */
+	public static List<String> masters() {
+		return jedisOperations.masters();
+	}
+	
+	/**
+	 * 在指定节点上SCAN惰性遍历keyspace; 同一个key可能返回多次
+	 *
+	 * @param node    masters()返回的节点
+	 * @param pattern MATCH, null表示不过滤
+	 * @param count   COUNT, 每次大概返回多少个
+	 * @return Stream<String>
+	 */
+	public static Stream<String> scan(String node, String pattern, int count) {
+		return scanBytes(node, pattern, count).map(UnMarshaller::toString);
+	}
+	
+	/**
+	 * 和scan(node, pattern, count)一样, 返回原始的key, 不是合法UTF-8的二进制key也能原样拿去删除
+	 *
+	 * @param node    masters()返回的节点
+	 * @param pattern MATCH, null表示不过滤
+	 * @param count   COUNT, 每次大概返回多少个
+	 * @return Stream<byte[]>
+	 */
+	public static Stream<byte[]> scanBytes(String node, String pattern, int count) {
+		ScanParams params = scanParams(pattern, count);
+		return ScanIterator.<byte[]>of((cursor) -> jedisOperations.scan(node, cursor, params))
+				.stream();
+	}
+	
+	/**
+	 * 批量GET, 返回结果和keys的顺序一致, 不存在的key对应null
+	 * 集群模式下按hash slot分组, 每个master一个Pipeline并行执行, MOVED/ASK会自动重试; 不经过本地缓存
+	 *
+	 * @param keys
+	 * @return List<String>
+	 */
+	public static List<String> mget(List<String> keys) {
+		return mget(keys, String.class);
+	}
+	
+	/**
+	 * 批量GET, value不是字符串的情况, 使用Jackson反序列化
+	 *
+	 * @param keys
+	 * @param clazz
+	 * @return List<T>
+	 */
+	public static <T> List<T> mget(List<String> keys, Class<T> clazz) {
+		List<byte[]> values = mgetBytes(keys);
+		List<T> results = new ArrayList<>(values.size());
+		for (byte[] value : values) {
+			results.add(toObject(value, clazz));
+		}
+		return results;
+	}
+	
+	/**
+	 * GET原始的byte[], 不做反序列化, 开启了本地缓存的话先查本地
+	 *
+	 * @param key
+	 * @return byte[] key不存在返回null
+	 */
+	public static byte[] getBytes(String key) {
+		return getBytes(toBytes(key));
+	}
+	
+	/**
+	 * 批量GET原始的byte[], 返回结果和keys的顺序一致, 不存在的key对应null; 不经过本地缓存
+	 *
+	 * @param keys
+	 * @return List<byte[]>
+	 */
+	public static List<byte[]> mgetBytes(List<String> keys) {
+		List<byte[]> keyBytes = toKeyBytes(keys);
+		List<byte[]> values = jedisOperations.mget(keyBytes);
+		for (int i = 0; i < values.size(); i++) {
+			if (ChunkedValues.isManifest(values.get(i))) {
+				values.set(i, CHUNKED.read(keyBytes.get(i), values.get(i)));
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * 把value原样写到out; 分块存的大value一个分块一个分块地写, 整个value不用放在堆里; 不经过本地缓存
+	 * <p>
+	 * 读的过程中value被覆盖了: 还没开始写的话换成新值重读, 已经写了一部分的话抛JedisValueOperationException
+	 *
+	 * @param key
+	 * @param out
+	 * @return false 表示key不存在
+	 * @throws IOException
+	 */
+	public static boolean get(String key, OutputStream out) throws IOException {
+		Objects.requireNonNull(out);
+		return CHUNKED.read(toBytes(key), out);
+	}
+	
+	/**
+	 * 批量SET, 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+	 *
+	 * @param keyValues
+	 */
+	public static void mset(Map<String, ?> keyValues) {
+		List<byte[]> keys = new ArrayList<>(keyValues.size());
+		List<byte[]> values = new ArrayList<>(keyValues.size());
+		keyValues.forEach((key, value) -> {
+			keys.add(toBytes(key));
+			values.add(toValueBytes(value));
+		});
+		if (CHUNKED.isEnabled()) {
+			CHUNKED.mset(keys, values);
+		} else {
+			jedisOperations.mset(keys, values);
+		}
+		invalidate(keys);
+	}
+	
+	/**
+	 * 批量SETEX, 每个key自己的过期时间, 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+	 *
+	 * @param keys
+	 * @param values
+	 * @param seconds 和keys一一对应, 不能小于1
+	 */
+	public static void mset(List<byte[]> keys, List<byte[]> values, int[] seconds) {
+		if (keys.size() != values.size() || keys.size() != seconds.length) {
+			throw new IllegalArgumentException("keys, values and seconds must have the same size");
+		}
+		for (int s : seconds) {
+			if (s < 1) {
+				throw new IllegalArgumentException("seconds must be positive");
+			}
+		}
+		if (CHUNKED.isEnabled()) {
+			CHUNKED.mset(keys, values, seconds);
+		} else {
+			jedisOperations.mset(keys, values, seconds);
+		}
+		invalidate(keys);
+	}
+	
 	/**
 	 * 获取Long类型的值, 如果这个key不存在这返回null
 	 *
@@ -442,7 +828,7 @@ public final class JedisUtils {
 	 * @return Long
 	 */
 	public static Long getLong(String key) {
-		byte[] value = jedisOperations.get(toBytes(key));
+		byte[] value = getBytes(toBytes(key));
 		if (value != null && value.length > 0) {
 			return toLong(value);
 		}
@@ -461,7 +847,7 @@ public final class JedisUtils {
 	}
 	
 	public static <T> List<T> getList(byte[] key, Class<T> clazz) {
-		byte[] value = jedisOperations.get(key);
+		byte[] value = getBytes(key);
 		return toList(value, clazz);
 	}
 	
@@ -474,26 +860,7 @@ public final class JedisUtils {
 	 * @return T
 	 */
 	public static <T> List<T> getList(String key, Class<T> clazz, Supplier<List<T>> supplier) {
-		List<T> object = getList(key, clazz);
-		// 没有命中则调用supplier.get()并回填缓存
-		if (object == null || object.isEmpty()) {
-			// 成功获取锁才调supplier并回填
-			String requestId = UUID.randomUUID().toString();
-			boolean locked = lock(key, requestId, 1, MINUTES);
-			if (locked) {
-				try {
-					List<T> result = supplier.get();
-					set(key, result, 5, MINUTES);
-					return result;
-				} finally {
-					unlock(key, requestId);
-				}
-			} else {// 没有获得锁就再从缓存取一遍
-				return getList(key, clazz);
-			}
-		}
-		
-		return object;
+		return getList(key, clazz, supplier, 5, MINUTES);
 	}
 	
 	/**
@@ -509,30 +876,22 @@ public final class JedisUtils {
 		Objects.requireNonNull(timeUnit);
 		
 		List<T> list = getList(key, clazz);
-		// 没有命中则调用supplier.get()并回填缓存
-		if (list == null || list.isEmpty()) {
-			/*
-			 * 成功获取锁才调supplier并回填
-			 * 这里锁的时间没关系, 因为拿到锁后执行set操作后就会解锁
-			 */
-			String requestId = UUID.randomUUID().toString();
-			boolean locked = lock(key, requestId, expires, timeUnit);
-			if (locked) {
-				try {
-					List<T> result = supplier.get();
-					if (isNotEmpty(result)) {
-						set(key, result, expires, timeUnit);
-					}
-					return result;
-				} finally {
-					unlock(key, requestId);
-				}
-			} else {// 没有获得锁就再从缓存取一遍, 取不到就拉倒
-				return getList(key, clazz);
-			}
+		if (isNotEmpty(list)) {
+			return list;
 		}
 		
-		return list;
+		// 没有命中则合并回源, 空列表当作没有命中, 不回填
+		List<T> result = SINGLE_FLIGHT.load(key,
+				() -> {
+					List<T> cached = getList(key, clazz);
+					return isNotEmpty(cached) ? cached : null;
+				},
+				() -> {
+					List<T> loaded = supplier.get();
+					return isNotEmpty(loaded) ? loaded : null;
+				},
+				(loaded) -> set(key, loaded, expires, timeUnit));
+		return result == null ? new ArrayList<>() : result;
 	}
 	
 	/**
@@ -542,7 +901,9 @@ public final class JedisUtils {
 	 * @return Long
 	 */
 	public static Long incr(String key) {
-		return jedisOperations.incr(key);
+		Long value = jedisOperations.incr(key);
+		invalidate(toBytes(key));
+		return value;
 	}
 	
 	/**
@@ -552,20 +913,13 @@ public final class JedisUtils {
 	 * @return Long
 	 */
 	public static Long incr(String key, long expires, TimeUnit timeUnit) {
-		String sampleKey = "incrExpire.lua";
-		String setnxSha1 = shaHashs.computeIfAbsent(sampleKey, x -> {
-			log.debug("Load script {}", sampleKey);
-			if (jedisOperations instanceof JedisClusterOperations) {
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/incrExpire.lua"), key);
-			}
-			return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/incrExpire.lua"));
-		});
 		
 		long expireInSeconds = timeUnit.toSeconds(expires);
-		long currentValue = (long) jedisOperations.evalsha(toBytes(setnxSha1),
+		long currentValue = (long) SCRIPTS.eval("/lua-scripts/incrExpire.lua",
 				1,
 				toBytes(key),
 				toBytes(expireInSeconds));
+		invalidate(toBytes(key));
 		return currentValue;
 	}
 	
@@ -577,7 +931,9 @@ public final class JedisUtils {
 	 * @return Long
 	 */
 	public static Long incrBy(String key, long size) {
-		return jedisOperations.incrBy(key, size);
+		Long value = jedisOperations.incrBy(key, size);
+		invalidate(toBytes(key));
+		return value;
 	}
 	
 	/**
@@ -602,6 +958,29 @@ public final class JedisUtils {
 	 */
 	public static final class LIST {
 		
+		/**
+		 * 分页LRANGE惰性遍历整个列表, 每次从Redis拿pageSize个元素, 消费完了再拿下一页
+		 * 遍历期间列表被修改的话下标会错位, 可能漏掉或者重复元素
+		 *
+		 * @param key
+		 * @param pageSize
+		 * @param clazz
+		 * @return Stream<T>
+		 */
+		public static <T> Stream<T> stream(String key, int pageSize, Class<T> clazz) {
+			byte[] rawKey = toBytes(key);
+			return ScanIterator.<T>of((cursor) -> {
+				long start = Long.parseLong(new String(cursor, UTF_8));
+				List<byte[]> page = jedisOperations.lrange(rawKey, start, start + pageSize - 1);
+				List<T> elements = new ArrayList<>(page.size());
+				for (byte[] element : page) {
+					elements.add(toObject(element, clazz));
+				}
+				String next = page.size() < pageSize ? ScanParams.SCAN_POINTER_START : String.valueOf(start + pageSize);
+				return new ScanResult<>(next, elements);
+			}).stream();
+		}
+		
 		/**
 		 * lpush 向指定的列表左侧(头部)插入元素, 返回插入后列表的长度
 		 *
@@ -633,14 +1012,6 @@ public final class JedisUtils {
 		 * @return long list当前的长度
 		 */
 		public static long lpushLimit(String key, int limit, Object... values) {
-			String hashSha = shaHashs.computeIfAbsent("lpush.lua", x -> {
-				log.debug("Load script {}", "lpush.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/lpush.lua"), key);
-				} else {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/lpush.lua"));
-				}
-			});
 			
 			byte[][] objects = new byte[values.length + 2][];
 			objects[0] = toBytes(key);
@@ -648,8 +1019,7 @@ public final class JedisUtils {
 			for (int i = 0; i < values.length; i++) {
 				objects[i + 2] = toBytes(values[i]);
 			}
-			return (Long) jedisOperations.evalsha(
-					toBytes(hashSha),
+			return (Long) SCRIPTS.eval("/lua-scripts/lpush.lua",
 					1,
 					objects);
 		}
@@ -1016,6 +1386,33 @@ public final class JedisUtils {
 			});
 		}
 		
+		/**
+		 * 用一个poller线程可靠地批量消费多个队列, 可以代替keepBrpop
+		 * <pre>
+		 * 一次最多取 redis.queue.batchSize 个元素, 默认100
+		 * worker线程数 redis.queue.workers, 默认CPU核数
+		 * 最多同时处理 redis.queue.maxInflightBatches 批, 默认worker线程数的2倍
+		 * 队列都空时最多睡 redis.queue.pollMillis 毫秒, 默认100
+		 * 消费者心跳超过 redis.queue.staleSeconds 秒认为已经挂了, 它没ack的元素放回队列, 默认60
+		 *
+		 * listener正常返回这一批才会ack, 抛异常这一批重新入队; 至少一次语义, 元素可能被重复消费
+		 * </pre>
+		 *
+		 * @param listener
+		 * @param keys
+		 * @return ReliableQueueConsumer 不用了要close
+		 */
+		public static ReliableQueueConsumer reliableConsume(BatchQueueListener listener, String... keys) {
+			int workers = propertyReader.getInt("redis.queue.workers", Runtime.getRuntime().availableProcessors());
+			String consumerId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+			return new ReliableQueueConsumer(consumerId, Arrays.asList(keys), listener,
+					propertyReader.getInt("redis.queue.batchSize", 100),
+					workers,
+					propertyReader.getInt("redis.queue.maxInflightBatches", workers * 2),
+					propertyReader.getInt("redis.queue.pollMillis", 100),
+					TimeUnit.SECONDS.toMillis(propertyReader.getInt("redis.queue.staleSeconds", 60)));
+		}
+		
 		public static String rpop(String key) {
 			return jedisOperations.rpop(key);
 		}
@@ -1143,6 +1540,34 @@ public final class JedisUtils {
 	 */
 	public static class SET {
 		
+		/**
+		 * SSCAN惰性遍历整个Set, 同一个元素可能返回多次
+		 *
+		 * @param key
+		 * @param clazz
+		 * @return Stream<T>
+		 */
+		public static <T> Stream<T> sscan(String key, Class<T> clazz) {
+			return sscan(key, null, DEFAULT_SCAN_COUNT, clazz);
+		}
+		
+		/**
+		 * SSCAN惰性遍历整个Set, 同一个元素可能返回多次
+		 *
+		 * @param key
+		 * @param pattern MATCH, null表示不过滤
+		 * @param count   COUNT, 每次大概返回多少个
+		 * @param clazz
+		 * @return Stream<T>
+		 */
+		public static <T> Stream<T> sscan(String key, String pattern, int count, Class<T> clazz) {
+			byte[] rawKey = toBytes(key);
+			ScanParams params = scanParams(pattern, count);
+			return ScanIterator.<byte[]>of((cursor) -> jedisOperations.sscan(rawKey, cursor, params))
+					.stream()
+					.map((member) -> toObject(member, clazz));
+		}
+		
 		/**
 		 * 向Set中添加元素
 		 *
@@ -1243,6 +1668,34 @@ public final class JedisUtils {
 	 */
 	public static final class ZSET {
 		
+		/**
+		 * ZSCAN惰性遍历整个ZSet, 返回member和score, 同一个member可能返回多次, 不保证按score排序
+		 *
+		 * @param key
+		 * @param clazz
+		 * @return Stream<Map.Entry<T, Double>>
+		 */
+		public static <T> Stream<Map.Entry<T, Double>> zscan(String key, Class<T> clazz) {
+			return zscan(key, null, DEFAULT_SCAN_COUNT, clazz);
+		}
+		
+		/**
+		 * ZSCAN惰性遍历整个ZSet, 返回member和score, 同一个member可能返回多次, 不保证按score排序
+		 *
+		 * @param key
+		 * @param pattern MATCH, null表示不过滤
+		 * @param count   COUNT, 每次大概返回多少个
+		 * @param clazz
+		 * @return Stream<Map.Entry<T, Double>>
+		 */
+		public static <T> Stream<Map.Entry<T, Double>> zscan(String key, String pattern, int count, Class<T> clazz) {
+			byte[] rawKey = toBytes(key);
+			ScanParams params = scanParams(pattern, count);
+			return ScanIterator.<Tuple>of((cursor) -> jedisOperations.zscan(rawKey, cursor, params))
+					.stream()
+					.map((tuple) -> new SimpleImmutableEntry<>(toObject(tuple.getBinaryElement(), clazz), tuple.getScore()));
+		}
+		
 		/**
 		 * 获取member的score
 		 *
@@ -1383,23 +1836,53 @@ public final class JedisUtils {
 	 */
 	public static final class HASH {
 		
-		// hash每个field的过期时间记录在key为 jedis_utils:__timeout__set:key 的zset中
-		private static final String HASH_EXPIRE_ZSET_PREFIX = "jedis_utils:__timeout__set";
-		
 		/**
-		 * key 是Map的名字
-		 * field 是Map里面的field
-		 * <ul>返回
-		 * <li>0 表示更新了map中的field
-		 * <li>1 表示在map上新增了一个field
+		 * HSCAN惰性遍历整个Hash, 同一个field可能返回多次
 		 *
 		 * @param key
-		 * @param field
-		 * @param value
-		 * @return int
+		 * @return Stream<Map.Entry<String, String>>
 		 */
-		public static int hset(String key, Object field, Object value) {
-			return hset(toBytes(key), toBytes(field), toBytes(value));
+		public static Stream<Map.Entry<String, String>> hscan(String key) {
+			return hscan(key, null, DEFAULT_SCAN_COUNT, String.class, String.class);
+		}
+		
+		/**
+		 * HSCAN惰性遍历整个Hash, 同一个field可能返回多次
+		 *
+		 * @param key
+		 * @param pattern    MATCH, 匹配的是field, null表示不过滤
+		 * @param count      COUNT, 每次大概返回多少个
+		 * @param clazzKey
+		 * @param clazzValue
+		 * @return Stream<Map.Entry<K, V>>
+		 */
+		public static <K, V> Stream<Map.Entry<K, V>> hscan(String key, String pattern, int count,
+		                                                  Class<K> clazzKey, Class<V> clazzValue) {
+			byte[] rawKey = toBytes(key);
+			ScanParams params = scanParams(pattern, count);
+			return ScanIterator.<Map.Entry<byte[], byte[]>>of((cursor) -> jedisOperations.hscan(rawKey, cursor, params))
+					.stream()
+					.map((entry) -> new SimpleImmutableEntry<>(toObject(entry.getKey(), clazzKey),
+							toObject(entry.getValue(), clazzValue)));
+		}
+		
+		// hash每个field的过期时间记录在key为 jedis_utils:__timeout__set:key 的zset中
+		private static final String HASH_EXPIRE_ZSET_PREFIX = "jedis_utils:__timeout__set";
+		
+		/**
+		 * key 是Map的名字
+		 * field 是Map里面的field
+		 * <ul>返回
+		 * <li>0 表示更新了map中的field
+		 * <li>1 表示在map上新增了一个field
+		 *
+		 * @param key
+		 * @param field
+		 * @param value
+		 * @return int
+		 */
+		public static int hset(String key, Object field, Object value) {
+			return hset(toBytes(key), toBytes(field), toValueBytes(value));
 		}
 		
 		/**
@@ -1416,6 +1899,7 @@ public final class JedisUtils {
 		 */
 		public static int hset(byte[] key, byte[] field, byte[] value) {
 			Long result = (Long) jedisOperations.hset(key, field, value);
+			invalidate(key, field);
 			return result.intValue();
 		}
 		
@@ -1433,7 +1917,7 @@ public final class JedisUtils {
 		 * @return HSetStatus
 		 */
 		public static HSet hset(String key, Object field, Object value, long ttl) {
-			return hset(toBytes(key), toBytes(field), toBytes(value), ttl);
+			return hset(toBytes(key), toBytes(field), toValueBytes(value), ttl);
 		}
 		
 		/**
@@ -1451,7 +1935,7 @@ public final class JedisUtils {
 		 * @return
 		 */
 		public static HSet hset(String key, Object field, Object value, long ttl, TimeUnit timeUnit) {
-			return hset(toBytes(key), toBytes(field), toBytes(value), timeUnit.toSeconds(ttl));
+			return hset(toBytes(key), toBytes(field), toValueBytes(value), timeUnit.toSeconds(ttl));
 		}
 		
 		/**
@@ -1468,17 +1952,9 @@ public final class JedisUtils {
 		 * @return HSetStatus
 		 */
 		public static HSet hset(byte[] key, byte[] field, byte[] value, long ttl) {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"), key);
-				} else {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"));
-				}
-			});
 			
 			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
-			Long result = (Long) jedisOperations.evalsha(toBytes(hashSha),
+			Long result = (Long) SCRIPTS.eval("/lua-scripts/hash.lua",
 					2,
 					key, // hash key
 					toBytes(zsetKey), // zset key
@@ -1486,6 +1962,7 @@ public final class JedisUtils {
 					field,
 					value,
 					toBytes(ttl));
+			invalidate(key, field);
 			return result.intValue() == 0 ? UPDATED : INSERTED;
 		}
 		
@@ -1497,6 +1974,7 @@ public final class JedisUtils {
 		 */
 		public static boolean hmset(String key, Map<String, String> hash) {
 			String result = jedisOperations.hmset(key, hash);
+			hash.keySet().forEach((field) -> invalidate(toBytes(key), toBytes(field)));
 			return STATUS_SUCCESS.equalsIgnoreCase(result);
 		}
 		
@@ -1512,7 +1990,8 @@ public final class JedisUtils {
 		public static <K, V> AtomicLongArray hmsetGeneric(String key, Map<K, V> map) {
 			AtomicLongArray statistic = new AtomicLongArray(2);
 			map.entrySet().forEach((entry) -> {
-				Long type = jedisOperations.hset(toBytes(key), toBytes(entry.getKey()), toBytes(entry.getValue()));
+				Long type = jedisOperations.hset(toBytes(key), toBytes(entry.getKey()), toValueBytes(entry.getValue()));
+				invalidate(toBytes(key), toBytes(entry.getKey()));
 				if (type == 0) {
 					statistic.incrementAndGet(0);
 				} else {
@@ -1542,6 +2021,32 @@ public final class JedisUtils {
 			return UnMarshaller.toString(data);
 		}
 		
+		/**
+		 * 从多个hash里取同一个field, 单机/哨兵模式下一次pipeline取回, 集群模式下这些hash可能在不同的节点上, 逐个取
+		 *
+		 * @param keys
+		 * @param field
+		 * @return List<String> 和keys一一对应
+		 */
+		public static List<String> hget(List<String> keys, String field) {
+			List<String> values = new ArrayList<>(keys.size());
+			if (jedisOperations.unwrap() instanceof JedisClusterOperations) {
+				for (String key : keys) {
+					values.add(UnMarshaller.toString(jedisOperations.hget(toBytes(key), toBytes(field))));
+				}
+				return values;
+			}
+			List<Object> results = jedisOperations.executePipelined((pipeline) -> {
+				for (String key : keys) {
+					pipeline.hget(toBytes(key), toBytes(field));
+				}
+			});
+			for (Object result : results) {
+				values.add(UnMarshaller.toString((byte[]) result));
+			}
+			return values;
+		}
+		
 		/**
 		 * field 和 value 都是字符串的情况调这个接口
 		 *
@@ -1551,23 +2056,16 @@ public final class JedisUtils {
 		 */
 		
 		public static byte[] hget(byte[] key, byte[] field) {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				String script = IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(script, key);
-				}
-				return jedisOperations.scriptLoad(script);
-			});
 			
 			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
-			byte[] data = (byte[]) jedisOperations.evalsha(toBytes(hashSha),
+			Supplier<byte[]> loader = () -> (byte[]) SCRIPTS.eval("/lua-scripts/hash.lua",
 					2,
 					toBytes(key), // hash key
 					toBytes(zsetKey), // zset key
 					toBytes("hget"), // 调用的lua function名字
 					toBytes(field));
-			return data;
+			NearCache l1 = nearCache;
+			return l1 == null ? loader.get() : l1.hget(key, field, loader);
 		}
 		
 		/**
@@ -1596,7 +2094,7 @@ public final class JedisUtils {
 		 * @on
 		 */
 		public static <T> T hget(String key, Object field, JavaType javaType) {
-			byte[] data = jedisOperations.hget(toBytes(key), toBytes(field));
+			byte[] data = hgetBytes(toBytes(key), toBytes(field));
 			try {
 				return JacksonUtils.objectMapper().readValue(UnMarshaller.toString(data), javaType);
 			} catch (IOException e) {
@@ -1617,7 +2115,17 @@ public final class JedisUtils {
 			if (field == null) {
 				return null;
 			}
-			byte[] data = jedisOperations.hget(toBytes(key), toBytes(field));
+			byte[] keyBytes = toBytes(key);
+			byte[] fieldBytes = toBytes(field);
+			NearCache l1 = nearCache;
+			if (l1 != null) {
+				return l1.hget(keyBytes, fieldBytes, clazz, () -> {
+					recordRead(keyBytes);
+					return jedisOperations.hget(keyBytes, fieldBytes);
+				});
+			}
+			recordRead(keyBytes);
+			byte[] data = jedisOperations.hget(keyBytes, fieldBytes);
 			return toObject(data, clazz);
 		}
 		
@@ -1633,7 +2141,7 @@ public final class JedisUtils {
 			if (field == null) {
 				return null;
 			}
-			byte[] data = jedisOperations.hget(toBytes(key), toBytes(field));
+			byte[] data = hgetBytes(toBytes(key), toBytes(field));
 			return toList(data, clazz);
 		}
 		
@@ -1723,6 +2231,36 @@ public final class JedisUtils {
 							(entry) -> toObject(entry.getValue(), clazzValue)));
 		}
 		
+		/**
+		 * 批量HGETALL, 返回结果和keys的顺序一致, 不存在的key对应空Map
+		 * 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+		 *
+		 * @param keys
+		 * @return List<Map<String, String>>
+		 */
+		public static List<Map<String, String>> hgetAll(List<String> keys) {
+			return hgetAll(keys, String.class, String.class);
+		}
+		
+		/**
+		 * 批量HGETALL, key/value 是任意确定的类型
+		 *
+		 * @param keys
+		 * @param clazzKey
+		 * @param clazzValue
+		 * @return List<Map<K, V>>
+		 */
+		public static <K, V> List<Map<K, V>> hgetAll(List<String> keys, Class<K> clazzKey, Class<V> clazzValue) {
+			List<Map<byte[], byte[]>> maps = jedisOperations.hgetAll(toKeyBytes(keys));
+			List<Map<K, V>> results = new ArrayList<>(maps.size());
+			for (Map<byte[], byte[]> map : maps) {
+				Map<K, V> result = new HashMap<>(map.size());
+				map.forEach((field, value) -> result.put(toObject(field, clazzKey), toObject(value, clazzValue)));
+				results.add(result);
+			}
+			return results;
+		}
+		
 		/**
 		 * 拿到HASH的所有value
 		 *
@@ -1812,21 +2350,16 @@ public final class JedisUtils {
 		 * @return int 删除的field数量
 		 */
 		public static Long hdel(String key, Object field) {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"), key);
-				}
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"));
-			});
 			
 			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
-			return (Long) jedisOperations.evalsha(toBytes(hashSha),
+			Long result = (Long) SCRIPTS.eval("/lua-scripts/hash.lua",
 					2,
 					toBytes(key), // hash key
 					toBytes(zsetKey), // zset key
 					toBytes("hdel"), // 调用的lua function名字
 					toBytes(field));
+			invalidate(toBytes(key), toBytes(field));
+			return result;
 		}
 		
 		/**
@@ -1837,21 +2370,15 @@ public final class JedisUtils {
 		 * @return int 删除的field数量
 		 */
 		public static String hdelGet(String key, Object field) {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"), key);
-				}
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"));
-			});
 			
 			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
-			byte[] data = (byte[]) jedisOperations.evalsha(toBytes(hashSha),
+			byte[] data = (byte[]) SCRIPTS.eval("/lua-scripts/hash.lua",
 					2,
 					toBytes(key), // hash key
 					toBytes(zsetKey), // zset key
 					toBytes("hdelGet"), // 调用的lua function名字
 					toBytes(field));
+			invalidate(toBytes(key), toBytes(field));
 			return PrimitiveUtils.toString(data);
 		}
 		
@@ -1870,16 +2397,9 @@ public final class JedisUtils {
 		 * @on
 		 */
 		public static TTL ttl(String key, String field) {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"), key);
-				}
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"));
-			});
 			
 			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
-			Long result = (Long) jedisOperations.evalsha(toBytes(hashSha),
+			Long result = (Long) SCRIPTS.eval("/lua-scripts/hash.lua",
 					2,
 					toBytes(key),
 					toBytes(zsetKey),
@@ -1913,16 +2433,9 @@ public final class JedisUtils {
 		 * @return
 		 */
 		public static int expire(String key, String field, int ttl) {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"), key);
-				}
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"));
-			});
 			
 			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
-			Long result = (Long) jedisOperations.evalsha(toBytes(hashSha),
+			Long result = (Long) SCRIPTS.eval("/lua-scripts/hash.lua",
 					2,
 					toBytes(key),
 					toBytes(zsetKey),
@@ -1944,16 +2457,9 @@ public final class JedisUtils {
 		 * @on
 		 */
 		public static int persist(String key, String field) {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"), key);
-				}
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"));
-			});
 			
 			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
-			Long result = (Long) jedisOperations.evalsha(toBytes(hashSha),
+			Long result = (Long) SCRIPTS.eval("/lua-scripts/hash.lua",
 					2,
 					toBytes(key),
 					toBytes(zsetKey),
@@ -1968,16 +2474,8 @@ public final class JedisUtils {
 		 * @return
 		 */
 		public static long time() {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"), "hash.lua");
-				}
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"));
-			});
 			
-			long milis = (long) jedisOperations.evalsha(toBytes(hashSha), 0, toBytes("time"));
+			long milis = (long) SCRIPTS.eval("/lua-scripts/hash.lua", 0, toBytes("time"));
 			return milis;
 		}
 		
@@ -1987,16 +2485,9 @@ public final class JedisUtils {
 		 * @return
 		 */
 		public static List<String> expiredFields(String key) {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"), key);
-				}
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"));
-			});
 			
 			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
-			byte[] bytes = (byte[]) jedisOperations.evalsha(toBytes(hashSha),
+			byte[] bytes = (byte[]) SCRIPTS.eval("/lua-scripts/hash.lua",
 					1,
 					toBytes(zsetKey),
 					toBytes("expiredFields"));
@@ -2004,20 +2495,57 @@ public final class JedisUtils {
 			return JacksonUtils.toList(json, String.class);
 		}
 		
+		/**
+		 * 指定节点上有field设置了过期时间的hash
+		 *
+		 * @param node  masters()返回的节点
+		 * @param count SCAN的COUNT
+		 * @return Stream<String> hash的key, 同一个key可能返回多次
+		 */
+		public static Stream<String> expirableKeys(String node, int count) {
+			String zsetPrefix = joinKey(HASH_EXPIRE_ZSET_PREFIX, "");
+			return scan(node, zsetPrefix + "*", count)
+					.map((zsetKey) -> zsetKey.substring(zsetPrefix.length()));
+		}
+		
+		/**
+		 * 清理hash里已经过期的field, hash field和记录过期时间的zset member在一个脚本里一起删掉
+		 *
+		 * @param key
+		 * @param limit 最多清理多少个field
+		 * @return long 清理掉的field个数, 小于limit说明已经没有过期的field了
+		 */
+		public static long sweepExpiredFields(String key, int limit) {
+			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
+			long removed = evalScript("/lua-scripts/hashSweep.lua", 2, key, zsetKey, String.valueOf(limit));
+			if (removed > 0) {
+				invalidate(toBytes(key));
+			}
+			return removed;
+		}
+		
+		/**
+		 * 不带field过期检查的HGET, 开启了本地缓存的话先查本地
+		 */
+		private static byte[] hgetBytes(byte[] key, byte[] field) {
+			NearCache l1 = nearCache;
+			if (l1 == null) {
+				recordRead(key);
+				return jedisOperations.hget(key, field);
+			}
+			return l1.hget(key, field, () -> {
+				recordRead(key);
+				return jedisOperations.hget(key, field);
+			});
+		}
+		
 		/**
 		 * 调试用
 		 */
 		public static void testPurpose(String key, String field) {
-			String hashSha = shaHashs.computeIfAbsent("hash.lua", x -> {
-				log.debug("Load script {}", "hash.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"), key);
-				}
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/hash.lua"));
-			});
 			
 			String zsetKey = joinKey(HASH_EXPIRE_ZSET_PREFIX, key);
-			Object data = (Object) jedisOperations.evalsha(toBytes(hashSha),
+			Object data = (Object) SCRIPTS.eval("/lua-scripts/hash.lua",
 					2,
 					toBytes(key),
 					toBytes(zsetKey),
@@ -2031,6 +2559,163 @@ public final class JedisUtils {
 		}
 	}
 	
+	/**
+	 * Redis Stream, 生产者XADD, 消费者用consume()按消费组批量消费
+	 * <p>
+	 * Copyright: Copyright (c) 2026-10-18 06:00
+	 * <p>
+	 * Company: Sexy Uncle Inc.
+	 * <p>
+	 *
+	 * @author Rico Yu  ricoyu520@gmail.com
+	 * @version 1.0
+	 */
+	public static final class STREAM {
+		
+		/**
+		 * XADD, 不裁剪
+		 *
+		 * @param key
+		 * @param fields
+		 * @return 消息id
+		 */
+		public static String xadd(String key, Map<String, String> fields) {
+			return xadd(key, fields, 0);
+		}
+		
+		/**
+		 * XADD key MAXLEN ~ maxLen * field value ...
+		 * 近似裁剪, Redis按整个节点(radix tree node)删除, stream实际长度会比maxLen稍长一点
+		 *
+		 * @param key
+		 * @param fields
+		 * @param maxLen 小于1表示不裁剪
+		 * @return 消息id
+		 */
+		public static String xadd(String key, Map<String, String> fields, long maxLen) {
+			return jedisOperations.xadd(key, fields, maxLen).toString();
+		}
+		
+		/**
+		 * 批量XADD到同一个stream, 通过Pipeline一次发出去
+		 *
+		 * @param key
+		 * @param messages
+		 * @param maxLen   小于1表示不裁剪
+		 * @return 消息id, 和messages的顺序一致
+		 */
+		public static List<String> xadd(String key, List<Map<String, String>> messages, long maxLen) {
+			List<String> keys = new ArrayList<>(messages.size());
+			for (int i = 0; i < messages.size(); i++) {
+				keys.add(key);
+			}
+			List<StreamEntryID> ids = jedisOperations.xadd(keys, messages, maxLen);
+			List<String> results = new ArrayList<>(ids.size());
+			for (StreamEntryID id : ids) {
+				results.add(id == null ? null : id.toString());
+			}
+			return results;
+		}
+		
+		public static Long xlen(String key) {
+			return jedisOperations.xlen(key);
+		}
+		
+		/**
+		 * 创建消费组, stream不存在时一起创建; 消费组已经存在会抛 BUSYGROUP 异常
+		 *
+		 * @param key
+		 * @param group
+		 * @param id    从这条消息之后开始消费, new StreamEntryID()表示从头, StreamEntryID.LAST_ENTRY表示只消费新消息
+		 * @return String
+		 */
+		public static String xgroupCreate(String key, String group, StreamEntryID id) {
+			return jedisOperations.xgroupCreate(key, group, id);
+		}
+		
+		public static Long xgroupDelConsumer(String key, String group, String consumer) {
+			return jedisOperations.xgroupDelConsumer(key, group, consumer);
+		}
+		
+		/**
+		 * XREADGROUP GROUP group consumer COUNT count BLOCK blockMillis STREAMS key id
+		 *
+		 * @param key
+		 * @param group
+		 * @param consumer
+		 * @param count
+		 * @param blockMillis 小于1表示不阻塞
+		 * @param id          StreamEntryID.UNRECEIVED_ENTRY读新消息
+		 * @return List<StreamEntry> 没有消息返回空列表
+		 */
+		public static List<StreamEntry> xreadGroup(String key, String group, String consumer, int count, long blockMillis,
+		                                           StreamEntryID id) {
+			return jedisOperations.xreadGroup(key, group, consumer, count, blockMillis, id);
+		}
+		
+		public static Long xack(String key, String group, StreamEntryID... ids) {
+			return jedisOperations.xack(key, group, ids);
+		}
+		
+		/**
+		 * 消费组里最老的count条pending消息
+		 *
+		 * @param key
+		 * @param group
+		 * @param count
+		 * @param consumer 为null表示所有消费者
+		 * @return List<StreamPendingEntry>
+		 */
+		public static List<StreamPendingEntry> xpending(String key, String group, int count, String consumer) {
+			return jedisOperations.xpending(key, group, count, consumer);
+		}
+		
+		/**
+		 * 把空闲超过minIdleMillis的pending消息认领到consumer名下, 投递次数加一
+		 *
+		 * @param key
+		 * @param group
+		 * @param consumer
+		 * @param minIdleMillis
+		 * @param ids
+		 * @return 认领到的消息, 已经被裁剪掉的消息是null
+		 */
+		public static List<StreamEntry> xclaim(String key, String group, String consumer, long minIdleMillis,
+		                                       StreamEntryID... ids) {
+			return jedisOperations.xclaim(key, group, consumer, minIdleMillis, ids);
+		}
+		
+		/**
+		 * 以消费组的方式批量消费一个stream, 消费组不存在的话从头创建
+		 * <pre>
+		 * 一次最多拉 redis.stream.batchSize 条, 攒够这么多条也XACK一次, 默认100
+		 * worker线程数 redis.stream.workers, 默认CPU核数
+		 * 最多同时处理 redis.stream.maxInflightBatches 批, 默认worker线程数的2倍
+		 * 没有新消息时最多阻塞 redis.stream.blockMillis 毫秒, 默认2000
+		 * pending消息空闲超过 redis.stream.claimIdleMillis 毫秒就重新认领, 默认60000
+		 * 投递 redis.stream.maxDeliveries 次还没成功的消息ack掉不再重试, 默认16
+		 *
+		 * listener正常返回这一批才会ack, 抛异常这一批留在pending列表里等重新认领; 至少一次语义, 消息可能被重复消费
+		 * </pre>
+		 *
+		 * @param key
+		 * @param group
+		 * @param listener
+		 * @return StreamConsumer 不用了要close
+		 */
+		public static StreamConsumer consume(String key, String group, StreamListener listener) {
+			int workers = propertyReader.getInt("redis.stream.workers", Runtime.getRuntime().availableProcessors());
+			String consumerId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+			return new StreamConsumer(key, group, consumerId, listener,
+					propertyReader.getInt("redis.stream.batchSize", 100),
+					workers,
+					propertyReader.getInt("redis.stream.maxInflightBatches", workers * 2),
+					propertyReader.getInt("redis.stream.blockMillis", 2000),
+					propertyReader.getInt("redis.stream.claimIdleMillis", 60000),
+					propertyReader.getInt("redis.stream.maxDeliveries", 16));
+		}
+	}
+	
 	/**
 	 * 地理位置信息查询
 	 * <p>
@@ -2063,20 +2748,55 @@ public final class JedisUtils {
 		 */
 		public static boolean rateLimit(String key, int expire, int count) {
 			
-			String hashSha = shaHashs.computeIfAbsent("rateLimit.lua", x -> {
-				log.debug("Load script {}", "rateLimit.lua");
-				if (jedisOperations instanceof JedisClusterOperations) {
-					return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/rateLimit.lua"), key);
-				}
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/rateLimit.lua"));
-			});
 			
-			long result = (long) jedisOperations.evalsha(toBytes(hashSha),
+			long result = (long) SCRIPTS.eval("/lua-scripts/rateLimit.lua",
 					1,
 					toBytes(join(":", "rate", "limit", key)),
 					toBytes(expire), toBytes(count));
 			return result == 1;
 		}
+		
+		/**
+		 * 分布式令牌桶限流器, 每个节点一次向Redis租一批令牌在本地用, 不会每个请求都访问Redis
+		 * <p>
+		 * 同一个name在本JVM里只会创建一个实例, 之后再调用时permitsPerSecond、capacity不会变
+		 * <ul>
+		 *     <li/>redis.tokenBucket.leaseMillis 默认100, 一批令牌的租约, 过期没用完的下一次租的时候还回去
+		 *     <li/>redis.tokenBucket.maxLeaseSize 默认100, 一批最多租多少令牌
+		 * </ul>
+		 *
+		 * @param name             限流的名字
+		 * @param permitsPerSecond 整个集群每秒产生多少令牌
+		 * @param capacity         桶容量, 也就是允许的最大突发
+		 * @return TokenBucketLimiter
+		 */
+		public static TokenBucketLimiter tokenBucket(String name, double permitsPerSecond, long capacity) {
+			return TOKEN_BUCKETS.computeIfAbsent(name, (k) -> new TokenBucketLimiter(name, permitsPerSecond, capacity,
+					propertyReader.getInt("redis.tokenBucket.leaseMillis", 100),
+					propertyReader.getInt("redis.tokenBucket.maxLeaseSize", 100)));
+		}
+		
+		/**
+		 * 号段模式的ID生成器, 生成连续递增的数字ID, 每个节点一次INCRBY领一段, 在本地无锁发放, 快用完时后台预取下一段
+		 * <p>
+		 * 同一个name在本JVM里只会创建一个实例
+		 * <ul>
+		 *     <li/>redis.segmentId.minStep 默认1000, 号段最小多少个ID
+		 *     <li/>redis.segmentId.maxStep 默认1000000, 号段最大多少个ID
+		 *     <li/>redis.segmentId.targetMillis 默认60000, 号段大小按消费速度调整, 希望一个号段用这么久
+		 *     <li/>redis.segmentId.prefetchRatio 默认0.1, 当前号段用掉多少比例时预取下一个
+		 * </ul>
+		 *
+		 * @param name ID的名字
+		 * @return SegmentIdGenerator
+		 */
+		public static SegmentIdGenerator segmentId(String name) {
+			return SEGMENT_IDS.computeIfAbsent(name, (k) -> new SegmentIdGenerator(name,
+					propertyReader.getInt("redis.segmentId.minStep", 1000),
+					propertyReader.getInt("redis.segmentId.maxStep", 1000000),
+					propertyReader.getInt("redis.segmentId.targetMillis", 60000),
+					Double.parseDouble(propertyReader.getString("redis.segmentId.prefetchRatio", "0.1"))));
+		}
 	}
 	
 	/**
@@ -2105,7 +2825,7 @@ public final class JedisUtils {
 	 * @return boolean 是否成功设置了过期时间
 	 */
 	public static boolean expire(String key, int timeout) {
-		return jedisOperations.expire(key, timeout) == 1;
+		return expireBytes(toBytes(key), timeout);
 	}
 	
 	/**
@@ -2116,7 +2836,7 @@ public final class JedisUtils {
 	 * @return boolean 是否成功设置了过期时间
 	 */
 	public static boolean expire(Object key, int timeout) {
-		return jedisOperations.expire(toBytes(key), timeout) == 1;
+		return expireBytes(toBytes(key), timeout);
 	}
 	
 	/**
@@ -2127,7 +2847,7 @@ public final class JedisUtils {
 	 * @return boolean 是否成功设置了过期时间
 	 */
 	public static boolean expire(String key, int timeout, TimeUnit timeUnit) {
-		return jedisOperations.expire(key, toSeconds(timeout, timeUnit)) == 1;
+		return expireBytes(toBytes(key), toSeconds(timeout, timeUnit));
 	}
 	
 	/**
@@ -2138,7 +2858,7 @@ public final class JedisUtils {
 	 * @return boolean 是否成功设置了过期时间
 	 */
 	public static boolean expire(Object key, int timeout, TimeUnit timeUnit) {
-		return jedisOperations.expire(toBytes(key), toSeconds(timeout, timeUnit)) == 1;
+		return expireBytes(toBytes(key), toSeconds(timeout, timeUnit));
 	}
 	
 	/**
@@ -2149,7 +2869,7 @@ public final class JedisUtils {
 	 * @return boolean 是否成功设置了过期时间
 	 */
 	public static boolean expireAt(String key, long unixTime) {
-		return jedisOperations.expireAt(key, unixTime) == 1;
+		return expireAtBytes(toBytes(key), unixTime);
 	}
 	
 	/**
@@ -2160,7 +2880,7 @@ public final class JedisUtils {
 	 * @return boolean 是否成功设置了过期时间
 	 */
 	public static boolean expireAt(Object key, long unixTime) {
-		return jedisOperations.expireAt(toBytes(key), unixTime) == 1;
+		return expireAtBytes(toBytes(key), unixTime);
 	}
 	
 	/**
@@ -2170,7 +2890,7 @@ public final class JedisUtils {
 	 * @return
 	 */
 	public static boolean persist(String key) {
-		return jedisOperations.persist(key) == 1;
+		return persistBytes(toBytes(key));
 	}
 	
 	/**
@@ -2180,7 +2900,7 @@ public final class JedisUtils {
 	 * @return
 	 */
 	public static boolean persist(Object key) {
-		return jedisOperations.persist(toBytes(key)) == 1;
+		return persistBytes(toBytes(key));
 	}
 	
 	/**
@@ -2204,11 +2924,74 @@ public final class JedisUtils {
 	}
 	
 	public static void del(String key) {
-		jedisOperations.del(key);
+		del((Object) key);
 	}
 	
 	public static void del(Object key) {
-		jedisOperations.del(toBytes(key));
+		byte[] keyBytes = toBytes(key);
+		deleteBytes(Collections.singletonList(keyBytes), false);
+		invalidate(keyBytes);
+	}
+	
+	/**
+	 * 批量删除, 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+	 *
+	 * @param keys
+	 * @return long 实际删除的key的数量
+	 */
+	public static long mdel(Collection<String> keys) {
+		List<byte[]> keyBytes = toKeyBytes(keys);
+		long deleted = deleteBytes(keyBytes, false);
+		invalidate(keyBytes);
+		return deleted;
+	}
+	
+	/**
+	 * 批量UNLINK, value在Redis的后台线程里释放, 删大key不阻塞; 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+	 *
+	 * @param keys
+	 * @return long 实际删除的key的数量
+	 */
+	public static long unlink(Collection<String> keys) {
+		return unlinkBytes(toKeyBytes(keys));
+	}
+	
+	/**
+	 * 和unlink(keys)一样, key是原始的byte[], 比如scanBytes()返回的二进制key
+	 *
+	 * @param keys
+	 * @return long 实际删除的key的数量
+	 */
+	public static long unlinkBytes(List<byte[]> keys) {
+		long deleted = deleteBytes(keys, true);
+		invalidate(keys);
+		return deleted;
+	}
+	
+	/**
+	 * 按pattern删除key, 在每个master上SCAN, 每batchSize个key一次UNLINK, 不会像 KEYS + DEL 那样阻塞Redis
+	 *
+	 * @param pattern   比如 user:session:*
+	 * @param batchSize SCAN的COUNT, 也是一次UNLINK最多多少个key
+	 * @return long 实际删除的key的数量
+	 */
+	public static long deleteByPattern(String pattern, int batchSize) {
+		return deleteByPattern(pattern, batchSize, 0, null);
+	}
+	
+	/**
+	 * 按pattern限速删除key, 每删一批回调一次progress; progress返回false或者当前线程被中断, 删完当前这一批就停下
+	 * <p>
+	 * 要在别的线程里取消的话, 自己new PatternDeleter然后调用cancel()
+	 *
+	 * @param pattern          比如 user:session:*
+	 * @param batchSize        SCAN的COUNT, 也是一次UNLINK最多多少个key
+	 * @param maxKeysPerSecond 每秒最多删多少个key, 小于1表示不限速
+	 * @param progress         可以为null
+	 * @return long 实际删除的key的数量
+	 */
+	public static long deleteByPattern(String pattern, int batchSize, int maxKeysPerSecond, PatternDeleter.Progress progress) {
+		return new PatternDeleter(pattern, batchSize, maxKeysPerSecond, progress).execute();
 	}
 	
 	/**
@@ -2270,17 +3053,11 @@ public final class JedisUtils {
 	public static byte[] delGet(byte[] key) {
 		Objects.requireNonNull(key);
 		
-		String delGetSha1 = shaHashs.computeIfAbsent("delGet.lua", x -> {
-			log.debug("Load script {}", "delGet.lua");
-			if (jedisOperations instanceof JedisClusterOperations) {
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/delGet.lua"), key);
-			}
-			return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/delGet.lua"));
-		});
 		
-		byte[] value = (byte[]) jedisOperations.evalsha(toBytes(delGetSha1),
+		byte[] value = (byte[]) SCRIPTS.eval("/lua-scripts/delGet.lua",
 				1,
 				key);
+		invalidate(key);
 		
 		return value;
 	}
@@ -2393,6 +3170,37 @@ public final class JedisUtils {
 		return jedisPubSub;
 	}
 	
+	/**
+	 * 整个进程共用一个订阅连接和一个接收线程, 运行时随时增加、取消订阅, 断线自动重连并重新订阅;
+	 * 消息交给有界线程池处理, 同一个监听器的消息按顺序处理
+	 * <pre>
+	 * Subscription subscription = JedisUtils.subscriber().subscribe((channel, message) -> ..., "channel1", "channel2");
+	 * subscription.unsubscribe();
+	 * </pre>
+	 * <ul>
+	 *     <li/>redis.subscriber.threads 默认4, 处理消息的线程数
+	 *     <li/>redis.subscriber.queueCapacity 默认10000, 每个监听器最多积压多少条消息, 再多就丢掉
+	 *     <li/>redis.subscriber.pingSeconds 默认30, 多久PING一次
+	 * </ul>
+	 *
+	 * @return SharedSubscriber
+	 */
+	public static SharedSubscriber subscriber() {
+		SharedSubscriber subscriber = sharedSubscriber;
+		if (subscriber != null) {
+			return subscriber;
+		}
+		synchronized (JedisUtils.class) {
+			if (sharedSubscriber == null) {
+				sharedSubscriber = new SharedSubscriber(jedisOperations,
+						propertyReader.getInt("redis.subscriber.threads", 4),
+						propertyReader.getInt("redis.subscriber.queueCapacity", 10000),
+						propertyReader.getInt("redis.subscriber.pingSeconds", 30));
+			}
+			return sharedSubscriber;
+		}
+	}
+	
 	/**
 	 * 取消订阅
 	 *
@@ -2483,7 +3291,7 @@ public final class JedisUtils {
 	 * @return
 	 */
 	public static Lock blockingLock(String key) {
-		return new BlockingLock(key);
+		return new BlockingLock(key, LOCK_MANAGER);
 	}
 	
 	/**
@@ -2496,6 +3304,40 @@ public final class JedisUtils {
 		return new NonBlockingLock(key);
 	}
 	
+	/**
+	 * 分布式读写锁, 写优先; readLock()/writeLock()每次返回一个新的Lock, 不要在线程之间共享
+	 *
+	 * @param name 读写锁的名字
+	 * @return ReadWriteLock
+	 */
+	public static ReadWriteLock readWriteLock(String name) {
+		return new RedisReadWriteLock(name, LOCK_MANAGER);
+	}
+	
+	/**
+	 * 分布式信号量, 许可的租约和BlockingLock一样由LockManager续期, 持有许可的进程挂了, 最多redis.lock.leaseSeconds之后自动回收
+	 *
+	 * @param name    信号量的名字
+	 * @param permits 总许可数, 只有这个信号量第一次创建的时候才会设置成功
+	 * @return Semaphore
+	 */
+	public static Semaphore semaphore(String name, int permits) {
+		return new RedisSemaphore(name, permits, LOCK_MANAGER);
+	}
+	
+	/**
+	 * 分布式信号量, 许可的租约不续期
+	 *
+	 * @param name      信号量的名字
+	 * @param permits   总许可数, 只有这个信号量第一次创建的时候才会设置成功
+	 * @param leaseTime 许可的租约有效期, 不管有没有release, 过了这么久许可都会被回收, 要比持有许可的最长时间长
+	 * @param timeUnit
+	 * @return Semaphore
+	 */
+	public static Semaphore semaphore(String name, int permits, long leaseTime, TimeUnit timeUnit) {
+		return new RedisSemaphore(name, permits, leaseTime, timeUnit, LOCK_MANAGER);
+	}
+	
 	/**
 	 * 释放分布式锁
 	 * <p>
@@ -2523,30 +3365,101 @@ public final class JedisUtils {
 	 * @return boolean 是否释放成功
 	 */
 	public static boolean unlock(String key, String value) {
-		String setnxSha1 = shaHashs.computeIfAbsent("unlock.lua", x -> {
-			log.debug("Load script {}", "unlock.lua");
-			if (jedisOperations instanceof JedisClusterOperations) {
-				return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/unlock.lua"), key);
-			}
-			return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString("/lua-scripts/unlock.lua"));
-		});
 		
-		long result = (long) jedisOperations.evalsha(setnxSha1, 1, key, value);
+		long result = (long) SCRIPTS.eval("/lua-scripts/unlock.lua", 1, key, value);
 		return result == 1L;
 	}
+
+	/**
+	 * 批量给锁续期, 只有锁还是自己的时候才续期
+	 * <ul>
+	 *     <li/>string类型的锁: 锁的value和传入的value一致
+	 *     <li/>zset类型的锁(读写锁的读锁): 传入的value是member, member还在并且没过期, 续期后score是新的过期时间
+	 * </ul>
+	 * 单机/哨兵下一个脚本续一批; 集群模式下多key脚本要求key在同一个slot, 所以按slot分组, 每组一次
+	 *
+	 * @param locks       锁 -> 加锁时的value, 同一个key可以出现多次
+	 * @param leaseMillis 续期后的过期时间
+	 * @return Set<Map.Entry<String, String>> 续期失败(已经过期或者被别人拿走了)的锁
+	 */
+	public static Set<Map.Entry<String, String>> renewLocks(Collection<Map.Entry<String, String>> locks, long leaseMillis) {
+		if (locks.isEmpty()) {
+			return Collections.emptySet();
+		}
+
+		Collection<List<Map.Entry<String, String>>> groups;
+		if (jedisOperations.unwrap() instanceof JedisClusterOperations) {
+			groups = locks.stream()
+					.collect(Collectors.groupingBy((lock) -> JedisClusterCRC16.getSlot(lock.getKey())))
+					.values();
+		} else {
+			groups = Collections.singletonList(new ArrayList<>(locks));
+		}
+
+		String now = String.valueOf(System.currentTimeMillis());
+		Set<Map.Entry<String, String>> lost = new HashSet<>();
+		for (List<Map.Entry<String, String>> group : groups) {
+			int size = group.size();
+			String[] params = new String[size * 2 + 2];
+			for (int i = 0; i < size; i++) {
+				params[i] = group.get(i).getKey();
+				params[size + 2 + i] = group.get(i).getValue();
+			}
+			params[size] = String.valueOf(leaseMillis);
+			params[size + 1] = now;
+
+			List<Long> results = evalScript("/lua-scripts/renewLocks.lua", size, params);
+			for (int i = 0; i < size; i++) {
+				if (results.get(i) != 1L) {
+					lost.add(group.get(i));
+				}
+			}
+		}
+		return lost;
+	}
+
+	/**
+	 * 执行Lua脚本, 脚本的加载和NOSCRIPT兜底由ScriptRegistry负责
+	 *
+	 * @param luaPath  classpath路径比如 /lua-scripts/unlock.lua, 或者scripts().register()时用的名字
+	 * @param keyCount params中前keyCount个是key, 余下的是参数
+	 * @param params
+	 * @return T
+	 */
+	public static <T> T evalScript(String luaPath, int keyCount, String... params) {
+		return SCRIPTS.eval(luaPath, keyCount, params);
+	}
 	
 	/**
-	 * lua脚本加载到Redis
+	 * 执行Lua脚本, 参数是任意类型, 按toBytes()的规则序列化
+	 *
+	 * @param luaPath  classpath路径比如 /lua-scripts/unlock.lua, 或者scripts().register()时用的名字
+	 * @param keyCount params中前keyCount个是key, 余下的是参数
+	 * @param params
+	 * @return T
+	 */
+	public static <T> T evalScript(String luaPath, int keyCount, Object... params) {
+		return SCRIPTS.eval(luaPath, keyCount, toBytes(params));
+	}
+	
+	/**
+	 * lua脚本注册到ScriptRegistry并加载到每个master上
 	 *
 	 * @param luaPath
-	 * @return lua脚本加载到Redis之后得到的SHA1值
+	 * @return lua脚本的SHA1值
 	 */
 	public static String scriptLoad(String luaPath) {
 		log.debug("Load script {}", luaPath);
-		if (jedisOperations instanceof JedisClusterOperations) {
-			return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString(luaPath), luaPath);
-		}
-		return jedisOperations.scriptLoad(IOUtils.readClassPathFileAsString(luaPath));
+		return SCRIPTS.register(luaPath, IOUtils.readClassPathFileAsString(luaPath));
+	}
+	
+	/**
+	 * Lua脚本注册表, 业务自己的脚本register()之后也会被预加载, 用evalScript(name, ...)或者scripts().eval(name, ...)执行
+	 *
+	 * @return ScriptRegistry
+	 */
+	public static ScriptRegistry scripts() {
+		return SCRIPTS;
 	}
 	
 	public static <R> R execute(Function<Jedis, R> func) {
@@ -2568,6 +3481,410 @@ public final class JedisUtils {
 		return (List<T>) jedisOperations.executePipelined(consumer);
 	}
 	
+	/**
+	 * 开启进程内一级缓存, 已经开启的话先关掉原来的
+	 *
+	 * @param maximumSize      普通key和hash field各自最多缓存多少个
+	 * @param expireAfterWrite 写入本地缓存多久之后过期, Redis里面被Lua脚本改掉或者过期的key本地最多脏这么久
+	 * @param timeUnit
+	 * @param prefixes         只缓存这些前缀的key, 不传表示都缓存
+	 */
+	public static synchronized void enableNearCache(long maximumSize, long expireAfterWrite, TimeUnit timeUnit, String... prefixes) {
+		NearCache previous = nearCache;
+		nearCache = new NearCache(jedisOperations, maximumSize, expireAfterWrite, timeUnit, asList(prefixes));
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * 关闭进程内一级缓存
+	 */
+	public static synchronized void disableNearCache() {
+		NearCache previous = nearCache;
+		nearCache = null;
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * 开启后台清理过期的hash field, 已经开启的话按新的参数重新开启
+	 *
+	 * @param intervalMillis 多久清理一轮
+	 * @param budgetMillis   每一轮最多花多久
+	 * @param batchSize      每次脚本调用最多清理多少个field
+	 * @param scanCount      SCAN的COUNT
+	 */
+	public static synchronized void enableHashSweeper(long intervalMillis, long budgetMillis, int batchSize, int scanCount) {
+		HashFieldSweeper previous = hashSweeper;
+		hashSweeper = new HashFieldSweeper(intervalMillis, budgetMillis, batchSize, scanCount);
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * 关闭后台清理过期的hash field
+	 */
+	public static synchronized void disableHashSweeper() {
+		HashFieldSweeper previous = hashSweeper;
+		hashSweeper = null;
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * 后台清理过期hash field的清理器, 可以看清理了多少field; 没有开启返回null
+	 *
+	 * @return HashFieldSweeper
+	 */
+	public static HashFieldSweeper hashSweeper() {
+		return hashSweeper;
+	}
+	
+	/**
+	 * 开启热点key探测, 已经开启的话按新的参数重新开启
+	 *
+	 * @param sampleRate   每多少次读抽样一次
+	 * @param thresholdQps 本JVM对一个key的读QPS估算值超过这个就算热点
+	 * @param topK         最多同时有多少个热点key
+	 * @param windowMillis 滑动窗口的长度
+	 * @param pinMillis    热点key的值在本地缓存多久, <= 0 表示只探测不缓存
+	 */
+	public static synchronized void enableHotKeyDetector(int sampleRate, long thresholdQps, int topK, long windowMillis,
+	                                                     long pinMillis) {
+		HotKeyDetector previous = hotKeyDetector;
+		hotKeyDetector = new HotKeyDetector(sampleRate, thresholdQps, topK, windowMillis,
+				propertyReader.getInt("redis.hotKey.sketchWidth", 2048), pinMillis);
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * 关闭热点key探测
+	 */
+	public static synchronized void disableHotKeyDetector() {
+		HotKeyDetector previous = hotKeyDetector;
+		hotKeyDetector = null;
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * 当前的热点key和估算的每秒读次数, 按读次数从高到低; 没有开启热点key探测返回空Map
+	 *
+	 * @return Map<String, Long>
+	 */
+	public static Map<String, Long> hotKeys() {
+		HotKeyDetector detector = hotKeyDetector;
+		return detector == null ? Collections.emptyMap() : detector.hotKeys();
+	}
+	
+	/**
+	 * 热点key探测的抽样数, 本地缓存命中次数等统计信息, 没有开启返回null
+	 *
+	 * @return HotKeyStats
+	 */
+	public static HotKeyStats hotKeyStats() {
+		HotKeyDetector detector = hotKeyDetector;
+		return detector == null ? null : detector.stats();
+	}
+	
+	/**
+	 * 每个Redis命令的调用次数、耗时百分位、报文大小以及从连接池借连接的等待时间, 配置了 redis.metrics.enabled=false 返回null
+	 *
+	 * @return RedisMetricsSnapshot
+	 */
+	public static RedisMetricsSnapshot redisMetrics() {
+		MeteredJedisOperations metrics = MeteredJedisOperations.of(jedisOperations);
+		return metrics == null ? null : metrics.snapshot();
+	}
+	
+	/**
+	 * 把命令统计输出到别的地方(比如Prometheus), 默认输出到JMX; 配置了 redis.metrics.enabled=false 时不起作用
+	 *
+	 * @param sink
+	 */
+	public static void setMetricsSink(MetricsSink sink) {
+		MeteredJedisOperations metrics = MeteredJedisOperations.of(jedisOperations);
+		if (metrics != null) {
+			metrics.setSink(sink);
+		}
+	}
+	
+	/**
+	 * 一级缓存的命中率, 失效延迟等统计信息, 没有开启一级缓存返回null
+	 *
+	 * @return NearCacheStats
+	 */
+	public static NearCacheStats nearCacheStats() {
+		NearCache l1 = nearCache;
+		return l1 == null ? null : l1.stats();
+	}
+	
+	/**
+	 * 自动Pipeline的异步命令入口, 多个线程并发提交的小命令会被攒成一批一次发出去
+	 * <ul>
+	 *     <li/>redis.autoPipeline.batchSize 默认128, 一批最多多少条命令
+	 *     <li/>redis.autoPipeline.flushIntervalMicros 默认100, 第一条命令最多等多久就flush
+	 *     <li/>redis.autoPipeline.flushers 默认2, flusher线程数
+	 *     <li/>redis.autoPipeline.queueCapacity 默认10000, 排队命令上限
+	 * </ul>
+	 * 集群模式不支持
+	 *
+	 * @return AutoPipeline
+	 */
+	public static AutoPipeline autoPipeline() {
+		AutoPipeline pipeline = autoPipeline;
+		if (pipeline != null) {
+			return pipeline;
+		}
+		if (!(jedisOperations.unwrap() instanceof JedisPoolOperations)) {
+			throw new OperationNotSupportedException("Auto pipelining is not supported in cluster mode");
+		}
+		synchronized (JedisUtils.class) {
+			if (autoPipeline == null) {
+				autoPipeline = new AutoPipeline((JedisPoolOperations) jedisOperations.unwrap(),
+						propertyReader.getInt("redis.autoPipeline.batchSize", 128),
+						propertyReader.getInt("redis.autoPipeline.flushIntervalMicros", 100),
+						propertyReader.getInt("redis.autoPipeline.flushers", 2),
+						propertyReader.getInt("redis.autoPipeline.queueCapacity", 10000));
+			}
+			return autoPipeline;
+		}
+	}
+	
+	/**
+	 * supplier里的只读命令(get、mget、HASH.hget...)发到从库, 其他时候JedisUtils的读都走master
+	 * <p>
+	 * 从库的数据会落后master, 只有能接受读到旧值的读才放进来; 读到的值不会回填本地缓存。
+	 * 只对配置了从库的AbstractRoutingRedisPool有效, 其他模式下和直接调用supplier一样
+	 * <pre>
+	 * List<String> products = JedisUtils.readReplica(() -> JedisUtils.mget(keys));
+	 * </pre>
+	 *
+	 * @param supplier
+	 * @return T
+	 */
+	public static <T> T readReplica(Supplier<T> supplier) {
+		return JedisPoolOperations.readReplica(supplier);
+	}
+	
+	/**
+	 * 和get(key, clazz, supplier)同一套合并回源: 同一个JVM里同一个key只有一个线程调loader, 不同JVM之间通过租约协调
+	 *
+	 * @param key         缓存的key
+	 * @param cacheReader 从缓存读, 返回null表示没有命中
+	 * @param loader      回源
+	 * @param cacheWriter 回填缓存, loader返回null时不会调用
+	 * @return T
+	 */
+	public static <T> T singleFlight(String key, Supplier<T> cacheReader, Supplier<T> loader, Consumer<T> cacheWriter) {
+		return SINGLE_FLIGHT.load(key, cacheReader, loader, cacheWriter);
+	}
+	
+	/**
+	 * get(key, clazz, supplier)这类方法的回源统计: 回源次数、合并次数、等待其他节点回源的次数、回源耗时
+	 *
+	 * @return SingleFlightStats
+	 */
+	public static SingleFlightStats singleFlightStats() {
+		return SINGLE_FLIGHT.stats();
+	}
+	
+	/**
+	 * getRefreshAhead(...)的后台刷新统计
+	 *
+	 * @return RefreshAheadStats
+	 */
+	public static RefreshAheadStats refreshAheadStats() {
+		return REFRESH_AHEAD.stats();
+	}
+	
+	/**
+	 * 所有BlockingLock共用的锁管理器
+	 *
+	 * @return LockManager
+	 */
+	public static LockManager lockManager() {
+		return LOCK_MANAGER;
+	}
+	
+	/**
+	 * BlockingLock的统计: 本JVM正在等锁的线程数、持有的锁数、续期次数、丢掉的锁数
+	 *
+	 * @return LockManagerStats
+	 */
+	public static LockManagerStats lockManagerStats() {
+		return LOCK_MANAGER.stats();
+	}
+	
+	/**
+	 * 回源, 记下回源耗时, 连同逻辑过期时间一起回填
+	 */
+	private static <T> T loadAndWrap(byte[] key, Supplier<T> supplier, long expires, long staleWindow, TimeUnit timeUnit) {
+		long begin = System.currentTimeMillis();
+		T value = supplier.get();
+		if (value == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		long ttlMillis = timeUnit.toMillis(expires);
+		byte[] wrapped = RefreshAhead.wrap(toValueBytes(value), now + ttlMillis, now - begin);
+		// 过期时间以秒为单位, 向上取整
+		long physicalSeconds = Math.max(1, MILLISECONDS.toSeconds(ttlMillis + timeUnit.toMillis(staleWindow) + 999));
+		set(key, wrapped, toBytes(physicalSeconds));
+		return value;
+	}
+	
+	private static ScanParams scanParams(String pattern, int count) {
+		ScanParams params = new ScanParams().count(count);
+		if (pattern != null) {
+			params.match(pattern);
+		}
+		return params;
+	}
+	
+	private static List<byte[]> toKeyBytes(Collection<String> keys) {
+		List<byte[]> keyBytes = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			keyBytes.add(toBytes(key));
+		}
+		return keyBytes;
+	}
+	
+	/**
+	 * GET, 开启了本地缓存的话先查本地
+	 */
+	private static byte[] getBytes(byte[] key) {
+		NearCache l1 = nearCache;
+		if (l1 == null) {
+			return loadBytes(key);
+		}
+		return l1.get(key, JedisUtils::loadBytes);
+	}
+	
+	/**
+	 * 本地一级缓存没命中, 从Redis读; 开启了热点key探测的话先抽样统计, 热点key可能直接从本地返回
+	 */
+	private static byte[] loadBytes(byte[] key) {
+		HotKeyDetector detector = hotKeyDetector;
+		if (detector == null) {
+			return fetchBytes(key);
+		}
+		return detector.get(key, JedisUtils::fetchBytes);
+	}
+	
+	/**
+	 * GET, 读到的是分块存的大value的manifest的话把分块拼回来
+	 */
+	private static byte[] fetchBytes(byte[] key) {
+		byte[] value = jedisOperations.get(key);
+		if (ChunkedValues.isManifest(value)) {
+			return CHUNKED.read(key, value);
+		}
+		return value;
+	}
+	
+	/**
+	 * DEL/UNLINK, 开启了分块的话删掉的大value的分块跟着过期
+	 */
+	private static long deleteBytes(List<byte[]> keys, boolean unlink) {
+		if (keys.isEmpty()) {
+			return 0;
+		}
+		if (CHUNKED.isEnabled()) {
+			return CHUNKED.delete(keys, unlink);
+		}
+		Long deleted = unlink ? jedisOperations.unlink(keys) : jedisOperations.del(keys);
+		return deleted == null ? 0 : deleted;
+	}
+	
+	/**
+	 * EXPIRE, 开启了分块的话大value的分块跟着过期
+	 */
+	private static boolean expireBytes(byte[] key, int seconds) {
+		if (CHUNKED.isEnabled()) {
+			return CHUNKED.expire(key, seconds);
+		}
+		return jedisOperations.expire(key, seconds) == 1;
+	}
+	
+	/**
+	 * EXPIREAT, 开启了分块的话大value的分块跟着过期
+	 */
+	private static boolean expireAtBytes(byte[] key, long unixTime) {
+		if (CHUNKED.isEnabled()) {
+			return CHUNKED.expireAt(key, unixTime);
+		}
+		return jedisOperations.expireAt(key, unixTime) == 1;
+	}
+	
+	/**
+	 * PERSIST, 开启了分块的话大value的分块也去掉过期时间
+	 */
+	private static boolean persistBytes(byte[] key) {
+		if (CHUNKED.isEnabled()) {
+			return CHUNKED.persist(key);
+		}
+		return jedisOperations.persist(key) == 1;
+	}
+	
+	/**
+	 * HGET读Redis之前让热点key探测统计一次
+	 */
+	private static void recordRead(byte[] key) {
+		HotKeyDetector detector = hotKeyDetector;
+		if (detector != null) {
+			detector.record(key);
+		}
+	}
+	
+	/**
+	 * key被修改后失效本地缓存并通知其他节点
+	 */
+	private static void invalidate(byte[] key) {
+		NearCache l1 = nearCache;
+		if (l1 != null) {
+			l1.invalidate(key);
+		}
+		HotKeyDetector detector = hotKeyDetector;
+		if (detector != null) {
+			detector.invalidate(key);
+		}
+	}
+	
+	/**
+	 * 一批key被修改后失效本地缓存, 只发一条通知给其他节点
+	 */
+	private static void invalidate(List<byte[]> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		NearCache l1 = nearCache;
+		if (l1 != null) {
+			l1.invalidate(keys);
+		}
+		HotKeyDetector detector = hotKeyDetector;
+		if (detector != null) {
+			keys.forEach(detector::invalidate);
+		}
+	}
+	
+	/**
+	 * hash field被修改后失效本地缓存并通知其他节点
+	 */
+	private static void invalidate(byte[] key, byte[] field) {
+		NearCache l1 = nearCache;
+		if (l1 != null) {
+			l1.invalidate(key, field);
+		}
+	}
+	
 	private static boolean isEmpty(Collection<?> collection) {
 		return collection == null || collection.isEmpty();
 	}
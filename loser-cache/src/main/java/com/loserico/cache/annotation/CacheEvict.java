@@ -0,0 +1,42 @@
+package com.loserico.cache.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 方法执行完删掉缓存, 一般加在修改、删除数据的方法上
+ * <pre>
+ * &#64;CacheEvict(key = {"user:#{#user.id}", "user:name:#{#user.username}"})
+ * public void update(User user)
+ * </pre>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 03:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CacheEvict {
+	
+	/**
+	 * 要删的key模板, 和@Cached一样; 方法执行完再删的话还可以用 #result 引用返回值
+	 *
+	 * @return String[]
+	 */
+	String[] key();
+	
+	/**
+	 * 方法执行之前删, 默认方法成功执行之后删, 方法抛异常就不删
+	 *
+	 * @return boolean
+	 */
+	boolean beforeInvocation() default false;
+}
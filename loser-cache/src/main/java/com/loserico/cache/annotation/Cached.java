@@ -0,0 +1,69 @@
+package com.loserico.cache.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 方法的返回值缓存到Redis, 相当于手写的 JedisUtils.get(key, clazz, () -> 方法体, ttl, timeUnit)
+ * <pre>
+ * &#64;Cached(key = "user:#{#id}", ttl = 10, timeUnit = TimeUnit.MINUTES)
+ * public User findById(Long id)
+ * </pre>
+ * 没命中时同一个key只有一个线程执行方法, 其他线程和其他节点等它回填
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 03:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cached {
+	
+	/**
+	 * key模板, #{...}里面是SpEL表达式, 可以用 #参数名、#p0、#a0 引用参数, 不带#{}的就是固定的key
+	 * <p>
+	 * 例如: "user:#{#id}", "order:#{#user.id}:#{#status}"
+	 *
+	 * @return String
+	 */
+	String key();
+	
+	/**
+	 * 过期时间
+	 *
+	 * @return long
+	 */
+	long ttl() default 5;
+	
+	TimeUnit timeUnit() default TimeUnit.MINUTES;
+	
+	/**
+	 * 过期时间随机加上 0 ~ ttl*jitter, 避免同一批写进去的key同时过期, 0表示不加
+	 *
+	 * @return double
+	 */
+	double jitter() default 0.1;
+	
+	/**
+	 * 方法返回null时也缓存起来, 防止不存在的数据每次都打到数据库
+	 *
+	 * @return boolean
+	 */
+	boolean cacheNull() default true;
+	
+	/**
+	 * null缓存多久, 单位秒, 比正常数据短, 数据补录以后很快能查到
+	 *
+	 * @return long
+	 */
+	long nullTtlSeconds() default 60;
+}
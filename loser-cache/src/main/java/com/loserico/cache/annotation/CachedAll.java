@@ -0,0 +1,71 @@
+package com.loserico.cache.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量版的@Cached, 方法接收一组id, 返回 Map&lt;id, 值&gt;
+ * <pre>
+ * &#64;CachedAll(key = "user:#{#id}")
+ * public Map&lt;Long, User&gt; findByIds(List&lt;Long&gt; ids)
+ * </pre>
+ * 先用一次MGET批量取所有id的缓存, 只拿没命中的id调用方法, 方法返回的结果回填缓存, 再和命中的合并起来返回
+ * <ul>
+ *     <li/>返回的Map按传进来的id的顺序, 没有值的id不放进Map
+ *     <li/>方法返回的Map里没有的id认为不存在, cacheNull=true时缓存成null
+ *     <li/>所有id都命中时不调用方法
+ * </ul>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 03:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CachedAll {
+	
+	/**
+	 * 每个id的key模板, 用 #id 引用单个id, 其他参数和@Cached一样可以用 #参数名、#p0 引用
+	 * <p>
+	 * 例如: "user:#{#id}", "tenant:#{#tenantId}:user:#{#id}"
+	 *
+	 * @return String
+	 */
+	String key();
+	
+	/**
+	 * 哪个参数是id集合, 参数名或者参数下标; 不指定的话取第一个Collection类型的参数
+	 *
+	 * @return String
+	 */
+	String ids() default "";
+	
+	long ttl() default 5;
+	
+	TimeUnit timeUnit() default TimeUnit.MINUTES;
+	
+	/**
+	 * 过期时间随机加上 0 ~ ttl*jitter, 批量回填的key不会同时过期
+	 *
+	 * @return double
+	 */
+	double jitter() default 0.1;
+	
+	/**
+	 * 方法没有返回的id也缓存起来, 下次不再查
+	 *
+	 * @return boolean
+	 */
+	boolean cacheNull() default true;
+	
+	long nullTtlSeconds() default 60;
+}
@@ -0,0 +1,415 @@
+package com.loserico.cache.aspect;
+
+import com.google.common.primitives.Primitives;
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.annotation.CacheEvict;
+import com.loserico.cache.annotation.Cached;
+import com.loserico.cache.annotation.CachedAll;
+import com.loserico.cache.utils.UnMarshaller;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.loserico.cache.utils.ByteUtils.toBytes;
+import static com.loserico.cache.utils.ByteUtils.toValueBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 处理@Cached、@CachedAll、@CacheEvict
+ * <p>
+ * 每个方法第一次调用时解析好key模板、参数名、返回值的反序列化方式, 之后直接用, 切面本身的开销在微秒级。
+ * 值的序列化和JedisUtils.set(key, value)一样, 所以也可以用JedisUtils.get(key, clazz)读到
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 03:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Aspect
+@Component
+public class CacheAspect {
+	
+	/**
+	 * 缓存的null, 和正常的值区分开
+	 */
+	static final byte[] NULL_VALUE = "\u0000null".getBytes(UTF_8);
+	
+	/**
+	 * 回源返回null时用它代替, 这样null也能回填
+	 */
+	private static final Object NULL = new Object();
+	
+	private static final ParameterNameDiscoverer PARAMETER_NAMES = new DefaultParameterNameDiscoverer();
+	
+	private final Map<Method, CachedMethod> cachedMethods = new ConcurrentHashMap<>();
+	
+	private final Map<Method, CachedAllMethod> cachedAllMethods = new ConcurrentHashMap<>();
+	
+	private final Map<Method, KeyTemplate[]> evictMethods = new ConcurrentHashMap<>();
+	
+	@Around("@annotation(cached)")
+	public Object cached(ProceedingJoinPoint joinPoint, Cached cached) throws Throwable {
+		Method method = method(joinPoint);
+		CachedMethod cachedMethod = cachedMethods.computeIfAbsent(method, (m) -> new CachedMethod(m, cached));
+		Object[] args = joinPoint.getArgs();
+		String key = cachedMethod.key.render(args);
+		
+		Object value = cachedMethod.read(key);
+		if (value == null) {
+			try {
+				value = JedisUtils.singleFlight(key,
+						() -> cachedMethod.read(key),
+						() -> proceed(joinPoint, args),
+						(result) -> cachedMethod.write(key, result));
+			} catch (LoaderException e) {
+				throw e.getCause();
+			}
+		}
+		return value == NULL ? null : value;
+	}
+	
+	@Around("@annotation(cachedAll)")
+	public Object cachedAll(ProceedingJoinPoint joinPoint, CachedAll cachedAll) throws Throwable {
+		Method method = method(joinPoint);
+		CachedAllMethod cachedMethod = cachedAllMethods.computeIfAbsent(method, (m) -> new CachedAllMethod(m, cachedAll));
+		Object[] args = joinPoint.getArgs();
+		Collection<?> ids = (Collection<?>) args[cachedMethod.idsIndex];
+		if (ids == null || ids.isEmpty()) {
+			return joinPoint.proceed(args);
+		}
+		
+		List<Object> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+		EvaluationContext context = cachedMethod.key.context(args);
+		List<String> keys = new ArrayList<>(distinctIds.size());
+		for (Object id : distinctIds) {
+			context.setVariable("id", id);
+			keys.add(cachedMethod.key.render(context));
+		}
+		
+		List<byte[]> values = JedisUtils.mgetBytes(keys);
+		Map<Object, Object> found = new HashMap<>(distinctIds.size());
+		List<Object> missingIds = new ArrayList<>();
+		List<String> missingKeys = new ArrayList<>();
+		for (int i = 0; i < distinctIds.size(); i++) {
+			byte[] data = values.get(i);
+			if (data == null) {
+				missingIds.add(distinctIds.get(i));
+				missingKeys.add(keys.get(i));
+			} else if (!isNull(data)) {
+				found.put(distinctIds.get(i), cachedMethod.decoder.apply(data));
+			}
+		}
+		
+		if (!missingIds.isEmpty()) {
+			Object[] missingArgs = args.clone();
+			missingArgs[cachedMethod.idsIndex] = cachedMethod.idsOf(missingIds);
+			Map<?, ?> loaded = (Map<?, ?>) joinPoint.proceed(missingArgs);
+			List<byte[]> writeKeys = new ArrayList<>(missingIds.size());
+			List<byte[]> writeValues = new ArrayList<>(missingIds.size());
+			int[] writeSeconds = new int[missingIds.size()];
+			for (int i = 0; i < missingIds.size(); i++) {
+				Object value = loaded == null ? null : loaded.get(missingIds.get(i));
+				if (value != null) {
+					found.put(missingIds.get(i), value);
+				}
+				byte[] data = cachedMethod.encode(value);
+				if (data != null) {
+					writeSeconds[writeKeys.size()] = (int) Math.min(cachedMethod.seconds(data), Integer.MAX_VALUE);
+					writeKeys.add(toBytes(missingKeys.get(i)));
+					writeValues.add(data);
+				}
+			}
+			//一次Pipeline回填所有没命中的id, 每个key的过期时间各自加随机抖动
+			if (!writeKeys.isEmpty()) {
+				JedisUtils.mset(writeKeys, writeValues, Arrays.copyOf(writeSeconds, writeKeys.size()));
+			}
+		}
+		
+		Map<Object, Object> results = new LinkedHashMap<>(distinctIds.size());
+		for (Object id : distinctIds) {
+			Object value = found.get(id);
+			if (value != null) {
+				results.put(id, value);
+			}
+		}
+		return results;
+	}
+	
+	@Around("@annotation(cacheEvict)")
+	public Object cacheEvict(ProceedingJoinPoint joinPoint, CacheEvict cacheEvict) throws Throwable {
+		Method method = method(joinPoint);
+		KeyTemplate[] templates = evictMethods.computeIfAbsent(method, (m) -> Arrays.stream(cacheEvict.key())
+				.map((key) -> KeyTemplate.compile(key, m))
+				.toArray(KeyTemplate[]::new));
+		Object[] args = joinPoint.getArgs();
+		
+		if (cacheEvict.beforeInvocation()) {
+			evict(templates, templates[0].context(args));
+			return joinPoint.proceed(args);
+		}
+		
+		Object result = joinPoint.proceed(args);
+		EvaluationContext context = templates[0].context(args);
+		context.setVariable("result", result);
+		evict(templates, context);
+		return result;
+	}
+	
+	private static void evict(KeyTemplate[] templates, EvaluationContext context) {
+		for (KeyTemplate template : templates) {
+			JedisUtils.del(template.render(context));
+		}
+	}
+	
+	/**
+	 * 通过接口代理的话joinPoint拿到的是接口方法, 注解和参数名要从实现类的方法上取
+	 */
+	private static Method method(ProceedingJoinPoint joinPoint) {
+		Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+		Object target = joinPoint.getTarget();
+		if (target == null) {
+			return method;
+		}
+		return AopUtils.getMostSpecificMethod(method, target.getClass());
+	}
+	
+	private static Object proceed(ProceedingJoinPoint joinPoint, Object[] args) {
+		try {
+			Object result = joinPoint.proceed(args);
+			return result == null ? NULL : result;
+		} catch (Throwable e) {
+			throw new LoaderException(e);
+		}
+	}
+	
+	static boolean isNull(byte[] data) {
+		return Arrays.equals(NULL_VALUE, data);
+	}
+	
+	/**
+	 * 过期时间加上随机的 0 ~ ttl*jitter, 最少1秒
+	 */
+	static long ttlSeconds(long ttl, TimeUnit timeUnit, double jitter) {
+		long seconds = Math.max(1, timeUnit.toSeconds(ttl));
+		if (jitter <= 0) {
+			return seconds;
+		}
+		return seconds + (long) (ThreadLocalRandom.current().nextDouble() * seconds * jitter);
+	}
+	
+	/**
+	 * 按声明的类型反序列化, List&lt;User&gt;、Set&lt;User&gt;这种带泛型的集合按元素类型解析
+	 */
+	static Function<byte[], Object> decoder(Type type) {
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterizedType = (ParameterizedType) type;
+			Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+			Type argument = parameterizedType.getActualTypeArguments()[0];
+			if (Collection.class.isAssignableFrom(rawType) && argument instanceof Class) {
+				Class<?> elementType = (Class<?>) argument;
+				if (Set.class.isAssignableFrom(rawType)) {
+					return (data) -> new LinkedHashSet<>(UnMarshaller.toList(data, elementType));
+				}
+				return (data) -> UnMarshaller.toList(data, elementType);
+			}
+			return decoder(rawType);
+		}
+		if (type instanceof Class) {
+			Class<?> clazz = Primitives.wrap((Class<?>) type);
+			return (data) -> UnMarshaller.toObject(data, clazz);
+		}
+		throw new IllegalArgumentException("Unsupported cache value type " + type);
+	}
+	
+	/**
+	 * 回填缓存的参数, @Cached和@CachedAll共用
+	 */
+	private abstract static class CacheWriter {
+		
+		private final long ttl;
+		
+		private final TimeUnit timeUnit;
+		
+		private final double jitter;
+		
+		private final boolean cacheNull;
+		
+		private final long nullTtlSeconds;
+		
+		CacheWriter(long ttl, TimeUnit timeUnit, double jitter, boolean cacheNull, long nullTtlSeconds) {
+			if (ttl <= 0) {
+				throw new IllegalArgumentException("ttl must be positive");
+			}
+			if (jitter < 0) {
+				throw new IllegalArgumentException("jitter cannot be negative");
+			}
+			this.ttl = ttl;
+			this.timeUnit = timeUnit;
+			this.jitter = jitter;
+			this.cacheNull = cacheNull;
+			this.nullTtlSeconds = Math.max(1, nullTtlSeconds);
+		}
+		
+		/**
+		 * value是null或者NULL表示方法返回了null
+		 */
+		void write(String key, Object value) {
+			byte[] data = encode(value);
+			if (data != null) {
+				JedisUtils.set(toBytes(key), data, toBytes(seconds(data)));
+			}
+		}
+		
+		/**
+		 * @return 要写进缓存的值, 方法返回了null并且不缓存null的时候返回null
+		 */
+		byte[] encode(Object value) {
+			if (value == null || value == NULL) {
+				return cacheNull ? NULL_VALUE : null;
+			}
+			return toValueBytes(value);
+		}
+		
+		/**
+		 * encode出来的值的过期时间, 缓存的null用nullTtlSeconds, 其他的每次重新加随机抖动
+		 */
+		long seconds(byte[] data) {
+			return isNull(data) ? nullTtlSeconds : ttlSeconds(ttl, timeUnit, jitter);
+		}
+	}
+	
+	private static final class CachedMethod extends CacheWriter {
+		
+		private final KeyTemplate key;
+		
+		private final Function<byte[], Object> decoder;
+		
+		/**
+		 * 返回值是基本类型的方法不能返回null
+		 */
+		private final boolean primitive;
+		
+		CachedMethod(Method method, Cached cached) {
+			super(cached.ttl(), cached.timeUnit(), cached.jitter(), cached.cacheNull(), cached.nullTtlSeconds());
+			this.key = KeyTemplate.compile(cached.key(), method);
+			this.decoder = decoder(method.getGenericReturnType());
+			this.primitive = method.getReturnType().isPrimitive();
+		}
+		
+		/**
+		 * 没命中返回null, 缓存的是null返回NULL; 返回基本类型的方法读到缓存的null当作没命中, 重新回源
+		 */
+		Object read(String key) {
+			byte[] data = JedisUtils.getBytes(key);
+			if (data == null) {
+				return null;
+			}
+			if (isNull(data)) {
+				return primitive ? null : NULL;
+			}
+			return decoder.apply(data);
+		}
+	}
+	
+	private static final class CachedAllMethod extends CacheWriter {
+		
+		private final KeyTemplate key;
+		
+		private final int idsIndex;
+		
+		private final boolean idsIsSet;
+		
+		private final Function<byte[], Object> decoder;
+		
+		CachedAllMethod(Method method, CachedAll cachedAll) {
+			super(cachedAll.ttl(), cachedAll.timeUnit(), cachedAll.jitter(), cachedAll.cacheNull(), cachedAll.nullTtlSeconds());
+			this.key = KeyTemplate.compile(cachedAll.key(), method);
+			if (key.isConstant()) {
+				throw new IllegalArgumentException("@CachedAll key of " + method + " must reference #id");
+			}
+			this.idsIndex = idsIndex(method, cachedAll.ids());
+			this.idsIsSet = Set.class.isAssignableFrom(method.getParameterTypes()[idsIndex]);
+			
+			Type returnType = method.getGenericReturnType();
+			if (!(returnType instanceof ParameterizedType)
+					|| !Map.class.isAssignableFrom((Class<?>) ((ParameterizedType) returnType).getRawType())) {
+				throw new IllegalArgumentException("@CachedAll method " + method + " must return Map<id, value>");
+			}
+			this.decoder = decoder(((ParameterizedType) returnType).getActualTypeArguments()[1]);
+		}
+		
+		/**
+		 * 没命中的id按参数原来的类型传给方法
+		 */
+		Collection<Object> idsOf(List<Object> ids) {
+			return idsIsSet ? new LinkedHashSet<>(ids) : ids;
+		}
+		
+		private static int idsIndex(Method method, String ids) {
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			if (ids.isEmpty()) {
+				for (int i = 0; i < parameterTypes.length; i++) {
+					if (Collection.class.isAssignableFrom(parameterTypes[i])) {
+						return i;
+					}
+				}
+				throw new IllegalArgumentException("@CachedAll method " + method + " has no Collection parameter");
+			}
+			
+			int index = -1;
+			if (ids.chars().allMatch(Character::isDigit)) {
+				index = Integer.parseInt(ids);
+			} else {
+				String[] parameterNames = PARAMETER_NAMES.getParameterNames(method);
+				for (int i = 0; parameterNames != null && i < parameterNames.length; i++) {
+					if (parameterNames[i].equals(ids)) {
+						index = i;
+						break;
+					}
+				}
+			}
+			if (index < 0 || index >= parameterTypes.length || !Collection.class.isAssignableFrom(parameterTypes[index])) {
+				throw new IllegalArgumentException("@CachedAll ids " + ids + " of " + method + " is not a Collection parameter");
+			}
+			return index;
+		}
+	}
+	
+	/**
+	 * 把方法抛的异常带出SingleFlight, 原样抛给调用方
+	 */
+	private static final class LoaderException extends RuntimeException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		LoaderException(Throwable cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.loserico.cache.aspect;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.reflect.Method;
+
+/**
+ * 预编译好的缓存key模板, 每个方法只解析一次
+ * <p>
+ * 模板里#{...}是SpEL表达式, 可以用 #参数名、#p0、#a0 引用参数; 不带#{}的模板直接返回原字符串, 不走SpEL。
+ * 表达式用MIXED模式编译, 执行几次以后编译成字节码, 之后每次求值是微秒级的
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 03:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public final class KeyTemplate {
+	
+	private static final ParameterNameDiscoverer PARAMETER_NAMES = new DefaultParameterNameDiscoverer();
+	
+	private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+			new SpelParserConfiguration(SpelCompilerMode.MIXED, KeyTemplate.class.getClassLoader()));
+	
+	private final String template;
+	
+	/**
+	 * 固定的key是null
+	 */
+	private final Expression expression;
+	
+	/**
+	 * 没有编译参数名(-parameters)也没有调试信息的话是null, 只能用#p0、#a0
+	 */
+	private final String[] parameterNames;
+	
+	private KeyTemplate(String template, Expression expression, String[] parameterNames) {
+		this.template = template;
+		this.expression = expression;
+		this.parameterNames = parameterNames;
+	}
+	
+	/**
+	 * 解析key模板
+	 *
+	 * @param template 例如 "user:#{#id}"
+	 * @param method   key模板所在的方法, 用来取参数名
+	 * @return KeyTemplate
+	 */
+	public static KeyTemplate compile(String template, Method method) {
+		if (template == null || template.trim().isEmpty()) {
+			throw new IllegalArgumentException("Cache key of " + method + " cannot be empty");
+		}
+		if (!template.contains(ParserContext.TEMPLATE_EXPRESSION.getExpressionPrefix())) {
+			return new KeyTemplate(template, null, null);
+		}
+		Expression expression = PARSER.parseExpression(template, ParserContext.TEMPLATE_EXPRESSION);
+		return new KeyTemplate(template, expression, PARAMETER_NAMES.getParameterNames(method));
+	}
+	
+	/**
+	 * 是不是固定的key
+	 *
+	 * @return boolean
+	 */
+	public boolean isConstant() {
+		return expression == null;
+	}
+	
+	/**
+	 * 把参数放进求值上下文, 同一次调用要算多个key的时候上下文可以复用
+	 *
+	 * @param args
+	 * @return EvaluationContext
+	 */
+	public EvaluationContext context(Object[] args) {
+		StandardEvaluationContext context = new StandardEvaluationContext();
+		for (int i = 0; i < args.length; i++) {
+			context.setVariable("p" + i, args[i]);
+			context.setVariable("a" + i, args[i]);
+			if (parameterNames != null && i < parameterNames.length) {
+				context.setVariable(parameterNames[i], args[i]);
+			}
+		}
+		return context;
+	}
+	
+	/**
+	 * 算出key
+	 *
+	 * @param context
+	 * @return String
+	 */
+	public String render(EvaluationContext context) {
+		if (expression == null) {
+			return template;
+		}
+		String key = expression.getValue(context, String.class);
+		if (key == null || key.isEmpty()) {
+			throw new IllegalArgumentException("Cache key template " + template + " evaluated to empty key");
+		}
+		return key;
+	}
+	
+	/**
+	 * 算出key
+	 *
+	 * @param args
+	 * @return String
+	 */
+	public String render(Object[] args) {
+		if (expression == null) {
+			return template;
+		}
+		return render(context(args));
+	}
+	
+	@Override
+	public String toString() {
+		return template;
+	}
+}
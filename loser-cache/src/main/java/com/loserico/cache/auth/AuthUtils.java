@@ -9,7 +9,6 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import static com.loserico.json.jackson.JacksonUtils.toJson;
@@ -36,11 +35,6 @@ public final class AuthUtils {
 	 */
 	private static final PropertyReader propertyReader = new PropertyReader("redis");
 	
-	/**
-	 * 用户缓存lua脚本的sha
-	 */
-	private static final ConcurrentHashMap<String, String> shaHashs = new ConcurrentHashMap<>();
-	
 	/**
 	 * 根据token获取用户名的 Redis Key
 	 */
@@ -88,8 +82,13 @@ public final class AuthUtils {
 	 */
 	private static boolean autoRefresh = propertyReader.getBoolean("redis.auth.auto-refresh", true);
 	
-	//private static final String sha1 = JedisUtils.scriptLoad("/lua-scripts/spring-security-auth.lua");
-	private static final String sha1 = JedisUtils.scriptLoad("/lua-scripts/spring-security-multi-auth.lua");
+	//private static final String AUTH_SCRIPT = "/lua-scripts/spring-security-auth.lua";
+	private static final String AUTH_SCRIPT = "/lua-scripts/spring-security-multi-auth.lua";
+	
+	/**
+	 * 本地缓存认证过的token, 默认不开启, 配置 redis.auth.tokenCache.enabled=true 或者调用enableTokenCache()开启
+	 */
+	private static volatile TokenCache tokenCache = TokenCache.create(propertyReader);
 	
 	/**
 	 * 执行登录操作, 返回登录成功与否, 如果同一账号已经在别处登录, 先对其执行登出, 
@@ -160,7 +159,7 @@ public final class AuthUtils {
 	                                       boolean singleSigin) {
 		Objects.requireNonNull(timeUnit);
 		
-		Long result = JedisUtils.evalsha(sha1,
+		Long result = JedisUtils.evalScript(AUTH_SCRIPT,
 				0,
 				"login",
 				username,
@@ -188,10 +187,14 @@ public final class AuthUtils {
 	 * @return boolean
 	 */
 	public static <T> boolean logout(String token) {
-		Long result = JedisUtils.evalsha(sha1,
+		Long result = JedisUtils.evalScript(AUTH_SCRIPT,
 				0,
 				"logout",
 				token);
+		TokenCache cache = tokenCache;
+		if (cache != null) {
+			cache.evict(token);
+		}
 		return toBoolean(result);
 	}
 	
@@ -210,7 +213,7 @@ public final class AuthUtils {
 	 */
 	public static boolean clearExpired() {
 		log.info("Start cleaning token...");
-		Long result = JedisUtils.evalsha(sha1, 0, "clearExpired");
+		Long result = JedisUtils.evalScript(AUTH_SCRIPT, 0, "clearExpired");
 		return toBoolean(result);
 	}
 	
@@ -226,7 +229,16 @@ public final class AuthUtils {
 	public static String auth(String token) {
 		Objects.requireNonNull(token, "token cannot be null");
 		
-		byte[] bytes = JedisUtils.evalsha(sha1,
+		TokenCache cache = tokenCache;
+		if (cache != null) {
+			TokenCache.VerifiedToken verified = cache.get(token, AuthUtils::verify);
+			return verified == null ? null : verified.getUsername();
+		}
+		return verify(token);
+	}
+	
+	private static String verify(String token) {
+		byte[] bytes = JedisUtils.evalScript(AUTH_SCRIPT,
 				0,
 				"auth",
 				token,
@@ -240,7 +252,7 @@ public final class AuthUtils {
 	 * @param username
 	 */
 	public static boolean isLogined(String username) {
-		Long result = JedisUtils.evalsha(sha1, 0, "isLogined", username, autoRefresh);
+		Long result = JedisUtils.evalScript(AUTH_SCRIPT, 0, "isLogined", username, autoRefresh);
 		return toBoolean(result);
 	}
 	
@@ -252,6 +264,11 @@ public final class AuthUtils {
 	 * @return T
 	 */
 	public static <T> T userDetails(String token, Class<T> clazz) {
+		TokenCache cache = tokenCache;
+		if (cache != null) {
+			TokenCache.VerifiedToken verified = cache.get(token, AuthUtils::verify);
+			return verified == null ? null : verified.userDetails(clazz);
+		}
 		String userdetails = JedisUtils.HASH.hget(AUTH_TOKEN_USERDETAILS_HASH, token);
 		return JacksonUtils.toObject(userdetails, clazz);
 	}
@@ -264,6 +281,11 @@ public final class AuthUtils {
 	 * @return List<T>
 	 */
 	public static <T> List<T> authorities(String token, Class<T> clazz) {
+		TokenCache cache = tokenCache;
+		if (cache != null) {
+			TokenCache.VerifiedToken verified = cache.get(token, AuthUtils::verify);
+			return verified == null ? null : verified.authorities(clazz);
+		}
 		String authorities = JedisUtils.HASH.hget(AUTH_TOKEN_AUTHORITIES_HASH, token);
 		return JacksonUtils.toList(authorities, clazz);
 	}
@@ -276,6 +298,11 @@ public final class AuthUtils {
 	 * @return T
 	 */
 	public static <T> T loginInfo(String token, Class<T> clazz) {
+		TokenCache cache = tokenCache;
+		if (cache != null) {
+			TokenCache.VerifiedToken verified = cache.get(token, AuthUtils::verify);
+			return verified == null ? null : verified.loginInfo(clazz);
+		}
 		String loginInfo = JedisUtils.HASH.hget(AUTH_TOKEN_LOGIN_INFO_HASH, token);
 		return JacksonUtils.toObject(loginInfo, clazz);
 	}
@@ -287,9 +314,49 @@ public final class AuthUtils {
 	 * @return
 	 */
 	public static String username(String token) {
+		TokenCache cache = tokenCache;
+		if (cache != null) {
+			TokenCache.VerifiedToken verified = cache.get(token, AuthUtils::verify);
+			return verified == null ? null : verified.getUsername();
+		}
 		return JedisUtils.HASH.hget(AUTH_TOKEN_USERNAME_HASH, token);
 	}
 	
+	/**
+	 * 开启本地token缓存, 已经开启的话先关掉原来的
+	 *
+	 * @param ttl         token在本地缓存多久, 订阅断了的话登出的token最多在本地多活这么久
+	 * @param timeUnit
+	 * @param maximumSize 最多缓存多少个token
+	 */
+	public static synchronized void enableTokenCache(long ttl, TimeUnit timeUnit, long maximumSize) {
+		TokenCache previous = tokenCache;
+		tokenCache = new TokenCache(ttl, timeUnit, maximumSize);
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * 关闭本地token缓存
+	 */
+	public static synchronized void disableTokenCache() {
+		TokenCache previous = tokenCache;
+		tokenCache = null;
+		if (previous != null) {
+			previous.close();
+		}
+	}
+	
+	/**
+	 * 本地token缓存, 没开启返回null
+	 *
+	 * @return TokenCache
+	 */
+	public static TokenCache tokenCache() {
+		return tokenCache;
+	}
+	
 	/**
 	 * 获取这个username对应的所有token, 返回的Set有多个元素表示这个用户在多处登录了
 	 * @param username
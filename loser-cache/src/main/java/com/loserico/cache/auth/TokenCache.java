@@ -0,0 +1,258 @@
+package com.loserico.cache.auth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.listeners.SharedSubscriber.Subscription;
+import com.loserico.common.lang.resource.PropertyReader;
+import com.loserico.json.jackson.JacksonUtils;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static com.loserico.cache.auth.AuthUtils.AUTH_LOGOUT_CHANNEL;
+import static com.loserico.cache.auth.AuthUtils.AUTH_SINGLE_SIGNON_CHANNEL;
+import static com.loserico.cache.auth.AuthUtils.AUTH_TOKEN_AUTHORITIES_HASH;
+import static com.loserico.cache.auth.AuthUtils.AUTH_TOKEN_EXPIRE_CHANNEL;
+import static com.loserico.cache.auth.AuthUtils.AUTH_TOKEN_LOGIN_INFO_HASH;
+import static com.loserico.cache.auth.AuthUtils.AUTH_TOKEN_USERDETAILS_HASH;
+
+/**
+ * 进程内缓存已经验证过的token
+ * <p>
+ * 不开的话每个请求都要EVALSHA一次认证脚本, 再分别hget userdetails、authorities、loginInfo并做一次JSON解析。
+ * 开了以后一个token第一次认证时执行一次认证脚本, 再用一次pipeline取回userdetails、authorities、loginInfo,
+ * 之后ttl以内的请求都不访问Redis, JSON按目标类型解析一次之后也缓存下来
+ * <ul>
+ *     <li/>订阅AUTH_LOGOUT_CHANNEL、AUTH_TOKEN_EXPIRE_CHANNEL、AUTH_SINGLE_SIGNON_CHANNEL, 别的节点登出、token过期、被踢下线时马上从本地删掉
+ *     <li/>本节点logout时直接删掉, 不等通知
+ *     <li/>订阅断了或者通知丢了, token最多在本地多活ttl这么久, 所以ttl要设得短, 默认5秒
+ *     <li/>命中缓存时不会执行认证脚本, 所以token的自动续期(redis.auth.auto-refresh)最多每ttl执行一次,
+ *          只要ttl比token的有效期短得多就没有影响
+ * </ul>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 03:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class TokenCache implements AutoCloseable {
+
+	private static final int STRIPES = 64;
+
+	private static final List<String> HASHES = Arrays.asList(
+			AUTH_TOKEN_USERDETAILS_HASH, AUTH_TOKEN_AUTHORITIES_HASH, AUTH_TOKEN_LOGIN_INFO_HASH);
+
+	private final Cache<String, VerifiedToken> tokens;
+
+	/**
+	 * 每次删除都把token所在段的版本号加一, 回填之前版本号变了就不回填了,
+	 * 避免"认证通过 -> 别的节点登出, 本地删除 -> 回填"把已经登出的token留在本地
+	 */
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+	private final LongAdder evictions = new LongAdder();
+
+	private volatile Subscription subscription;
+
+	/**
+	 * @param ttl         token在本地缓存多久
+	 * @param timeUnit
+	 * @param maximumSize 最多缓存多少个token
+	 */
+	public TokenCache(long ttl, TimeUnit timeUnit, long maximumSize) {
+		this.tokens = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl, timeUnit)
+				.recordStats()
+				.build();
+		subscribe();
+	}
+
+	/**
+	 * 配置了 redis.auth.tokenCache.enabled=true 才创建
+	 * <pre>
+	 * redis.auth.tokenCache.enabled=true
+	 * redis.auth.tokenCache.ttlMillis=5000
+	 * redis.auth.tokenCache.maximumSize=100000
+	 * </pre>
+	 *
+	 * @param propertyReader
+	 * @return TokenCache 没开启返回null
+	 */
+	public static TokenCache create(PropertyReader propertyReader) {
+		if (!propertyReader.getBoolean("redis.auth.tokenCache.enabled", false)) {
+			return null;
+		}
+		int ttlMillis = propertyReader.getInt("redis.auth.tokenCache.ttlMillis", 5000);
+		int maximumSize = propertyReader.getInt("redis.auth.tokenCache.maximumSize", 100000);
+		log.info("Token cache enabled, ttl {}ms, maximumSize {}", ttlMillis, maximumSize);
+		return new TokenCache(ttlMillis, TimeUnit.MILLISECONDS, maximumSize);
+	}
+
+	/**
+	 * 取缓存的token, 没有的话用verifier认证, 认证通过后一次pipeline取回userdetails、authorities、loginInfo缓存起来
+	 *
+	 * @param token
+	 * @param verifier 认证token, 返回用户名, 认证不通过返回null
+	 * @return VerifiedToken 认证不通过返回null
+	 */
+	public VerifiedToken get(String token, Function<String, String> verifier) {
+		VerifiedToken verified = tokens.getIfPresent(token);
+		if (verified != null) {
+			return verified;
+		}
+		int stripe = stripe(token);
+		long version = versions.get(stripe);
+		String username = verifier.apply(token);
+		if (username == null) {
+			return null;
+		}
+		List<String> values = JedisUtils.HASH.hget(HASHES, token);
+		verified = new VerifiedToken(username, values.get(0), values.get(1), values.get(2));
+		if (versions.get(stripe) == version) {
+			tokens.put(token, verified);
+		}
+		return verified;
+	}
+
+	/**
+	 * 从本地删掉
+	 *
+	 * @param token
+	 */
+	public void evict(String token) {
+		if (token == null) {
+			return;
+		}
+		versions.incrementAndGet(stripe(token));
+		tokens.invalidate(token);
+		evictions.increment();
+	}
+
+	/**
+	 * 命中率等统计
+	 *
+	 * @return CacheStats
+	 */
+	public CacheStats stats() {
+		return tokens.stats();
+	}
+
+	/**
+	 * 收到通知删掉的token数, 包括本节点logout的
+	 *
+	 * @return long
+	 */
+	public long evictionCount() {
+		return evictions.sum();
+	}
+
+	public long size() {
+		return tokens.size();
+	}
+
+	/**
+	 * 停止订阅并清空
+	 */
+	@Override
+	public void close() {
+		Subscription current = this.subscription;
+		if (current != null) {
+			current.unsubscribe();
+		}
+		this.subscription = null;
+		tokens.invalidateAll();
+	}
+
+	private void subscribe() {
+		this.subscription = JedisUtils.subscriber().subscribe((channel, message) -> onMessage(message),
+				AUTH_LOGOUT_CHANNEL, AUTH_TOKEN_EXPIRE_CHANNEL, AUTH_SINGLE_SIGNON_CHANNEL);
+	}
+
+	private void onMessage(String json) {
+		try {
+			TokenMessage message = JacksonUtils.toObject(json, TokenMessage.class);
+			if (message != null) {
+				evict(message.getToken());
+			}
+		} catch (Throwable e) {
+			log.error("Bad token message {}", json, e);
+		}
+	}
+
+	private static int stripe(String token) {
+		return (token.hashCode() & Integer.MAX_VALUE) % STRIPES;
+	}
+
+	/**
+	 * 认证通过的token, JSON按目标类型解析一次之后缓存起来, 同一个token的请求拿到的是同一个对象, 不要修改
+	 */
+	public static final class VerifiedToken {
+
+		private final String username;
+
+		private final String userDetails;
+
+		private final String authorities;
+
+		private final String loginInfo;
+
+		private final Map<Object, Object> decoded = new ConcurrentHashMap<>();
+
+		private VerifiedToken(String username, String userDetails, String authorities, String loginInfo) {
+			this.username = username;
+			this.userDetails = userDetails;
+			this.authorities = authorities;
+			this.loginInfo = loginInfo;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		@SuppressWarnings("unchecked")
+		public <T> T userDetails(Class<T> clazz) {
+			return (T) decoded.computeIfAbsent(Arrays.asList("userDetails", clazz),
+					(x) -> JacksonUtils.toObject(userDetails, clazz));
+		}
+
+		@SuppressWarnings("unchecked")
+		public <T> List<T> authorities(Class<T> clazz) {
+			return (List<T>) decoded.computeIfAbsent(Arrays.asList("authorities", clazz),
+					(x) -> JacksonUtils.toList(authorities, clazz));
+		}
+
+		@SuppressWarnings("unchecked")
+		public <T> T loginInfo(Class<T> clazz) {
+			return (T) decoded.computeIfAbsent(Arrays.asList("loginInfo", clazz),
+					(x) -> JacksonUtils.toObject(loginInfo, clazz));
+		}
+	}
+
+	/**
+	 * 登出、过期、踢下线通知的消息体
+	 */
+	@Data
+	static class TokenMessage {
+
+		private String username;
+
+		private String token;
+
+		private Long timestamp;
+	}
+}
@@ -0,0 +1,41 @@
+package com.loserico.cache.codec;
+
+import java.util.List;
+
+/**
+ * value的序列化方式
+ * <p>
+ * 序列化后的数据会带上codec的id(见Codecs), 读的时候根据id找回对应的Codec, 所以不同格式的数据可以同时存在。
+ * 自定义实现可以通过Codecs.register()注册, 或者写在 META-INF/services/com.loserico.cache.codec.Codec 里自动加载,
+ * id 1-15 保留给内置实现。
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 19:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public interface Codec {
+
+	/**
+	 * 写在数据头里的编号, 同一个编号一旦用了就不能再换成别的格式
+	 *
+	 * @return byte
+	 */
+	byte id();
+
+	/**
+	 * 配置 redis.codec 时用的名字
+	 *
+	 * @return String
+	 */
+	String name();
+
+	byte[] encode(Object value);
+
+	<T> T decode(byte[] data, Class<T> clazz);
+
+	<T> List<T> decodeList(byte[] data, Class<T> clazz);
+}
@@ -0,0 +1,230 @@
+package com.loserico.cache.codec;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.loserico.cache.exception.JedisValueOperationException;
+import com.loserico.common.lang.resource.PropertyReader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec注册表, 以及带数据头的编解码
+ * <p>
+ * 数据格式: 1字节魔数(0xC0) + 1字节codec id + 1字节flags(bit0: 是否压缩) + 数据
+ * <ul>
+ *     <li/>0xC0在UTF-8里不会出现, 所以和以前直接存的JSON文本、字符串、数字不会混淆, 新老数据可以同时读
+ *     <li/>默认codec是JSON并且不需要压缩时不加数据头, 和以前的格式完全一样, Lua脚本以及其他语言的客户端照样能读
+ *     <li/>字符串和原子类型永远按文本存, 不走codec, 不然incr、Lua脚本就没法用了
+ *     <li/>只用于value, key、hash field、member、发布的消息不走codec, 见ByteUtils.toValueBytes
+ * </ul>
+ * 配置:
+ * <ul>
+ *     <li/>redis.codec 默认json, 可选 json/smile/cbor/kryo/protostuff 或者自定义Codec的name
+ *     <li/>redis.codec.compressThreshold 默认-1不压缩, 编码后超过这么多字节就用Deflate压缩
+ * </ul>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 19:20
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public final class Codecs {
+
+	public static final byte MAGIC = (byte) 0xC0;
+
+	private static final int HEADER_LENGTH = 3;
+
+	private static final byte FLAG_COMPRESSED = 1;
+
+	public static final Codec JSON = new JsonCodec();
+
+	public static final Codec SMILE = new JacksonBinaryCodec((byte) 2, "smile", new SmileFactory());
+
+	public static final Codec CBOR = new JacksonBinaryCodec((byte) 3, "cbor", new CBORFactory());
+
+	public static final Codec KRYO = new KryoCodec();
+
+	public static final Codec PROTOSTUFF = new ProtostuffCodec();
+
+	private static final Codec[] BY_ID = new Codec[256];
+
+	private static final Map<String, Codec> BY_NAME = new ConcurrentHashMap<>();
+
+	private static volatile Codec defaultCodec;
+
+	private static volatile int compressThreshold;
+
+	static {
+		register(JSON);
+		register(SMILE);
+		register(CBOR);
+		register(KRYO);
+		register(PROTOSTUFF);
+		for (Codec codec : ServiceLoader.load(Codec.class)) {
+			register(codec);
+		}
+
+		PropertyReader propertyReader = new PropertyReader("redis");
+		defaultCodec = codec(propertyReader.getString("redis.codec", JSON.name()));
+		compressThreshold = propertyReader.getInt("redis.codec.compressThreshold", -1);
+	}
+
+	private Codecs() {
+	}
+
+	/**
+	 * 注册自定义Codec, id不能和已经注册的重复
+	 *
+	 * @param codec
+	 */
+	public static synchronized void register(Codec codec) {
+		Objects.requireNonNull(codec);
+		int id = codec.id() & 0xFF;
+		Codec existing = BY_ID[id];
+		if (existing != null && existing != codec) {
+			throw new IllegalArgumentException("Codec id " + id + " is already used by " + existing.name());
+		}
+		BY_ID[id] = codec;
+		BY_NAME.put(codec.name(), codec);
+		log.debug("Register codec {} with id {}", codec.name(), id);
+	}
+
+	public static Codec codec(String name) {
+		Codec codec = BY_NAME.get(name);
+		if (codec == null) {
+			throw new IllegalArgumentException("Unknown codec " + name);
+		}
+		return codec;
+	}
+
+	public static Codec getDefault() {
+		return defaultCodec;
+	}
+
+	/**
+	 * 切换全局默认的Codec, 只影响之后写入的数据, 已经存在的数据照样能读
+	 *
+	 * @param codec
+	 */
+	public static void setDefault(Codec codec) {
+		register(codec);
+		defaultCodec = codec;
+	}
+
+	/**
+	 * @param threshold 编码后超过这么多字节就压缩, 小于0表示不压缩
+	 */
+	public static void setCompressThreshold(int threshold) {
+		compressThreshold = threshold;
+	}
+
+	public static byte[] encode(Object value) {
+		return encode(value, defaultCodec);
+	}
+
+	public static byte[] encode(Object value, Codec codec) {
+		byte[] payload = codec.encode(value);
+		int threshold = compressThreshold;
+		boolean compress = threshold >= 0 && payload.length > threshold;
+		if (codec == JSON && !compress) {
+			return payload;
+		}
+
+		if (compress) {
+			payload = deflate(payload);
+		}
+		byte[] data = new byte[HEADER_LENGTH + payload.length];
+		data[0] = MAGIC;
+		data[1] = codec.id();
+		data[2] = compress ? FLAG_COMPRESSED : 0;
+		System.arraycopy(payload, 0, data, HEADER_LENGTH, payload.length);
+		return data;
+	}
+
+	/**
+	 * 是不是带数据头的格式
+	 *
+	 * @param data
+	 * @return boolean
+	 */
+	public static boolean isFramed(byte[] data) {
+		return data != null && data.length >= HEADER_LENGTH && data[0] == MAGIC;
+	}
+
+	public static <T> T decode(byte[] data, Class<T> clazz) {
+		return codecOf(data).decode(payload(data), clazz);
+	}
+
+	public static <T> List<T> decodeList(byte[] data, Class<T> clazz) {
+		return codecOf(data).decodeList(payload(data), clazz);
+	}
+
+	private static Codec codecOf(byte[] data) {
+		Codec codec = BY_ID[data[1] & 0xFF];
+		if (codec == null) {
+			throw new JedisValueOperationException("Unknown codec id " + (data[1] & 0xFF));
+		}
+		return codec;
+	}
+
+	private static byte[] payload(byte[] data) {
+		int length = data.length - HEADER_LENGTH;
+		if ((data[2] & FLAG_COMPRESSED) != 0) {
+			return inflate(data, HEADER_LENGTH, length);
+		}
+		byte[] payload = new byte[length];
+		System.arraycopy(data, HEADER_LENGTH, payload, 0, length);
+		return payload;
+	}
+
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				int n = deflater.deflate(buffer);
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] data, int offset, int length) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data, offset, length);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(length * 3);
+			byte[] buffer = new byte[4096];
+			while (!inflater.finished()) {
+				int n = inflater.inflate(buffer);
+				if (n == 0 && inflater.needsInput()) {
+					throw new JedisValueOperationException("Truncated compressed value");
+				}
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} catch (DataFormatException e) {
+			throw new JedisValueOperationException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.loserico.cache.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.loserico.cache.exception.JedisValueOperationException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Jackson的二进制格式(Smile/CBOR), 和JSON的数据模型一样, 但是更紧凑, 解析也更快
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 19:08
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public final class JacksonBinaryCodec implements Codec {
+
+	private final byte id;
+
+	private final String name;
+
+	private final ObjectMapper objectMapper;
+
+	public JacksonBinaryCodec(byte id, String name, JsonFactory jsonFactory) {
+		this.id = id;
+		this.name = name;
+		this.objectMapper = new ObjectMapper(jsonFactory)
+				.findAndRegisterModules()
+				.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	}
+
+	@Override
+	public byte id() {
+		return id;
+	}
+
+	@Override
+	public String name() {
+		return name;
+	}
+
+	@Override
+	public byte[] encode(Object value) {
+		try {
+			return objectMapper.writeValueAsBytes(value);
+		} catch (IOException e) {
+			throw new JedisValueOperationException(e);
+		}
+	}
+
+	@Override
+	public <T> T decode(byte[] data, Class<T> clazz) {
+		try {
+			return objectMapper.readValue(data, clazz);
+		} catch (IOException e) {
+			throw new JedisValueOperationException(e);
+		}
+	}
+
+	@Override
+	public <T> List<T> decodeList(byte[] data, Class<T> clazz) {
+		try {
+			return objectMapper.readValue(data, objectMapper.getTypeFactory().constructCollectionType(List.class, clazz));
+		} catch (IOException e) {
+			throw new JedisValueOperationException(e);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.loserico.cache.codec;
+
+import com.loserico.json.jackson.JacksonUtils;
+
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Jackson文本JSON, 默认的Codec
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 19:05
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public final class JsonCodec implements Codec {
+
+	@Override
+	public byte id() {
+		return 1;
+	}
+
+	@Override
+	public String name() {
+		return "json";
+	}
+
+	@Override
+	public byte[] encode(Object value) {
+		return JacksonUtils.toBytes(value);
+	}
+
+	@Override
+	public <T> T decode(byte[] data, Class<T> clazz) {
+		return JacksonUtils.toObject(new String(data, UTF_8), clazz);
+	}
+
+	@Override
+	public <T> List<T> decodeList(byte[] data, Class<T> clazz) {
+		return JacksonUtils.toList(new String(data, UTF_8), clazz);
+	}
+}
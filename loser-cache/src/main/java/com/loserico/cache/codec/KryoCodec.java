@@ -0,0 +1,63 @@
+package com.loserico.cache.codec;
+
+import com.esotericsoftware.kryo.kryo5.Kryo;
+import com.esotericsoftware.kryo.kryo5.io.Input;
+import com.esotericsoftware.kryo.kryo5.io.Output;
+import com.esotericsoftware.kryo.kryo5.objenesis.strategy.StdInstantiatorStrategy;
+import com.esotericsoftware.kryo.kryo5.util.DefaultInstantiatorStrategy;
+
+import java.util.List;
+
+/**
+ * Kryo, 连同类名一起序列化, 读的时候不依赖传入的clazz
+ * <p>
+ * Kryo实例不是线程安全的, 每个线程一个
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 19:12
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public final class KryoCodec implements Codec {
+
+	private static final ThreadLocal<Kryo> KRYO = ThreadLocal.withInitial(() -> {
+		Kryo kryo = new Kryo();
+		kryo.setReferences(true);
+		kryo.setRegistrationRequired(false);
+		// 没有默认构造函数的类也能反序列化
+		kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+		return kryo;
+	});
+
+	@Override
+	public byte id() {
+		return 4;
+	}
+
+	@Override
+	public String name() {
+		return "kryo";
+	}
+
+	@Override
+	public byte[] encode(Object value) {
+		Output output = new Output(256, -1);
+		KRYO.get().writeClassAndObject(output, value);
+		return output.toBytes();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T decode(byte[] data, Class<T> clazz) {
+		return (T) KRYO.get().readClassAndObject(new Input(data));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> List<T> decodeList(byte[] data, Class<T> clazz) {
+		return (List<T>) KRYO.get().readClassAndObject(new Input(data));
+	}
+}
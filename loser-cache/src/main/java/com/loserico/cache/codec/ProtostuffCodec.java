@@ -0,0 +1,75 @@
+package com.loserico.cache.codec;
+
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+import java.util.List;
+
+/**
+ * Protostuff, 值包在一个只有一个Object字段的Holder里序列化,
+ * 这样List、Map以及没有字段的类型也能直接存, 并且带上了具体类型
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 19:16
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public final class ProtostuffCodec implements Codec {
+
+	private static final Schema<Holder> SCHEMA = RuntimeSchema.getSchema(Holder.class);
+
+	private static final ThreadLocal<LinkedBuffer> BUFFER = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(512));
+
+	@Override
+	public byte id() {
+		return 5;
+	}
+
+	@Override
+	public String name() {
+		return "protostuff";
+	}
+
+	@Override
+	public byte[] encode(Object value) {
+		LinkedBuffer buffer = BUFFER.get();
+		try {
+			return ProtostuffIOUtil.toByteArray(new Holder(value), SCHEMA, buffer);
+		} finally {
+			buffer.clear();
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T decode(byte[] data, Class<T> clazz) {
+		Holder holder = SCHEMA.newMessage();
+		ProtostuffIOUtil.mergeFrom(data, holder, SCHEMA);
+		return (T) holder.value;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> List<T> decodeList(byte[] data, Class<T> clazz) {
+		Holder holder = SCHEMA.newMessage();
+		ProtostuffIOUtil.mergeFrom(data, holder, SCHEMA);
+		return (List<T>) holder.value;
+	}
+
+	private static final class Holder {
+
+		private Object value;
+
+		private Holder() {
+		}
+
+		private Holder(Object value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.loserico.cache.collection;
+
+import java.util.List;
+
+/**
+ * 批量消费Redis队列的监听器
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 22:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public interface BatchQueueListener {
+
+	/**
+	 * 正常返回表示这一批都处理成功了, 会从processing list里ack掉;
+	 * 抛异常表示这一批都没处理成功, 会重新放回队列
+	 *
+	 * @param key      队列
+	 * @param messages 按入队顺序排列
+	 * @throws Exception
+	 */
+	void onMessages(String key, List<String> messages) throws Exception;
+}
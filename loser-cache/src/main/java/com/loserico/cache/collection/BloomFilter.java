@@ -0,0 +1,315 @@
+package com.loserico.cache.collection;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.codec.HashUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 基于Redis bitmap的布隆过滤器, 用来挡住不存在的id, 防止缓存穿透
+ * <p>
+ * 根据预计元素个数n和误判率p算出bit数 m = -n*ln(p)/(ln2)^2 以及hash函数个数 k = m/n*ln2,
+ * k个bit的位置在客户端用双重哈希算: murmur2(HashUtils.hashcode) + i * fnv(HashUtils.fnvHash)
+ * <ul>
+ *     <li/>每个元素的k个bit都在同一个key里, 一次add/mightContain就是一次Lua脚本调用
+ *     <li/>m很大时拆成多个key(分片), 元素按crc16分到某一个分片, 默认每个分片最多 2^26 个bit(8MB), 集群模式下分片会分散到不同节点
+ *     <li/>批量的addAll/mightContainAll按分片分组, 每个分片一次脚本调用
+ *     <li/>元素用toString()之后的值计算hash, 一般放id; 布隆过滤器不能删元素, 数据删了以后只会多一次回源
+ *     <li/>n和p决定了bit的位置, 同一个name所有节点都要用一样的参数创建
+ * </ul>
+ * 放在回源的get前面:
+ * <pre>
+ * BloomFilter userIds = new BloomFilter("bloom:user", 10_000_000, 0.001);
+ * User user = userIds.get(id, "user:" + id, User.class, () -> userDao.findById(id), 10, TimeUnit.MINUTES);
+ * </pre>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 04:30
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class BloomFilter {
+
+	private static final String ADD_SCRIPT = "/lua-scripts/bloomAdd.lua";
+
+	private static final String CHECK_SCRIPT = "/lua-scripts/bloomCheck.lua";
+
+	/**
+	 * 默认每个分片最多 2^26 个bit, 也就是8MB, 太大的key迁移和删除都会卡住Redis
+	 */
+	public static final long DEFAULT_BITS_PER_SHARD = 1L << 26;
+
+	/**
+	 * Redis一个string最大512MB
+	 */
+	private static final long MAX_BITS_PER_SHARD = 1L << 32;
+
+	/**
+	 * 一次脚本调用最多带多少个元素
+	 */
+	private static final int BATCH_SIZE = 512;
+
+	private final String name;
+
+	private final long bitsPerShard;
+
+	private final int hashes;
+
+	private final String[] shardKeys;
+
+	/**
+	 * 分片数按默认每个分片最多 2^26 个bit算
+	 *
+	 * @param name               bitmap的key, 有多个分片时是 name:0, name:1 ...
+	 * @param expectedInsertions 预计放多少个元素
+	 * @param fpp                误判率, 比如0.01
+	 */
+	public BloomFilter(String name, long expectedInsertions, double fpp) {
+		this(name, expectedInsertions, fpp,
+				(int) Math.max(1, ceilDiv(optimalBits(expectedInsertions, fpp), DEFAULT_BITS_PER_SHARD)));
+	}
+
+	/**
+	 * @param name               bitmap的key, 有多个分片时是 name:0, name:1 ...
+	 * @param expectedInsertions 预计放多少个元素
+	 * @param fpp                误判率, 比如0.01
+	 * @param shards             分成几个key
+	 */
+	public BloomFilter(String name, long expectedInsertions, double fpp, int shards) {
+		Objects.requireNonNull(name, "name cannot be null");
+		if (expectedInsertions < 1) {
+			throw new IllegalArgumentException("expectedInsertions必须大于0");
+		}
+		if (fpp <= 0 || fpp >= 1) {
+			throw new IllegalArgumentException("fpp必须在0和1之间");
+		}
+		if (shards < 1) {
+			throw new IllegalArgumentException("shards必须大于0");
+		}
+		long bits = optimalBits(expectedInsertions, fpp);
+		this.bitsPerShard = Math.max(64, ceilDiv(bits, shards));
+		if (bitsPerShard > MAX_BITS_PER_SHARD) {
+			throw new IllegalArgumentException("每个分片" + bitsPerShard + "个bit, 超过了Redis的512MB上限, 请增加shards");
+		}
+		this.hashes = optimalHashes(expectedInsertions, bits);
+		this.name = name;
+		this.shardKeys = new String[shards];
+		for (int i = 0; i < shards; i++) {
+			shardKeys[i] = shards == 1 ? name : name + ":" + i;
+		}
+	}
+
+	/**
+	 * 放一个元素
+	 *
+	 * @param element
+	 * @return true 表示是新加的, false 表示原来可能已经有了
+	 */
+	public boolean add(Object element) {
+		Member member = new Member(element);
+		List<Long> results = JedisUtils.evalScript(ADD_SCRIPT, 1, params(shardKeys[member.shard], member));
+		return results.get(0) == 1L;
+	}
+
+	/**
+	 * 批量放, 每个分片一次脚本调用
+	 *
+	 * @param elements
+	 * @return 新加的元素个数
+	 */
+	public int addAll(Collection<?> elements) {
+		int added = 0;
+		for (long result : execute(ADD_SCRIPT, elements)) {
+			added += (int) result;
+		}
+		return added;
+	}
+
+	/**
+	 * 元素是否可能存在
+	 *
+	 * @param element
+	 * @return false 表示一定不存在, true 表示可能存在
+	 */
+	public boolean mightContain(Object element) {
+		Member member = new Member(element);
+		List<Long> results = JedisUtils.evalScript(CHECK_SCRIPT, 1, params(shardKeys[member.shard], member));
+		return results.get(0) == 1L;
+	}
+
+	/**
+	 * 批量判断, 每个分片一次脚本调用
+	 *
+	 * @param elements
+	 * @return 和elements的顺序一致, false 表示一定不存在
+	 */
+	public List<Boolean> mightContainAll(Collection<?> elements) {
+		long[] results = execute(CHECK_SCRIPT, elements);
+		List<Boolean> contains = new ArrayList<>(results.length);
+		for (long result : results) {
+			contains.add(result == 1L);
+		}
+		return contains;
+	}
+
+	/**
+	 * 布隆过滤器判断id一定不存在的话直接返回null, 不查缓存也不回源; 否则和JedisUtils.get(key, clazz, supplier, expires, timeUnit)一样
+	 *
+	 * @param id       判断是否存在的元素
+	 * @param key      缓存的key
+	 * @param clazz
+	 * @param supplier 回源
+	 * @param expires
+	 * @param timeUnit
+	 * @return T
+	 */
+	public <T> T get(Object id, String key, Class<T> clazz, Supplier<T> supplier, long expires, TimeUnit timeUnit) {
+		if (!mightContain(id)) {
+			return null;
+		}
+		return JedisUtils.get(key, clazz, supplier, expires, timeUnit);
+	}
+
+	/**
+	 * 删掉所有分片
+	 */
+	public void delete() {
+		for (String shardKey : shardKeys) {
+			JedisUtils.del(shardKey);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 每个分片多少个bit
+	 *
+	 * @return long
+	 */
+	public long getBitsPerShard() {
+		return bitsPerShard;
+	}
+
+	/**
+	 * 每个元素几个bit
+	 *
+	 * @return int
+	 */
+	public int getHashes() {
+		return hashes;
+	}
+
+	public int getShards() {
+		return shardKeys.length;
+	}
+
+	/**
+	 * m = -n*ln(p)/(ln2)^2
+	 *
+	 * @param expectedInsertions
+	 * @param fpp
+	 * @return long
+	 */
+	public static long optimalBits(long expectedInsertions, double fpp) {
+		return (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+	}
+
+	/**
+	 * k = m/n*ln2, 至少1个
+	 *
+	 * @param expectedInsertions
+	 * @param bits
+	 * @return int
+	 */
+	public static int optimalHashes(long expectedInsertions, long bits) {
+		return Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+	}
+
+	/**
+	 * 按分片分组, 每组最多BATCH_SIZE个元素一次脚本调用, 结果按元素原来的顺序放回去
+	 */
+	private long[] execute(String script, Collection<?> elements) {
+		long[] results = new long[elements.size()];
+		List<List<Member>> groups = new ArrayList<>(shardKeys.length);
+		for (int i = 0; i < shardKeys.length; i++) {
+			groups.add(new ArrayList<>());
+		}
+		int index = 0;
+		for (Object element : elements) {
+			Member member = new Member(element);
+			member.index = index++;
+			groups.get(member.shard).add(member);
+		}
+
+		for (int shard = 0; shard < shardKeys.length; shard++) {
+			List<Member> group = groups.get(shard);
+			for (int from = 0; from < group.size(); from += BATCH_SIZE) {
+				List<Member> batch = group.subList(from, Math.min(from + BATCH_SIZE, group.size()));
+				List<Long> values = JedisUtils.evalScript(script, 1, params(shardKeys[shard], batch.toArray(new Member[0])));
+				for (int i = 0; i < batch.size(); i++) {
+					results[batch.get(i).index] = values.get(i);
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * KEYS[1]是分片的key, ARGV[1]是k, 后面每个元素k个offset
+	 */
+	private String[] params(String shardKey, Member... members) {
+		String[] params = new String[2 + members.length * hashes];
+		params[0] = shardKey;
+		params[1] = String.valueOf(hashes);
+		int i = 2;
+		for (Member member : members) {
+			for (long offset : member.offsets) {
+				params[i++] = String.valueOf(offset);
+			}
+		}
+		return params;
+	}
+
+	private static long ceilDiv(long x, long y) {
+		return (x + y - 1) / y;
+	}
+
+	/**
+	 * 元素所在的分片和k个bit的位置
+	 */
+	private final class Member {
+
+		private final int shard;
+
+		private final long[] offsets;
+
+		/**
+		 * 批量操作时在参数里的下标
+		 */
+		private int index;
+
+		private Member(Object element) {
+			Objects.requireNonNull(element, "element cannot be null");
+			String value = element.toString();
+			long hash1 = HashUtils.hashcode(value.getBytes(UTF_8)) & 0xFFFFFFFFL;
+			long hash2 = HashUtils.fnvHash(value) & 0xFFFFFFFFL;
+			this.shard = shardKeys.length == 1 ? 0 : HashUtils.crc16Hash(value) % shardKeys.length;
+			this.offsets = new long[hashes];
+			for (int i = 0; i < hashes; i++) {
+				offsets[i] = (hash1 + i * hash2) % bitsPerShard;
+			}
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package com.loserico.cache.collection;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.cache.JedisUtils;
+import com.loserico.common.lang.resource.PropertyReader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 后台增量清理过期的hash field
+ * <p>
+ * HASH.hset(key, field, value, ttl)把field的过期时间记在 jedis_utils:__timeout__set:key 这个zset里,
+ * 只有再访问这个hash的时候才会顺带清理, 之后再也不访问的field会一直占着内存。这里每隔intervalMillis:
+ * <ul>
+ *     <li/>对每个master(单机/哨兵只有一个)抢一把租约锁, 同一时刻一个keyspace只有一个节点在清理
+ *     <li/>接着上一次的SCAN游标找 jedis_utils:__timeout__set:* , 每次脚本调用最多清理batchSize个过期field,
+ *          hash field和zset里的member在一个脚本里一起删掉
+ *     <li/>每一轮最多花budgetMillis, 用完了就停, 下一轮从停下的地方继续, 不会长时间占着Redis
+ * </ul>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 23:10
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class HashFieldSweeper implements AutoCloseable {
+
+	private static final String LOCK_SCRIPT = "/lua-scripts/sweeperLock.lua";
+
+	/**
+	 * 每个keyspace一把锁, 后面拼上master的host:port
+	 */
+	private static final String LOCK_PREFIX = "jedis_utils:__timeout__sweeper:";
+
+	private final long budgetNanos;
+
+	private final int batchSize;
+
+	private final int scanCount;
+
+	/**
+	 * 锁的租约, 持有锁的节点挂了, 其他节点最多等这么久接手
+	 */
+	private final long leaseMillis;
+
+	private final String token = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID().toString();
+
+	/**
+	 * 每个master的SCAN进度, 只有清理线程访问
+	 */
+	private final Map<String, Cursor> cursors = new HashMap<>();
+
+	private final ScheduledThreadPoolExecutor sweeper;
+
+	private final LongAdder swept = new LongAdder();
+	private final LongAdder scripts = new LongAdder();
+	private final LongAdder passes = new LongAdder();
+	private final LongAdder lockMisses = new LongAdder();
+
+	/**
+	 * @param intervalMillis 多久清理一轮
+	 * @param budgetMillis   每一轮最多花多久
+	 * @param batchSize      每次脚本调用最多清理多少个field
+	 * @param scanCount      SCAN的COUNT
+	 */
+	public HashFieldSweeper(long intervalMillis, long budgetMillis, int batchSize, int scanCount) {
+		if (intervalMillis < 1 || budgetMillis < 1 || batchSize < 1 || scanCount < 1) {
+			throw new IllegalArgumentException("intervalMillis, budgetMillis, batchSize, scanCount必须大于0");
+		}
+		this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+		this.batchSize = batchSize;
+		this.scanCount = scanCount;
+		this.leaseMillis = Math.max(intervalMillis * 3, 1000);
+		this.sweeper = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+				.setNameFormat("loser-hash-sweeper-%d")
+				.setDaemon(true)
+				.build());
+		this.sweeper.scheduleWithFixedDelay(this::sweep, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 配置了 redis.hashSweeper.enabled=true 才创建
+	 *
+	 * @param propertyReader
+	 * @return HashFieldSweeper 没开启返回null
+	 */
+	public static HashFieldSweeper create(PropertyReader propertyReader) {
+		if (!propertyReader.getBoolean("redis.hashSweeper.enabled", false)) {
+			return null;
+		}
+		int intervalMillis = propertyReader.getInt("redis.hashSweeper.intervalMillis", 1000);
+		int budgetMillis = propertyReader.getInt("redis.hashSweeper.budgetMillis", 20);
+		int batchSize = propertyReader.getInt("redis.hashSweeper.batchSize", 100);
+		int scanCount = propertyReader.getInt("redis.hashSweeper.scanCount", 100);
+		log.info("Hash field sweeper enabled, interval {}ms, budget {}ms, batchSize {}, scanCount {}",
+				intervalMillis, budgetMillis, batchSize, scanCount);
+		return new HashFieldSweeper(intervalMillis, budgetMillis, batchSize, scanCount);
+	}
+
+	/**
+	 * 停止清理, 释放持有的锁
+	 */
+	@Override
+	public void close() {
+		sweeper.shutdown();
+		try {
+			sweeper.awaitTermination(leaseMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (String node : cursors.keySet()) {
+			try {
+				JedisUtils.unlock(LOCK_PREFIX + node, token);
+			} catch (Throwable e) {
+				log.warn("Release sweeper lock of {} failed", node, e);
+			}
+		}
+	}
+
+	/**
+	 * 清理掉的field数
+	 *
+	 * @return long
+	 */
+	public long sweptCount() {
+		return swept.sum();
+	}
+
+	/**
+	 * 执行清理脚本的次数
+	 *
+	 * @return long
+	 */
+	public long scriptCount() {
+		return scripts.sum();
+	}
+
+	/**
+	 * 完整SCAN完一遍keyspace的次数
+	 *
+	 * @return long
+	 */
+	public long passCount() {
+		return passes.sum();
+	}
+
+	/**
+	 * 因为锁在别的节点手上而跳过keyspace的次数
+	 *
+	 * @return long
+	 */
+	public long lockMissCount() {
+		return lockMisses.sum();
+	}
+
+	private void sweep() {
+		long deadline = System.nanoTime() + budgetNanos;
+		try {
+			for (String node : JedisUtils.masters()) {
+				if (System.nanoTime() >= deadline) {
+					return;
+				}
+				long locked = JedisUtils.evalScript(LOCK_SCRIPT, 1, LOCK_PREFIX + node, token, String.valueOf(leaseMillis));
+				if (locked != 1L) {
+					lockMisses.increment();
+					continue;
+				}
+				sweep(node, deadline);
+			}
+		} catch (Throwable e) {
+			log.error("Sweep expired hash fields failed", e);
+		}
+	}
+
+	/**
+	 * 从上一次停下的地方继续清理这个master, 预算用完或者SCAN完一遍就返回
+	 */
+	private void sweep(String node, long deadline) {
+		Cursor cursor = cursors.computeIfAbsent(node, x -> new Cursor());
+		while (System.nanoTime() < deadline) {
+			if (cursor.current == null) {
+				if (cursor.keys == null) {
+					cursor.keys = JedisUtils.HASH.expirableKeys(node, scanCount).iterator();
+				}
+				if (!cursor.keys.hasNext()) {
+					cursor.keys = null;
+					passes.increment();
+					return;
+				}
+				cursor.current = cursor.keys.next();
+			}
+			long removed = JedisUtils.HASH.sweepExpiredFields(cursor.current, batchSize);
+			scripts.increment();
+			swept.add(removed);
+			//不满一批说明这个hash已经没有过期的field了
+			if (removed < batchSize) {
+				cursor.current = null;
+			}
+		}
+	}
+
+	/**
+	 * 一个master上的清理进度
+	 */
+	private static final class Cursor {
+
+		/**
+		 * 这一遍SCAN还没处理的带过期field的hash
+		 */
+		private Iterator<String> keys;
+
+		/**
+		 * 正在清理的hash, 预算用完时可能还没清理完
+		 */
+		private String current;
+	}
+}
@@ -0,0 +1,173 @@
+package com.loserico.cache.collection;
+
+import com.loserico.cache.JedisUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 按pattern批量删除key, 用来代替 KEYS + DEL
+ * <p>
+ * KEYS会阻塞Redis直到遍历完整个keyspace, DEL大key也会阻塞, 这里:
+ * <ul>
+ *     <li/>在每个master上依次SCAN MATCH pattern COUNT batchSize, 每攒够batchSize个key一次批量UNLINK, value在Redis的后台线程里释放
+ *     <li/>maxKeysPerSecond大于0时限速, 按已经删的key数均匀地睡眠, 不会把Redis的CPU打满
+ *     <li/>每删一批回调一次progress, progress返回false、调用cancel()或者线程被中断时, 删完当前这一批就停下
+ * </ul>
+ * SCAN过程中新写入的匹配的key不保证删掉; 同一个key可能被SCAN返回多次, 只会被删一次。
+ * SCAN到的key原样(byte[])拿去UNLINK, 不是合法UTF-8的二进制key也能删掉
+ * <p>
+ * 一个PatternDeleter只能execute()一次
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 08:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class PatternDeleter {
+
+	private final String pattern;
+
+	private final int batchSize;
+
+	private final int maxKeysPerSecond;
+
+	private final Progress progress;
+
+	private volatile boolean cancelled = false;
+
+	private final LongAdder scanned = new LongAdder();
+	private final LongAdder deleted = new LongAdder();
+
+	/**
+	 * @param pattern          SCAN的MATCH, 比如 user:session:*
+	 * @param batchSize        SCAN的COUNT, 也是一次UNLINK最多多少个key
+	 * @param maxKeysPerSecond 每秒最多UNLINK多少个key, 小于1表示不限速
+	 * @param progress         每删一批回调一次, 可以为null
+	 */
+	public PatternDeleter(String pattern, int batchSize, int maxKeysPerSecond, Progress progress) {
+		Objects.requireNonNull(pattern, "pattern cannot be null");
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize必须大于0");
+		}
+		this.pattern = pattern;
+		this.batchSize = batchSize;
+		this.maxKeysPerSecond = maxKeysPerSecond;
+		this.progress = progress;
+	}
+
+	/**
+	 * 在当前线程里依次扫描每个master并删除, 删完或者被取消之后返回
+	 *
+	 * @return 实际删除的key的数量
+	 */
+	public long execute() {
+		long begin = System.nanoTime();
+		for (String master : JedisUtils.masters()) {
+			try (Stream<byte[]> keys = JedisUtils.scanBytes(master, pattern, batchSize)) {
+				Iterator<byte[]> iterator = keys.iterator();
+				List<byte[]> batch = new ArrayList<>(batchSize);
+				while (!isCancelled() && iterator.hasNext()) {
+					batch.add(iterator.next());
+					if (batch.size() >= batchSize) {
+						unlink(master, batch, begin);
+						batch = new ArrayList<>(batchSize);
+					}
+				}
+				if (!batch.isEmpty() && !isCancelled()) {
+					unlink(master, batch, begin);
+				}
+			}
+			if (isCancelled()) {
+				log.info("Delete keys matching {} cancelled, scanned {}, deleted {}", pattern, scanned.sum(), deleted.sum());
+				break;
+			}
+		}
+		return deleted.sum();
+	}
+
+	/**
+	 * 删完当前这一批就停下, 可以在别的线程里调用
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled || Thread.currentThread().isInterrupted();
+	}
+
+	/**
+	 * SCAN到的key数, 可能有重复
+	 *
+	 * @return long
+	 */
+	public long scannedCount() {
+		return scanned.sum();
+	}
+
+	/**
+	 * 实际删除的key数
+	 *
+	 * @return long
+	 */
+	public long deletedCount() {
+		return deleted.sum();
+	}
+
+	private void unlink(String master, List<byte[]> batch, long begin) {
+		long count = JedisUtils.unlinkBytes(batch);
+		scanned.add(batch.size());
+		deleted.add(count);
+		if (progress != null && !progress.onProgress(master, scanned.sum(), deleted.sum())) {
+			cancel();
+		}
+		throttle(begin);
+	}
+
+	/**
+	 * 按到目前为止UNLINK的key数算出应该用了多久, 用快了就睡一会儿
+	 */
+	private void throttle(long begin) {
+		if (maxKeysPerSecond < 1) {
+			return;
+		}
+		long expectedNanos = scanned.sum() * TimeUnit.SECONDS.toNanos(1) / maxKeysPerSecond;
+		long aheadNanos = expectedNanos - (System.nanoTime() - begin);
+		if (aheadNanos <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(aheadNanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 删除进度
+	 */
+	@FunctionalInterface
+	public interface Progress {
+
+		/**
+		 * 每删完一批调用一次
+		 *
+		 * @param master  正在扫描的节点
+		 * @param scanned 到目前为止SCAN到的key数
+		 * @param deleted 到目前为止实际删除的key数
+		 * @return false 表示不再继续删
+		 */
+		boolean onProgress(String master, long scanned, long deleted);
+	}
+}
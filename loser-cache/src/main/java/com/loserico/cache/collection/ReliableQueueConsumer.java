@@ -0,0 +1,309 @@
+package com.loserico.cache.collection;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.cache.JedisUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 可靠的批量队列消费者, 用来代替LIST.keepBrpop
+ * <p>
+ * keepBrpop一个队列占一个阻塞线程, 一次只弹一个元素, listener抛异常元素就丢了。这里:
+ * <ul>
+ *     <li/>一个poller线程轮流拉取多个队列, 一次Lua脚本(LRANGE + LTRIM)最多取batchSize个元素
+ *     <li/>取出来的元素同时放到本消费者的processing list里(BRPOPLPUSH可靠队列模式), listener处理成功后才ack删除,
+ *          listener抛异常就把这一批重新放回队列
+ *     <li/>每个消费者在心跳zset里定期登记, 心跳超过staleMillis的消费者被认为已经挂了,
+ *          它processing list里的元素会被其他消费者放回队尾, 最先被重新消费
+ *     <li/>批交给有界的worker线程池处理, 正在处理的批数达到maxInflightBatches时poller不再拉取, 元素留在Redis里
+ * </ul>
+ * 语义是至少一次: 消费者处理到一半挂了、或者心跳停了超过staleMillis(比如长时间GC), 元素会被重复消费。
+ * <p>
+ * 生产者照常LPUSH。processing list是 {队列}:processing:{消费者id}, 心跳zset是 {队列}:consumers,
+ * 和队列带同一个hash tag, 集群模式下在同一个slot
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 22:45
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class ReliableQueueConsumer implements AutoCloseable {
+
+	private static final String POP_SCRIPT = "/lua-scripts/queueBatchPop.lua";
+
+	private static final String ACK_SCRIPT = "/lua-scripts/queueAck.lua";
+
+	private static final String REQUEUE_SCRIPT = "/lua-scripts/queueRequeue.lua";
+
+	private static final String REAP_SCRIPT = "/lua-scripts/queueReap.lua";
+
+	/**
+	 * 所有队列都空的时候, poller的睡眠时间从1毫秒开始翻倍, 最多到pollMillis
+	 */
+	private static final long MIN_IDLE_MILLIS = 1;
+
+	private final String consumerId;
+
+	private final List<Queue> queues = new ArrayList<>();
+
+	private final BatchQueueListener listener;
+
+	private final int batchSize;
+
+	private final long pollMillis;
+
+	private final long staleMillis;
+
+	/**
+	 * 正在处理的批数, 用来做背压
+	 */
+	private final Semaphore inflight;
+
+	private final ThreadPoolExecutor workers;
+
+	private final Thread poller;
+
+	private volatile boolean closed = false;
+
+	private final LongAdder consumed = new LongAdder();
+	private final LongAdder acked = new LongAdder();
+	private final LongAdder requeued = new LongAdder();
+	private final LongAdder reaped = new LongAdder();
+
+	/**
+	 * @param consumerId         消费者id, 同一个队列的消费者之间不能重复
+	 * @param queues             要消费的队列
+	 * @param listener           处理一批元素
+	 * @param batchSize          一次最多取多少个元素
+	 * @param workerCount        worker线程数
+	 * @param maxInflightBatches 最多同时有多少批在处理或者排队等worker
+	 * @param pollMillis         所有队列都空的时候最多睡多久再拉
+	 * @param staleMillis        心跳超过这么久的消费者认为已经挂了
+	 */
+	public ReliableQueueConsumer(String consumerId, List<String> queues, BatchQueueListener listener, int batchSize,
+	                             int workerCount, int maxInflightBatches, long pollMillis, long staleMillis) {
+		if (queues.isEmpty()) {
+			throw new IllegalArgumentException("至少要有一个队列");
+		}
+		if (batchSize < 1 || workerCount < 1 || maxInflightBatches < 1 || pollMillis < 1) {
+			throw new IllegalArgumentException("batchSize, workerCount, maxInflightBatches, pollMillis必须大于0");
+		}
+		if (staleMillis < pollMillis * 4) {
+			throw new IllegalArgumentException("staleMillis至少是pollMillis的4倍");
+		}
+		this.consumerId = consumerId;
+		for (String queue : queues) {
+			this.queues.add(new Queue(queue));
+		}
+		this.listener = listener;
+		this.batchSize = batchSize;
+		this.pollMillis = pollMillis;
+		this.staleMillis = staleMillis;
+		this.inflight = new Semaphore(maxInflightBatches);
+		this.workers = new ThreadPoolExecutor(workerCount, workerCount,
+				60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder()
+						.setNameFormat("loser-queue-worker-%d")
+						.setDaemon(true)
+						.build());
+
+		this.poller = new ThreadFactoryBuilder()
+				.setNameFormat("loser-queue-poller-" + consumerId)
+				.setDaemon(true)
+				.build()
+				.newThread(this::pollLoop);
+		this.poller.start();
+	}
+
+	/**
+	 * 不再拉取新的元素, 已经取出来的批处理完再返回
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		poller.interrupt();
+		try {
+			poller.join();
+			workers.shutdown();
+			workers.awaitTermination(staleMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 取出来的元素数
+	 *
+	 * @return long
+	 */
+	public long consumedCount() {
+		return consumed.sum();
+	}
+
+	/**
+	 * 处理成功ack掉的元素数
+	 *
+	 * @return long
+	 */
+	public long ackedCount() {
+		return acked.sum();
+	}
+
+	/**
+	 * listener抛异常重新入队的元素数
+	 *
+	 * @return long
+	 */
+	public long requeuedCount() {
+		return requeued.sum();
+	}
+
+	/**
+	 * 从挂掉的消费者那里放回队列的元素数
+	 *
+	 * @return long
+	 */
+	public long reapedCount() {
+		return reaped.sum();
+	}
+
+	private void pollLoop() {
+		long idleMillis = MIN_IDLE_MILLIS;
+		long nextReap = 0;
+		while (!closed) {
+			try {
+				long now = System.currentTimeMillis();
+				if (now >= nextReap) {
+					reap(now);
+					nextReap = now + staleMillis / 2;
+				}
+
+				boolean found = false;
+				for (Queue queue : queues) {
+					/*
+					 * worker忙不过来就不拉了, 等的时候也要更新心跳, 不然会被别人当成挂了
+					 */
+					while (!inflight.tryAcquire(pollMillis, TimeUnit.MILLISECONDS)) {
+						heartbeat();
+					}
+					List<String> messages = pop(queue);
+					if (messages.isEmpty()) {
+						inflight.release();
+						continue;
+					}
+					found = true;
+					consumed.add(messages.size());
+					workers.execute(() -> process(queue, messages));
+				}
+
+				if (found) {
+					idleMillis = MIN_IDLE_MILLIS;
+				} else {
+					Thread.sleep(idleMillis);
+					idleMillis = Math.min(idleMillis * 2, pollMillis);
+				}
+			} catch (InterruptedException e) {
+				// close()的时候会被打断
+			} catch (Throwable e) {
+				log.error("Poll queues failed", e);
+				try {
+					Thread.sleep(pollMillis);
+				} catch (InterruptedException ie) {
+					// close()的时候会被打断
+				}
+			}
+		}
+	}
+
+	private void process(Queue queue, List<String> messages) {
+		try {
+			try {
+				listener.onMessages(queue.key, messages);
+			} catch (Throwable e) {
+				log.error("Process {} messages from {} failed, requeue them", messages.size(), queue.key, e);
+				long count = JedisUtils.evalScript(REQUEUE_SCRIPT, 2, params(queue.processingKey, queue.key, messages));
+				requeued.add(count);
+				return;
+			}
+			long count = JedisUtils.evalScript(ACK_SCRIPT, 1, params(queue.processingKey, null, messages));
+			acked.add(count);
+		} catch (Throwable e) {
+			// ack/requeue失败的元素留在processing list里, 本消费者挂了以后会被其他消费者放回队列
+			log.error("Ack {} messages from {} failed", messages.size(), queue.key, e);
+		} finally {
+			inflight.release();
+		}
+	}
+
+	private List<String> pop(Queue queue) {
+		List<String> messages = JedisUtils.evalScript(POP_SCRIPT, 3, queue.key, queue.processingKey, queue.consumersKey,
+				String.valueOf(batchSize), String.valueOf(System.currentTimeMillis()), consumerId);
+		return messages == null ? Collections.emptyList() : messages;
+	}
+
+	private void heartbeat() {
+		long now = System.currentTimeMillis();
+		for (Queue queue : queues) {
+			JedisUtils.ZSET.zadd(queue.consumersKey, now, consumerId);
+		}
+	}
+
+	/**
+	 * 把挂掉的消费者processing list里的元素放回队列
+	 */
+	private void reap(long now) {
+		for (Queue queue : queues) {
+			long count = JedisUtils.evalScript(REAP_SCRIPT, 2, queue.key, queue.consumersKey,
+					String.valueOf(now - staleMillis), queue.processingPrefix);
+			if (count > 0) {
+				log.warn("Requeued {} in-flight messages of dead consumers on {}", count, queue.key);
+				reaped.add(count);
+			}
+		}
+	}
+
+	private static String[] params(String key1, String key2, List<String> messages) {
+		List<String> params = new ArrayList<>(messages.size() + 2);
+		params.add(key1);
+		if (key2 != null) {
+			params.add(key2);
+		}
+		params.addAll(messages);
+		return params.toArray(new String[0]);
+	}
+
+	private final class Queue {
+
+		private final String key;
+
+		private final String processingPrefix;
+
+		private final String processingKey;
+
+		private final String consumersKey;
+
+		private Queue(String key) {
+			/*
+			 * 队列本身已经带了hash tag就沿用, 否则用整个队列名做hash tag
+			 */
+			String tag = key.matches(".*\\{[^}]+}.*") ? key : "{" + key + "}";
+			this.key = key;
+			this.processingPrefix = tag + ":processing:";
+			this.processingKey = processingPrefix + consumerId;
+			this.consumersKey = tag + ":consumers";
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.loserico.cache.collection;
+
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于游标的惰性迭代器, 适用于 SCAN/HSCAN/SSCAN/ZSCAN
+ * <p>
+ * 每次只向Redis要一页(COUNT个左右), 这一页消费完了才拿下一页, 不会一次把整个集合拉到内存里。
+ * 一个ScanIterator可以有多个游标源(比如集群模式下每个master一个), 按顺序一个一个扫完。
+ * <p>
+ * 和SCAN命令本身的语义一样: 遍历期间一直存在的元素一定会返回, 但同一个元素可能返回多次
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 18:20
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public final class ScanIterator<T> implements Iterator<T> {
+
+	private final Iterator<Function<byte[], ScanResult<T>>> sources;
+
+	private Function<byte[], ScanResult<T>> source;
+
+	private byte[] cursor;
+
+	private Iterator<T> page = Collections.emptyIterator();
+
+	/**
+	 * @param sources 每个游标源接收上一次返回的cursor, 返回下一页
+	 */
+	public ScanIterator(List<Function<byte[], ScanResult<T>>> sources) {
+		this.sources = sources.iterator();
+	}
+
+	/**
+	 * 只有一个游标源的情况, 比如HSCAN/SSCAN/ZSCAN
+	 *
+	 * @param source
+	 * @return ScanIterator<T>
+	 */
+	public static <T> ScanIterator<T> of(Function<byte[], ScanResult<T>> source) {
+		return new ScanIterator<>(Collections.singletonList(source));
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!page.hasNext()) {
+			if (source == null) {
+				if (!sources.hasNext()) {
+					return false;
+				}
+				source = sources.next();
+				cursor = ScanParams.SCAN_POINTER_START_BINARY;
+			}
+
+			ScanResult<T> result = source.apply(cursor);
+			page = result.getResult().iterator();
+			cursor = result.getCursorAsBytes();
+			if (Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY)) {
+				source = null;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return page.next();
+	}
+
+	/**
+	 * 转成顺序Stream, 元素在终端操作消费的时候才一页一页地拉取
+	 *
+	 * @return Stream<T>
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false);
+	}
+}
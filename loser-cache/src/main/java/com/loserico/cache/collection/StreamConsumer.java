@@ -0,0 +1,432 @@
+package com.loserico.cache.collection;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.cache.JedisUtils;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.StreamEntry;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.StreamPendingEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis Stream消费组的批量消费者, 和ReliableQueueConsumer是一个模式, 只是可靠性由Stream的消费组来保证
+ * <ul>
+ *     <li/>一个poller线程用 XREADGROUP COUNT batchSize BLOCK blockMillis 拉取新消息, 一次一批交给有界的worker线程池处理
+ *     <li/>正在处理的批数达到maxInflightBatches时poller不再拉取, 消息留在Redis里(背压)
+ *     <li/>listener处理成功的消息先攒起来, 攒够batchSize条或者每隔100毫秒一次XACK; 处理失败的消息不ack, 留在pending列表里
+ *     <li/>后台任务定期XPENDING, 空闲超过claimIdleMillis的消息(消费者挂了, 或者处理失败了)用XCLAIM认领过来重新消费;
+ *          投递次数达到maxDeliveries的消息直接ack掉, 记为死信, 防止一条毒消息一直重试
+ * </ul>
+ * 语义是至少一次: 一批消息处理时间超过claimIdleMillis的话会被别的消费者重新认领, 所以claimIdleMillis要比最慢的一批长
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 06:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class StreamConsumer implements AutoCloseable {
+
+	/**
+	 * 攒着的ack最多隔这么久发一次
+	 */
+	private static final long ACK_FLUSH_MILLIS = 100;
+
+	/**
+	 * 回收时一次XPENDING看batchSize的这么多倍
+	 */
+	private static final int RECLAIM_SCAN_FACTOR = 10;
+
+	private final String key;
+
+	private final String group;
+
+	private final String consumerId;
+
+	private final StreamListener listener;
+
+	private final int batchSize;
+
+	private final long blockMillis;
+
+	private final long claimIdleMillis;
+
+	private final int maxDeliveries;
+
+	/**
+	 * 正在处理的批数, 用来做背压
+	 */
+	private final Semaphore inflight;
+
+	private final ThreadPoolExecutor workers;
+
+	/**
+	 * 定期flush ack和回收pending消息
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	private final Thread poller;
+
+	/**
+	 * 本消费者正在处理的消息, 回收的时候跳过
+	 */
+	private final Set<StreamEntryID> inProcess = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * 处理成功还没ack的消息
+	 */
+	private final ConcurrentLinkedQueue<StreamEntryID> acks = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger ackBacklog = new AtomicInteger();
+
+	private volatile boolean closed = false;
+
+	private final LongAdder consumed = new LongAdder();
+	private final LongAdder acked = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder reclaimed = new LongAdder();
+	private final LongAdder deadLetters = new LongAdder();
+
+	/**
+	 * 消费组不存在的话从头创建(MKSTREAM), 已经存在就沿用它的进度
+	 *
+	 * @param key                stream
+	 * @param group              消费组
+	 * @param consumerId         消费者id, 同一个消费组里不能重复
+	 * @param listener           处理一批消息
+	 * @param batchSize          一次最多拉多少条, 也是一次XACK最多多少条
+	 * @param workerCount        worker线程数
+	 * @param maxInflightBatches 最多同时有多少批在处理或者排队等worker
+	 * @param blockMillis        没有新消息时XREADGROUP最多阻塞多久
+	 * @param claimIdleMillis    pending消息空闲超过这么久就重新认领
+	 * @param maxDeliveries      投递次数达到这么多次就不再重试
+	 */
+	public StreamConsumer(String key, String group, String consumerId, StreamListener listener, int batchSize,
+	                      int workerCount, int maxInflightBatches, long blockMillis, long claimIdleMillis, int maxDeliveries) {
+		Objects.requireNonNull(key, "key cannot be null");
+		Objects.requireNonNull(group, "group cannot be null");
+		if (batchSize < 1 || workerCount < 1 || maxInflightBatches < 1 || blockMillis < 1 || maxDeliveries < 1) {
+			throw new IllegalArgumentException("batchSize, workerCount, maxInflightBatches, blockMillis, maxDeliveries必须大于0");
+		}
+		if (claimIdleMillis < blockMillis) {
+			throw new IllegalArgumentException("claimIdleMillis不能小于blockMillis");
+		}
+		this.key = key;
+		this.group = group;
+		this.consumerId = consumerId;
+		this.listener = listener;
+		this.batchSize = batchSize;
+		this.blockMillis = blockMillis;
+		this.claimIdleMillis = claimIdleMillis;
+		this.maxDeliveries = maxDeliveries;
+		this.inflight = new Semaphore(maxInflightBatches);
+		createGroup();
+
+		this.workers = new ThreadPoolExecutor(workerCount, workerCount,
+				60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder()
+						.setNameFormat("loser-stream-worker-%d")
+						.setDaemon(true)
+						.build());
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("loser-stream-scheduler-%d")
+				.setDaemon(true)
+				.build());
+		long reclaimMillis = Math.max(ACK_FLUSH_MILLIS, Math.min(claimIdleMillis / 2, 5000));
+		scheduler.scheduleWithFixedDelay(this::flushAcksQuietly, ACK_FLUSH_MILLIS, ACK_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(this::reclaimQuietly, reclaimMillis, reclaimMillis, TimeUnit.MILLISECONDS);
+
+		this.poller = new ThreadFactoryBuilder()
+				.setNameFormat("loser-stream-poller-" + consumerId)
+				.setDaemon(true)
+				.build()
+				.newThread(this::pollLoop);
+		this.poller.start();
+	}
+
+	/**
+	 * 不再拉取新消息, 已经拉出来的批处理完、ack都发出去再返回;
+	 * 本消费者没有pending消息的话顺便把它从消费组里删掉
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		poller.interrupt();
+		try {
+			poller.join();
+			scheduler.shutdownNow();
+			scheduler.awaitTermination(blockMillis, TimeUnit.MILLISECONDS);
+			workers.shutdown();
+			workers.awaitTermination(claimIdleMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			flushAcks();
+			if (JedisUtils.STREAM.xpending(key, group, 1, consumerId).isEmpty()) {
+				JedisUtils.STREAM.xgroupDelConsumer(key, group, consumerId);
+			}
+		} catch (Throwable e) {
+			log.error("Close stream consumer {} of {} failed", consumerId, key, e);
+		}
+	}
+
+	/**
+	 * 拉到的消息数, 包括重新认领的
+	 *
+	 * @return long
+	 */
+	public long consumedCount() {
+		return consumed.sum();
+	}
+
+	/**
+	 * XACK掉的消息数, 包括死信
+	 *
+	 * @return long
+	 */
+	public long ackedCount() {
+		return acked.sum();
+	}
+
+	/**
+	 * listener抛异常没有ack的消息数
+	 *
+	 * @return long
+	 */
+	public long failedCount() {
+		return failed.sum();
+	}
+
+	/**
+	 * 从pending列表认领过来重新消费的消息数
+	 *
+	 * @return long
+	 */
+	public long reclaimedCount() {
+		return reclaimed.sum();
+	}
+
+	/**
+	 * 投递次数达到maxDeliveries被直接ack掉的消息数
+	 *
+	 * @return long
+	 */
+	public long deadLetterCount() {
+		return deadLetters.sum();
+	}
+
+	/**
+	 * 处理成功还没ack的消息数
+	 *
+	 * @return int
+	 */
+	public int ackBacklog() {
+		return ackBacklog.get();
+	}
+
+	public String getConsumerId() {
+		return consumerId;
+	}
+
+	private void createGroup() {
+		try {
+			JedisUtils.STREAM.xgroupCreate(key, group, new StreamEntryID());
+		} catch (RuntimeException e) {
+			for (Throwable t = e; t != null; t = t.getCause()) {
+				if (t.getMessage() != null && t.getMessage().contains("BUSYGROUP")) {
+					return;
+				}
+			}
+			throw e;
+		}
+	}
+
+	private void pollLoop() {
+		while (!closed) {
+			boolean acquired = false;
+			try {
+				//worker忙不过来就不拉了
+				if (!inflight.tryAcquire(blockMillis, TimeUnit.MILLISECONDS)) {
+					continue;
+				}
+				acquired = true;
+				List<StreamEntry> entries = JedisUtils.STREAM.xreadGroup(key, group, consumerId, batchSize, blockMillis,
+						StreamEntryID.UNRECEIVED_ENTRY);
+				if (entries.isEmpty()) {
+					inflight.release();
+					continue;
+				}
+				acquired = false;
+				dispatch(entries);
+			} catch (InterruptedException e) {
+				// close()的时候会被打断
+			} catch (Throwable e) {
+				if (acquired) {
+					inflight.release();
+				}
+				if (closed) {
+					return;
+				}
+				log.error("Read stream {} failed", key, e);
+				try {
+					Thread.sleep(blockMillis);
+				} catch (InterruptedException ie) {
+					// close()的时候会被打断
+				}
+			}
+		}
+	}
+
+	/**
+	 * 调用前已经拿到了一个inflight许可, process()结束时释放
+	 */
+	private void dispatch(List<StreamEntry> entries) {
+		consumed.add(entries.size());
+		for (StreamEntry entry : entries) {
+			inProcess.add(entry.getID());
+		}
+		try {
+			workers.execute(() -> process(entries));
+		} catch (Throwable e) {
+			release(entries);
+			throw e;
+		}
+	}
+
+	private void process(List<StreamEntry> entries) {
+		try {
+			listener.onMessages(key, entries);
+			for (StreamEntry entry : entries) {
+				acks.offer(entry.getID());
+			}
+			if (ackBacklog.addAndGet(entries.size()) >= batchSize) {
+				flushAcks();
+			}
+		} catch (Throwable e) {
+			// 不ack, 空闲超过claimIdleMillis后被重新认领
+			failed.add(entries.size());
+			log.error("Process {} entries from {} failed, they will be reclaimed after {} ms",
+					entries.size(), key, claimIdleMillis, e);
+		} finally {
+			release(entries);
+		}
+	}
+
+	private void release(List<StreamEntry> entries) {
+		for (StreamEntry entry : entries) {
+			inProcess.remove(entry.getID());
+		}
+		inflight.release();
+	}
+
+	/**
+	 * 攒着的ack按batchSize一批XACK, 失败了放回去下次再发
+	 */
+	private synchronized void flushAcks() {
+		while (!acks.isEmpty()) {
+			List<StreamEntryID> ids = new ArrayList<>(batchSize);
+			StreamEntryID id;
+			while (ids.size() < batchSize && (id = acks.poll()) != null) {
+				ids.add(id);
+			}
+			ackBacklog.addAndGet(-ids.size());
+			try {
+				JedisUtils.STREAM.xack(key, group, ids.toArray(new StreamEntryID[0]));
+				acked.add(ids.size());
+			} catch (Throwable e) {
+				acks.addAll(ids);
+				ackBacklog.addAndGet(ids.size());
+				throw e;
+			}
+		}
+	}
+
+	private void flushAcksQuietly() {
+		try {
+			flushAcks();
+		} catch (Throwable e) {
+			log.error("Ack entries of {} failed", key, e);
+		}
+	}
+
+	private void reclaimQuietly() {
+		try {
+			reclaim();
+		} catch (Throwable e) {
+			log.error("Reclaim pending entries of {} failed", key, e);
+		}
+	}
+
+	/**
+	 * XPENDING看最老的一批pending消息, 空闲够久的XCLAIM到本消费者重新处理, 投递次数太多的ack掉
+	 */
+	private void reclaim() {
+		List<StreamPendingEntry> pendings = JedisUtils.STREAM.xpending(key, group, batchSize * RECLAIM_SCAN_FACTOR, null);
+		List<StreamEntryID> claimable = new ArrayList<>();
+		List<StreamEntryID> dead = new ArrayList<>();
+		for (StreamPendingEntry pending : pendings) {
+			if (pending.getIdleTime() < claimIdleMillis || inProcess.contains(pending.getID())) {
+				continue;
+			}
+			if (pending.getDeliveredTimes() >= maxDeliveries) {
+				dead.add(pending.getID());
+			} else {
+				claimable.add(pending.getID());
+			}
+		}
+
+		if (!dead.isEmpty()) {
+			long count = JedisUtils.STREAM.xack(key, group, dead.toArray(new StreamEntryID[0]));
+			acked.add(count);
+			deadLetters.add(count);
+			log.error("Gave up {} entries of {} delivered {} times: {}", count, key, maxDeliveries, dead);
+		}
+
+		for (int from = 0; from < claimable.size() && !closed; from += batchSize) {
+			//worker忙不过来就下一轮再认领
+			if (!inflight.tryAcquire()) {
+				return;
+			}
+			List<StreamEntryID> ids = claimable.subList(from, Math.min(from + batchSize, claimable.size()));
+			List<StreamEntry> entries = new ArrayList<>(ids.size());
+			try {
+				//XCLAIM的时候还会再检查一次空闲时间, 被别的消费者抢先认领的消息不会返回; 已经被裁剪掉的消息返回null
+				for (StreamEntry entry : JedisUtils.STREAM.xclaim(key, group, consumerId, claimIdleMillis,
+						ids.toArray(new StreamEntryID[0]))) {
+					if (entry != null) {
+						entries.add(entry);
+					}
+				}
+			} catch (Throwable e) {
+				inflight.release();
+				throw e;
+			}
+			if (entries.isEmpty()) {
+				inflight.release();
+				continue;
+			}
+			log.info("Reclaimed {} pending entries of {}", entries.size(), key);
+			reclaimed.add(entries.size());
+			dispatch(entries);
+		}
+	}
+}
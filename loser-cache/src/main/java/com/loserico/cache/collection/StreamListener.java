@@ -0,0 +1,29 @@
+package com.loserico.cache.collection;
+
+import redis.clients.jedis.StreamEntry;
+
+import java.util.List;
+
+/**
+ * 批量消费Redis Stream的监听器
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 06:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public interface StreamListener {
+
+	/**
+	 * 正常返回表示这一批都处理成功了, 会批量XACK掉;
+	 * 抛异常表示这一批都没处理成功, 消息留在消费组的pending列表里, 超过claimIdleMillis后被重新认领消费
+	 *
+	 * @param key     stream
+	 * @param entries 按id从小到大排列
+	 * @throws Exception
+	 */
+	void onMessages(String key, List<StreamEntry> entries) throws Exception;
+}
@@ -0,0 +1,258 @@
+package com.loserico.cache.concurrent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.listeners.MessageListener;
+import com.loserico.cache.listeners.SharedSubscriber;
+import com.loserico.cache.listeners.SharedSubscriber.Subscription;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内所有BlockingLock(以及RedisSemaphore, RedisReadWriteLock)共用的锁管理器
+ * <p>
+ * 以前每个BlockingLock自己起一个ScheduledThreadPoolExecutor续期, 每个等锁的线程自己订阅一次解锁channel,
+ * 每个订阅都要占一个连接和一个线程, 竞争激烈的时候连接池会被耗光。现在:
+ * <ul>
+ *     <li/>整个JVM只有一个 psubscribe loser:blk:*:lock:channel loser:sem:*:channel loser:rw:*:channel 的订阅, 收到解锁通知后唤醒本JVM里等在这个channel上的线程;
+ *          订阅挂在JedisUtils.subscriber()共用的连接上, 断线后自动重连重新订阅
+ *     <li/>整个JVM只有一个续期线程, 每隔leaseSeconds/3把所有持有的锁分批续期, 续期时会校验锁还是不是自己的
+ * </ul>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 20:10
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public final class LockManager {
+
+	/**
+	 * 分别和BlockingLock的解锁channel loser:blk:%s:lock:channel, RedisSemaphore的释放channel loser:sem:{%s}:channel,
+	 * RedisReadWriteLock的解锁channel loser:rw:{%s}:channel 对应
+	 */
+	private static final String[] NOTIFY_CHANNEL_PATTERNS = {"loser:blk:*:lock:channel", "loser:sem:*:channel", "loser:rw:*:channel"};
+
+	/**
+	 * 第一次订阅时最多等多久订阅生效, 订阅生效之前发布的解锁通知是收不到的
+	 */
+	private static final long SUBSCRIBE_WAIT_MILLIS = 1000;
+
+	/**
+	 * 锁有效期
+	 */
+	private final int leaseSeconds;
+
+	/**
+	 * 一次续期脚本最多续多少把锁
+	 */
+	private final int renewBatchSize;
+
+	/**
+	 * 解锁channel -> 本JVM里等这把锁的线程
+	 */
+	private final ConcurrentHashMap<String, Set<Thread>> waiters = new ConcurrentHashMap<>();
+
+	private final AtomicInteger waiterCount = new AtomicInteger();
+
+	/**
+	 * 本JVM持有的锁和加锁时的value; 读锁是多个读者共用一个key, 所以key+value才能确定一把锁
+	 */
+	private final Set<Map.Entry<String, String>> heldLocks = ConcurrentHashMap.newKeySet();
+
+	private volatile Subscription subscription;
+
+	private final ScheduledThreadPoolExecutor renewer;
+
+	private final LongAdder renewals = new LongAdder();
+	private final LongAdder lostLocks = new LongAdder();
+	private final LongAdder renewFailures = new LongAdder();
+	private final LongAdder wakeups = new LongAdder();
+
+	/**
+	 * @param leaseSeconds   锁有效期, 不能小于1秒
+	 * @param renewBatchSize 一次续期脚本最多续多少把锁
+	 */
+	public LockManager(int leaseSeconds, int renewBatchSize) {
+		if (leaseSeconds < 1) {
+			throw new IllegalArgumentException("leaseSeconds不能小于1");
+		}
+		if (renewBatchSize < 1) {
+			throw new IllegalArgumentException("renewBatchSize必须大于0");
+		}
+		this.leaseSeconds = leaseSeconds;
+		this.renewBatchSize = renewBatchSize;
+
+		this.renewer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+				.setNameFormat("loser-lock-renewer-%d")
+				.setDaemon(true)
+				.build());
+		long intervalMillis = Math.max(TimeUnit.SECONDS.toMillis(leaseSeconds) / 3, 100);
+		this.renewer.scheduleWithFixedDelay(this::renewAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public int leaseSeconds() {
+		return leaseSeconds;
+	}
+
+	/**
+	 * 加锁成功后登记, 之后由续期线程负责续期
+	 *
+	 * @param key   锁
+	 * @param value 加锁时的value
+	 */
+	public void hold(String key, String value) {
+		heldLocks.add(new SimpleImmutableEntry<>(key, value));
+	}
+
+	/**
+	 * 解锁后取消续期; key和value都对得上才取消, 避免把同一JVM里后来拿到这把锁的登记删掉
+	 *
+	 * @param key   锁
+	 * @param value 加锁时的value
+	 */
+	public void release(String key, String value) {
+		heldLocks.remove(new SimpleImmutableEntry<>(key, value));
+	}
+
+	/**
+	 * 当前线程开始等notifyChannel上的解锁通知, notifyChannel要能被NOTIFY_CHANNEL_PATTERNS匹配上
+	 * <p>
+	 * 要在最后一次尝试加锁之前调用, 这样尝试失败到park之间发出的通知也不会丢: unpark会让随后的park立即返回
+	 *
+	 * @param notifyChannel
+	 */
+	public void addWaiter(String notifyChannel) {
+		subscribeIfNecessary();
+		waiters.computeIfAbsent(notifyChannel, (k) -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread());
+		waiterCount.incrementAndGet();
+	}
+
+	/**
+	 * 当前线程不再等notifyChannel上的通知
+	 *
+	 * @param notifyChannel
+	 */
+	public void removeWaiter(String notifyChannel) {
+		Thread thread = Thread.currentThread();
+		waiters.computeIfPresent(notifyChannel, (k, threads) -> {
+			if (threads.remove(thread)) {
+				waiterCount.decrementAndGet();
+			}
+			return threads.isEmpty() ? null : threads;
+		});
+	}
+
+	/**
+	 * 等锁线程数, 持有的锁数, 续期以及唤醒次数
+	 *
+	 * @return LockManagerStats
+	 */
+	public LockManagerStats stats() {
+		LockManagerStats stats = new LockManagerStats();
+		stats.setWaiterCount(waiterCount.get());
+		stats.setHeldLockCount(heldLocks.size());
+		stats.setRenewCount(renewals.sum());
+		stats.setLostLockCount(lostLocks.sum());
+		stats.setRenewFailureCount(renewFailures.sum());
+		stats.setWakeupCount(wakeups.sum());
+		return stats;
+	}
+
+	/**
+	 * 停止续期, 取消解锁通知的订阅; 还在等锁的线程park超时后自己醒来重试
+	 */
+	public void close() {
+		renewer.shutdownNow();
+		Subscription current;
+		synchronized (this) {
+			current = subscription;
+			subscription = null;
+		}
+		if (current != null) {
+			current.unsubscribe();
+		}
+	}
+
+	private void subscribeIfNecessary() {
+		if (subscription != null) {
+			return;
+		}
+		SharedSubscriber subscriber = JedisUtils.subscriber();
+		synchronized (this) {
+			if (subscription != null) {
+				return;
+			}
+			subscription = subscriber.psubscribe(new UnlockListener(), NOTIFY_CHANNEL_PATTERNS);
+		}
+
+		/*
+		 * 共用连接还没连上的话稍微等一下, 连上时会把模式一起订阅上; 真等不到也没关系, 等锁的线程park超时后会自己醒来
+		 */
+		long deadline = System.currentTimeMillis() + SUBSCRIBE_WAIT_MILLIS;
+		while (!subscriber.isConnected() && System.currentTimeMillis() < deadline) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+		}
+	}
+
+	/**
+	 * 把持有的锁分批续期, 续期失败的锁不再续期
+	 */
+	private void renewAll() {
+		if (heldLocks.isEmpty()) {
+			return;
+		}
+		List<Map.Entry<String, String>> snapshot = new ArrayList<>(heldLocks);
+		long leaseMillis = TimeUnit.SECONDS.toMillis(leaseSeconds);
+		for (int from = 0; from < snapshot.size(); from += renewBatchSize) {
+			List<Map.Entry<String, String>> batch = snapshot.subList(from, Math.min(from + renewBatchSize, snapshot.size()));
+
+			Set<Map.Entry<String, String>> lost;
+			try {
+				lost = JedisUtils.renewLocks(batch, leaseMillis);
+			} catch (Throwable e) {
+				//这一轮续期失败不影响下一轮, 锁的有效期是续期间隔的3倍
+				renewFailures.increment();
+				log.error("Renew {} locks failed", batch.size(), e);
+				continue;
+			}
+
+			renewals.add(batch.size() - lost.size());
+			for (Map.Entry<String, String> lock : lost) {
+				if (heldLocks.remove(lock)) {
+					lostLocks.increment();
+					log.warn("Lock {} already expired or taken by others, Watch dog stop refresh", lock.getKey());
+				}
+			}
+		}
+		log.debug("Watch dog refreshed {} locks", snapshot.size());
+	}
+
+	private class UnlockListener implements MessageListener {
+
+		@Override
+		public void onMessage(String channel, String message) {
+			Set<Thread> threads = waiters.getOrDefault(channel, Collections.emptySet());
+			log.debug("收到 {} 发来的解锁消息, 准备唤醒 {} 个等锁的线程", message, threads.size());
+			for (Thread thread : threads) {
+				wakeups.increment();
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.loserico.cache.concurrent;
+
+import lombok.Data;
+
+/**
+ * 锁管理器统计信息
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 20:12
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Data
+public class LockManagerStats {
+
+	/**
+	 * 本JVM正在等锁的线程数
+	 */
+	private int waiterCount;
+
+	/**
+	 * 本JVM持有并且在续期的锁数
+	 */
+	private int heldLockCount;
+
+	/**
+	 * 续期成功的次数
+	 */
+	private long renewCount;
+
+	/**
+	 * 续期时发现锁已经过期或者被别人拿走的次数
+	 */
+	private long lostLockCount;
+
+	/**
+	 * 续期脚本执行失败的次数
+	 */
+	private long renewFailureCount;
+
+	/**
+	 * 收到解锁通知后唤醒等锁线程的次数
+	 */
+	private long wakeupCount;
+}
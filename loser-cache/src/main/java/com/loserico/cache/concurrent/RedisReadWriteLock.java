@@ -0,0 +1,172 @@
+package com.loserico.cache.concurrent;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.exception.OperationNotSupportedException;
+import com.loserico.cache.utils.KeyUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于Lua脚本的分布式读写锁, 写优先
+ * <p>
+ * Redis里的数据, key都带hash tag, 集群模式下落在同一个slot:
+ * <ul>
+ *     <li/>loser:rw:{name}:writer 写锁, value是写者token
+ *     <li/>loser:rw:{name}:readers 读者, zset, member是读者token, score是租约过期时间, 读者数就是zset的大小
+ *     <li/>loser:rw:{name}:intent 等待中的写者, 有写者在等的时候新来的读者拿不到锁, 避免写者饿死
+ * </ul>
+ * 读锁和写锁都由LockManager统一续期(和BlockingLock一样), 持有锁的进程挂了, 锁最多redis.lock.leaseSeconds之后自动释放;
+ * 拿不到锁的线程登记到LockManager上park, 解锁时在 loser:rw:{name}:channel 上通知唤醒。
+ * <p>
+ * readLock()/writeLock()每次返回一个新的Lock, 和JedisUtils.blockingLock()一样是线程独有的, 不要在线程之间共享; 不支持重入
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 21:20
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class RedisReadWriteLock implements ReadWriteLock {
+
+	private static final String WRITER_FORMAT = "loser:rw:{%s}:writer";
+
+	private static final String READERS_FORMAT = "loser:rw:{%s}:readers";
+
+	private static final String INTENT_FORMAT = "loser:rw:{%s}:intent";
+
+	private static final String NOTIFY_CHANNEL_FORMAT = "loser:rw:{%s}:channel";
+
+	private static final String READ_LOCK_SCRIPT = "/lua-scripts/rwReadLock.lua";
+
+	private static final String WRITE_LOCK_SCRIPT = "/lua-scripts/rwWriteLock.lua";
+
+	private static final String UNLOCK_SCRIPT = "/lua-scripts/rwUnlock.lua";
+
+	private final String writerKey;
+
+	private final String readersKey;
+
+	private final String intentKey;
+
+	private final String notifyChannel;
+
+	private final LockManager lockManager;
+
+	public RedisReadWriteLock(String name, LockManager lockManager) {
+		KeyUtils.requireNonBlank(name);
+		this.writerKey = String.format(WRITER_FORMAT, name);
+		this.readersKey = String.format(READERS_FORMAT, name);
+		this.intentKey = String.format(INTENT_FORMAT, name);
+		this.notifyChannel = String.format(NOTIFY_CHANNEL_FORMAT, name);
+		this.lockManager = lockManager;
+	}
+
+	@Override
+	public Lock readLock() {
+		return new RwLock(READ_LOCK_SCRIPT, readersKey);
+	}
+
+	@Override
+	public Lock writeLock() {
+		return new RwLock(WRITE_LOCK_SCRIPT, writerKey);
+	}
+
+	/**
+	 * 读锁和写锁只是加锁脚本和续期的key不一样
+	 */
+	private class RwLock implements Lock {
+
+		private final String lockScript;
+
+		/**
+		 * 续期、解锁用的key: 写锁是writerKey, 读锁是readersKey
+		 */
+		private final String key;
+
+		private final String token = Thread.currentThread().getName() + UUID.randomUUID().toString();
+
+		private boolean locked;
+
+		private RwLock(String lockScript, String key) {
+			this.lockScript = lockScript;
+			this.key = key;
+		}
+
+		@Override
+		public void lock() {
+			if (locked) {
+				throw new OperationNotSupportedException("不支持重入");
+			}
+			long waitMillis = tryLock();
+			if (waitMillis < 0) {
+				return;
+			}
+
+			long leaseMillis = TimeUnit.SECONDS.toMillis(lockManager.leaseSeconds());
+			/*
+			 * 先登记再重试, 重试失败到park之间发出的解锁通知也不会丢
+			 */
+			lockManager.addWaiter(notifyChannel);
+			try {
+				for (; ; ) {
+					waitMillis = tryLock();
+					if (waitMillis < 0) {
+						return;
+					}
+					/*
+					 * 锁过期是不会有通知的, 所以最多park到最早的锁过期;
+					 * 等待中的写者每次重试都会刷新自己的登记, 所以最多park租约有效期的1/3
+					 */
+					long parkMillis = waitMillis > 0 ? Math.min(waitMillis, leaseMillis / 3) : leaseMillis / 3;
+					LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(parkMillis, 1)));
+				}
+			} finally {
+				lockManager.removeWaiter(notifyChannel);
+			}
+		}
+
+		@Override
+		public void unlock() {
+			if (!locked) {
+				throw new OperationNotSupportedException("你还没获取到锁哦");
+			}
+			long released = JedisUtils.evalScript(UNLOCK_SCRIPT, 1, key, notifyChannel, token);
+			lockManager.release(key, token);
+			locked = false;
+			if (released != 1L) {
+				throw new OperationNotSupportedException("解锁失败了哟");
+			}
+		}
+
+		@Override
+		public boolean locked() {
+			return locked;
+		}
+
+		@Override
+		public void unlockAnyway() {
+			log.debug("Not implemented yet!");
+		}
+
+		/**
+		 * @return 加锁成功返回-1, 失败返回建议等待的毫秒数, 0表示不确定
+		 */
+		private long tryLock() {
+			long result = JedisUtils.evalScript(lockScript, 3, writerKey, readersKey, intentKey,
+					String.valueOf(System.currentTimeMillis()),
+					String.valueOf(TimeUnit.SECONDS.toMillis(lockManager.leaseSeconds())),
+					token);
+			if (result < 0) {
+				locked = true;
+				lockManager.hold(key, token);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,379 @@
+package com.loserico.cache.concurrent;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.utils.KeyUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Arrays.asList;
+
+/**
+ * 基于Lua脚本的分布式信号量, 许可带租约
+ * <p>
+ * Redis里存两样东西, key都带hash tag, 集群模式下落在同一个slot:
+ * <ul>
+ *     <li/>loser:sem:{name}:permits 总许可数, 只有第一次trySetPermits能设置成功
+ *     <li/>loser:sem:{name}:leases 已经发出去的许可, zset, member是租约id, score是租约过期时间
+ * </ul>
+ * 获取许可时脚本先清掉过期的租约, 再看剩余许可够不够, 够的话一次性把n个租约加进去, 所以多许可获取是原子的。
+ * 不指定leaseTime时租约和BlockingLock一样由LockManager续期, 持有多久都不会丢, 持有许可的进程挂了, 许可最多
+ * redis.lock.leaseSeconds之后自动回收; 指定了leaseTime的租约不续期, 到期就回收, 所以leaseTime要比持有许可的最长时间长。
+ * <p>
+ * 拿不到许可的线程登记到LockManager上park, 有人释放许可时会在 loser:sem:{name}:channel 上发通知唤醒它;
+ * 租约过期是不会发通知的, 所以park的时间不会超过最早的租约过期时间。
+ * <p>
+ * release()只能归还这个Semaphore对象自己获取的许可(先归还最近获取的), 归还的数量比自己持有的多时抛IllegalStateException,
+ * 不会改总许可数; 要增加总许可数用addPermits()
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 20:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class RedisSemaphore implements Semaphore {
+
+	private static final String PERMITS_FORMAT = "loser:sem:{%s}:permits";
+
+	private static final String LEASES_FORMAT = "loser:sem:{%s}:leases";
+
+	private static final String NOTIFY_CHANNEL_FORMAT = "loser:sem:{%s}:channel";
+
+	private static final String ACQUIRE_SCRIPT = "/lua-scripts/semaphoreAcquire.lua";
+
+	private static final String DRAIN_SCRIPT = "/lua-scripts/semaphoreDrain.lua";
+
+	private static final String RELEASE_SCRIPT = "/lua-scripts/semaphoreRelease.lua";
+
+	private static final String AVAILABLE_SCRIPT = "/lua-scripts/semaphoreAvailable.lua";
+
+	private final String name;
+
+	private final String permitsKey;
+
+	private final String leasesKey;
+
+	private final String notifyChannel;
+
+	/**
+	 * 许可的租约有效期
+	 */
+	private final long leaseMillis;
+
+	/**
+	 * 租约是否由LockManager续期
+	 */
+	private final boolean renew;
+
+	private final LockManager lockManager;
+
+	/**
+	 * 这个Semaphore对象获取到并且还没有归还的租约id
+	 */
+	private final Deque<String> leases = new ConcurrentLinkedDeque<>();
+
+	private final boolean permitsSetSuccess;
+
+	/**
+	 * 租约有效期是lockManager.leaseSeconds(), 持有许可期间由lockManager续期
+	 *
+	 * @param name        信号量的名字
+	 * @param permits     总许可数, 只有这个信号量第一次创建的时候才会设置成功
+	 * @param lockManager 等许可的线程登记在这里, 由它统一订阅通知channel并续期租约
+	 */
+	public RedisSemaphore(String name, int permits, LockManager lockManager) {
+		this(name, permits, TimeUnit.SECONDS.toMillis(lockManager.leaseSeconds()), true, lockManager);
+	}
+
+	/**
+	 * 租约不续期, 过了leaseTime不管有没有release许可都会被回收
+	 *
+	 * @param name        信号量的名字
+	 * @param permits     总许可数, 只有这个信号量第一次创建的时候才会设置成功
+	 * @param leaseTime   许可的租约有效期, 要比持有许可的最长时间长
+	 * @param timeUnit
+	 * @param lockManager 等许可的线程登记在这里, 由它统一订阅通知channel
+	 */
+	public RedisSemaphore(String name, int permits, long leaseTime, TimeUnit timeUnit, LockManager lockManager) {
+		this(name, permits, timeUnit.toMillis(leaseTime), false, lockManager);
+	}
+
+	private RedisSemaphore(String name, int permits, long leaseMillis, boolean renew, LockManager lockManager) {
+		KeyUtils.requireNonBlank(name);
+		if (permits < 0) {
+			throw new IllegalArgumentException("permits不能小于0");
+		}
+		if (leaseMillis < 1) {
+			throw new IllegalArgumentException("leaseTime至少1毫秒");
+		}
+		this.leaseMillis = leaseMillis;
+		this.renew = renew;
+		this.name = name;
+		this.permitsKey = String.format(PERMITS_FORMAT, name);
+		this.leasesKey = String.format(LEASES_FORMAT, name);
+		this.notifyChannel = String.format(NOTIFY_CHANNEL_FORMAT, name);
+		this.lockManager = lockManager;
+		this.permitsSetSuccess = trySetPermits(permits);
+	}
+
+	@Override
+	public void acquire() throws InterruptedException {
+		acquire(1);
+	}
+
+	@Override
+	public void acquire(int permits) throws InterruptedException {
+		doAcquire(permits, false, 0);
+	}
+
+	@Override
+	public boolean tryAcquire() {
+		return tryAcquire(1);
+	}
+
+	@Override
+	public boolean tryAcquire(int permits) {
+		requirePositive(permits);
+		return tryAcquireOnce(permits) < 0;
+	}
+
+	@Override
+	public boolean tryAcquire(long waitTime, TimeUnit unit) throws InterruptedException {
+		return tryAcquire(1, waitTime, unit);
+	}
+
+	@Override
+	public boolean tryAcquire(int permits, long waitTime, TimeUnit unit) throws InterruptedException {
+		return doAcquire(permits, true, unit.toNanos(waitTime));
+	}
+
+	@Override
+	public void release() {
+		release(1);
+	}
+
+	/**
+	 * 只能归还这个Semaphore对象自己获取的许可
+	 *
+	 * @param permits amount
+	 * @throws IllegalStateException 这个Semaphore对象持有的许可不够permits个
+	 */
+	@Override
+	public void release(int permits) {
+		requirePositive(permits);
+		List<String> params = new ArrayList<>(permits + 3);
+		params.add(permitsKey);
+		params.add(leasesKey);
+		params.add(notifyChannel);
+		for (int i = 0; i < permits; i++) {
+			String lease = leases.pollLast();
+			if (lease == null) {
+				//持有的不够, 已经取出来的放回去
+				for (int j = params.size() - 1; j >= 3; j--) {
+					leases.addLast(params.get(j));
+				}
+				throw new IllegalStateException(String.format("semaphore %s只持有%d个许可, 不能归还%d个", name, params.size() - 3, permits));
+			}
+			params.add(lease);
+		}
+		if (renew) {
+			for (int i = 3; i < params.size(); i++) {
+				lockManager.release(leasesKey, params.get(i));
+			}
+		}
+
+		long released = JedisUtils.evalScript(RELEASE_SCRIPT, 2, params.toArray(new String[0]));
+		if (released < permits) {
+			log.debug("{} permits of semaphore {} already expired before release", permits - released, name);
+		}
+	}
+
+	@Override
+	public void addPermits(int permits) {
+		requirePositive(permits);
+		JedisUtils.incrBy(permitsKey, permits);
+		JedisUtils.publish(notifyChannel, permits);
+	}
+
+	@Override
+	public int availablePermits() {
+		long available = JedisUtils.evalScript(AVAILABLE_SCRIPT, 2, permitsKey, leasesKey,
+				String.valueOf(System.currentTimeMillis()));
+		return (int) available;
+	}
+
+	@Override
+	public int drainPermits() {
+		String leaseId = UUID.randomUUID().toString();
+		long drained = JedisUtils.evalScript(DRAIN_SCRIPT, 2, permitsKey, leasesKey,
+				String.valueOf(System.currentTimeMillis()), String.valueOf(leaseMillis), leaseId);
+		for (int i = 1; i <= drained; i++) {
+			hold(leaseId + ":" + i);
+		}
+		return (int) drained;
+	}
+
+	@Override
+	public boolean trySetPermits(int permits) {
+		boolean success = JedisUtils.setnx(permitsKey, String.valueOf(permits));
+		if (success) {
+			//可能有客户端在信号量创建之前就开始等了
+			JedisUtils.publish(notifyChannel, permits);
+		}
+		return success;
+	}
+
+	@Override
+	public void reducePermits(int permits) {
+		if (permits < 0) {
+			throw new IllegalArgumentException("permits不能小于0");
+		}
+		JedisUtils.incrBy(permitsKey, -permits);
+	}
+
+	@Override
+	public boolean isPermitsSetSuccess() {
+		return permitsSetSuccess;
+	}
+
+	/**
+	 * 过期时间只设置在总许可数上, 租约zset有自己的过期时间
+	 */
+	@Override
+	public boolean expire(long timeToLive, TimeUnit timeUnit) {
+		return JedisUtils.expire(permitsKey, (int) timeUnit.toSeconds(timeToLive));
+	}
+
+	@Override
+	public boolean expireAt(long timestamp) {
+		return JedisUtils.expireAt(permitsKey, TimeUnit.MILLISECONDS.toSeconds(timestamp));
+	}
+
+	@Override
+	public boolean expireAt(LocalDateTime localDateTime) {
+		return expireAt(localDateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+	}
+
+	@Override
+	public boolean clearExpire() {
+		return JedisUtils.persist(permitsKey);
+	}
+
+	@Override
+	public long remainTimeToLive() {
+		long ttl = JedisUtils.ttl(permitsKey);
+		return ttl < 0 ? ttl : TimeUnit.SECONDS.toMillis(ttl);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public boolean delete() {
+		String lease;
+		while ((lease = leases.pollLast()) != null) {
+			if (renew) {
+				lockManager.release(leasesKey, lease);
+			}
+		}
+		return JedisUtils.mdel(asList(permitsKey, leasesKey)) > 0;
+	}
+
+	@Override
+	public boolean isExists() {
+		return JedisUtils.exists(permitsKey);
+	}
+
+	private boolean doAcquire(int permits, boolean timed, long nanos) throws InterruptedException {
+		requirePositive(permits);
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		long waitMillis = tryAcquireOnce(permits);
+		if (waitMillis < 0) {
+			return true;
+		}
+		if (timed && nanos <= 0) {
+			return false;
+		}
+
+		long deadline = System.nanoTime() + nanos;
+		/*
+		 * 先登记再重试, 重试失败到park之间发出的通知也不会丢
+		 */
+		lockManager.addWaiter(notifyChannel);
+		try {
+			for (; ; ) {
+				waitMillis = tryAcquireOnce(permits);
+				if (waitMillis < 0) {
+					return true;
+				}
+
+				/*
+				 * 租约过期不会有通知, 最多park到最早的租约过期; 没有租约的话只能等release或者trySetPermits的通知,
+				 * 为了防止通知丢了, 最多park一个租约有效期
+				 */
+				long parkNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis > 0 ? waitMillis : leaseMillis);
+				if (timed) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						return false;
+					}
+					parkNanos = Math.min(parkNanos, remaining);
+				}
+				LockSupport.parkNanos(this, parkNanos);
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		} finally {
+			lockManager.removeWaiter(notifyChannel);
+		}
+	}
+
+	/**
+	 * @return 获取成功返回-1, 失败返回建议等待的毫秒数, 0表示不确定
+	 */
+	private long tryAcquireOnce(int permits) {
+		String leaseId = UUID.randomUUID().toString();
+		long result = JedisUtils.evalScript(ACQUIRE_SCRIPT, 2, permitsKey, leasesKey,
+				String.valueOf(System.currentTimeMillis()), String.valueOf(leaseMillis),
+				String.valueOf(permits), leaseId);
+		if (result < 0) {
+			for (int i = 1; i <= permits; i++) {
+				hold(leaseId + ":" + i);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 记下拿到的租约, 需要续期的话交给lockManager
+	 */
+	private void hold(String lease) {
+		leases.addLast(lease);
+		if (renew) {
+			lockManager.hold(leasesKey, lease);
+		}
+	}
+
+	private static void requirePositive(int permits) {
+		if (permits < 1) {
+			throw new IllegalArgumentException("permits必须大于0");
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package com.loserico.cache.concurrent;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.common.lang.concurrent.LoserThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 提前刷新(XFetch)
+ * <p>
+ * 值和它的逻辑过期时间、上次回源耗时一起存, 读的时候按
+ * <pre>
+ * now - delta * beta * ln(random()) >= expireAt
+ * </pre>
+ * 判断要不要提前刷新, 离过期越近、回源越慢, 提前刷新的概率越大。
+ * 刷新在后台线程池里做, 当前以及其他调用方继续拿旧值; 过了逻辑过期时间但还在staleWindow内的值同样先返回旧值再后台刷新。
+ * <p>
+ * 同一个key同一时刻本JVM只会有一个刷新任务, 不同JVM之间通过租约 loser:xf:{key}:refresh 保证只有一个节点在刷新
+ * <p>
+ * 存储格式: 1字节魔数 + 8字节逻辑过期时间(毫秒时间戳) + 4字节回源耗时(毫秒) + 值本身
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 15:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public final class RefreshAhead {
+
+	/**
+	 * 0xF5在UTF-8里不会出现, 也不是Java序列化的开头, 所以不会和普通字符串/JSON/序列化对象混淆
+	 */
+	private static final byte MAGIC = (byte) 0xF5;
+
+	private static final int HEADER_LENGTH = 1 + 8 + 4;
+
+	/**
+	 * 刷新租约的模板
+	 */
+	private static final String REFRESH_LEASE_FORMAT = "loser:xf:%s:refresh";
+
+	/**
+	 * beta > 1 更倾向于提前刷新, beta < 1 更倾向于晚刷新, 论文推荐默认1
+	 */
+	private final double beta;
+
+	/**
+	 * 刷新租约有效期
+	 */
+	private final int leaseSeconds;
+
+	/**
+	 * 本JVM正在刷新的key
+	 */
+	private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+	private final ThreadPoolExecutor executor;
+
+	private final LongAdder refreshes = new LongAdder();
+	private final LongAdder staleHits = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+
+	/**
+	 * @param beta         XFetch的beta, 必须大于0
+	 * @param threads      刷新线程数
+	 * @param queueSize    刷新任务队列长度, 队列满了新的刷新任务直接丢掉, 下一次读会再触发
+	 * @param leaseSeconds 刷新租约有效期, 不能小于1秒
+	 */
+	public RefreshAhead(double beta, int threads, int queueSize, int leaseSeconds) {
+		if (beta <= 0) {
+			throw new IllegalArgumentException("beta必须大于0");
+		}
+		if (leaseSeconds < 1) {
+			throw new IllegalArgumentException("leaseSeconds不能小于1");
+		}
+		this.beta = beta;
+		this.leaseSeconds = leaseSeconds;
+		this.executor = new ThreadPoolExecutor(threads, threads,
+				60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize),
+				new LoserThreadFactory("refresh-ahead"),
+				new ThreadPoolExecutor.AbortPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * 把值和逻辑过期时间、回源耗时打包在一起
+	 *
+	 * @param value       值
+	 * @param expireAt    逻辑过期时间, 毫秒时间戳
+	 * @param deltaMillis 回源耗时
+	 * @return byte[]
+	 */
+	public static byte[] wrap(byte[] value, long expireAt, long deltaMillis) {
+		return ByteBuffer.allocate(HEADER_LENGTH + value.length)
+				.put(MAGIC)
+				.putLong(expireAt)
+				.putInt((int) Math.min(deltaMillis, Integer.MAX_VALUE))
+				.put(value)
+				.array();
+	}
+
+	/**
+	 * 拆包, 不是wrap出来的数据(比如通过set直接写的)返回null
+	 *
+	 * @param raw 从Redis读出来的原始数据
+	 * @return Entry
+	 */
+	public static Entry unwrap(byte[] raw) {
+		if (raw == null || raw.length < HEADER_LENGTH || raw[0] != MAGIC) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(raw);
+		buffer.get();
+		long expireAt = buffer.getLong();
+		int deltaMillis = buffer.getInt();
+		byte[] value = new byte[buffer.remaining()];
+		buffer.get(value);
+		return new Entry(value, expireAt, deltaMillis);
+	}
+
+	/**
+	 * XFetch: 判断这次读要不要触发刷新, 已经过了逻辑过期时间的一定刷新
+	 *
+	 * @param entry
+	 * @return boolean
+	 */
+	public boolean shouldRefresh(Entry entry) {
+		long now = System.currentTimeMillis();
+		if (now >= entry.expireAt) {
+			staleHits.increment();
+			return true;
+		}
+		double random = 1.0 - ThreadLocalRandom.current().nextDouble(); // (0, 1]
+		return now - entry.deltaMillis * beta * Math.log(random) >= entry.expireAt;
+	}
+
+	/**
+	 * 后台刷新, 本JVM已经在刷新这个key或者其他节点拿着租约的话什么都不做
+	 *
+	 * @param key     缓存的key
+	 * @param refresh 回源并回填
+	 */
+	public void refreshAsync(String key, Runnable refresh) {
+		if (!refreshing.add(key)) {
+			return;
+		}
+		try {
+			executor.execute(() -> {
+				String leaseKey = String.format(REFRESH_LEASE_FORMAT, key);
+				String token = UUID.randomUUID().toString();
+				try {
+					if (!JedisUtils.setnx(leaseKey, token, leaseSeconds, TimeUnit.SECONDS)) {
+						return;
+					}
+					try {
+						refreshes.increment();
+						refresh.run();
+					} finally {
+						JedisUtils.unlock(leaseKey, token);
+					}
+				} catch (Throwable e) {
+					failures.increment();
+					log.error("Refresh key {} failed", key, e);
+				} finally {
+					refreshing.remove(key);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// 队列满了就不刷了, 下一次读会再触发
+			rejections.increment();
+			refreshing.remove(key);
+		}
+	}
+
+	/**
+	 * 后台刷新次数, 读到过期旧值的次数, 刷新失败以及被丢掉的刷新任务数
+	 *
+	 * @return RefreshAheadStats
+	 */
+	public RefreshAheadStats stats() {
+		RefreshAheadStats stats = new RefreshAheadStats();
+		stats.setRefreshCount(refreshes.sum());
+		stats.setStaleHitCount(staleHits.sum());
+		stats.setFailureCount(failures.sum());
+		stats.setRejectedCount(rejections.sum());
+		stats.setQueueSize(executor.getQueue().size());
+		return stats;
+	}
+
+	/**
+	 * 拆包后的值
+	 */
+	public static final class Entry {
+
+		private final byte[] value;
+
+		private final long expireAt;
+
+		private final int deltaMillis;
+
+		private Entry(byte[] value, long expireAt, int deltaMillis) {
+			this.value = value;
+			this.expireAt = expireAt;
+			this.deltaMillis = deltaMillis;
+		}
+
+		public byte[] getValue() {
+			return value;
+		}
+
+		public long getExpireAt() {
+			return expireAt;
+		}
+
+		public int getDeltaMillis() {
+			return deltaMillis;
+		}
+	}
+}
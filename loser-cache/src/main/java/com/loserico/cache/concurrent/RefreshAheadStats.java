@@ -0,0 +1,43 @@
+package com.loserico.cache.concurrent;
+
+import lombok.Data;
+
+/**
+ * 提前刷新统计信息
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 16:05
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Data
+public class RefreshAheadStats {
+
+	/**
+	 * 本JVM实际执行的后台刷新次数
+	 */
+	private long refreshCount;
+
+	/**
+	 * 读到已经过了逻辑过期时间的旧值的次数
+	 */
+	private long staleHitCount;
+
+	/**
+	 * 刷新失败次数
+	 */
+	private long failureCount;
+
+	/**
+	 * 因为队列满了被丢掉的刷新任务数
+	 */
+	private long rejectedCount;
+
+	/**
+	 * 当前排队中的刷新任务数
+	 */
+	private int queueSize;
+}
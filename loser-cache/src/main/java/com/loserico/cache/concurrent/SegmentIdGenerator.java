@@ -0,0 +1,270 @@
+package com.loserico.cache.concurrent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.exception.JedisException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 号段模式的ID生成器, 生成连续的数字ID, 比如订单号
+ * <p>
+ * SnowflakeId不连续, 每个ID一次INCR又太慢。这里每个节点一次INCRBY向Redis领一段ID(号段), 在本地用AtomicLong无锁发放:
+ * <ul>
+ *     <li/>当前号段用掉prefetchRatio(默认10%)时, 后台线程提前领下一个号段, 当前号段用完直接切过去, 发号线程不用等Redis
+ *     <li/>号段大小按本节点的消费速度调整, 让一个号段大约能用targetMillis这么久, 在minStep和maxStep之间
+ *     <li/>预取没赶上或者失败了, 用完的那个线程同步去领, 其他线程等它
+ * </ul>
+ * 单个节点发出去的ID严格递增; 多个节点各自从自己的号段里发, 所以全局只是趋势递增。
+ * 节点重启时号段里没用完的ID就丢了, ID会有空洞, 但不会重复
+ * <p>
+ * 同一个name在一个JVM里保留一个实例就够了, 线程安全
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 05:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class SegmentIdGenerator {
+
+	private static final String KEY_PREFIX = "loser:id:";
+
+	/**
+	 * 所有号段生成器共用的预取线程
+	 */
+	private static final ExecutorService PREFETCHER = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+			.setNameFormat("segment-id-prefetcher-%d")
+			.setDaemon(true)
+			.build());
+
+	private final String key;
+
+	private final long minStep;
+
+	private final long maxStep;
+
+	private final long targetMillis;
+
+	private final double prefetchRatio;
+
+	/**
+	 * 下一次领号段时领多少个
+	 */
+	private volatile long step;
+
+	private volatile Segment current;
+
+	/**
+	 * 预取的下一个号段, null表示还没开始预取
+	 */
+	private final AtomicReference<CompletableFuture<Segment>> next = new AtomicReference<>();
+
+	private final LongAdder segments = new LongAdder();
+	private final LongAdder syncLoads = new LongAdder();
+	private final LongAdder allocated = new LongAdder();
+
+	/**
+	 * @param name          ID的名字, Redis里的key是 loser:id:name
+	 * @param minStep       号段最小多少个ID, 也是第一个号段的大小
+	 * @param maxStep       号段最大多少个ID
+	 * @param targetMillis  希望一个号段用多久
+	 * @param prefetchRatio 当前号段用掉多少比例时开始预取下一个, 0到1之间
+	 */
+	public SegmentIdGenerator(String name, long minStep, long maxStep, long targetMillis, double prefetchRatio) {
+		if (minStep < 1 || maxStep < minStep) {
+			throw new IllegalArgumentException("minStep必须大于0, maxStep不能小于minStep");
+		}
+		if (targetMillis < 1) {
+			throw new IllegalArgumentException("targetMillis必须大于0");
+		}
+		if (prefetchRatio < 0 || prefetchRatio >= 1) {
+			throw new IllegalArgumentException("prefetchRatio必须在0和1之间");
+		}
+		this.key = KEY_PREFIX + name;
+		this.minStep = minStep;
+		this.maxStep = maxStep;
+		this.targetMillis = targetMillis;
+		this.prefetchRatio = prefetchRatio;
+		this.step = minStep;
+		this.current = Segment.EMPTY;
+	}
+
+	/**
+	 * 下一个ID
+	 *
+	 * @return long
+	 */
+	public long nextId() {
+		for (; ; ) {
+			Segment segment = current;
+			long id = segment.cursor.getAndIncrement();
+			if (id <= segment.max) {
+				if (id == segment.prefetchAt) {
+					prefetch(segment);
+				}
+				allocated.increment();
+				return id;
+			}
+			switchSegment(segment);
+		}
+	}
+
+	/**
+	 * 当前号段还剩多少个ID
+	 *
+	 * @return long
+	 */
+	public long remaining() {
+		Segment segment = current;
+		return Math.max(0, segment.max - segment.cursor.get() + 1);
+	}
+
+	/**
+	 * 下一次领号段领多少个
+	 *
+	 * @return long
+	 */
+	public long getStep() {
+		return step;
+	}
+
+	/**
+	 * 一共领了多少个号段
+	 *
+	 * @return long
+	 */
+	public long segmentCount() {
+		return segments.sum();
+	}
+
+	/**
+	 * 号段用完时预取还没好, 发号线程同步领号段的次数
+	 *
+	 * @return long
+	 */
+	public long syncLoadCount() {
+		return syncLoads.sum();
+	}
+
+	/**
+	 * 发出去的ID个数
+	 *
+	 * @return long
+	 */
+	public long allocatedCount() {
+		return allocated.sum();
+	}
+
+	private void prefetch(Segment basis) {
+		CompletableFuture<Segment> future = new CompletableFuture<>();
+		if (!next.compareAndSet(null, future)) {
+			return;
+		}
+		PREFETCHER.execute(() -> {
+			try {
+				future.complete(load(basis));
+			} catch (Throwable e) {
+				log.warn("Prefetch id segment of {} failed, will load it when current segment runs out", key, e);
+				future.completeExceptionally(e);
+			}
+		});
+	}
+
+	/**
+	 * 号段用完了, 换成预取的那个; 预取还没开始或者失败了就同步领
+	 */
+	private synchronized void switchSegment(Segment exhausted) {
+		if (current != exhausted) {
+			return;
+		}
+		CompletableFuture<Segment> future = next.getAndSet(null);
+		Segment segment = null;
+		if (future != null) {
+			try {
+				segment = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JedisException("等待预取号段时被中断", e);
+			} catch (ExecutionException e) {
+				//预取失败了, 下面同步领
+			}
+		}
+		if (segment == null) {
+			syncLoads.increment();
+			segment = load(exhausted);
+		}
+		current = segment;
+	}
+
+	/**
+	 * INCRBY领一个号段, 领之前按basis这个号段的消费速度调整号段大小
+	 */
+	private Segment load(Segment basis) {
+		long size = adjustStep(basis);
+		Long end = JedisUtils.incrBy(key, size);
+		if (end == null) {
+			throw new JedisException("INCRBY " + key + " returned null");
+		}
+		segments.increment();
+		return new Segment(end - size + 1, end, prefetchRatio);
+	}
+
+	/**
+	 * 按basis号段目前为止的消费速度, 算出能用targetMillis的号段大小
+	 */
+	private long adjustStep(Segment basis) {
+		long used = Math.min(basis.cursor.get(), basis.max + 1) - basis.min;
+		long elapsedNanos = System.nanoTime() - basis.createdNanos;
+		if (basis == Segment.EMPTY || used <= 0 || elapsedNanos <= 0) {
+			return step;
+		}
+		double idsPerMillis = used * 1_000_000D / elapsedNanos;
+		long wanted = (long) (idsPerMillis * targetMillis);
+		long adjusted = Math.max(minStep, Math.min(maxStep, wanted));
+		if (adjusted != step) {
+			log.debug("Id segment step of {} adjusted from {} to {}", key, step, adjusted);
+			step = adjusted;
+		}
+		return adjusted;
+	}
+
+	/**
+	 * [min, max]这一段ID, cursor是下一个要发的
+	 */
+	private static final class Segment {
+
+		private static final Segment EMPTY = new Segment(0, -1, 0);
+
+		private final long min;
+
+		private final long max;
+
+		/**
+		 * 发到这个ID时开始预取下一个号段
+		 */
+		private final long prefetchAt;
+
+		private final AtomicLong cursor;
+
+		private final long createdNanos = System.nanoTime();
+
+		private Segment(long min, long max, double prefetchRatio) {
+			this.min = min;
+			this.max = max;
+			this.prefetchAt = min + (long) ((max - min + 1) * prefetchRatio);
+			this.cursor = new AtomicLong(min);
+		}
+	}
+}
@@ -217,6 +217,14 @@ public interface Semaphore extends Expirable, CacheObject{
      */
     boolean trySetPermits(int permits);
 
+    /**
+     * Increases the number of permits by the indicated amount.
+     *
+     * @param permits - amount of permits to add
+     * @throws IllegalArgumentException if {@code permits} is not positive
+     */
+    void addPermits(int permits);
+
     /**
      * Shrinks the number of available permits by the indicated
      * reduction.
@@ -0,0 +1,258 @@
+package com.loserico.cache.concurrent;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.exception.JedisException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 缓存回源合并(single-flight)
+ * <p>
+ * 缓存没有命中时:
+ * <ul>
+ *     <li/>同一个JVM里面同一个key只有一个线程回源, 其他线程等它的结果
+ *     <li/>不同JVM之间通过Redis里的租约(loser:sf:{key}:lease)协调, 拿到租约的节点回源并回填缓存,
+ *          然后在LOADED_CHANNEL上通知; 没拿到租约的节点等通知(或者每隔pollMillis再查一次缓存), 不会直接返回null
+ *     <li/>拿到租约的节点挂了, 租约过期后其他节点可以重新拿租约回源
+ *     <li/>等了leaseSeconds还没有结果, 就不再等了, 自己直接回源
+ * </ul>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 14:20
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public final class SingleFlight {
+
+	/**
+	 * 租约的模板
+	 */
+	private static final String LEASE_FORMAT = "loser:sf:%s:lease";
+
+	/**
+	 * 回填完成后在这个channel上通知, 消息体是key
+	 */
+	public static final String LOADED_CHANNEL = "loser:sf:loaded";
+
+	/**
+	 * 本JVM正在回源的key
+	 */
+	private final ConcurrentHashMap<String, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+
+	/**
+	 * 本JVM正在等其他节点回源的key, 收到通知后complete
+	 */
+	private final ConcurrentHashMap<String, CompletableFuture<Boolean>> signals = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+	/**
+	 * 租约有效期, 也是等待其他节点回源的最长时间
+	 */
+	private final int leaseSeconds;
+
+	/**
+	 * 没收到通知时, 每隔多久再查一次缓存
+	 */
+	private final long pollMillis;
+
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder remoteWaits = new LongAdder();
+	private final LongAdder remoteHits = new LongAdder();
+	private final LongAdder leaseTimeouts = new LongAdder();
+	private final LongAdder loadNanosTotal = new LongAdder();
+	private final AtomicLong loadNanosMax = new AtomicLong();
+
+	/**
+	 * @param leaseSeconds 租约有效期, 不能小于1秒
+	 * @param pollMillis   等待其他节点回源时, 每隔多久再查一次缓存
+	 */
+	public SingleFlight(int leaseSeconds, long pollMillis) {
+		if (leaseSeconds < 1) {
+			throw new IllegalArgumentException("leaseSeconds不能小于1");
+		}
+		if (pollMillis < 1) {
+			throw new IllegalArgumentException("pollMillis不能小于1");
+		}
+		this.leaseSeconds = leaseSeconds;
+		this.pollMillis = pollMillis;
+	}
+
+	/**
+	 * 合并回源
+	 *
+	 * @param key         缓存的key
+	 * @param cacheReader 从缓存读, 返回null表示没有命中
+	 * @param loader      回源
+	 * @param cacheWriter 回填缓存, loader返回null时不会调用
+	 * @return T
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T load(String key, Supplier<T> cacheReader, Supplier<T> loader, Consumer<T> cacheWriter) {
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inflight.putIfAbsent(key, future);
+		if (existing != null) {
+			coalesced.increment();
+			return (T) join(existing);
+		}
+
+		try {
+			T value = loadAcrossNodes(key, cacheReader, loader, cacheWriter);
+			future.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inflight.remove(key, future);
+		}
+	}
+
+	/**
+	 * 回源次数, 合并次数, 等待其他节点的次数以及回源耗时
+	 *
+	 * @return SingleFlightStats
+	 */
+	public SingleFlightStats stats() {
+		SingleFlightStats stats = new SingleFlightStats();
+		long loadCount = loads.sum();
+		stats.setLoadCount(loadCount);
+		stats.setCoalescedCount(coalesced.sum());
+		stats.setRemoteWaitCount(remoteWaits.sum());
+		stats.setRemoteHitCount(remoteHits.sum());
+		stats.setLeaseTimeoutCount(leaseTimeouts.sum());
+		stats.setAvgLoadMillis(loadCount == 0 ? 0 : loadNanosTotal.sum() / 1_000_000.0 / loadCount);
+		stats.setMaxLoadMillis(TimeUnit.NANOSECONDS.toMillis(loadNanosMax.get()));
+		return stats;
+	}
+
+	private <T> T loadAcrossNodes(String key, Supplier<T> cacheReader, Supplier<T> loader, Consumer<T> cacheWriter) {
+		String leaseKey = String.format(LEASE_FORMAT, key);
+		String token = UUID.randomUUID().toString();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(leaseSeconds);
+		boolean waited = false;
+
+		for (; ; ) {
+			if (JedisUtils.setnx(leaseKey, token, leaseSeconds, TimeUnit.SECONDS)) {
+				try {
+					/*
+					 * 拿到租约的时候, 前一个租约持有者可能刚刚回填完
+					 */
+					if (waited) {
+						T cached = cacheReader.get();
+						if (cached != null) {
+							remoteHits.increment();
+							return cached;
+						}
+					}
+					return invoke(loader, cacheWriter);
+				} finally {
+					JedisUtils.unlock(leaseKey, token);
+					JedisUtils.publish(LOADED_CHANNEL, key);
+				}
+			}
+
+			if (!waited) {
+				remoteWaits.increment();
+				waited = true;
+				subscribeIfNecessary();
+			}
+
+			/*
+			 * 先注册再查缓存, 避免查完缓存到开始等待之间的通知丢掉
+			 */
+			CompletableFuture<Boolean> signal = signals.computeIfAbsent(key, (k) -> new CompletableFuture<>());
+			T cached = cacheReader.get();
+			if (cached != null) {
+				remoteHits.increment();
+				return cached;
+			}
+			await(signal);
+			signals.remove(key, signal);
+
+			cached = cacheReader.get();
+			if (cached != null) {
+				remoteHits.increment();
+				return cached;
+			}
+
+			if (System.nanoTime() - deadline > 0) {
+				leaseTimeouts.increment();
+				log.warn("Waited {} seconds for another node to load key {}, load it locally", leaseSeconds, key);
+				return invoke(loader, cacheWriter);
+			}
+		}
+	}
+
+	private <T> T invoke(Supplier<T> loader, Consumer<T> cacheWriter) {
+		loads.increment();
+		long begin = System.nanoTime();
+		try {
+			T value = loader.get();
+			if (value != null) {
+				cacheWriter.accept(value);
+			}
+			return value;
+		} finally {
+			long elapsed = System.nanoTime() - begin;
+			loadNanosTotal.add(elapsed);
+			loadNanosMax.accumulateAndGet(elapsed, Math::max);
+		}
+	}
+
+	private void await(CompletableFuture<Boolean> signal) {
+		try {
+			signal.get(pollMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			//没等到通知, 回去再查一次缓存
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JedisException("等待其他节点回源时被中断", e);
+		} catch (ExecutionException e) {
+			throw new JedisException(e.getCause());
+		}
+	}
+
+	private void subscribeIfNecessary() {
+		if (subscribed.compareAndSet(false, true)) {
+			JedisUtils.subscriber().subscribe((channel, key) -> {
+				CompletableFuture<Boolean> signal = signals.remove(key);
+				if (signal != null) {
+					signal.complete(true);
+				}
+			}, LOADED_CHANNEL);
+		}
+	}
+
+	private static Object join(CompletableFuture<Object> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new JedisException(cause);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.loserico.cache.concurrent;
+
+import lombok.Data;
+
+/**
+ * 回源合并统计信息
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 14:52
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Data
+public class SingleFlightStats {
+
+	/**
+	 * 本JVM实际调用loader的次数
+	 */
+	private long loadCount;
+
+	/**
+	 * 本JVM内直接复用其他线程回源结果的次数
+	 */
+	private long coalescedCount;
+
+	/**
+	 * 租约被其他节点持有, 需要等待的次数
+	 */
+	private long remoteWaitCount;
+
+	/**
+	 * 等到了其他节点回填的值的次数
+	 */
+	private long remoteHitCount;
+
+	/**
+	 * 等待超时后自己回源的次数
+	 */
+	private long leaseTimeoutCount;
+
+	/**
+	 * loader平均耗时(毫秒)
+	 */
+	private double avgLoadMillis;
+
+	/**
+	 * loader最大耗时(毫秒)
+	 */
+	private long maxLoadMillis;
+}
@@ -0,0 +1,275 @@
+package com.loserico.cache.concurrent;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.utils.KeyUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分布式令牌桶限流, 本地租用令牌
+ * <p>
+ * AFFLUENT.rateLimit每个请求都要执行一次Lua脚本, QPS高的时候Redis CPU先扛不住。这里每个节点一次向Redis租一批令牌,
+ * 在本地慢慢用, 用完了或者租约过期了才再去Redis租下一批:
+ * <ul>
+ *     <li/>一次脚本调用同时完成: 按时间补充令牌, 归还上一批过期没用完的令牌, 租下一批
+ *     <li/>每批租多少按本节点最近的消费速度(EWMA)来定: 大约够用leaseMillis, 不超过maxLeaseSize
+ *     <li/>租不到令牌时, 脚本会告诉还要多久才有令牌, 这段时间内本地直接拒绝, 不会每个请求都去Redis
+ * </ul>
+ * 代价是精度: 租出去还没用的令牌别的节点用不了, 最多晚leaseMillis才还回去; 节点挂了没还的令牌就丢了, 桶会按速率重新补满。
+ * 节点空闲时过期的令牌要等下一次请求或者close()的时候才会还回去。
+ * <p>
+ * 同一个name的限流器在一个JVM里保留一个实例就够了, 线程安全
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 22:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class TokenBucketLimiter implements AutoCloseable {
+
+	private static final String BUCKET_FORMAT = "loser:tb:{%s}";
+
+	private static final String LEASE_SCRIPT = "/lua-scripts/tokenBucketLease.lua";
+
+	/**
+	 * 消费速度EWMA的平滑系数, 越大越看重最近一批
+	 */
+	private static final double ALPHA = 0.3;
+
+	private final String bucketKey;
+
+	private final double permitsPerSecond;
+
+	private final long capacity;
+
+	private final long leaseMillis;
+
+	private final int maxLeaseSize;
+
+	/**
+	 * 当前这一批租来的令牌
+	 */
+	private volatile Lease lease = Lease.EMPTY;
+
+	/**
+	 * 租不到令牌时, 在这个时间(毫秒)之前本地直接拒绝
+	 */
+	private volatile long denyUntil = 0;
+
+	/**
+	 * 本节点的消费速度, 每秒多少个令牌
+	 */
+	private volatile double observedRate = 0;
+
+	private final LongAdder leaseCalls = new LongAdder();
+	private final LongAdder leased = new LongAdder();
+	private final LongAdder returned = new LongAdder();
+	private final LongAdder acquired = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param name             限流的名字
+	 * @param permitsPerSecond 整个集群每秒产生多少令牌
+	 * @param capacity         桶容量, 也就是允许的最大突发
+	 * @param leaseMillis      一批令牌的租约, 过期没用完的令牌下一次租的时候还回去
+	 * @param maxLeaseSize     一批最多租多少令牌, 越大Redis调用越少, 节点之间越不公平
+	 */
+	public TokenBucketLimiter(String name, double permitsPerSecond, long capacity, long leaseMillis, int maxLeaseSize) {
+		KeyUtils.requireNonBlank(name);
+		if (permitsPerSecond <= 0 || capacity < 1 || leaseMillis < 1 || maxLeaseSize < 1) {
+			throw new IllegalArgumentException("permitsPerSecond, capacity, leaseMillis, maxLeaseSize必须大于0");
+		}
+		this.bucketKey = String.format(BUCKET_FORMAT, name);
+		this.permitsPerSecond = permitsPerSecond;
+		this.capacity = capacity;
+		this.leaseMillis = leaseMillis;
+		this.maxLeaseSize = (int) Math.min(maxLeaseSize, capacity);
+	}
+
+	/**
+	 * 拿一个令牌, 拿不到立即返回false
+	 *
+	 * @return boolean
+	 */
+	public boolean tryAcquire() {
+		if (lease.take()) {
+			acquired.increment();
+			return true;
+		}
+		if (System.currentTimeMillis() < denyUntil) {
+			rejected.increment();
+			return false;
+		}
+
+		synchronized (this) {
+			//可能别的线程刚刚租到了
+			if (lease.take()) {
+				acquired.increment();
+				return true;
+			}
+			long now = System.currentTimeMillis();
+			if (now < denyUntil) {
+				rejected.increment();
+				return false;
+			}
+			renew(now);
+			if (lease.take()) {
+				acquired.increment();
+				return true;
+			}
+		}
+		rejected.increment();
+		return false;
+	}
+
+	/**
+	 * 在timeout时间内拿一个令牌
+	 *
+	 * @param timeout
+	 * @param timeUnit
+	 * @return boolean 超时还没拿到返回false
+	 * @throws InterruptedException
+	 */
+	public boolean tryAcquire(long timeout, TimeUnit timeUnit) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeUnit.toMillis(timeout);
+		for (; ; ) {
+			if (tryAcquire()) {
+				return true;
+			}
+			long now = System.currentTimeMillis();
+			if (now >= deadline) {
+				return false;
+			}
+			long sleepMillis = Math.max(denyUntil - now, 1);
+			Thread.sleep(Math.min(sleepMillis, deadline - now));
+		}
+	}
+
+	/**
+	 * 把手上还没用的令牌还回去
+	 */
+	@Override
+	public synchronized void close() {
+		long unused = lease.drain();
+		lease = Lease.EMPTY;
+		if (unused > 0) {
+			lease(System.currentTimeMillis(), 0, unused);
+		}
+	}
+
+	/**
+	 * Redis调用次数, 租到/还回的令牌数, 本地放行/拒绝次数
+	 *
+	 * @return TokenBucketStats
+	 */
+	public TokenBucketStats stats() {
+		TokenBucketStats stats = new TokenBucketStats();
+		stats.setLeaseCount(leaseCalls.sum());
+		stats.setLeasedPermits(leased.sum());
+		stats.setReturnedPermits(returned.sum());
+		stats.setAcquiredCount(acquired.sum());
+		stats.setRejectedCount(rejected.sum());
+		stats.setObservedRate(observedRate);
+		stats.setLeaseSize(leaseSize());
+		return stats;
+	}
+
+	/**
+	 * 当前这一批用完或者过期了, 还回没用完的, 再租一批
+	 */
+	private void renew(long now) {
+		Lease current = lease;
+		long unused = current.drain();
+		if (current != Lease.EMPTY) {
+			long used = current.size - unused;
+			long elapsed = Math.max(now - current.leasedAt, 1);
+			double rate = used * 1000.0 / elapsed;
+			observedRate = observedRate == 0 ? rate : ALPHA * rate + (1 - ALPHA) * observedRate;
+		}
+
+		List<Long> result = lease(now, leaseSize(), unused);
+		long granted = result.get(0);
+		if (granted > 0) {
+			lease = new Lease(granted, now, now + leaseMillis);
+			denyUntil = 0;
+		} else {
+			lease = Lease.EMPTY;
+			denyUntil = now + result.get(1);
+		}
+	}
+
+	private List<Long> lease(long now, int requested, long unused) {
+		leaseCalls.increment();
+		List<Long> result = JedisUtils.evalScript(LEASE_SCRIPT, 1, bucketKey,
+				String.valueOf(now),
+				String.valueOf(permitsPerSecond),
+				String.valueOf(capacity),
+				String.valueOf(requested),
+				String.valueOf(unused));
+		leased.add(result.get(0));
+		returned.add(unused);
+		return result;
+	}
+
+	/**
+	 * 按本节点的消费速度, 一批租大约够用leaseMillis的令牌
+	 */
+	private int leaseSize() {
+		long size = (long) Math.ceil(observedRate * leaseMillis / 1000.0);
+		return (int) Math.max(1, Math.min(size, maxLeaseSize));
+	}
+
+	/**
+	 * 一批租来的令牌
+	 */
+	private static final class Lease {
+
+		private static final Lease EMPTY = new Lease(0, 0, 0);
+
+		private final long size;
+
+		private final long leasedAt;
+
+		private final long expireAt;
+
+		private final AtomicLong remaining;
+
+		private Lease(long size, long leasedAt, long expireAt) {
+			this.size = size;
+			this.leasedAt = leasedAt;
+			this.expireAt = expireAt;
+			this.remaining = new AtomicLong(size);
+		}
+
+		/**
+		 * 没过期并且还有剩余就拿一个
+		 */
+		private boolean take() {
+			if (System.currentTimeMillis() >= expireAt) {
+				return false;
+			}
+			for (; ; ) {
+				long current = remaining.get();
+				if (current <= 0) {
+					return false;
+				}
+				if (remaining.compareAndSet(current, current - 1)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * 拿走剩下的全部, 用来归还
+		 */
+		private long drain() {
+			return remaining.getAndSet(0);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.loserico.cache.concurrent;
+
+import lombok.Data;
+
+/**
+ * 令牌桶限流统计信息
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 22:05
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Data
+public class TokenBucketStats {
+
+	/**
+	 * 访问Redis租令牌的次数
+	 */
+	private long leaseCount;
+
+	/**
+	 * 一共租到的令牌数
+	 */
+	private long leasedPermits;
+
+	/**
+	 * 过期没用完还回去的令牌数
+	 */
+	private long returnedPermits;
+
+	/**
+	 * 放行的次数
+	 */
+	private long acquiredCount;
+
+	/**
+	 * 拒绝的次数
+	 */
+	private long rejectedCount;
+
+	/**
+	 * 本节点的消费速度(每秒令牌数, EWMA)
+	 */
+	private double observedRate;
+
+	/**
+	 * 下一批准备租多少令牌
+	 */
+	private int leaseSize;
+}
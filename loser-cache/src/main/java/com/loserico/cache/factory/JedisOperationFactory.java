@@ -1,6 +1,7 @@
 package com.loserico.cache.factory;
 
 import com.loserico.cache.config.RedisProperties;
+import com.loserico.cache.metrics.MeteredJedisOperations;
 import com.loserico.cache.operations.JedisClusterOperations;
 import com.loserico.cache.operations.JedisOperations;
 import com.loserico.cache.operations.JedisPoolOperations;
@@ -34,12 +35,21 @@ public final class JedisOperationFactory {
 	private static final String SENTINELS = "redis.sentinels";
 	private static final String CLUSTERS = "redis.clusters";
 	
+	/**
+	 * 创建JedisOperations, 默认包一层命令统计代理, 配置 redis.metrics.enabled=false 关闭
+	 *
+	 * @return JedisOperations
+	 */
 	public static JedisOperations create() {
 		
 		/**
 		 * 默认读取classpath下redis.properties文件
 		 */
 		PropertyReader propertyReader = new PropertyReader("redis");
+		return MeteredJedisOperations.wrap(createBackend(propertyReader), propertyReader);
+	}
+	
+	private static JedisOperations createBackend(PropertyReader propertyReader) {
 		RedisProperties redisProperties = null;
 		
 		/*
@@ -0,0 +1,486 @@
+package com.loserico.cache.listeners;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.cache.operations.JedisOperations;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 整个进程共用一个订阅连接
+ * <p>
+ * JedisUtils.subscribe/psubscribe每调用一次就占一个线程和一个连接。这里所有订阅共用一个连接和一个接收线程:
+ * <ul>
+ *     <li/>运行时随时增加、取消频道和模式的订阅, 在同一个连接上发SUBSCRIBE/UNSUBSCRIBE, 不用重连
+ *     <li/>收到的消息放进每个监听器自己的有界队列, 交给固定大小的线程池处理; 同一个监听器的消息按收到的顺序一条一条处理,
+ *          不同监听器之间并行, 慢的监听器不会拖住接收线程
+ *     <li/>监听器的队列满了丢掉新消息并计数, 接收线程永远不阻塞, 否则Redis的client-output-buffer-limit会把连接踢掉
+ *     <li/>连接断了按100ms、200ms ... 最多5秒退避重连, 连上以后把现在所有的频道和模式重新订阅一遍;
+ *          断开期间发布的消息收不到, 依赖通知的地方要能容忍丢消息
+ *     <li/>每隔pingSeconds发一次PING, 防止空闲连接被中间的代理、防火墙断掉
+ * </ul>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 05:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class SharedSubscriber implements AutoCloseable {
+
+	/**
+	 * 连接上以后先订阅这个频道, 没有任何订阅的时候连接也一直保持着
+	 */
+	static final String KEEPALIVE_CHANNEL = "loser:pubsub:keepalive";
+
+	private static final long MIN_BACKOFF_MILLIS = 100;
+
+	private static final long MAX_BACKOFF_MILLIS = 5000;
+
+	/**
+	 * 一个监听器一次最多连续处理多少条, 然后把线程让给别的监听器
+	 */
+	private static final int DRAIN_BATCH = 64;
+
+	private final JedisOperations operations;
+
+	private final int queueCapacity;
+
+	private final Map<String, List<Subscription>> channels = new ConcurrentHashMap<>();
+
+	private final Map<String, List<Subscription>> patterns = new ConcurrentHashMap<>();
+
+	/**
+	 * 保护当前连接以及channels、patterns的增删, 往连接上发SUBSCRIBE/UNSUBSCRIBE也在锁里
+	 */
+	private final Object lock = new Object();
+
+	private Dispatcher dispatcher;
+
+	private boolean connected;
+
+	private volatile boolean running = true;
+
+	private final Thread receiver;
+
+	private final ThreadPoolExecutor executor;
+
+	private final ScheduledThreadPoolExecutor pinger;
+
+	private final LongAdder received = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder reconnects = new LongAdder();
+
+	/**
+	 * @param operations    订阅用的JedisOperations
+	 * @param threads       处理消息的线程数
+	 * @param queueCapacity 每个监听器最多积压多少条消息
+	 * @param pingSeconds   多久PING一次, 小于1表示不PING
+	 */
+	public SharedSubscriber(JedisOperations operations, int threads, int queueCapacity, long pingSeconds) {
+		if (threads < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("threads, queueCapacity必须大于0");
+		}
+		this.operations = operations;
+		this.queueCapacity = queueCapacity;
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder()
+						.setNameFormat("redis-subscriber-worker-%d")
+						.setDaemon(true)
+						.build());
+		this.receiver = new ThreadFactoryBuilder()
+				.setNameFormat("redis-subscriber")
+				.setDaemon(true)
+				.build()
+				.newThread(this::receive);
+		this.receiver.start();
+		if (pingSeconds > 0) {
+			this.pinger = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+					.setNameFormat("redis-subscriber-ping")
+					.setDaemon(true)
+					.build());
+			this.pinger.scheduleWithFixedDelay(this::ping, pingSeconds, pingSeconds, TimeUnit.SECONDS);
+		} else {
+			this.pinger = null;
+		}
+	}
+
+	/**
+	 * 订阅频道
+	 *
+	 * @param listener
+	 * @param channelNames
+	 * @return Subscription 用于取消订阅
+	 */
+	public Subscription subscribe(MessageListener listener, String... channelNames) {
+		return add(new Subscription(listener, channelNames, false));
+	}
+
+	/**
+	 * 按模式订阅, 支持的模式和PSUBSCRIBE一样, 比如 h?llo, h*llo, h[ae]llo
+	 *
+	 * @param listener
+	 * @param channelPatterns
+	 * @return Subscription 用于取消订阅
+	 */
+	public Subscription psubscribe(MessageListener listener, String... channelPatterns) {
+		return add(new Subscription(listener, channelPatterns, true));
+	}
+
+	/**
+	 * 当前连接是否已经订阅上了
+	 *
+	 * @return boolean
+	 */
+	public boolean isConnected() {
+		synchronized (lock) {
+			return connected;
+		}
+	}
+
+	/**
+	 * 收到的消息条数, 一条消息匹配多个监听器只算一次
+	 *
+	 * @return long
+	 */
+	public long receivedCount() {
+		return received.sum();
+	}
+
+	/**
+	 * 监听器的队列满了丢掉的消息条数
+	 *
+	 * @return long
+	 */
+	public long droppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * 监听器抛异常的次数
+	 *
+	 * @return long
+	 */
+	public long failureCount() {
+		return failures.sum();
+	}
+
+	/**
+	 * 断线重连的次数
+	 *
+	 * @return long
+	 */
+	public long reconnectCount() {
+		return reconnects.sum();
+	}
+
+	/**
+	 * 取消所有订阅, 断开连接, 没处理完的消息不再处理
+	 */
+	@Override
+	public void close() {
+		running = false;
+		synchronized (lock) {
+			channels.clear();
+			patterns.clear();
+			if (connected) {
+				try {
+					dispatcher.punsubscribe();
+					dispatcher.unsubscribe();
+				} catch (Throwable e) {
+					log.warn("Unsubscribe shared subscriber failed", e);
+				}
+			}
+		}
+		receiver.interrupt();
+		if (pinger != null) {
+			pinger.shutdownNow();
+		}
+		executor.shutdownNow();
+	}
+
+	private Subscription add(Subscription subscription) {
+		if (subscription.names.length == 0) {
+			throw new IllegalArgumentException("至少要订阅一个频道");
+		}
+		if (!running) {
+			throw new IllegalStateException("Shared subscriber already closed");
+		}
+		Map<String, List<Subscription>> registry = subscription.pattern ? patterns : channels;
+		synchronized (lock) {
+			List<String> added = new ArrayList<>();
+			for (String name : subscription.names) {
+				registry.computeIfAbsent(name, (k) -> {
+					added.add(k);
+					return new CopyOnWriteArrayList<>();
+				}).add(subscription);
+			}
+			if (connected && !added.isEmpty()) {
+				String[] names = added.toArray(new String[0]);
+				if (subscription.pattern) {
+					dispatcher.psubscribe(names);
+				} else {
+					dispatcher.subscribe(names);
+				}
+			}
+		}
+		return subscription;
+	}
+
+	private void remove(Subscription subscription) {
+		Map<String, List<Subscription>> registry = subscription.pattern ? patterns : channels;
+		synchronized (lock) {
+			List<String> removed = new ArrayList<>();
+			for (String name : subscription.names) {
+				List<Subscription> subscriptions = registry.get(name);
+				if (subscriptions != null && subscriptions.remove(subscription) && subscriptions.isEmpty()) {
+					registry.remove(name);
+					removed.add(name);
+				}
+			}
+			if (connected && !removed.isEmpty()) {
+				String[] names = removed.toArray(new String[0]);
+				if (subscription.pattern) {
+					dispatcher.punsubscribe(names);
+				} else {
+					dispatcher.unsubscribe(names);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 接收线程: 订阅KEEPALIVE_CHANNEL阻塞住, 连接断了退避以后重连
+	 */
+	private void receive() {
+		long backoff = MIN_BACKOFF_MILLIS;
+		while (running) {
+			Dispatcher current = new Dispatcher();
+			synchronized (lock) {
+				dispatcher = current;
+				connected = false;
+			}
+			try {
+				operations.subscribeBlocking(current, KEEPALIVE_CHANNEL);
+			} catch (Throwable e) {
+				if (running) {
+					log.warn("Shared subscriber disconnected, reconnect in {}ms", backoff, e);
+				}
+			}
+			synchronized (lock) {
+				connected = false;
+			}
+			if (!running) {
+				return;
+			}
+			if (current.established) {
+				backoff = MIN_BACKOFF_MILLIS;
+			}
+			try {
+				TimeUnit.MILLISECONDS.sleep(backoff);
+			} catch (InterruptedException e) {
+				return;
+			}
+			backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+			reconnects.increment();
+		}
+	}
+
+	/**
+	 * 连上了, 把现在所有的频道和模式订阅上
+	 */
+	private void onConnected(Dispatcher current) {
+		synchronized (lock) {
+			if (dispatcher != current || !running) {
+				return;
+			}
+			if (!channels.isEmpty()) {
+				current.subscribe(channels.keySet().toArray(new String[0]));
+			}
+			if (!patterns.isEmpty()) {
+				current.psubscribe(patterns.keySet().toArray(new String[0]));
+			}
+			connected = true;
+			current.established = true;
+		}
+		log.info("Shared subscriber connected, {} channels, {} patterns", channels.size(), patterns.size());
+	}
+
+	private void ping() {
+		try {
+			synchronized (lock) {
+				if (connected) {
+					dispatcher.ping();
+				}
+			}
+		} catch (Throwable e) {
+			log.warn("Ping shared subscriber failed", e);
+		}
+	}
+
+	private void dispatch(List<Subscription> subscriptions, String channel, String message) {
+		if (subscriptions == null) {
+			return;
+		}
+		received.increment();
+		for (Subscription subscription : subscriptions) {
+			subscription.offer(channel, message);
+		}
+	}
+
+	/**
+	 * 一个连接一个, 重连时换一个新的
+	 */
+	private final class Dispatcher extends JedisPubSub {
+
+		private volatile boolean established;
+
+		@Override
+		public void onSubscribe(String channel, int subscribedChannels) {
+			if (!established && KEEPALIVE_CHANNEL.equals(channel)) {
+				onConnected(this);
+			}
+		}
+
+		@Override
+		public void onMessage(String channel, String message) {
+			dispatch(channels.get(channel), channel, message);
+		}
+
+		@Override
+		public void onPMessage(String pattern, String channel, String message) {
+			dispatch(patterns.get(pattern), channel, message);
+		}
+	}
+
+	/**
+	 * 一次subscribe/psubscribe, 自己的消息队列保证按顺序处理
+	 */
+	public final class Subscription {
+
+		private final MessageListener listener;
+
+		private final String[] names;
+
+		private final boolean pattern;
+
+		private final BlockingQueue<String[]> queue;
+
+		/**
+		 * 是否已经交给线程池了, 同一时刻最多一个线程在处理这个监听器的消息
+		 */
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+		private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+		/**
+		 * 队列满了开始丢消息, 只打一次日志, 队列处理空了再重置
+		 */
+		private final AtomicBoolean overflowing = new AtomicBoolean(false);
+
+		private Subscription(MessageListener listener, String[] names, boolean pattern) {
+			if (listener == null) {
+				throw new IllegalArgumentException("listener cannot be null");
+			}
+			this.listener = listener;
+			this.names = names.clone();
+			this.pattern = pattern;
+			this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		}
+
+		/**
+		 * 取消订阅, 没有别的监听器的频道会在连接上UNSUBSCRIBE
+		 */
+		public void unsubscribe() {
+			if (cancelled.compareAndSet(false, true)) {
+				remove(this);
+				queue.clear();
+			}
+		}
+
+		public boolean isCancelled() {
+			return cancelled.get();
+		}
+
+		/**
+		 * 订阅的频道或者模式
+		 *
+		 * @return List<String>
+		 */
+		public List<String> names() {
+			return Arrays.asList(names);
+		}
+
+		/**
+		 * 还没处理的消息条数
+		 *
+		 * @return int
+		 */
+		public int backlog() {
+			return queue.size();
+		}
+
+		private void offer(String channel, String message) {
+			if (cancelled.get()) {
+				return;
+			}
+			if (!queue.offer(new String[]{channel, message})) {
+				dropped.increment();
+				if (overflowing.compareAndSet(false, true)) {
+					log.warn("Listener of {} is too slow, {} messages queued, dropping new messages", names(), queueCapacity);
+				}
+				return;
+			}
+			schedule();
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(this::drain);
+				} catch (Throwable e) {
+					scheduled.set(false);
+				}
+			}
+		}
+
+		private void drain() {
+			for (int i = 0; i < DRAIN_BATCH && !cancelled.get(); i++) {
+				String[] message = queue.poll();
+				if (message == null) {
+					overflowing.set(false);
+					break;
+				}
+				try {
+					listener.onMessage(message[0], message[1]);
+				} catch (Throwable e) {
+					failures.increment();
+					log.error("Listener of {} failed on message {}", names(), message[1], e);
+				}
+			}
+			scheduled.set(false);
+			//释放之后又有新消息进来, 或者这一批没处理完
+			if (!queue.isEmpty() && !cancelled.get()) {
+				schedule();
+			}
+		}
+	}
+}
@@ -0,0 +1,393 @@
+package com.loserico.cache.local;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.cache.operations.JedisPoolOperations;
+import com.loserico.common.lang.resource.PropertyReader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 热点key探测, 可选把热点key的值在本地短暂缓存
+ * <p>
+ * 某个key读得特别多的时候, 它所在的那个Redis分片会先被打满。这里在JedisUtils读Redis的路径上(本地一级缓存之后)抽样统计:
+ * <ul>
+ *     <li/>每sampleRate次读只抽一次样, 没抽中的读只多一次随机数, 抽中的才计算hash
+ *     <li/>计数用count-min sketch, 滑动窗口分成SLOTS段, 每段一个sketch, 窗口往前滑的时候清掉最老的一段, 内存固定
+ *     <li/>估算的QPS超过thresholdQps的key进入候选, 每次滑动从候选里挑最热的topK个作为热点key
+ *     <li/>pinMillis > 0 时, 热点key的值在本地缓存pinMillis这么久, 这段时间内的读不再访问Redis
+ * </ul>
+ * 统计的是本JVM的读, 不是整个集群的。本地缓存的值不会因为其他节点修改而失效, 最多脏pinMillis这么久;
+ * 框架内部的key(登录token, 各种锁)只统计不缓存。
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 23:30
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public final class HotKeyDetector implements AutoCloseable {
+
+	/**
+	 * 滑动窗口分成几段
+	 */
+	private static final int SLOTS = 5;
+
+	/**
+	 * count-min sketch的行数, 每行一个hash函数
+	 */
+	private static final int DEPTH = 4;
+
+	/**
+	 * 候选key最多是topK的这么多倍, 限制内存
+	 */
+	private static final int CANDIDATE_FACTOR = 8;
+
+	private final int sampleRate;
+
+	private final long thresholdQps;
+
+	private final int topK;
+
+	private final long windowMillis;
+
+	/**
+	 * sketch每行的宽度, 2的幂
+	 */
+	private final int width;
+
+	/**
+	 * 每一段一个sketch, 下标是 row * width + column
+	 */
+	private final AtomicIntegerArray[] sketches = new AtomicIntegerArray[SLOTS];
+
+	/**
+	 * 当前写入的段, 只有滑动线程修改
+	 */
+	private volatile int current = 0;
+
+	/**
+	 * 估算QPS超过阈值的key, 等着滑动的时候挑topK
+	 */
+	private final Map<ByteBuffer, Boolean> candidates = new ConcurrentHashMap<>();
+
+	/**
+	 * 当前的热点key和估算的QPS, 每次滑动整个替换
+	 */
+	private volatile Map<ByteBuffer, Long> hotKeys = Collections.emptyMap();
+
+	/**
+	 * 热点key的值, pinMillis <= 0 时为null
+	 */
+	private final Cache<ByteBuffer, byte[]> pinned;
+
+	private final ScheduledThreadPoolExecutor slider;
+
+	private final LongAdder samples = new LongAdder();
+	private final LongAdder pinnedHits = new LongAdder();
+	private final LongAdder pinnedMisses = new LongAdder();
+	private final LongAdder detections = new LongAdder();
+
+	/**
+	 * @param sampleRate   每多少次读抽样一次
+	 * @param thresholdQps 本JVM对一个key的读QPS估算值超过这个就算热点
+	 * @param topK         最多同时有多少个热点key
+	 * @param windowMillis 滑动窗口的长度
+	 * @param sketchWidth  count-min sketch每行的宽度, 会向上取整到2的幂, 越大误差越小
+	 * @param pinMillis    热点key的值在本地缓存多久, <= 0 表示只探测不缓存
+	 */
+	public HotKeyDetector(int sampleRate, long thresholdQps, int topK, long windowMillis, int sketchWidth, long pinMillis) {
+		if (sampleRate < 1 || thresholdQps < 1 || topK < 1 || windowMillis < SLOTS || sketchWidth < 1) {
+			throw new IllegalArgumentException("sampleRate, thresholdQps, topK, sketchWidth必须大于0, windowMillis至少" + SLOTS);
+		}
+		this.sampleRate = sampleRate;
+		this.thresholdQps = thresholdQps;
+		this.topK = topK;
+		this.windowMillis = windowMillis;
+		int columns = 1;
+		while (columns < sketchWidth) {
+			columns <<= 1;
+		}
+		this.width = columns;
+		for (int i = 0; i < SLOTS; i++) {
+			sketches[i] = new AtomicIntegerArray(DEPTH * width);
+		}
+		this.pinned = pinMillis > 0
+				? CacheBuilder.newBuilder()
+				.maximumSize(topK)
+				.expireAfterWrite(pinMillis, TimeUnit.MILLISECONDS)
+				.build()
+				: null;
+		this.slider = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+				.setNameFormat("loser-hot-key-%d")
+				.setDaemon(true)
+				.build());
+		long slotMillis = windowMillis / SLOTS;
+		this.slider.scheduleAtFixedRate(this::slide, slotMillis, slotMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 根据redis.properties创建HotKeyDetector, 没有配置 redis.hotKey.enabled=true 返回null
+	 * <pre>
+	 * redis.hotKey.enabled=true
+	 * redis.hotKey.sampleRate=100
+	 * redis.hotKey.thresholdQps=1000
+	 * redis.hotKey.topK=16
+	 * redis.hotKey.windowMillis=5000
+	 * redis.hotKey.sketchWidth=2048
+	 * redis.hotKey.pinMillis=0
+	 * </pre>
+	 *
+	 * @param propertyReader
+	 * @return HotKeyDetector
+	 */
+	public static HotKeyDetector create(PropertyReader propertyReader) {
+		if (!propertyReader.getBoolean("redis.hotKey.enabled", false)) {
+			return null;
+		}
+		int sampleRate = propertyReader.getInt("redis.hotKey.sampleRate", 100);
+		int thresholdQps = propertyReader.getInt("redis.hotKey.thresholdQps", 1000);
+		int topK = propertyReader.getInt("redis.hotKey.topK", 16);
+		int windowMillis = propertyReader.getInt("redis.hotKey.windowMillis", 5000);
+		int sketchWidth = propertyReader.getInt("redis.hotKey.sketchWidth", 2048);
+		int pinMillis = propertyReader.getInt("redis.hotKey.pinMillis", 0);
+		log.info("Hot key detector enabled, sampleRate {}, thresholdQps {}, topK {}, window {}ms, sketchWidth {}, pin {}ms",
+				sampleRate, thresholdQps, topK, windowMillis, sketchWidth, pinMillis);
+		return new HotKeyDetector(sampleRate, thresholdQps, topK, windowMillis, sketchWidth, pinMillis);
+	}
+
+	/**
+	 * 记一次读, 热点key并且开启了本地缓存的话先查本地, 没有再调loader从Redis取
+	 *
+	 * @param key
+	 * @param loader
+	 * @return byte[]
+	 */
+	public byte[] get(byte[] key, Function<byte[], byte[]> loader) {
+		record(key);
+		Cache<ByteBuffer, byte[]> cache = pinned;
+		if (cache == null || hotKeys.isEmpty()) {
+			return loader.apply(key);
+		}
+		ByteBuffer hotKey = ByteBuffer.wrap(key);
+		if (!hotKeys.containsKey(hotKey) || internal(key)) {
+			return loader.apply(key);
+		}
+		byte[] value = cache.getIfPresent(hotKey);
+		if (value != null) {
+			pinnedHits.increment();
+			return value;
+		}
+		pinnedMisses.increment();
+		value = loader.apply(key);
+		//从从库读到的可能是旧值, 不缓存
+		if (value != null && !JedisPoolOperations.isReplicaRead()) {
+			cache.put(hotKey, value);
+		}
+		return value;
+	}
+
+	/**
+	 * 只记一次读, 不走本地缓存
+	 *
+	 * @param key
+	 */
+	public void record(byte[] key) {
+		if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+			return;
+		}
+		samples.increment();
+		int h1 = hash(key, 0x9747b28c);
+		int h2 = hash(key, h1);
+		AtomicIntegerArray sketch = sketches[current];
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < DEPTH; row++) {
+			int index = row * width + ((h1 + row * h2) & (width - 1));
+			sketch.incrementAndGet(index);
+			long count = 0;
+			for (AtomicIntegerArray slot : sketches) {
+				count += slot.get(index);
+			}
+			estimate = Math.min(estimate, count);
+		}
+		if (qps(estimate) >= thresholdQps && candidates.size() < topK * CANDIDATE_FACTOR) {
+			candidates.putIfAbsent(ByteBuffer.wrap(key), Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * key被修改了, 丢掉本地缓存的值
+	 *
+	 * @param key
+	 */
+	public void invalidate(byte[] key) {
+		Cache<ByteBuffer, byte[]> cache = pinned;
+		if (cache != null) {
+			cache.invalidate(ByteBuffer.wrap(key));
+		}
+	}
+
+	/**
+	 * 当前的热点key和估算的QPS, 按QPS从高到低
+	 *
+	 * @return Map<String, Long>
+	 */
+	public Map<String, Long> hotKeys() {
+		List<Map.Entry<ByteBuffer, Long>> entries = new ArrayList<>(hotKeys.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (Map.Entry<ByteBuffer, Long> entry : entries) {
+			result.put(toString(entry.getKey()), entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * 抽样数, 本地缓存命中/未命中次数, 探测到热点key的次数
+	 *
+	 * @return HotKeyStats
+	 */
+	public HotKeyStats stats() {
+		HotKeyStats stats = new HotKeyStats();
+		stats.setSampleCount(samples.sum());
+		stats.setCandidateCount(candidates.size());
+		stats.setHotKeyCount(hotKeys.size());
+		stats.setDetectionCount(detections.sum());
+		stats.setPinnedHitCount(pinnedHits.sum());
+		stats.setPinnedMissCount(pinnedMisses.sum());
+		stats.setMemoryBytes((long) SLOTS * DEPTH * width * Integer.BYTES);
+		return stats;
+	}
+
+	@Override
+	public void close() {
+		slider.shutdownNow();
+		hotKeys = Collections.emptyMap();
+		if (pinned != null) {
+			pinned.invalidateAll();
+		}
+	}
+
+	/**
+	 * 窗口往前滑一段: 从候选里挑出topK个热点key, 然后清掉最老的一段
+	 */
+	private void slide() {
+		try {
+			PriorityQueue<Map.Entry<ByteBuffer, Long>> heap = new PriorityQueue<>(topK + 1, Map.Entry.comparingByValue());
+			for (ByteBuffer key : candidates.keySet()) {
+				long qps = qps(estimate(key));
+				if (qps < thresholdQps) {
+					candidates.remove(key);
+					continue;
+				}
+				heap.offer(new SimpleImmutableEntry<>(key, qps));
+				if (heap.size() > topK) {
+					candidates.remove(heap.poll().getKey());
+				}
+			}
+
+			Map<ByteBuffer, Long> previous = hotKeys;
+			Map<ByteBuffer, Long> hot = new HashMap<>(heap.size() * 2);
+			for (Map.Entry<ByteBuffer, Long> entry : heap) {
+				hot.put(entry.getKey(), entry.getValue());
+				if (!previous.containsKey(entry.getKey())) {
+					detections.increment();
+					log.warn("Hot key detected: {}, about {} reads/s", toString(entry.getKey()), entry.getValue());
+				}
+			}
+			hotKeys = hot;
+			if (pinned != null) {
+				for (ByteBuffer key : previous.keySet()) {
+					if (!hot.containsKey(key)) {
+						pinned.invalidate(key);
+					}
+				}
+			}
+
+			int next = (current + 1) % SLOTS;
+			AtomicIntegerArray oldest = sketches[next];
+			for (int i = 0; i < oldest.length(); i++) {
+				oldest.set(i, 0);
+			}
+			current = next;
+		} catch (Throwable e) {
+			log.error("Slide hot key window failed", e);
+		}
+	}
+
+	private long estimate(ByteBuffer key) {
+		byte[] bytes = key.array();
+		int h1 = hash(bytes, 0x9747b28c);
+		int h2 = hash(bytes, h1);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < DEPTH; row++) {
+			int index = row * width + ((h1 + row * h2) & (width - 1));
+			long count = 0;
+			for (AtomicIntegerArray slot : sketches) {
+				count += slot.get(index);
+			}
+			estimate = Math.min(estimate, count);
+		}
+		return estimate;
+	}
+
+	/**
+	 * 窗口内的抽样数换算成每秒的读次数
+	 */
+	private long qps(long sampled) {
+		return sampled * sampleRate * 1000 / windowMillis;
+	}
+
+	/**
+	 * FNV-1a之后再做一次murmur3的finalizer, 两个不同的seed得到两个独立的hash, 各行用 h1 + row * h2
+	 */
+	private static int hash(byte[] key, int seed) {
+		int h = 0x811c9dc5 ^ seed;
+		for (byte b : key) {
+			h ^= b;
+			h *= 0x01000193;
+		}
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h | 1;
+	}
+
+	private static boolean internal(byte[] key) {
+		String cacheKey = new String(key, UTF_8);
+		for (String internalPrefix : NearCache.INTERNAL_PREFIXES) {
+			if (cacheKey.startsWith(internalPrefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String toString(ByteBuffer key) {
+		return new String(key.array(), UTF_8);
+	}
+}
@@ -0,0 +1,53 @@
+package com.loserico.cache.local;
+
+import lombok.Data;
+
+/**
+ * 热点key探测统计信息
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 23:35
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Data
+public class HotKeyStats {
+
+	/**
+	 * 抽样次数
+	 */
+	private long sampleCount;
+
+	/**
+	 * 当前估算QPS超过阈值的候选key数
+	 */
+	private long candidateCount;
+
+	/**
+	 * 当前的热点key数
+	 */
+	private long hotKeyCount;
+
+	/**
+	 * 新探测到热点key的次数
+	 */
+	private long detectionCount;
+
+	/**
+	 * 热点key本地缓存命中次数
+	 */
+	private long pinnedHitCount;
+
+	/**
+	 * 热点key本地缓存未命中次数
+	 */
+	private long pinnedMissCount;
+
+	/**
+	 * count-min sketch占用的内存, 字节
+	 */
+	private long memoryBytes;
+}
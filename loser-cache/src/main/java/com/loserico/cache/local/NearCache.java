@@ -0,0 +1,520 @@
+package com.loserico.cache.local;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.listeners.SharedSubscriber.Subscription;
+import com.loserico.cache.operations.JedisOperations;
+import com.loserico.cache.operations.JedisPoolOperations;
+import com.loserico.cache.utils.UnMarshaller;
+import com.loserico.common.lang.resource.PropertyReader;
+import com.loserico.json.jackson.JacksonUtils;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.loserico.cache.utils.ByteUtils.toBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * JedisUtils 前面的进程内一级缓存(L1), Redis 本身是二级缓存
+ * <p>
+ * <ul>
+ *     <li/>有界: 超过maximumSize按LRU淘汰, 写入expireAfterWrite之后过期
+ *     <li/>缓存的是Redis返回的原始byte[], 同时记住最近一次反序列化的结果, 同一个Class再次读取时不用再走一遍Jackson
+ *     <li/>通过JedisUtils写(set/del/HASH.hset...)的时候, 本地先失效, 然后在INVALIDATE_CHANNEL上广播, 其他节点收到后失效本地缓存;
+ *          失效通知通过JedisUtils.subscriber()共用的订阅连接接收, 断线后自动重连, 断开期间的通知收不到, 本地最多脏expireAfterWrite这么久
+ *     <li/>不是通过JedisUtils写的(比如Lua脚本里面改了值, 或者key在Redis里面过期了), 本地最多脏expireAfterWrite这么久, 所以过期时间不要设太长
+ * </ul>
+ * <p>
+ * 注意: 反序列化后的对象是多个调用方共享的, 拿到后不要修改它
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 10:12
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public final class NearCache {
+
+	/**
+	 * 失效通知在这个channel上广播
+	 */
+	public static final String INVALIDATE_CHANNEL = "loser:near-cache:invalidate";
+
+	/**
+	 * 这些前缀的key是框架内部用的(登录token, 各种锁), 值变化不走JedisUtils的写接口, 永远不进本地缓存
+	 */
+	static final String[] INTERNAL_PREFIXES = {"auth:", "loser:", "jedis_utils:"};
+
+	/**
+	 * 分段版本号的段数, 必须是2的幂
+	 */
+	private static final int STRIPES = 1024;
+
+	/**
+	 * hash field 缓存的key是 key + FIELD_SEPARATOR + field
+	 */
+	private static final char FIELD_SEPARATOR = '\u0000';
+
+	/**
+	 * 标识当前JVM, 自己发出的失效通知自己不用再处理一遍
+	 */
+	private final String nodeId = UUID.randomUUID().toString();
+
+	private final JedisOperations jedisOperations;
+
+	/**
+	 * 普通key/value
+	 */
+	private final Cache<String, Entry> values;
+
+	/**
+	 * HASH的field
+	 */
+	private final Cache<String, Entry> hashFields;
+
+	/**
+	 * HASH的key -> 本地缓存了的这个key下面的field(fieldKey), 整个key失效的时候只失效这些field, 不用扫描所有field
+	 */
+	private final ConcurrentHashMap<String, Set<String>> fieldIndex = new ConcurrentHashMap<>();
+
+	/**
+	 * 只缓存这些前缀的key, 空表示除内部key以外都缓存
+	 */
+	private final List<String> prefixes;
+
+	/**
+	 * 每次失效都把key所在段的版本号加一; 回填之前版本号变了说明读的过程中值被改过, 就不回填了,
+	 * 避免"读到旧值 -> 失效 -> 回填旧值"把脏数据留在本地
+	 */
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+	private final LongAdder invalidations = new LongAdder();
+	private final LongAdder remoteInvalidations = new LongAdder();
+	private final LongAdder lagMillisTotal = new LongAdder();
+	private final AtomicLong lagMillisMax = new AtomicLong();
+
+	private final Subscription subscription;
+
+	public NearCache(JedisOperations jedisOperations, long maximumSize, long expireAfterWrite, TimeUnit timeUnit) {
+		this(jedisOperations, maximumSize, expireAfterWrite, timeUnit, Collections.emptyList());
+	}
+
+	/**
+	 * @param jedisOperations  用来发布失效通知
+	 * @param maximumSize      普通key和hash field各自最多缓存多少个
+	 * @param expireAfterWrite 写入本地缓存多久之后过期
+	 * @param timeUnit
+	 * @param prefixes         只缓存这些前缀的key, 空表示都缓存
+	 */
+	public NearCache(JedisOperations jedisOperations, long maximumSize, long expireAfterWrite, TimeUnit timeUnit,
+	                 List<String> prefixes) {
+		Objects.requireNonNull(jedisOperations);
+		Objects.requireNonNull(timeUnit);
+		this.jedisOperations = jedisOperations;
+		this.prefixes = prefixes == null ? Collections.emptyList() : new ArrayList<>(prefixes);
+		this.values = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite, timeUnit)
+				.recordStats()
+				.build();
+		this.hashFields = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite, timeUnit)
+				.recordStats()
+				.removalListener(this::onFieldRemoval)
+				.build();
+		this.subscription = JedisUtils.subscriber().subscribe((channel, message) -> onInvalidate(message), INVALIDATE_CHANNEL);
+	}
+
+	/**
+	 * 根据redis.properties创建NearCache, 没有配置 redis.nearCache.enabled=true 返回null
+	 * <pre>
+	 * redis.nearCache.enabled=true
+	 * redis.nearCache.maximumSize=10000
+	 * redis.nearCache.expireAfterWriteMillis=30000
+	 * redis.nearCache.prefixes=product:,dict:
+	 * </pre>
+	 *
+	 * @param propertyReader
+	 * @param jedisOperations
+	 * @return NearCache
+	 */
+	public static NearCache create(PropertyReader propertyReader, JedisOperations jedisOperations) {
+		if (!propertyReader.getBoolean("redis.nearCache.enabled", false)) {
+			return null;
+		}
+		int maximumSize = propertyReader.getInt("redis.nearCache.maximumSize", 10000);
+		int expireAfterWriteMillis = propertyReader.getInt("redis.nearCache.expireAfterWriteMillis", 30000);
+		List<String> prefixes = propertyReader.getStrList("redis.nearCache.prefixes");
+		log.info("Near cache enabled, maximumSize {}, expireAfterWrite {}ms, prefixes {}",
+				maximumSize, expireAfterWriteMillis, prefixes);
+		return new NearCache(jedisOperations, maximumSize, expireAfterWriteMillis, TimeUnit.MILLISECONDS, prefixes);
+	}
+
+	/**
+	 * 这个key是否走本地缓存
+	 *
+	 * @param key
+	 * @return boolean
+	 */
+	public boolean cacheable(String key) {
+		for (String internalPrefix : INTERNAL_PREFIXES) {
+			if (key.startsWith(internalPrefix)) {
+				return false;
+			}
+		}
+		if (prefixes.isEmpty()) {
+			return true;
+		}
+		for (String prefix : prefixes) {
+			if (key.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 先查本地, 没有则调loader从Redis取并回填
+	 *
+	 * @param key
+	 * @param loader
+	 * @return byte[]
+	 */
+	public byte[] get(byte[] key, Function<byte[], byte[]> loader) {
+		String cacheKey = new String(key, UTF_8);
+		if (!cacheable(cacheKey)) {
+			return loader.apply(key);
+		}
+		return entry(values, cacheKey, cacheKey, () -> loader.apply(key)).bytes;
+	}
+
+	/**
+	 * 先查本地, 没有则调loader从Redis取并回填; 同一个clazz反序列化的结果也会缓存起来
+	 *
+	 * @param key
+	 * @param clazz
+	 * @param loader
+	 * @return T
+	 */
+	public <T> T get(byte[] key, Class<T> clazz, Function<byte[], byte[]> loader) {
+		String cacheKey = new String(key, UTF_8);
+		if (!cacheable(cacheKey)) {
+			return UnMarshaller.toObject(loader.apply(key), clazz);
+		}
+		return entry(values, cacheKey, cacheKey, () -> loader.apply(key)).decode(clazz);
+	}
+
+	/**
+	 * HASH field 版本的get
+	 *
+	 * @param key
+	 * @param field
+	 * @param loader
+	 * @return byte[]
+	 */
+	public byte[] hget(byte[] key, byte[] field, Supplier<byte[]> loader) {
+		String hashKey = new String(key, UTF_8);
+		if (!cacheable(hashKey)) {
+			return loader.get();
+		}
+		return entry(hashFields, hashKey, fieldKey(hashKey, new String(field, UTF_8)), loader).bytes;
+	}
+
+	/**
+	 * HASH field 版本的get, 同一个clazz反序列化的结果也会缓存起来
+	 *
+	 * @param key
+	 * @param field
+	 * @param clazz
+	 * @param loader
+	 * @return T
+	 */
+	public <T> T hget(byte[] key, byte[] field, Class<T> clazz, Supplier<byte[]> loader) {
+		String hashKey = new String(key, UTF_8);
+		if (!cacheable(hashKey)) {
+			return UnMarshaller.toObject(loader.get(), clazz);
+		}
+		return entry(hashFields, hashKey, fieldKey(hashKey, new String(field, UTF_8)), loader).decode(clazz);
+	}
+
+	/**
+	 * key的值被修改了, 本地失效并通知其他节点
+	 *
+	 * @param key
+	 */
+	public void invalidate(byte[] key) {
+		String cacheKey = new String(key, UTF_8);
+		if (!cacheable(cacheKey)) {
+			return;
+		}
+		invalidateLocal(cacheKey, null);
+		broadcast(cacheKey, null, null);
+	}
+
+	/**
+	 * 一批key的值被修改了, 本地失效并只发一条通知给其他节点
+	 *
+	 * @param keys
+	 */
+	public void invalidate(Collection<byte[]> keys) {
+		List<String> cacheKeys = new ArrayList<>(keys.size());
+		for (byte[] key : keys) {
+			String cacheKey = new String(key, UTF_8);
+			if (cacheable(cacheKey)) {
+				invalidateLocal(cacheKey, null);
+				cacheKeys.add(cacheKey);
+			}
+		}
+		if (!cacheKeys.isEmpty()) {
+			broadcast(null, null, cacheKeys);
+		}
+	}
+
+	/**
+	 * HASH的field被修改了, 本地失效并通知其他节点
+	 *
+	 * @param key
+	 * @param field
+	 */
+	public void invalidate(byte[] key, byte[] field) {
+		String hashKey = new String(key, UTF_8);
+		if (!cacheable(hashKey)) {
+			return;
+		}
+		String hashField = new String(field, UTF_8);
+		invalidateLocal(hashKey, hashField);
+		broadcast(hashKey, hashField, null);
+	}
+
+	/**
+	 * 清空本地缓存, 不通知其他节点
+	 */
+	public void clear() {
+		for (int i = 0; i < STRIPES; i++) {
+			versions.incrementAndGet(i);
+		}
+		values.invalidateAll();
+		hashFields.invalidateAll();
+		fieldIndex.clear();
+	}
+
+	/**
+	 * 停止监听失效通知并清空本地缓存
+	 */
+	public void close() {
+		subscription.unsubscribe();
+		clear();
+	}
+
+	/**
+	 * 命中率, 淘汰数, 失效次数以及失效通知的延迟
+	 *
+	 * @return NearCacheStats
+	 */
+	public NearCacheStats stats() {
+		CacheStats stats = values.stats().plus(hashFields.stats());
+		NearCacheStats nearCacheStats = new NearCacheStats();
+		nearCacheStats.setSize(values.size() + hashFields.size());
+		nearCacheStats.setHitCount(stats.hitCount());
+		nearCacheStats.setMissCount(stats.missCount());
+		nearCacheStats.setHitRate(stats.hitRate());
+		nearCacheStats.setEvictionCount(stats.evictionCount());
+		nearCacheStats.setInvalidationCount(invalidations.sum());
+		long remote = remoteInvalidations.sum();
+		nearCacheStats.setRemoteInvalidationCount(remote);
+		nearCacheStats.setAvgInvalidationLagMillis(remote == 0 ? 0 : (double) lagMillisTotal.sum() / remote);
+		nearCacheStats.setMaxInvalidationLagMillis(lagMillisMax.get());
+		return nearCacheStats;
+	}
+
+	private Entry entry(Cache<String, Entry> cache, String versionKey, String cacheKey, Supplier<byte[]> loader) {
+		Entry entry = cache.getIfPresent(cacheKey);
+		if (entry != null) {
+			return entry;
+		}
+
+		int stripe = stripe(versionKey);
+		long version = versions.get(stripe);
+		byte[] bytes = loader.get();
+		entry = new Entry(versionKey, bytes);
+		/*
+		 * Redis里面没有这个key的话不缓存, 让调用方可以正常回源
+		 * 读的过程中有失效发生, 这次读到的可能是旧值, 也不缓存; 从从库读到的也可能是旧值, 不缓存
+		 */
+		if (bytes != null && bytes.length > 0 && versions.get(stripe) == version && !JedisPoolOperations.isReplicaRead()) {
+			if (cache == hashFields) {
+				//先登记再放进缓存, 整个key失效的时候不会漏掉这个field
+				fieldIndex.computeIfAbsent(versionKey, (k) -> ConcurrentHashMap.newKeySet()).add(cacheKey);
+			}
+			cache.put(cacheKey, entry);
+		}
+		return entry;
+	}
+
+	private void invalidateLocal(String key, String field) {
+		versions.incrementAndGet(stripe(key));
+		invalidations.increment();
+		if (field != null) {
+			String fieldKey = fieldKey(key, field);
+			unindex(key, fieldKey);
+			hashFields.invalidate(fieldKey);
+			return;
+		}
+
+		values.invalidate(key);
+		//key被删除或者覆盖, 那么这个key下面的hash field也都失效
+		Set<String> fieldKeys = fieldIndex.remove(key);
+		if (fieldKeys != null) {
+			hashFields.invalidateAll(fieldKeys);
+		}
+	}
+
+	/**
+	 * 被淘汰或者过期的field从索引里去掉; 主动失效的在invalidateLocal里已经去掉了
+	 */
+	private void onFieldRemoval(RemovalNotification<String, Entry> notification) {
+		if (notification.wasEvicted() && notification.getValue() != null) {
+			unindex(notification.getValue().owner, notification.getKey());
+		}
+	}
+
+	private void unindex(String key, String fieldKey) {
+		fieldIndex.computeIfPresent(key, (k, fieldKeys) -> {
+			fieldKeys.remove(fieldKey);
+			return fieldKeys.isEmpty() ? null : fieldKeys;
+		});
+	}
+
+	private void broadcast(String key, String field, List<String> keys) {
+		InvalidateMessage message = new InvalidateMessage();
+		message.setNodeId(nodeId);
+		message.setTimestamp(System.currentTimeMillis());
+		message.setKey(key);
+		message.setField(field);
+		message.setKeys(keys);
+		try {
+			jedisOperations.publish(toBytes(INVALIDATE_CHANNEL), JacksonUtils.toBytes(message));
+		} catch (Exception e) {
+			//通知发不出去其他节点最多脏expireAfterWrite这么久, 不影响本次写操作
+			log.error("Publish near cache invalidation of key {} failed", key != null ? key : keys, e);
+		}
+	}
+
+	private void onInvalidate(String json) {
+		InvalidateMessage message;
+		try {
+			message = JacksonUtils.toObject(json, InvalidateMessage.class);
+		} catch (Exception e) {
+			log.warn("Unrecognized near cache invalidation {}", json, e);
+			return;
+		}
+		if (message == null || nodeId.equals(message.getNodeId())) {
+			return;
+		}
+		if (message.getKeys() != null) {
+			for (String key : message.getKeys()) {
+				invalidateLocal(key, null);
+			}
+		} else if (message.getKey() != null) {
+			invalidateLocal(message.getKey(), message.getField());
+		} else {
+			return;
+		}
+		remoteInvalidations.increment();
+		//不同机器的时钟可能有偏差, 这个延迟只能作为参考
+		long lag = Math.max(0L, System.currentTimeMillis() - message.getTimestamp());
+		lagMillisTotal.add(lag);
+		lagMillisMax.accumulateAndGet(lag, Math::max);
+	}
+
+	private static int stripe(String key) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	private static String fieldKey(String key, String field) {
+		return key + FIELD_SEPARATOR + field;
+	}
+
+	/**
+	 * 本地缓存的值: 原始byte[] 加上最近一次反序列化的结果
+	 */
+	private static final class Entry {
+
+		/**
+		 * 所属的key, hash field的索引要用到
+		 */
+		private final String owner;
+
+		private final byte[] bytes;
+
+		private volatile Decoded decoded;
+
+		private Entry(String owner, byte[] bytes) {
+			this.owner = owner;
+			this.bytes = bytes;
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T> T decode(Class<T> clazz) {
+			Decoded current = this.decoded;
+			if (current != null && current.clazz == clazz) {
+				return (T) current.value;
+			}
+			T value = UnMarshaller.toObject(bytes, clazz);
+			this.decoded = new Decoded(clazz, value);
+			return value;
+		}
+	}
+
+	private static final class Decoded {
+
+		private final Class<?> clazz;
+
+		private final Object value;
+
+		private Decoded(Class<?> clazz, Object value) {
+			this.clazz = clazz;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * 广播出去的失效通知, field为null表示整个key失效; keys不为null时是一批key整个失效, 这时候不看key和field
+	 */
+	@Data
+	public static class InvalidateMessage {
+
+		private String nodeId;
+
+		private long timestamp;
+
+		private String key;
+
+		private String field;
+
+		private List<String> keys;
+	}
+}
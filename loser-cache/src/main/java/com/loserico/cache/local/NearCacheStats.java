@@ -0,0 +1,63 @@
+package com.loserico.cache.local;
+
+import lombok.Data;
+
+/**
+ * 本地缓存统计信息
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 10:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Data
+public class NearCacheStats {
+
+	/**
+	 * 当前缓存的条目数(普通key + hash field)
+	 */
+	private long size;
+
+	/**
+	 * 命中次数
+	 */
+	private long hitCount;
+
+	/**
+	 * 未命中次数
+	 */
+	private long missCount;
+
+	/**
+	 * 命中率
+	 */
+	private double hitRate;
+
+	/**
+	 * 因为容量满了被淘汰的条目数
+	 */
+	private long evictionCount;
+
+	/**
+	 * 总失效次数, 包括本地写和收到的通知
+	 */
+	private long invalidationCount;
+
+	/**
+	 * 收到其他节点发来的失效通知数
+	 */
+	private long remoteInvalidationCount;
+
+	/**
+	 * 从其他节点发出通知到本节点失效的平均延迟(毫秒), 受节点间时钟偏差影响
+	 */
+	private double avgInvalidationLagMillis;
+
+	/**
+	 * 最大失效延迟(毫秒)
+	 */
+	private long maxInvalidationLagMillis;
+}
@@ -0,0 +1,62 @@
+package com.loserico.cache.metrics;
+
+import lombok.Data;
+
+/**
+ * 一个Redis命令(JedisOperations的一个方法, 重载的方法合在一起)从启动以来的统计信息
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 00:15
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Data
+public class CommandStats {
+
+	/**
+	 * 命令, 也就是JedisOperations的方法名
+	 */
+	private String command;
+
+	/**
+	 * 调用次数
+	 */
+	private long count;
+
+	/**
+	 * 抛异常的次数
+	 */
+	private long errorCount;
+
+	/**
+	 * 超过慢命令阈值的次数
+	 */
+	private long slowCount;
+
+	private double meanMicros;
+
+	private long p50Micros;
+
+	private long p99Micros;
+
+	private long p999Micros;
+
+	private long maxMicros;
+
+	/**
+	 * 请求里key/value/参数的平均字节数
+	 */
+	private double requestBytesMean;
+
+	private long requestBytesMax;
+
+	/**
+	 * 返回结果的平均字节数
+	 */
+	private double responseBytesMean;
+
+	private long responseBytesMax;
+}
@@ -0,0 +1,78 @@
+package com.loserico.cache.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 默认的MetricsSink, 把最近一次的快照注册成MXBean com.loserico.cache:type=RedisMetrics
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 00:25
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class JmxMetricsSink implements MetricsSink, RedisMetricsMXBean {
+
+	public static final String OBJECT_NAME = "com.loserico.cache:type=RedisMetrics";
+
+	private volatile RedisMetricsSnapshot snapshot = new RedisMetricsSnapshot();
+
+	public JmxMetricsSink() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			//同一个JVM里重复创建(比如单元测试)时用新的替换旧的
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (Exception e) {
+			log.warn("Register {} failed", OBJECT_NAME, e);
+		}
+	}
+
+	@Override
+	public void report(RedisMetricsSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	@Override
+	public long getTimestamp() {
+		return snapshot.getTimestamp();
+	}
+
+	@Override
+	public List<CommandStats> getCommands() {
+		List<CommandStats> commands = snapshot.getCommands();
+		return commands == null ? Collections.emptyList() : commands;
+	}
+
+	@Override
+	public long getPoolWaitCount() {
+		return snapshot.getPoolWaitCount();
+	}
+
+	@Override
+	public double getPoolWaitMeanMicros() {
+		return snapshot.getPoolWaitMeanMicros();
+	}
+
+	@Override
+	public long getPoolWaitP99Micros() {
+		return snapshot.getPoolWaitP99Micros();
+	}
+
+	@Override
+	public long getPoolWaitMaxMicros() {
+		return snapshot.getPoolWaitMaxMicros();
+	}
+}
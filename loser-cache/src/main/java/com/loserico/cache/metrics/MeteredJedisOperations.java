@@ -0,0 +1,332 @@
+package com.loserico.cache.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.cache.operations.JedisOperations;
+import com.loserico.cache.operations.JedisPoolOperations;
+import com.loserico.common.lang.resource.PropertyReader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 给任意JedisOperations加上命令级别的统计
+ * <p>
+ * JedisOperations有近百个方法, 后面还会继续加, 所以用动态代理统一拦截, 不用每个方法写一遍:
+ * <ul>
+ *     <li/>每个命令(方法名, 重载的方法合在一起)一个耗时直方图, 以及请求/返回的字节数直方图和异常次数
+ *     <li/>超过slowMillis的命令打一条WARN日志, 带上第一个参数(一般是key)
+ *     <li/>单机/哨兵模式下统计从连接池借连接的等待时间
+ *     <li/>每隔reportSeconds把快照交给MetricsSink, 默认是JMX
+ * </ul>
+ * 每次调用的额外开销是一次反射调用、两次System.nanoTime()和几次原子累加, 一般在几百纳秒以内, 比一次网络往返小得多。
+ * jedis()直接拿到的Jedis、订阅、AutoPipeline不经过这里, 统计不到
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 00:30
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public final class MeteredJedisOperations implements InvocationHandler {
+
+	/**
+	 * 这些方法不是一次完整的命令(长时间阻塞的订阅、阻塞读、直接交出去的连接等), 直接转发, 不统计;
+	 * 阻塞读的耗时主要是在等数据, 算进延迟和慢日志会把统计冲掉
+	 */
+	private static final Set<String> UNMETERED = new HashSet<>(Arrays.asList(
+			"jedis", "subscribe", "psubscribe", "subscribeBlocking", "xreadGroup", "blpop", "brpop", "masters", "unwrap",
+			"toString", "hashCode", "equals"));
+
+	/**
+	 * 慢命令日志里key最多打印这么多个字符
+	 */
+	private static final int MAX_LOGGED_KEY_LENGTH = 128;
+
+	private final JedisOperations delegate;
+
+	private final long slowNanos;
+
+	/**
+	 * 按方法缓存一下, 省得每次调用都拿方法名去查
+	 */
+	private final Map<Method, Metrics> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * 重载的方法(比如get(String)和get(byte[]))共用一份统计
+	 */
+	private final Map<String, Metrics> commands = new ConcurrentHashMap<>();
+
+	private final Histogram poolWait = new Histogram();
+
+	private final ScheduledThreadPoolExecutor reporter;
+
+	private volatile MetricsSink sink;
+
+	private MeteredJedisOperations(JedisOperations delegate, long slowMillis, MetricsSink sink, long reportSeconds) {
+		this.delegate = delegate;
+		this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+		this.sink = sink;
+		if (delegate instanceof JedisPoolOperations) {
+			((JedisPoolOperations) delegate).setBorrowListener(poolWait::record);
+		}
+		this.reporter = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+				.setNameFormat("loser-redis-metrics-%d")
+				.setDaemon(true)
+				.build());
+		this.reporter.scheduleWithFixedDelay(this::report, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * 用统计代理包一层
+	 *
+	 * @param delegate      真正执行命令的JedisOperations
+	 * @param slowMillis    超过这个毫秒数的命令打WARN日志
+	 * @param sink          统计输出
+	 * @param reportSeconds 多久输出一次
+	 * @return JedisOperations
+	 */
+	public static JedisOperations wrap(JedisOperations delegate, long slowMillis, MetricsSink sink, long reportSeconds) {
+		if (slowMillis < 1 || reportSeconds < 1) {
+			throw new IllegalArgumentException("slowMillis, reportSeconds必须大于0");
+		}
+		MeteredJedisOperations handler = new MeteredJedisOperations(delegate, slowMillis, sink, reportSeconds);
+		return (JedisOperations) Proxy.newProxyInstance(JedisOperations.class.getClassLoader(),
+				new Class<?>[]{JedisOperations.class}, handler);
+	}
+
+	/**
+	 * 根据redis.properties包一层统计代理, 配置了 redis.metrics.enabled=false 原样返回
+	 * <pre>
+	 * redis.metrics.enabled=true
+	 * redis.metrics.slowMillis=50
+	 * redis.metrics.reportSeconds=10
+	 * </pre>
+	 *
+	 * @param delegate
+	 * @param propertyReader
+	 * @return JedisOperations
+	 */
+	public static JedisOperations wrap(JedisOperations delegate, PropertyReader propertyReader) {
+		if (!propertyReader.getBoolean("redis.metrics.enabled", true)) {
+			return delegate;
+		}
+		return wrap(delegate,
+				propertyReader.getInt("redis.metrics.slowMillis", 50),
+				new JmxMetricsSink(),
+				propertyReader.getInt("redis.metrics.reportSeconds", 10));
+	}
+
+	/**
+	 * 拿到代理背后的统计, 不是wrap()返回的对象返回null
+	 *
+	 * @param operations
+	 * @return MeteredJedisOperations
+	 */
+	public static MeteredJedisOperations of(JedisOperations operations) {
+		if (operations != null && Proxy.isProxyClass(operations.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(operations);
+			if (handler instanceof MeteredJedisOperations) {
+				return (MeteredJedisOperations) handler;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 换一个统计输出
+	 *
+	 * @param sink
+	 */
+	public void setSink(MetricsSink sink) {
+		this.sink = sink;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (UNMETERED.contains(method.getName())) {
+			if ("unwrap".equals(method.getName())) {
+				return delegate.unwrap();
+			}
+			return call(method, args);
+		}
+
+		Metrics commandMetrics = metrics.get(method);
+		if (commandMetrics == null) {
+			commandMetrics = metrics.computeIfAbsent(method, (m) -> commands.computeIfAbsent(m.getName(), Metrics::new));
+		}
+		long begin = System.nanoTime();
+		Object result = null;
+		boolean failed = true;
+		try {
+			result = call(method, args);
+			failed = false;
+			return result;
+		} finally {
+			long elapsed = System.nanoTime() - begin;
+			commandMetrics.latency.record(elapsed);
+			commandMetrics.requestBytes.record(sizeOf(args));
+			if (failed) {
+				commandMetrics.errors.increment();
+			} else {
+				commandMetrics.responseBytes.record(sizeOf(result));
+			}
+			if (elapsed >= slowNanos) {
+				commandMetrics.slow.increment();
+				log.warn("Slow redis command {} took {}ms, key {}", method.getName(),
+						TimeUnit.NANOSECONDS.toMillis(elapsed), firstArg(args));
+			}
+		}
+	}
+
+	/**
+	 * 当前所有命令的统计
+	 *
+	 * @return RedisMetricsSnapshot
+	 */
+	public RedisMetricsSnapshot snapshot() {
+		List<CommandStats> stats = new ArrayList<>(commands.size());
+		for (Metrics commandMetrics : commands.values()) {
+			stats.add(commandMetrics.stats());
+		}
+		stats.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+
+		RedisMetricsSnapshot snapshot = new RedisMetricsSnapshot();
+		snapshot.setTimestamp(System.currentTimeMillis());
+		snapshot.setCommands(stats);
+		snapshot.setPoolWaitCount(poolWait.count());
+		snapshot.setPoolWaitMeanMicros(poolWait.mean() / 1000);
+		snapshot.setPoolWaitP99Micros(TimeUnit.NANOSECONDS.toMicros(poolWait.percentile(99)));
+		snapshot.setPoolWaitMaxMicros(TimeUnit.NANOSECONDS.toMicros(poolWait.max()));
+		return snapshot;
+	}
+
+	private Object call(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(delegate, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private void report() {
+		MetricsSink current = sink;
+		if (current == null) {
+			return;
+		}
+		try {
+			current.report(snapshot());
+		} catch (Throwable e) {
+			log.error("Report redis metrics failed", e);
+		}
+	}
+
+	private static Object firstArg(Object[] args) {
+		if (args == null || args.length == 0) {
+			return null;
+		}
+		Object arg = args[0];
+		String text;
+		if (arg instanceof byte[]) {
+			text = new String((byte[]) arg, UTF_8);
+		} else {
+			text = String.valueOf(arg);
+		}
+		return text.length() > MAX_LOGGED_KEY_LENGTH ? text.substring(0, MAX_LOGGED_KEY_LENGTH) + "..." : text;
+	}
+
+	/**
+	 * 粗略估算参数/返回值的字节数, 只算byte[]和字符串(按字符数), 以及它们组成的数组、集合、Map
+	 */
+	private static long sizeOf(Object value) {
+		if (value == null) {
+			return 0;
+		}
+		if (value instanceof byte[]) {
+			return ((byte[]) value).length;
+		}
+		if (value instanceof String) {
+			return ((String) value).length();
+		}
+		if (value instanceof Object[]) {
+			long size = 0;
+			for (Object element : (Object[]) value) {
+				size += sizeOf(element);
+			}
+			return size;
+		}
+		if (value instanceof Collection) {
+			long size = 0;
+			for (Object element : (Collection<?>) value) {
+				size += sizeOf(element);
+			}
+			return size;
+		}
+		if (value instanceof Map) {
+			long size = 0;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+			}
+			return size;
+		}
+		return 0;
+	}
+
+	/**
+	 * 一个命令的统计
+	 */
+	private static final class Metrics {
+
+		private final String command;
+
+		private final Histogram latency = new Histogram();
+
+		private final Histogram requestBytes = new Histogram();
+
+		private final Histogram responseBytes = new Histogram();
+
+		private final LongAdder errors = new LongAdder();
+
+		private final LongAdder slow = new LongAdder();
+
+		private Metrics(String command) {
+			this.command = command;
+		}
+
+		private CommandStats stats() {
+			CommandStats stats = new CommandStats();
+			stats.setCommand(command);
+			stats.setCount(latency.count());
+			stats.setErrorCount(errors.sum());
+			stats.setSlowCount(slow.sum());
+			stats.setMeanMicros(latency.mean() / 1000);
+			stats.setP50Micros(TimeUnit.NANOSECONDS.toMicros(latency.percentile(50)));
+			stats.setP99Micros(TimeUnit.NANOSECONDS.toMicros(latency.percentile(99)));
+			stats.setP999Micros(TimeUnit.NANOSECONDS.toMicros(latency.percentile(99.9)));
+			stats.setMaxMicros(TimeUnit.NANOSECONDS.toMicros(latency.max()));
+			stats.setRequestBytesMean(requestBytes.mean());
+			stats.setRequestBytesMax(requestBytes.max());
+			stats.setResponseBytesMean(responseBytes.mean());
+			stats.setResponseBytesMax(responseBytes.max());
+			return stats;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.loserico.cache.metrics;
+
+/**
+ * Redis命令统计的输出, 默认是JMX, 可以换成Prometheus、日志等
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 00:20
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public interface MetricsSink {
+
+	/**
+	 * 每隔 redis.metrics.reportSeconds 调用一次, 在后台线程里执行, 不要阻塞太久
+	 *
+	 * @param snapshot
+	 */
+	void report(RedisMetricsSnapshot snapshot);
+}
@@ -0,0 +1,29 @@
+package com.loserico.cache.metrics;
+
+import java.util.List;
+
+/**
+ * JMX里看到的Redis命令统计, ObjectName是 com.loserico.cache:type=RedisMetrics
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 00:20
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public interface RedisMetricsMXBean {
+
+	long getTimestamp();
+
+	List<CommandStats> getCommands();
+
+	long getPoolWaitCount();
+
+	double getPoolWaitMeanMicros();
+
+	long getPoolWaitP99Micros();
+
+	long getPoolWaitMaxMicros();
+}
@@ -0,0 +1,41 @@
+package com.loserico.cache.metrics;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 某一时刻所有命令的统计以及从连接池借连接的等待时间, 都是从启动以来累计的
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 00:15
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Data
+public class RedisMetricsSnapshot {
+
+	/**
+	 * 生成快照的时间
+	 */
+	private long timestamp;
+
+	/**
+	 * 按调用次数从多到少
+	 */
+	private List<CommandStats> commands;
+
+	/**
+	 * 从连接池借连接的次数, 集群模式下JedisCluster内部借连接, 统计不到, 是0
+	 */
+	private long poolWaitCount;
+
+	private double poolWaitMeanMicros;
+
+	private long poolWaitP99Micros;
+
+	private long poolWaitMaxMicros;
+}
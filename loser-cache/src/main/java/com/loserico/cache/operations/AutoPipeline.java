@@ -0,0 +1,258 @@
+package com.loserico.cache.operations;
+
+import com.loserico.cache.exception.JedisException;
+import com.loserico.common.lang.concurrent.LoserThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 自动Pipeline的异步命令入口
+ * <p>
+ * 多个线程并发提交的小命令先进队列, 由flusher线程攒成一批, 通过一次 executePipelined 发出去,
+ * 一批攒够 batchSize 条或者第一条命令已经等了 flushIntervalMicros 微秒就立即flush, 类似Lettuce的auto-flush。
+ * 每条命令返回一个CompletableFuture, 命令本身的错误(比如WRONGTYPE)只影响它自己的future。
+ * <p>
+ * 只支持单机/哨兵(JedisPoolOperations), 集群没有跨节点的Pipeline。
+ * 通过这里的写操作不会失效JedisUtils的本地缓存。
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 16:50
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public final class AutoPipeline implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(AutoPipeline.class);
+
+	private final JedisPoolOperations operations;
+
+	private final int batchSize;
+
+	private final long flushIntervalNanos;
+
+	private final BlockingQueue<Command<?>> queue;
+
+	private final List<Thread> flushers = new ArrayList<>();
+
+	private volatile boolean closed = false;
+
+	private final LongAdder batches = new LongAdder();
+
+	private final LongAdder commands = new LongAdder();
+
+	/**
+	 * @param operations          底层的JedisPoolOperations
+	 * @param batchSize           一批最多多少条命令
+	 * @param flushIntervalMicros 第一条命令最多等多久(微秒)就flush
+	 * @param flusherCount        flusher线程数, 每个flusher同一时刻占用一个连接
+	 * @param queueCapacity       排队命令上限, 满了提交方阻塞
+	 */
+	public AutoPipeline(JedisPoolOperations operations, int batchSize, long flushIntervalMicros, int flusherCount,
+	                    int queueCapacity) {
+		if (batchSize < 1 || flusherCount < 1 || queueCapacity < 1 || flushIntervalMicros < 0) {
+			throw new IllegalArgumentException("batchSize, flusherCount, queueCapacity必须大于0, flushIntervalMicros不能小于0");
+		}
+		this.operations = operations;
+		this.batchSize = batchSize;
+		this.flushIntervalNanos = TimeUnit.MICROSECONDS.toNanos(flushIntervalMicros);
+		this.queue = new LinkedBlockingQueue<>(queueCapacity);
+
+		ThreadFactory threadFactory = new LoserThreadFactory("auto-pipeline");
+		for (int i = 0; i < flusherCount; i++) {
+			Thread flusher = threadFactory.newThread(this::flushLoop);
+			flusher.setDaemon(true);
+			flushers.add(flusher);
+			flusher.start();
+		}
+	}
+
+	/**
+	 * 提交任意一条Pipeline命令, 比如 submit((pipeline) -> pipeline.zscore(key, member))
+	 *
+	 * @param command 往Pipeline里写一条命令并返回它的Response
+	 * @return CompletableFuture<R>
+	 */
+	public <R> CompletableFuture<R> submit(Function<Pipeline, Response<R>> command) {
+		Command<R> cmd = new Command<>(command);
+		if (closed) {
+			cmd.future.completeExceptionally(new JedisException("AutoPipeline已经关闭"));
+			return cmd.future;
+		}
+		try {
+			queue.put(cmd);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cmd.future.completeExceptionally(e);
+			return cmd.future;
+		}
+		// put的同时被close了, flusher可能已经退出, 不能让这条命令一直挂着
+		if (closed && queue.remove(cmd)) {
+			cmd.future.completeExceptionally(new JedisException("AutoPipeline已经关闭"));
+		}
+		return cmd.future;
+	}
+
+	public CompletableFuture<byte[]> get(byte[] key) {
+		return submit((pipeline) -> pipeline.get(key));
+	}
+
+	public CompletableFuture<String> get(String key) {
+		return submit((pipeline) -> pipeline.get(key));
+	}
+
+	public CompletableFuture<String> set(byte[] key, byte[] value) {
+		return submit((pipeline) -> pipeline.set(key, value));
+	}
+
+	public CompletableFuture<String> set(String key, String value) {
+		return submit((pipeline) -> pipeline.set(key, value));
+	}
+
+	public CompletableFuture<Long> del(String key) {
+		return submit((pipeline) -> pipeline.del(key));
+	}
+
+	public CompletableFuture<Boolean> exists(String key) {
+		return submit((pipeline) -> pipeline.exists(key));
+	}
+
+	public CompletableFuture<Long> incr(String key) {
+		return submit((pipeline) -> pipeline.incr(key));
+	}
+
+	public CompletableFuture<Long> expire(String key, int seconds) {
+		return submit((pipeline) -> pipeline.expire(key, seconds));
+	}
+
+	public CompletableFuture<String> hget(String key, String field) {
+		return submit((pipeline) -> pipeline.hget(key, field));
+	}
+
+	public CompletableFuture<Long> hset(String key, String field, String value) {
+		return submit((pipeline) -> pipeline.hset(key, field, value));
+	}
+
+	/**
+	 * 一共flush了多少批
+	 *
+	 * @return long
+	 */
+	public long batchCount() {
+		return batches.sum();
+	}
+
+	/**
+	 * 平均每批多少条命令
+	 *
+	 * @return double
+	 */
+	public double avgBatchSize() {
+		long batchCount = batches.sum();
+		return batchCount == 0 ? 0 : (double) commands.sum() / batchCount;
+	}
+
+	/**
+	 * 不再接收新命令, 已经排队的命令会flush完
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Thread flusher : flushers) {
+			flusher.interrupt();
+		}
+	}
+
+	private void flushLoop() {
+		List<Command<?>> batch = new ArrayList<>(batchSize);
+		while (!closed || !queue.isEmpty()) {
+			try {
+				Command<?> first = closed ? queue.poll() : queue.take();
+				if (first == null) {
+					break;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + flushIntervalNanos;
+				while (batch.size() < batchSize) {
+					queue.drainTo(batch, batchSize - batch.size());
+					long remaining = deadline - System.nanoTime();
+					if (batch.size() >= batchSize || remaining <= 0) {
+						break;
+					}
+					Command<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				// close()的时候会被打断, 把已经拿到的命令flush完, 回到循环开头把队列剩下的也flush完再退出
+			}
+			if (!batch.isEmpty()) {
+				flush(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private void flush(List<Command<?>> batch) {
+		batches.increment();
+		commands.add(batch.size());
+		try {
+			operations.executePipelined((pipeline) -> {
+				for (Command<?> command : batch) {
+					command.enqueue(pipeline);
+				}
+			});
+		} catch (Throwable e) {
+			log.error("Flush {} pipelined commands failed", batch.size(), e);
+			for (Command<?> command : batch) {
+				command.future.completeExceptionally(e);
+			}
+			return;
+		}
+
+		for (Command<?> command : batch) {
+			command.complete();
+		}
+	}
+
+	private static final class Command<R> {
+
+		private final Function<Pipeline, Response<R>> command;
+
+		private final CompletableFuture<R> future = new CompletableFuture<>();
+
+		private Response<R> response;
+
+		private Command(Function<Pipeline, Response<R>> command) {
+			this.command = command;
+		}
+
+		private void enqueue(Pipeline pipeline) {
+			response = command.apply(pipeline);
+		}
+
+		private void complete() {
+			try {
+				future.complete(response.get());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,500 @@
+package com.loserico.cache.operations;
+
+import com.loserico.cache.exception.JedisValueOperationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.loserico.cache.utils.ByteUtils.toBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 大value透明分块存储
+ * <p>
+ * 几百KB以上的value一条SET会阻塞Redis和网络, 这里超过threshold的value拆成多个chunkSize大小的分块key,
+ * 原来的key里只放一个很小的manifest:
+ * <ul>
+ *     <li/>manifest格式: 1字节魔数(0xF6) + 1字节格式版本 + 8字节版本号 + 8字节总长度 + 4字节分块大小 + 4字节分块数,
+ *          0xF6在UTF-8里不会出现, 和Codecs(0xC0)、RefreshAhead(0xF5)的数据头也不冲突
+ *     <li/>分块key是 key:chunk:版本号:序号, 每次写都用一个新的随机版本号, 写好的分块不会再被修改
+ *     <li/>写: 先用Pipeline分批写所有分块, 再用Lua脚本原子地把manifest换成新版本, 被替换掉的旧版本的分块延迟一会儿过期;
+ *          不过期的value的分块先带一个临时的过期时间(PENDING_SECONDS)写进去, manifest切换成功之后才PERSIST, 中途失败的话分块自己过期, 不会没人认领
+ *     <li/>小value覆盖、DEL、UNLINK、EXPIRE也通过Lua脚本执行, 脚本顺便看一眼原来的值是不是manifest, 是的话它的分块跟着延迟过期或者一起过期,
+ *          分块不会因为manifest没了而永远留在Redis里
+ *     <li/>读: 先GET到manifest, 再分批MGET这个版本的分块; 集群模式下分块分散在不同的master上, 每个master一个Pipeline并行读
+ *     <li/>版本号保证不会读到拼起来的半新半旧的值: 读的过程中被覆盖了, 旧版本的分块过期后读不到, 重新读manifest换成新版本重读
+ * </ul>
+ * 带过期时间的value, 分块的过期时间比manifest稍长。
+ * 分块只认JedisUtils的写接口: 绕过JedisUtils直接对manifest执行SET/DEL/EXPIRE(比如自己写的Lua脚本、redis-cli)的话, 分块不会被清理
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 07:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public final class ChunkedValues {
+
+	public static final byte MAGIC = (byte) 0xF6;
+
+	private static final byte FORMAT = 1;
+
+	private static final int MANIFEST_LENGTH = 1 + 1 + 8 + 8 + 4 + 4;
+
+	private static final String SWAP_SCRIPT = "/lua-scripts/chunkSwap.lua";
+
+	private static final String DELETE_SCRIPT = "/lua-scripts/chunkDel.lua";
+
+	private static final String EXPIRE_SCRIPT = "/lua-scripts/chunkExpire.lua";
+
+	/**
+	 * 一次Pipeline最多读写多少个分块, 控制一次往返占用的内存
+	 */
+	private static final int WINDOW = 16;
+
+	/**
+	 * 被覆盖的旧版本分块多留这么久, 让正在读旧版本的读完
+	 */
+	private static final int RETIRE_SECONDS = 30;
+
+	/**
+	 * 不过期的value的分块在manifest切换成功之前的临时过期时间, 要比写完所有分块的时间长
+	 */
+	private static final int PENDING_SECONDS = 300;
+
+	/**
+	 * 分块比manifest晚这么久过期, manifest还在的时候分块一定还在
+	 */
+	private static final int TTL_PADDING_SECONDS = 60;
+
+	/**
+	 * 读的过程中被覆盖, 最多换几次版本重读
+	 */
+	private static final int MAX_RETRIES = 3;
+
+	private final JedisOperations operations;
+
+	private final ScriptRegistry scripts;
+
+	private final int threshold;
+
+	private final int chunkSize;
+
+	/**
+	 * @param operations
+	 * @param scripts
+	 * @param threshold  超过这么多字节的value分块存, 小于1表示不分块, 但是照样能读已经分块的value
+	 * @param chunkSize  每个分块多少字节
+	 */
+	public ChunkedValues(JedisOperations operations, ScriptRegistry scripts, int threshold, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize必须大于0");
+		}
+		this.operations = operations;
+		this.scripts = scripts;
+		this.threshold = threshold;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * 是否开启了分块; 没开启的话写和删都直接执行普通命令, 读照样能读已经分块的value
+	 *
+	 * @return boolean
+	 */
+	public boolean isEnabled() {
+		return threshold > 0;
+	}
+
+	/**
+	 * value是否要分块存
+	 *
+	 * @param value
+	 * @return boolean
+	 */
+	public boolean shouldChunk(byte[] value) {
+		return threshold > 0 && value != null && value.length > threshold;
+	}
+
+	/**
+	 * 从Redis读到的值是不是manifest
+	 *
+	 * @param value
+	 * @return boolean
+	 */
+	public static boolean isManifest(byte[] value) {
+		return value != null && value.length == MANIFEST_LENGTH && value[0] == MAGIC && value[1] == FORMAT;
+	}
+
+	/**
+	 * SET, 不过期; 超过threshold的分块存, 被覆盖掉的如果是分块存的value, 它的分块延迟过期
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void set(byte[] key, byte[] value) {
+		store(key, value, 0);
+	}
+
+	/**
+	 * SET并设置过期时间; 和EXPIRE一样, seconds小于1表示马上过期, 直接删掉key
+	 *
+	 * @param key
+	 * @param value
+	 * @param seconds
+	 */
+	public void set(byte[] key, byte[] value, int seconds) {
+		if (seconds < 1) {
+			delete(Collections.singletonList(key), false);
+			return;
+		}
+		store(key, value, seconds);
+	}
+
+	/**
+	 * 批量SET, 不过期; 大value分块存, 其余的每个key一个脚本, 按master分组Pipeline执行
+	 *
+	 * @param keys
+	 * @param values
+	 */
+	public void mset(List<byte[]> keys, List<byte[]> values) {
+		mset(keys, values, new int[keys.size()]);
+	}
+
+	/**
+	 * 批量SET, 每个key自己的过期时间, 小于1表示不过期
+	 *
+	 * @param keys
+	 * @param values
+	 * @param seconds 和keys一一对应
+	 */
+	public void mset(List<byte[]> keys, List<byte[]> values, int[] seconds) {
+		List<byte[]> smallKeys = new ArrayList<>(keys.size());
+		List<byte[]> smallValues = new ArrayList<>(keys.size());
+		List<byte[]> smallSeconds = new ArrayList<>(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			if (shouldChunk(values.get(i))) {
+				write(keys.get(i), values.get(i), seconds[i]);
+			} else {
+				smallKeys.add(keys.get(i));
+				smallValues.add(values.get(i));
+				smallSeconds.add(toBytes(seconds[i]));
+			}
+		}
+		List<Object> olds = scripts.evalEach(SWAP_SCRIPT, smallKeys, (i) -> new byte[][]{smallValues.get(i), smallSeconds.get(i)});
+		RuntimeException error = null;
+		for (int i = 0; i < smallKeys.size(); i++) {
+			Object old = olds.get(i);
+			if (old instanceof RuntimeException) {
+				error = (RuntimeException) old;
+			} else {
+				expireChunks(smallKeys.get(i), (byte[]) old, RETIRE_SECONDS);
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * DEL/UNLINK, 删掉的如果是分块存的value, 它的分块延迟过期
+	 *
+	 * @param keys
+	 * @param unlink true 用UNLINK, 大value在Redis的后台线程里释放
+	 * @return long 实际删除的key的数量
+	 */
+	public long delete(List<byte[]> keys, boolean unlink) {
+		byte[] mode = toBytes(unlink ? 1 : 0);
+		List<Object> results;
+		if (keys.size() == 1) {
+			Object result = scripts.eval(DELETE_SCRIPT, 1, keys.get(0), mode);
+			results = Collections.singletonList(result);
+		} else {
+			results = scripts.evalEach(DELETE_SCRIPT, keys, (i) -> new byte[][]{mode});
+		}
+		long deleted = 0;
+		RuntimeException error = null;
+		for (int i = 0; i < keys.size(); i++) {
+			if (results.get(i) instanceof RuntimeException) {
+				error = (RuntimeException) results.get(i);
+				continue;
+			}
+			List<?> result = (List<?>) results.get(i);
+			deleted += (Long) result.get(0);
+			expireChunks(keys.get(i), (byte[]) result.get(1), RETIRE_SECONDS);
+		}
+		if (error != null) {
+			throw error;
+		}
+		return deleted;
+	}
+
+	/**
+	 * EXPIRE, 分块存的value的分块跟着设置成稍晚一点过期
+	 *
+	 * @param key
+	 * @param seconds
+	 * @return boolean key存在并且设置成功
+	 */
+	public boolean expire(byte[] key, int seconds) {
+		List<?> result = scripts.eval(EXPIRE_SCRIPT, 1, key, toBytes(seconds), toBytes(0));
+		expireChunks(key, (byte[]) result.get(1), seconds > 0 ? seconds + TTL_PADDING_SECONDS : RETIRE_SECONDS);
+		return (Long) result.get(0) == 1;
+	}
+
+	/**
+	 * EXPIREAT, 分块存的value的分块跟着设置成稍晚一点过期
+	 *
+	 * @param key
+	 * @param unixTime 过期的时间戳, 单位秒
+	 * @return boolean key存在并且设置成功
+	 */
+	public boolean expireAt(byte[] key, long unixTime) {
+		List<?> result = scripts.eval(EXPIRE_SCRIPT, 1, key, toBytes(unixTime), toBytes(1));
+		long seconds = unixTime - System.currentTimeMillis() / 1000;
+		int chunkSeconds = seconds > 0 ? (int) Math.min(seconds + TTL_PADDING_SECONDS, Integer.MAX_VALUE) : RETIRE_SECONDS;
+		expireChunks(key, (byte[]) result.get(1), chunkSeconds);
+		return (Long) result.get(0) == 1;
+	}
+
+	/**
+	 * PERSIST, 分块存的value的分块也去掉过期时间
+	 *
+	 * @param key
+	 * @return boolean key存在并且原来有过期时间
+	 */
+	public boolean persist(byte[] key) {
+		List<?> result = scripts.eval(EXPIRE_SCRIPT, 1, key, toBytes(0), toBytes(2));
+		byte[] manifest = (byte[]) result.get(1);
+		if (isManifest(manifest)) {
+			persistChunks(key, Manifest.parse(manifest));
+		}
+		return (Long) result.get(0) == 1;
+	}
+
+	private void store(byte[] key, byte[] value, int seconds) {
+		if (shouldChunk(value)) {
+			write(key, value, seconds);
+			return;
+		}
+		byte[] old = scripts.eval(SWAP_SCRIPT, 1, key, value, toBytes(seconds));
+		expireChunks(key, old, RETIRE_SECONDS);
+	}
+
+	/**
+	 * 分块写入, 分块都写好之后才切换manifest, 读的一方要么读到完整的旧值, 要么读到完整的新值
+	 * <p>
+	 * 分块一开始都带过期时间: 不过期的value先用PENDING_SECONDS, 切换成功后再PERSIST; 写分块或者切换失败, 已经写进去的分块自己过期
+	 *
+	 * @param seconds 过期时间, 小于1表示不过期
+	 */
+	private void write(byte[] key, byte[] value, int seconds) {
+		Manifest manifest = new Manifest(ThreadLocalRandom.current().nextLong(), value.length, chunkSize);
+		for (int from = 0; from < manifest.count; from += WINDOW) {
+			int to = Math.min(from + WINDOW, manifest.count);
+			List<byte[]> keys = new ArrayList<>(to - from);
+			List<byte[]> chunks = new ArrayList<>(to - from);
+			for (int i = from; i < to; i++) {
+				keys.add(manifest.chunkKey(key, i));
+				int offset = i * chunkSize;
+				chunks.add(Arrays.copyOfRange(value, offset, offset + manifest.chunkLength(i)));
+			}
+			operations.mset(keys, chunks, seconds > 0 ? seconds + TTL_PADDING_SECONDS : PENDING_SECONDS);
+		}
+
+		byte[] encoded = manifest.encode();
+		byte[] old = scripts.eval(SWAP_SCRIPT, 1, key, encoded, toBytes(seconds));
+		expireChunks(key, old, RETIRE_SECONDS);
+		if (seconds > 0) {
+			return;
+		}
+
+		persistChunks(key, manifest);
+		/*
+		 * 切换之后到PERSIST之间被别人覆盖或者删掉的话, 别人给这些分块设置的延迟过期被PERSIST去掉了, 重新设置回去
+		 */
+		if (!Arrays.equals(encoded, operations.get(key))) {
+			expireChunks(key, encoded, RETIRE_SECONDS);
+		}
+	}
+
+	private void persistChunks(byte[] key, Manifest manifest) {
+		for (int from = 0; from < manifest.count; from += WINDOW) {
+			int to = Math.min(from + WINDOW, manifest.count);
+			List<byte[]> keys = new ArrayList<>(to - from);
+			for (int i = from; i < to; i++) {
+				keys.add(manifest.chunkKey(key, i));
+			}
+			operations.persist(keys);
+		}
+	}
+
+	/**
+	 * 按manifest把分块读回来拼成完整的value
+	 *
+	 * @param key
+	 * @param manifest GET key读到的manifest
+	 * @return byte[] 读的过程中key被删掉了返回null, 被普通SET覆盖了返回新的值
+	 */
+	public byte[] read(byte[] key, byte[] manifest) {
+		byte[] current = manifest;
+		for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+			Manifest m = Manifest.parse(current);
+			byte[] value = new byte[(int) m.length];
+			int[] offset = {0};
+			int fetched = fetch(key, m, (chunk) -> {
+				System.arraycopy(chunk, 0, value, offset[0], chunk.length);
+				offset[0] += chunk.length;
+			});
+			if (fetched == m.count) {
+				return value;
+			}
+			current = operations.get(key);
+			if (!isManifest(current)) {
+				return current;
+			}
+		}
+		log.warn("Chunks of {} keep missing after {} attempts", new String(key, UTF_8), MAX_RETRIES);
+		return null;
+	}
+
+	/**
+	 * 一个分块一个分块地写到out, 整个value不用放在堆里; 不是分块存的value直接整个写出去
+	 *
+	 * @param key
+	 * @param out
+	 * @return false 表示key不存在
+	 * @throws IOException
+	 */
+	public boolean read(byte[] key, OutputStream out) throws IOException {
+		byte[] current = operations.get(key);
+		for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+			if (current == null) {
+				return false;
+			}
+			if (!isManifest(current)) {
+				out.write(current);
+				return true;
+			}
+			Manifest m = Manifest.parse(current);
+			int fetched = fetch(key, m, out::write);
+			if (fetched == m.count) {
+				return true;
+			}
+			if (fetched > 0) {
+				// 已经写出去一部分了, 不能再换版本重读
+				throw new JedisValueOperationException(new String(key, UTF_8) + " was overwritten or expired while streaming");
+			}
+			current = operations.get(key);
+		}
+		log.warn("Chunks of {} keep missing after {} attempts", new String(key, UTF_8), MAX_RETRIES);
+		return false;
+	}
+
+	/**
+	 * 分批MGET分块交给sink, 遇到缺失或者长度不对的分块就停下
+	 *
+	 * @return 交给sink的分块数, 等于m.count表示读完整了
+	 */
+	private <E extends Exception> int fetch(byte[] key, Manifest m, ChunkSink<E> sink) throws E {
+		int fetched = 0;
+		for (int from = 0; from < m.count; from += WINDOW) {
+			int to = Math.min(from + WINDOW, m.count);
+			List<byte[]> keys = new ArrayList<>(to - from);
+			for (int i = from; i < to; i++) {
+				keys.add(m.chunkKey(key, i));
+			}
+			List<byte[]> chunks = operations.mget(keys);
+			for (int i = from; i < to; i++) {
+				byte[] chunk = chunks.get(i - from);
+				if (chunk == null || chunk.length != m.chunkLength(i)) {
+					return fetched;
+				}
+				sink.accept(chunk);
+				fetched++;
+			}
+		}
+		return fetched;
+	}
+
+	/**
+	 * old是manifest的话, 它的分块seconds秒后过期; 被覆盖、删除的时候延迟RETIRE_SECONDS, 正在读旧版本的还能读完
+	 */
+	private void expireChunks(byte[] key, byte[] old, int seconds) {
+		if (!isManifest(old)) {
+			return;
+		}
+		Manifest manifest = Manifest.parse(old);
+		for (int from = 0; from < manifest.count; from += WINDOW) {
+			int to = Math.min(from + WINDOW, manifest.count);
+			List<byte[]> keys = new ArrayList<>(to - from);
+			for (int i = from; i < to; i++) {
+				keys.add(manifest.chunkKey(key, i));
+			}
+			operations.expire(keys, seconds);
+		}
+	}
+
+	@FunctionalInterface
+	private interface ChunkSink<E extends Exception> {
+
+		void accept(byte[] chunk) throws E;
+	}
+
+	private static final class Manifest {
+
+		private final long version;
+
+		private final long length;
+
+		private final int chunkSize;
+
+		private final int count;
+
+		private Manifest(long version, long length, int chunkSize) {
+			this.version = version;
+			this.length = length;
+			this.chunkSize = chunkSize;
+			this.count = (int) ((length + chunkSize - 1) / chunkSize);
+		}
+
+		private static Manifest parse(byte[] data) {
+			ByteBuffer buffer = ByteBuffer.wrap(data, 2, MANIFEST_LENGTH - 2);
+			long version = buffer.getLong();
+			long length = buffer.getLong();
+			int chunkSize = buffer.getInt();
+			return new Manifest(version, length, chunkSize);
+		}
+
+		private byte[] encode() {
+			return ByteBuffer.allocate(MANIFEST_LENGTH)
+					.put(MAGIC)
+					.put(FORMAT)
+					.putLong(version)
+					.putLong(length)
+					.putInt(chunkSize)
+					.putInt(count)
+					.array();
+		}
+
+		private int chunkLength(int index) {
+			return (int) Math.min(chunkSize, length - (long) index * chunkSize);
+		}
+
+		private byte[] chunkKey(byte[] key, int index) {
+			byte[] suffix = (":chunk:" + Long.toHexString(version) + ":" + index).getBytes(UTF_8);
+			byte[] chunkKey = Arrays.copyOf(key, key.length + suffix.length);
+			System.arraycopy(suffix, 0, chunkKey, key.length, suffix.length);
+			return chunkKey;
+		}
+	}
+}
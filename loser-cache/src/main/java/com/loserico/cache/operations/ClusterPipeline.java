@@ -0,0 +1,263 @@
+package com.loserico.cache.operations;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.cache.exception.JedisException;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisAskDataException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 集群模式下的批量操作
+ * <p>
+ * JedisCluster本身不支持Pipeline, 这里自己维护一份 slot -> master 的路由表(CLUSTER SLOTS),
+ * 把一批key按CRC16 slot分到各自的master上, 每个master一个Pipeline并行执行, 最后按输入顺序拼回结果。
+ * <ul>
+ *     <li/>MOVED: 刷新路由表后重新分组重试, 最多重试MAX_REDIRECTS次
+ *     <li/>ASK、路由表里找不到节点、重试次数用完: 退回到JedisCluster逐个执行, 由JedisCluster自己处理重定向
+ * </ul>
+ * <p>
+ * Copyright: Copyright (c) 2026-10-17 17:40
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+final class ClusterPipeline {
+
+	private static final int SLOTS = 16384;
+
+	private static final int MAX_REDIRECTS = 5;
+
+	private static final int NCPUS = Runtime.getRuntime().availableProcessors();
+
+	private final JedisCluster jedisCluster;
+
+	/**
+	 * 下标是slot, 值是master的 host:port, 和 JedisCluster.getClusterNodes() 的key一致
+	 */
+	private volatile String[] slotOwners;
+
+	/**
+	 * 每个master一个任务, 任务数不会超过master的数量
+	 */
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(NCPUS, NCPUS,
+			60, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(),
+			new ThreadFactoryBuilder()
+					.setNameFormat("loser-cluster-pipeline-%d")
+					.setDaemon(true)
+					.build());
+
+	ClusterPipeline(JedisCluster jedisCluster) {
+		this.jedisCluster = jedisCluster;
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * 对keys里的每个key执行一条命令, 返回结果和keys的顺序一致
+	 *
+	 * @param keys      决定路由的key
+	 * @param pipelined 第i个key在Pipeline里要执行的命令
+	 * @param single    第i个key不走Pipeline时的执行方式
+	 * @return List<R>
+	 */
+	<R> List<R> execute(List<byte[]> keys, BiFunction<Pipeline, Integer, Response<R>> pipelined, IntFunction<R> single) {
+		return execute(keys, pipelined, single, false);
+	}
+
+	/**
+	 * @param keepErrors true 某个key执行出错(MOVED、ASK以外的错误回复)不抛异常, 它对应的结果是那个JedisDataException,
+	 *                   其他key照常执行; 调用方要能处理结果里的异常对象
+	 */
+	@SuppressWarnings("unchecked")
+	<R> List<R> execute(List<byte[]> keys, BiFunction<Pipeline, Integer, Response<R>> pipelined, IntFunction<R> single,
+	                    boolean keepErrors) {
+		Object[] results = new Object[keys.size()];
+		List<Integer> pending = new ArrayList<>(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			pending.add(i);
+		}
+		List<Integer> fallback = new ArrayList<>();
+
+		for (int attempt = 0; attempt <= MAX_REDIRECTS && !pending.isEmpty(); attempt++) {
+			String[] owners = slotOwners();
+			Map<String, List<Integer>> byNode = new HashMap<>();
+			for (Integer i : pending) {
+				String node = owners[JedisClusterCRC16.getSlot(keys.get(i))];
+				if (node == null) {
+					fallback.add(i);
+				} else {
+					byNode.computeIfAbsent(node, (k) -> new ArrayList<>()).add(i);
+				}
+			}
+
+			Map<String, JedisPool> nodes = jedisCluster.getClusterNodes();
+			List<Future<Batch>> futures = new ArrayList<>(byNode.size());
+			for (Map.Entry<String, List<Integer>> entry : byNode.entrySet()) {
+				JedisPool pool = nodes.get(entry.getKey());
+				if (pool == null) {
+					fallback.addAll(entry.getValue());
+					continue;
+				}
+				futures.add(executor.submit(() -> runBatch(pool, entry.getValue(), pipelined, results, keepErrors)));
+			}
+
+			pending = new ArrayList<>();
+			boolean stale = false;
+			for (Future<Batch> future : futures) {
+				Batch batch = join(future);
+				pending.addAll(batch.moved);
+				fallback.addAll(batch.ask);
+				stale |= !batch.moved.isEmpty();
+			}
+			if (stale) {
+				refreshSlots();
+			}
+		}
+
+		fallback.addAll(pending);
+		for (Integer i : fallback) {
+			try {
+				results[i] = single.apply(i);
+			} catch (JedisDataException e) {
+				if (!keepErrors) {
+					throw e;
+				}
+				results[i] = e;
+			}
+		}
+		return (List<R>) Arrays.asList(results);
+	}
+
+	/**
+	 * 当前路由表里所有的master
+	 *
+	 * @return List<String> host:port
+	 */
+	List<String> masters() {
+		return Arrays.stream(refreshSlots())
+				.filter(Objects::nonNull)
+				.distinct()
+				.collect(Collectors.toList());
+	}
+
+	private <R> Batch runBatch(JedisPool pool, List<Integer> indexes,
+	                           BiFunction<Pipeline, Integer, Response<R>> pipelined, Object[] results, boolean keepErrors) {
+		Batch batch = new Batch();
+		try (Jedis jedis = pool.getResource()) {
+			Pipeline pipeline = jedis.pipelined();
+			List<Response<R>> responses = new ArrayList<>(indexes.size());
+			for (Integer i : indexes) {
+				responses.add(pipelined.apply(pipeline, i));
+			}
+			pipeline.sync();
+
+			for (int j = 0; j < indexes.size(); j++) {
+				Integer i = indexes.get(j);
+				try {
+					results[i] = responses.get(j).get();
+				} catch (JedisMovedDataException e) {
+					batch.moved.add(i);
+				} catch (JedisAskDataException e) {
+					batch.ask.add(i);
+				} catch (JedisDataException e) {
+					if (!keepErrors) {
+						throw e;
+					}
+					results[i] = e;
+				}
+			}
+		} catch (JedisConnectionException e) {
+			// 节点连不上了, 可能发生了主从切换, 刷新路由表后重试
+			log.warn("Pipeline to {} failed, retry after refreshing slots", pool, e);
+			batch.moved.clear();
+			batch.ask.clear();
+			batch.moved.addAll(indexes);
+		}
+		return batch;
+	}
+
+	private String[] slotOwners() {
+		String[] owners = slotOwners;
+		if (owners == null) {
+			owners = refreshSlots();
+		}
+		return owners;
+	}
+
+	/**
+	 * 从任意一个能连上的节点拉CLUSTER SLOTS重建路由表
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized String[] refreshSlots() {
+		JedisException last = null;
+		for (JedisPool pool : jedisCluster.getClusterNodes().values()) {
+			try (Jedis jedis = pool.getResource()) {
+				String[] owners = new String[SLOTS];
+				for (Object range : jedis.clusterSlots()) {
+					List<Object> slotInfo = (List<Object>) range;
+					int start = ((Long) slotInfo.get(0)).intValue();
+					int end = ((Long) slotInfo.get(1)).intValue();
+					List<Object> master = (List<Object>) slotInfo.get(2);
+					String node = new String((byte[]) master.get(0), UTF_8) + ":" + master.get(1);
+					Arrays.fill(owners, start, end + 1, node);
+				}
+				slotOwners = owners;
+				return owners;
+			} catch (RuntimeException e) {
+				last = new JedisException(e);
+			}
+		}
+		throw last != null ? last : new JedisException("No reachable cluster node");
+	}
+
+	private static Batch join(Future<Batch> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JedisException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new JedisException(cause);
+		}
+	}
+
+	private static final class Batch {
+
+		private final List<Integer> moved = new ArrayList<>();
+
+		private final List<Integer> ask = new ArrayList<>();
+	}
+}
@@ -1,14 +1,27 @@
 package com.loserico.cache.operations;
 
+import com.loserico.cache.concurrent.ThreadPool;
+import com.loserico.cache.exception.JedisException;
 import com.loserico.json.jackson.JacksonUtils;
 import lombok.extern.slf4j.Slf4j;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.StreamEntry;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.StreamPendingEntry;
+import redis.clients.jedis.Tuple;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntFunction;
 
 import static com.loserico.cache.utils.ByteUtils.toBytes;
 
@@ -27,8 +40,13 @@ public class JedisClusterOperations implements JedisOperations {
 	
 	private final JedisCluster jedisCluster;
 	
+	private static final ExecutorService THREAD_POOL = ThreadPool.newThreadPool();
+	
+	private final ClusterPipeline clusterPipeline;
+	
 	public JedisClusterOperations(JedisCluster jedisCluster) {
 		this.jedisCluster = jedisCluster;
+		this.clusterPipeline = new ClusterPipeline(jedisCluster);
 	}
 	
 	@Override
@@ -341,6 +359,27 @@ public class JedisClusterOperations implements JedisOperations {
 		return jedisCluster.eval(script, keyCount, params);
 	}
 	
+	@Override
+	public Object eval(byte[] script, int keyCount, byte[]... params) {
+		return jedisCluster.eval(script, keyCount, params);
+	}
+	
+	@Override
+	public String scriptLoadAll(String script) {
+		String sha1 = null;
+		Map<String, JedisPool> nodes = jedisCluster.getClusterNodes();
+		for (String node : masters()) {
+			JedisPool pool = nodes.get(node);
+			if (pool == null) {
+				throw new JedisException("Unknown cluster node " + node);
+			}
+			try (Jedis jedis = pool.getResource()) {
+				sha1 = jedis.scriptLoad(script);
+			}
+		}
+		return sha1;
+	}
+	
 	@Override
 	public String scriptLoad(String script, String sampleKey) {
 		return jedisCluster.scriptLoad(script, sampleKey);
@@ -366,23 +405,215 @@ public class JedisClusterOperations implements JedisOperations {
 		return jedisCluster.evalsha(sha1, keyCount, params);
 	}
 	
+	@Override
+	public List<Object> evalshaEach(byte[] sha1, List<byte[]> keys, IntFunction<byte[][]> args) {
+		return clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.evalsha(sha1, 1, keyAndArgs(keys.get(i), args.apply(i))),
+				(i) -> jedisCluster.evalsha(sha1, 1, keyAndArgs(keys.get(i), args.apply(i))),
+				true);
+	}
+	
+	@Override
+	public List<Object> evalEach(byte[] script, List<byte[]> keys, IntFunction<byte[][]> args) {
+		return clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.eval(script, 1, keyAndArgs(keys.get(i), args.apply(i))),
+				(i) -> jedisCluster.eval(script, 1, keyAndArgs(keys.get(i), args.apply(i))),
+				true);
+	}
+	
 	@Override
 	public Long publish(byte[] channel, byte[] message) {
 		return jedisCluster.publish(channel, message);
 	}
 	
+	/**
+	 * Cluster模式下PUBLISH会广播到所有节点, 所以随便订阅一个节点就可以收到所有消息
+	 * subscribe是阻塞的, 交给线程池执行
+	 *
+	 * @param jedisPubSub
+	 * @param channels
+	 */
 	@Override
 	public void subscribe(JedisPubSub jedisPubSub, String... channels) {
-		log.info("Not implemented yet!");
+		THREAD_POOL.execute(() -> jedisCluster.subscribe(jedisPubSub, channels));
 	}
 	
 	@Override
 	public void psubscribe(JedisPubSub jedisPubSub, String... patterns) {
-		log.info("Not implemented yet!");
+		THREAD_POOL.execute(() -> jedisCluster.psubscribe(jedisPubSub, patterns));
+	}
+	
+	@Override
+	public void subscribeBlocking(JedisPubSub jedisPubSub, String... channels) {
+		jedisCluster.subscribe(jedisPubSub, channels);
+	}
+	
+	@Override
+	public List<byte[]> mget(List<byte[]> keys) {
+		return clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.get(keys.get(i)),
+				(i) -> jedisCluster.get(keys.get(i)));
+	}
+	
+	@Override
+	public void mset(List<byte[]> keys, List<byte[]> values) {
+		clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.set(keys.get(i), values.get(i)),
+				(i) -> jedisCluster.set(keys.get(i), values.get(i)));
+	}
+	
+	@Override
+	public void mset(List<byte[]> keys, List<byte[]> values, int seconds) {
+		clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.setex(keys.get(i), seconds, values.get(i)),
+				(i) -> jedisCluster.setex(keys.get(i), seconds, values.get(i)));
+	}
+	
+	@Override
+	public void mset(List<byte[]> keys, List<byte[]> values, int[] seconds) {
+		clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.setex(keys.get(i), seconds[i], values.get(i)),
+				(i) -> jedisCluster.setex(keys.get(i), seconds[i], values.get(i)));
+	}
+	
+	@Override
+	public void expire(List<byte[]> keys, int seconds) {
+		clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.expire(keys.get(i), seconds),
+				(i) -> jedisCluster.expire(keys.get(i), seconds));
+	}
+	
+	@Override
+	public void persist(List<byte[]> keys) {
+		clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.persist(keys.get(i)),
+				(i) -> jedisCluster.persist(keys.get(i)));
+	}
+	
+	@Override
+	public Long unlink(List<byte[]> keys) {
+		List<Long> results = clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.unlink(keys.get(i)),
+				(i) -> jedisCluster.unlink(keys.get(i)));
+		return results.stream().mapToLong(Long::longValue).sum();
+	}
+	
+	@Override
+	public Long del(List<byte[]> keys) {
+		List<Long> results = clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.del(keys.get(i)),
+				(i) -> jedisCluster.del(keys.get(i)));
+		return results.stream().mapToLong(Long::longValue).sum();
+	}
+	
+	@Override
+	public List<Map<byte[], byte[]>> hgetAll(List<byte[]> keys) {
+		return clusterPipeline.execute(keys,
+				(pipeline, i) -> pipeline.hgetAll(keys.get(i)),
+				(i) -> jedisCluster.hgetAll(keys.get(i)));
+	}
+	
+	@Override
+	public ScanResult<Map.Entry<byte[], byte[]>> hscan(byte[] key, byte[] cursor, ScanParams params) {
+		return jedisCluster.hscan(key, cursor, params);
+	}
+	
+	@Override
+	public ScanResult<byte[]> sscan(byte[] key, byte[] cursor, ScanParams params) {
+		return jedisCluster.sscan(key, cursor, params);
+	}
+	
+	@Override
+	public ScanResult<Tuple> zscan(byte[] key, byte[] cursor, ScanParams params) {
+		return jedisCluster.zscan(key, cursor, params);
+	}
+	
+	@Override
+	public List<String> masters() {
+		return clusterPipeline.masters();
+	}
+	
+	/**
+	 * JedisCluster.scan要求MATCH里带hash tag, 这里直接连到指定的master上SCAN
+	 */
+	@Override
+	public ScanResult<byte[]> scan(String node, byte[] cursor, ScanParams params) {
+		JedisPool pool = jedisCluster.getClusterNodes().get(node);
+		if (pool == null) {
+			throw new JedisException("Unknown cluster node " + node);
+		}
+		try (Jedis jedis = pool.getResource()) {
+			return jedis.scan(cursor, params);
+		}
+	}
+	
+	@Override
+	public StreamEntryID xadd(String key, Map<String, String> hash, long maxLen) {
+		return jedisCluster.xadd(key, StreamEntryID.NEW_ENTRY, hash, maxLen < 1 ? Long.MAX_VALUE : maxLen, true);
+	}
+	
+	@Override
+	public List<StreamEntryID> xadd(List<String> keys, List<Map<String, String>> hashes, long maxLen) {
+		long trimTo = maxLen < 1 ? Long.MAX_VALUE : maxLen;
+		List<byte[]> keyBytes = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			keyBytes.add(toBytes(key));
+		}
+		return clusterPipeline.execute(keyBytes,
+				(pipeline, i) -> pipeline.xadd(keys.get(i), StreamEntryID.NEW_ENTRY, hashes.get(i), trimTo, true),
+				(i) -> jedisCluster.xadd(keys.get(i), StreamEntryID.NEW_ENTRY, hashes.get(i), trimTo, true));
+	}
+	
+	@Override
+	public Long xlen(String key) {
+		return jedisCluster.xlen(key);
+	}
+	
+	@Override
+	public String xgroupCreate(String key, String group, StreamEntryID id) {
+		return jedisCluster.xgroupCreate(key, group, id, true);
+	}
+	
+	@Override
+	public Long xgroupDelConsumer(String key, String group, String consumer) {
+		return jedisCluster.xgroupDelConsumer(key, group, consumer);
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<StreamEntry> xreadGroup(String key, String group, String consumer, int count, long blockMillis, StreamEntryID id) {
+		List<Map.Entry<String, List<StreamEntry>>> streams = jedisCluster.xreadGroup(group, consumer, count,
+				Math.max(0, blockMillis), false, new AbstractMap.SimpleImmutableEntry<>(key, id));
+		if (streams == null || streams.isEmpty() || streams.get(0).getValue() == null) {
+			return new ArrayList<>();
+		}
+		return streams.get(0).getValue();
+	}
+	
+	@Override
+	public Long xack(String key, String group, StreamEntryID... ids) {
+		return jedisCluster.xack(key, group, ids);
+	}
+	
+	@Override
+	public List<StreamPendingEntry> xpending(String key, String group, int count, String consumer) {
+		return jedisCluster.xpending(key, group, null, null, count, consumer);
+	}
+	
+	@Override
+	public List<StreamEntry> xclaim(String key, String group, String consumer, long minIdleMillis, StreamEntryID... ids) {
+		return jedisCluster.xclaim(key, group, consumer, minIdleMillis, 0, 0, false, ids);
 	}
 	
 	@Override
 	public Jedis jedis() {
 		throw new UnsupportedOperationException("JedisClusterOperations不支持暴露Jedis");
 	}
+	
+	private static byte[][] keyAndArgs(byte[] key, byte[][] args) {
+		byte[][] params = new byte[args.length + 1][];
+		params[0] = key;
+		System.arraycopy(args, 0, params, 1, args.length);
+		return params;
+	}
 }
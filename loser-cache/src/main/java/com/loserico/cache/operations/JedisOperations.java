@@ -4,11 +4,18 @@ import com.loserico.cache.exception.OperationNotSupportedException;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.StreamEntry;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.StreamPendingEntry;
+import redis.clients.jedis.Tuple;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 /**
  * <p>
@@ -365,6 +372,179 @@ public interface JedisOperations {
 	
 	public Long del(final byte[] key);
 	
+	/**
+	 * 批量GET, 返回结果和keys的顺序一致, 不存在的key对应null
+	 * 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+	 *
+	 * @param keys
+	 * @return List<byte[]>
+	 */
+	public List<byte[]> mget(final List<byte[]> keys);
+	
+	/**
+	 * 批量SET, keys和values一一对应
+	 *
+	 * @param keys
+	 * @param values
+	 */
+	public void mset(final List<byte[]> keys, final List<byte[]> values);
+	
+	/**
+	 * 批量SETEX, 同样的过期时间; 单机/哨兵一个Pipeline, 集群模式下每个master一个Pipeline并行执行
+	 *
+	 * @param keys
+	 * @param values
+	 * @param seconds
+	 */
+	public void mset(final List<byte[]> keys, final List<byte[]> values, final int seconds);
+	
+	/**
+	 * 批量SETEX, 每个key自己的过期时间
+	 *
+	 * @param keys
+	 * @param values
+	 * @param seconds 和keys一一对应
+	 */
+	public void mset(final List<byte[]> keys, final List<byte[]> values, final int[] seconds);
+	
+	/**
+	 * 批量EXPIRE, 同样的过期时间
+	 *
+	 * @param keys
+	 * @param seconds
+	 */
+	public void expire(final List<byte[]> keys, final int seconds);
+	
+	/**
+	 * 批量PERSIST
+	 *
+	 * @param keys
+	 */
+	public void persist(final List<byte[]> keys);
+	
+	/**
+	 * 批量删除
+	 *
+	 * @param keys
+	 * @return Long 实际删除的key的数量
+	 */
+	public Long del(final List<byte[]> keys);
+	
+	/**
+	 * 批量UNLINK, 和DEL一样删除key, 但是value在后台线程里释放, 删大key不会阻塞Redis
+	 * 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+	 *
+	 * @param keys
+	 * @return Long 实际删除的key的数量
+	 */
+	public Long unlink(final List<byte[]> keys);
+	
+	/**
+	 * 批量HGETALL, 返回结果和keys的顺序一致, 不存在的key对应空Map
+	 *
+	 * @param keys
+	 * @return List<Map<byte[], byte[]>>
+	 */
+	public List<Map<byte[], byte[]>> hgetAll(final List<byte[]> keys);
+	
+	public ScanResult<Map.Entry<byte[], byte[]>> hscan(final byte[] key, final byte[] cursor, final ScanParams params);
+	
+	public ScanResult<byte[]> sscan(final byte[] key, final byte[] cursor, final ScanParams params);
+	
+	public ScanResult<Tuple> zscan(final byte[] key, final byte[] cursor, final ScanParams params);
+	
+	/**
+	 * 可以执行SCAN的节点, 单机/哨兵只有一个, 集群模式下是每个master(host:port)
+	 *
+	 * @return List<String>
+	 */
+	public List<String> masters();
+	
+	/**
+	 * 在指定节点上SCAN keyspace
+	 *
+	 * @param node   masters()返回的节点
+	 * @param cursor
+	 * @param params
+	 * @return ScanResult<byte[]>
+	 */
+	public ScanResult<byte[]> scan(final String node, final byte[] cursor, final ScanParams params);
+	
+	/**
+	 * XADD, 自动生成id
+	 *
+	 * @param key
+	 * @param hash
+	 * @param maxLen 超过这么长按MAXLEN ~ 近似裁剪, 小于1表示不裁剪
+	 * @return StreamEntryID
+	 */
+	public StreamEntryID xadd(final String key, final Map<String, String> hash, final long maxLen);
+	
+	/**
+	 * 批量XADD, 通过Pipeline一次发出去, 返回的id和输入顺序一致
+	 * 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+	 *
+	 * @param keys   每一条消息写到哪个stream
+	 * @param hashes 消息
+	 * @param maxLen 超过这么长按MAXLEN ~ 近似裁剪, 小于1表示不裁剪
+	 * @return List<StreamEntryID>
+	 */
+	public List<StreamEntryID> xadd(final List<String> keys, final List<Map<String, String>> hashes, final long maxLen);
+	
+	public Long xlen(final String key);
+	
+	/**
+	 * XGROUP CREATE key group id MKSTREAM, 消费组已经存在的话抛 BUSYGROUP 异常
+	 *
+	 * @param key
+	 * @param group
+	 * @param id 从哪条消息之后开始消费
+	 * @return String
+	 */
+	public String xgroupCreate(final String key, final String group, final StreamEntryID id);
+	
+	public Long xgroupDelConsumer(final String key, final String group, final String consumer);
+	
+	/**
+	 * XREADGROUP GROUP group consumer COUNT count BLOCK block STREAMS key id
+	 *
+	 * @param key
+	 * @param group
+	 * @param consumer
+	 * @param count
+	 * @param blockMillis 小于1表示不阻塞
+	 * @param id          StreamEntryID.UNRECEIVED_ENTRY(>)读新消息, 其他id读本消费者还没ack的消息
+	 * @return List<StreamEntry> 没有消息返回空列表
+	 */
+	public List<StreamEntry> xreadGroup(final String key, final String group, final String consumer, final int count,
+	                                    final long blockMillis, final StreamEntryID id);
+	
+	public Long xack(final String key, final String group, final StreamEntryID... ids);
+	
+	/**
+	 * XPENDING key group - + count [consumer]
+	 *
+	 * @param key
+	 * @param group
+	 * @param count
+	 * @param consumer 为null表示所有消费者
+	 * @return List<StreamPendingEntry>
+	 */
+	public List<StreamPendingEntry> xpending(final String key, final String group, final int count, final String consumer);
+	
+	/**
+	 * XCLAIM, 把空闲超过minIdleMillis的消息转给consumer
+	 *
+	 * @param key
+	 * @param group
+	 * @param consumer
+	 * @param minIdleMillis
+	 * @param ids
+	 * @return List<StreamEntry> 已经被裁剪掉的消息不会返回
+	 */
+	public List<StreamEntry> xclaim(final String key, final String group, final String consumer, final long minIdleMillis,
+	                                final StreamEntryID... ids);
+	
 	public default Object eval(final String script) {
 		throw new OperationNotSupportedException("这个API是针对单Instance或者Redis Sentinel的");
 	}
@@ -382,6 +562,8 @@ public interface JedisOperations {
 	
 	public Object eval(final String script, final int keyCount, final String... params);
 	
+	public Object eval(final byte[] script, final int keyCount, final byte[]... params);
+	
 	/**
 	 * 这个是默认实现, Redis单节点适用
 	 * @param script
@@ -435,6 +617,13 @@ public interface JedisOperations {
 		throw new OperationNotSupportedException();
 	}
 	
+	/**
+	 * 把脚本加载到每个master上, 集群模式下EVALSHA会路由到key所在的节点, 只在一个节点上加载的话别的节点会报NOSCRIPT
+	 * @param script
+	 * @return 脚本的SHA1
+	 */
+	public String scriptLoadAll(final String script);
+	
 	public default Object evalsha(final String sha1) {
 		throw new UnsupportedOperationException();
 	}
@@ -447,6 +636,28 @@ public interface JedisOperations {
 	
 	public Object evalsha(final byte[] sha1, final int keyCount, final byte[]... params);
 	
+	/**
+	 * 每个key执行一次 EVALSHA sha1 1 key args..., 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+	 * <p>
+	 * 某个key执行出错(比如NOSCRIPT)不会影响其他key, 也不抛异常, 它对应的返回值是那个异常
+	 *
+	 * @param sha1
+	 * @param keys
+	 * @param args 第i个key的参数
+	 * @return List<Object> 和keys一一对应的返回值
+	 */
+	public List<Object> evalshaEach(final byte[] sha1, final List<byte[]> keys, final IntFunction<byte[][]> args);
+	
+	/**
+	 * 和evalshaEach一样, 用脚本原文执行, NOSCRIPT的时候兜底用
+	 *
+	 * @param script
+	 * @param keys
+	 * @param args 第i个key的参数
+	 * @return List<Object> 和keys一一对应的返回值
+	 */
+	public List<Object> evalEach(final byte[] script, final List<byte[]> keys, final IntFunction<byte[][]> args);
+	
 	public Long publish(final byte[] channel, final byte[] message);
 	
 	/**
@@ -471,6 +682,13 @@ public interface JedisOperations {
 	 */
 	public void psubscribe(JedisPubSub jedisPubSub, String... patterns);
 	
+	/**
+	 * 在当前线程订阅频道, 一直阻塞到所有频道和模式都取消订阅; 连接断开时抛JedisConnectionException
+	 * @param jedisPubSub
+	 * @param channels
+	 */
+	public void subscribeBlocking(JedisPubSub jedisPubSub, String... channels);
+	
 	/**
 	 * 通过Redis pipeline执行
 	 * @return
@@ -488,4 +706,12 @@ public interface JedisOperations {
 	 * @return
 	 */
 	public Jedis jedis();
+	
+	/**
+	 * 被统计代理等装饰过的话返回真正执行命令的JedisOperations, 用来判断是不是集群模式
+	 * @return
+	 */
+	public default JedisOperations unwrap() {
+		return this;
+	}
 }
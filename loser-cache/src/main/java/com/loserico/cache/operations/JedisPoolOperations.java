@@ -2,6 +2,7 @@ package com.loserico.cache.operations;
 
 import com.loserico.cache.concurrent.ThreadPool;
 import com.loserico.cache.exception.JedisException;
+import com.loserico.cache.pool.AbstractRoutingRedisPool;
 import com.loserico.cache.utils.ByteUtils;
 import com.loserico.json.jackson.JacksonUtils;
 import org.slf4j.Logger;
@@ -9,14 +10,29 @@ import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.StreamEntry;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.StreamPendingEntry;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisDataException;
 import redis.clients.jedis.util.Pool;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 /**
  * <p>
@@ -32,14 +48,73 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	private static final Logger log = LoggerFactory.getLogger(JedisPoolOperations.class);
 	
+	/**
+	 * 单机/哨兵只有一个master, masters()返回这个名字
+	 */
+	private static final String MASTER = "master";
+	
 	private final Pool<Jedis> pool;
 	
+	/**
+	 * 每次从连接池借到连接后回调借连接花的纳秒数
+	 */
+	private volatile LongConsumer borrowListener;
+	
+	/**
+	 * 当前线程是否在readReplica()里面, 只有这时候只读命令才发到从库
+	 */
+	private static final ThreadLocal<Boolean> REPLICA_READS = new ThreadLocal<>();
+	
 	private static final ExecutorService THREAD_POOL = ThreadPool.newThreadPool();
 	
 	public JedisPoolOperations(Pool<Jedis> pool) {
 		this.pool = pool;
 	}
 	
+	/**
+	 * 统计从连接池借连接的等待时间
+	 *
+	 * @param borrowListener 参数是借连接花的纳秒数, null表示不统计
+	 */
+	@SuppressWarnings("unchecked")
+	public void setBorrowListener(LongConsumer borrowListener) {
+		this.borrowListener = borrowListener;
+		if (pool instanceof AbstractRoutingRedisPool) {
+			((AbstractRoutingRedisPool<Jedis>) pool).setBorrowListener(borrowListener);
+		}
+	}
+	
+	/**
+	 * supplier里执行的只读命令(GET、HGET、MGET、SCAN...)发到从库, 其他时候都走master
+	 * <p>
+	 * 从库的数据会落后master, 只有能接受读到旧值的读才放进来; 连接池不是配置了从库的AbstractRoutingRedisPool时没有区别
+	 *
+	 * @param supplier
+	 * @return R
+	 */
+	public static <R> R readReplica(Supplier<R> supplier) {
+		Boolean previous = REPLICA_READS.get();
+		REPLICA_READS.set(Boolean.TRUE);
+		try {
+			return supplier.get();
+		} finally {
+			if (previous == null) {
+				REPLICA_READS.remove();
+			} else {
+				REPLICA_READS.set(previous);
+			}
+		}
+	}
+	
+	/**
+	 * 当前线程是否在readReplica()里面, 这时候读到的可能是旧值, 本地缓存不回填
+	 *
+	 * @return boolean
+	 */
+	public static boolean isReplicaRead() {
+		return REPLICA_READS.get() != null;
+	}
+	
 	@Override
 	public String set(byte[] key, byte[] value) {
 		return operate((jedis) -> jedis.set(key, value));
@@ -52,17 +127,17 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public byte[] get(byte[] key) {
-		return operate((jedis) -> jedis.get(key));
+		return read((jedis) -> jedis.get(key));
 	}
 	
 	@Override
 	public Boolean exists(String key) {
-		return operate((jedis) -> jedis.exists(key));
+		return read((jedis) -> jedis.exists(key));
 	}
 	
 	@Override
 	public Boolean exists(byte[] key) {
-		return operate((jedis) -> jedis.exists(key));
+		return read((jedis) -> jedis.exists(key));
 	}
 	
 	@Override
@@ -77,7 +152,7 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public Double zscore(String key, String member) {
-		return operate((jedis) -> jedis.zscore(key, member));
+		return read((jedis) -> jedis.zscore(key, member));
 	}
 	
 	@Override
@@ -97,7 +172,7 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public Long zcard(String key) {
-		return operate((jedis) -> jedis.zcard(key));
+		return read((jedis) -> jedis.zcard(key));
 	}
 	
 	@Override
@@ -112,12 +187,12 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public Set<String> zrange(String key, long start, long end) {
-		return operate((jedis) -> jedis.zrange(key, start, end));
+		return read((jedis) -> jedis.zrange(key, start, end));
 	}
 	
 	@Override
 	public Set<String> zrangeByScore(String key, String min, String max) {
-		return operate(jedis -> jedis.zrangeByScore(key, min, max));
+		return read(jedis -> jedis.zrangeByScore(key, min, max));
 	}
 	
 	@Override
@@ -182,17 +257,17 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public Long llen(String key) {
-		return operate((jedis) -> jedis.llen(key));
+		return read((jedis) -> jedis.llen(key));
 	}
 	
 	@Override
 	public List<String> lrange(String key, long start, long stop) {
-		return operate((jedis) -> jedis.lrange(key, start, stop));
+		return read((jedis) -> jedis.lrange(key, start, stop));
 	}
 	
 	@Override
 	public List<byte[]> lrange(byte[] key, long start, long stop) {
-		return operate((jedis) -> jedis.lrange(key, start, stop));
+		return read((jedis) -> jedis.lrange(key, start, stop));
 	}
 	
 	@Override
@@ -217,37 +292,37 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public Long scard(String key) {
-		return operate((jedis) -> jedis.scard(key));
+		return read((jedis) -> jedis.scard(key));
 	}
 	
 	@Override
 	public Boolean sismember(byte[] key, byte[] member) {
-		return operate((jedis) -> jedis.sismember(key, member));
+		return read((jedis) -> jedis.sismember(key, member));
 	}
 	
 	@Override
 	public Set<byte[]> smembers(byte[] key) {
-		return operate((jedis) -> jedis.smembers(key));
+		return read((jedis) -> jedis.smembers(key));
 	}
 	
 	@Override
 	public Set<String> smembers(String key) {
-		return operate((jedis) -> jedis.smembers(key));
+		return read((jedis) -> jedis.smembers(key));
 	}
 	
 	@Override
 	public Boolean hexists(byte[] key, byte[] field) {
-		return operate((jedis) -> jedis.hexists(key, field));
+		return read((jedis) -> jedis.hexists(key, field));
 	}
 	
 	@Override
 	public Boolean hexists(String key, String field) {
-		return operate((jedis) -> jedis.hexists(key, field));
+		return read((jedis) -> jedis.hexists(key, field));
 	}
 	
 	@Override
 	public byte[] hget(byte[] key, byte[] field) {
-		return operate((jedis) -> jedis.hget(key, field));
+		return read((jedis) -> jedis.hget(key, field));
 	}
 	
 	@Override
@@ -262,27 +337,27 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public List<byte[]> hmget(byte[] key, byte[]... fields) {
-		return operate((jedis) -> jedis.hmget(key, fields));
+		return read((jedis) -> jedis.hmget(key, fields));
 	}
 	
 	@Override
 	public List<String> hmget(String key, String... fields) {
-		return operate((jedis) -> jedis.hmget(key, fields));
+		return read((jedis) -> jedis.hmget(key, fields));
 	}
 	
 	@Override
 	public Map<byte[], byte[]> hgetAll(byte[] key) {
-		return operate((jedis) -> jedis.hgetAll(key));
+		return read((jedis) -> jedis.hgetAll(key));
 	}
 	
 	@Override
 	public Map<String, String> hgetAll(String key) {
-		return operate((jedis) -> jedis.hgetAll(key));
+		return read((jedis) -> jedis.hgetAll(key));
 	}
 	
 	@Override
 	public List<String> hvals(String key) {
-		return operate((jedis) -> jedis.hvals(key));
+		return read((jedis) -> jedis.hvals(key));
 	}
 	
 	@Override
@@ -292,7 +367,7 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public Long hlen(byte[] key) {
-		return operate((jedis) -> jedis.hlen(key));
+		return read((jedis) -> jedis.hlen(key));
 	}
 	
 	@Override
@@ -322,12 +397,12 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public Long ttl(String key) {
-		return operate((jedis) -> jedis.ttl(key));
+		return read((jedis) -> jedis.ttl(key));
 	}
 	
 	@Override
 	public Long ttl(byte[] key) {
-		return operate((jedis) -> jedis.ttl(key));
+		return read((jedis) -> jedis.ttl(key));
 	}
 	
 	@Override
@@ -350,11 +425,21 @@ public class JedisPoolOperations implements JedisOperations {
 		return operate((jedis) -> jedis.eval(script, keyCount, params));
 	}
 	
+	@Override
+	public Object eval(byte[] script, int keyCount, byte[]... params) {
+		return operate((jedis) -> jedis.eval(script, keyCount, params));
+	}
+	
 	@Override
 	public String scriptLoad(String script) {
 		return operate((jedis) -> jedis.scriptLoad(script));
 	}
 	
+	@Override
+	public String scriptLoadAll(String script) {
+		return scriptLoad(script);
+	}
+	
 	@Override
 	public Object evalsha(String sha1) {
 		return operate((jedis) -> jedis.evalsha(sha1));
@@ -370,6 +455,46 @@ public class JedisPoolOperations implements JedisOperations {
 		return operate((jedis) -> jedis.evalsha(sha1, keyCount, params));
 	}
 	
+	@Override
+	public List<Object> evalshaEach(byte[] sha1, List<byte[]> keys, IntFunction<byte[][]> args) {
+		return evalEach(keys, (pipeline, i) -> pipeline.evalsha(sha1, 1, keyAndArgs(keys.get(i), args.apply(i))));
+	}
+	
+	@Override
+	public List<Object> evalEach(byte[] script, List<byte[]> keys, IntFunction<byte[][]> args) {
+		return evalEach(keys, (pipeline, i) -> pipeline.eval(script, 1, keyAndArgs(keys.get(i), args.apply(i))));
+	}
+	
+	private List<Object> evalEach(List<byte[]> keys, BiFunction<Pipeline, Integer, Response<Object>> command) {
+		if (keys.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return operate((jedis) -> {
+			Pipeline pipeline = jedis.pipelined();
+			List<Response<Object>> responses = new ArrayList<>(keys.size());
+			for (int i = 0; i < keys.size(); i++) {
+				responses.add(command.apply(pipeline, i));
+			}
+			pipeline.sync();
+			List<Object> results = new ArrayList<>(keys.size());
+			for (Response<Object> response : responses) {
+				try {
+					results.add(response.get());
+				} catch (JedisDataException e) {
+					results.add(e);
+				}
+			}
+			return results;
+		});
+	}
+	
+	private static byte[][] keyAndArgs(byte[] key, byte[][] args) {
+		byte[][] params = new byte[args.length + 1][];
+		params[0] = key;
+		System.arraycopy(args, 0, params, 1, args.length);
+		return params;
+	}
+	
 	@Override
 	public Long publish(byte[] channel, byte[] message) {
 		return operate((jedis) -> {
@@ -401,11 +526,233 @@ public class JedisPoolOperations implements JedisOperations {
 		THREAD_POOL.execute(() -> pool.getResource().psubscribe(jedisPubSub, patterns));
 	}
 	
+	/**
+	 * 连接断开的话Jedis会被标记为broken, close的时候销毁掉, 不会还回连接池
+	 *
+	 * @param jedisPubSub
+	 * @param channels
+	 */
+	@Override
+	public void subscribeBlocking(JedisPubSub jedisPubSub, String... channels) {
+		try (Jedis jedis = pool.getResource()) {
+			jedis.subscribe(jedisPubSub, channels);
+		}
+	}
+	
 	@Override
 	public String ping() {
 		return operate((jedis) -> jedis.ping());
 	}
 	
+	@Override
+	public List<byte[]> mget(List<byte[]> keys) {
+		if (keys.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return read((jedis) -> jedis.mget(keys.toArray(new byte[0][])));
+	}
+	
+	@Override
+	public void mset(List<byte[]> keys, List<byte[]> values) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		byte[][] keysvalues = new byte[keys.size() * 2][];
+		for (int i = 0; i < keys.size(); i++) {
+			keysvalues[i * 2] = keys.get(i);
+			keysvalues[i * 2 + 1] = values.get(i);
+		}
+		operate((jedis) -> jedis.mset(keysvalues));
+	}
+	
+	@Override
+	public void mset(List<byte[]> keys, List<byte[]> values, int seconds) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		operate((jedis) -> {
+			Pipeline pipeline = jedis.pipelined();
+			for (int i = 0; i < keys.size(); i++) {
+				pipeline.setex(keys.get(i), seconds, values.get(i));
+			}
+			pipeline.sync();
+			return null;
+		});
+	}
+	
+	@Override
+	public void mset(List<byte[]> keys, List<byte[]> values, int[] seconds) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		operate((jedis) -> {
+			Pipeline pipeline = jedis.pipelined();
+			for (int i = 0; i < keys.size(); i++) {
+				pipeline.setex(keys.get(i), seconds[i], values.get(i));
+			}
+			pipeline.sync();
+			return null;
+		});
+	}
+	
+	@Override
+	public void expire(List<byte[]> keys, int seconds) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		operate((jedis) -> {
+			Pipeline pipeline = jedis.pipelined();
+			for (byte[] key : keys) {
+				pipeline.expire(key, seconds);
+			}
+			pipeline.sync();
+			return null;
+		});
+	}
+	
+	@Override
+	public void persist(List<byte[]> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		operate((jedis) -> {
+			Pipeline pipeline = jedis.pipelined();
+			for (byte[] key : keys) {
+				pipeline.persist(key);
+			}
+			pipeline.sync();
+			return null;
+		});
+	}
+	
+	@Override
+	public Long unlink(List<byte[]> keys) {
+		if (keys.isEmpty()) {
+			return 0L;
+		}
+		return operate((jedis) -> jedis.unlink(keys.toArray(new byte[0][])));
+	}
+	
+	@Override
+	public Long del(List<byte[]> keys) {
+		if (keys.isEmpty()) {
+			return 0L;
+		}
+		return operate((jedis) -> jedis.del(keys.toArray(new byte[0][])));
+	}
+	
+	@Override
+	public List<Map<byte[], byte[]>> hgetAll(List<byte[]> keys) {
+		return read((jedis) -> {
+			Pipeline pipeline = jedis.pipelined();
+			List<Response<Map<byte[], byte[]>>> responses = new ArrayList<>(keys.size());
+			for (byte[] key : keys) {
+				responses.add(pipeline.hgetAll(key));
+			}
+			pipeline.sync();
+			List<Map<byte[], byte[]>> results = new ArrayList<>(keys.size());
+			for (Response<Map<byte[], byte[]>> response : responses) {
+				results.add(response.get());
+			}
+			return results;
+		});
+	}
+	
+	@Override
+	public ScanResult<Map.Entry<byte[], byte[]>> hscan(byte[] key, byte[] cursor, ScanParams params) {
+		return read((jedis) -> jedis.hscan(key, cursor, params));
+	}
+	
+	@Override
+	public ScanResult<byte[]> sscan(byte[] key, byte[] cursor, ScanParams params) {
+		return read((jedis) -> jedis.sscan(key, cursor, params));
+	}
+	
+	@Override
+	public ScanResult<Tuple> zscan(byte[] key, byte[] cursor, ScanParams params) {
+		return read((jedis) -> jedis.zscan(key, cursor, params));
+	}
+	
+	@Override
+	public List<String> masters() {
+		return Collections.singletonList(MASTER);
+	}
+	
+	@Override
+	public ScanResult<byte[]> scan(String node, byte[] cursor, ScanParams params) {
+		return operate((jedis) -> jedis.scan(cursor, params));
+	}
+	
+	@Override
+	public StreamEntryID xadd(String key, Map<String, String> hash, long maxLen) {
+		return operate((jedis) -> jedis.xadd(key, StreamEntryID.NEW_ENTRY, hash, maxLen < 1 ? Long.MAX_VALUE : maxLen, true));
+	}
+	
+	@Override
+	public List<StreamEntryID> xadd(List<String> keys, List<Map<String, String>> hashes, long maxLen) {
+		if (keys.isEmpty()) {
+			return new ArrayList<>();
+		}
+		long trimTo = maxLen < 1 ? Long.MAX_VALUE : maxLen;
+		return operate((jedis) -> {
+			Pipeline pipeline = jedis.pipelined();
+			List<Response<StreamEntryID>> responses = new ArrayList<>(keys.size());
+			for (int i = 0; i < keys.size(); i++) {
+				responses.add(pipeline.xadd(keys.get(i), StreamEntryID.NEW_ENTRY, hashes.get(i), trimTo, true));
+			}
+			pipeline.sync();
+			List<StreamEntryID> ids = new ArrayList<>(responses.size());
+			for (Response<StreamEntryID> response : responses) {
+				ids.add(response.get());
+			}
+			return ids;
+		});
+	}
+	
+	@Override
+	public Long xlen(String key) {
+		return read((jedis) -> jedis.xlen(key));
+	}
+	
+	@Override
+	public String xgroupCreate(String key, String group, StreamEntryID id) {
+		return operate((jedis) -> jedis.xgroupCreate(key, group, id, true));
+	}
+	
+	@Override
+	public Long xgroupDelConsumer(String key, String group, String consumer) {
+		return operate((jedis) -> jedis.xgroupDelConsumer(key, group, consumer));
+	}
+	
+	/**
+	 * XREADGROUP会修改消费组的状态, 只能在master上执行; BLOCK期间Jedis会临时关掉读超时
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<StreamEntry> xreadGroup(String key, String group, String consumer, int count, long blockMillis, StreamEntryID id) {
+		List<Map.Entry<String, List<StreamEntry>>> streams = operate((jedis) -> jedis.xreadGroup(group, consumer, count,
+				Math.max(0, blockMillis), false, new AbstractMap.SimpleImmutableEntry<>(key, id)));
+		if (streams == null || streams.isEmpty() || streams.get(0).getValue() == null) {
+			return new ArrayList<>();
+		}
+		return streams.get(0).getValue();
+	}
+	
+	@Override
+	public Long xack(String key, String group, StreamEntryID... ids) {
+		return operate((jedis) -> jedis.xack(key, group, ids));
+	}
+	
+	@Override
+	public List<StreamPendingEntry> xpending(String key, String group, int count, String consumer) {
+		return operate((jedis) -> jedis.xpending(key, group, null, null, count, consumer));
+	}
+	
+	@Override
+	public List<StreamEntry> xclaim(String key, String group, String consumer, long minIdleMillis, StreamEntryID... ids) {
+		return operate((jedis) -> jedis.xclaim(key, group, consumer, minIdleMillis, 0, 0, false, ids));
+	}
+	
 	@Override
 	public Jedis jedis() {
 		return pool.getResource();
@@ -413,7 +760,7 @@ public class JedisPoolOperations implements JedisOperations {
 	
 	@Override
 	public List<Object> executePipelined(Consumer<Pipeline> consumer) {
-		Jedis jedis = pool.getResource();
+		Jedis jedis = borrow();
 		try {
 			Pipeline pipelined = jedis.pipelined();
 			consumer.accept(pipelined);
@@ -427,7 +774,7 @@ public class JedisPoolOperations implements JedisOperations {
 	}
 	
 	private <R> R operate(Function<Jedis, R> func) {
-		Jedis jedis = pool.getResource();
+		Jedis jedis = borrow();
 		try {
 			return func.apply(jedis);
 		} catch (Throwable e) {
@@ -438,4 +785,32 @@ public class JedisPoolOperations implements JedisOperations {
 		}
 	}
 	
+	/**
+	 * 只读命令, 在readReplica()里面并且连接池是配置了从库的AbstractRoutingRedisPool时发到从库, 否则和operate()一样走master;
+	 * 默认走master, 写完马上读、NearCache回填、分块value的manifest和分块、SingleFlight的二次检查都不会读到落后的从库
+	 */
+	@SuppressWarnings("unchecked")
+	private <R> R read(Function<Jedis, R> func) {
+		if (!(pool instanceof AbstractRoutingRedisPool) || REPLICA_READS.get() == null) {
+			return operate(func);
+		}
+		try {
+			return ((AbstractRoutingRedisPool<Jedis>) pool).read(func);
+		} catch (Throwable e) {
+			log.error("", e);
+			throw new JedisException(e);
+		}
+	}
+	
+	private Jedis borrow() {
+		LongConsumer listener = borrowListener;
+		if (listener == null) {
+			return pool.getResource();
+		}
+		long begin = System.nanoTime();
+		Jedis jedis = pool.getResource();
+		listener.accept(System.nanoTime() - begin);
+		return jedis;
+	}
+	
 }
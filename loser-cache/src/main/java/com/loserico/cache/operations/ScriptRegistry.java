@@ -0,0 +1,372 @@
+package com.loserico.cache.operations;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.loserico.common.lang.resource.PropertyReader;
+import com.loserico.common.lang.utils.IOUtils;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Lua脚本注册表, 代替原来JedisUtils里第一次调用时才SCRIPT LOAD的shaHashs
+ * <ul>
+ *     <li/>SHA1在本地算, 不需要先SCRIPT LOAD拿到SHA1才能EVALSHA
+ *     <li/>启动时把lua-scripts下随jar发布的脚本加载到每个master上, 之后定期检查master列表, 有变化(集群扩容、主从切换)就重新加载一遍
+ *     <li/>EVALSHA报NOSCRIPT(Redis重启、SCRIPT FLUSH、还没来得及加载的新节点)时这一次直接用EVAL执行脚本原文,
+ *          同时在后台把所有脚本重新加载一遍, 不会因为脚本没加载而失败
+ *     <li/>业务自己的脚本也可以register进来, 享受同样的预加载和NOSCRIPT兜底
+ * </ul>
+ * 脚本按名字注册, 随jar发布的脚本名字就是classpath路径, 比如 /lua-scripts/unlock.lua;
+ * 没注册过的名字如果以/开头, 第一次用到时按classpath路径读取并注册
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 01:20
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+@Slf4j
+public class ScriptRegistry implements AutoCloseable {
+
+	private static final String SCRIPT_DIR = "/lua-scripts/";
+
+	/**
+	 * 随jar发布的脚本, 启动时全部预加载
+	 */
+	private static final List<String> BUNDLED = Arrays.asList(
+			"bloomAdd.lua", "bloomCheck.lua", "cas.lua", "chunkDel.lua", "chunkExpire.lua", "chunkSwap.lua", "delGet.lua",
+			"hash.lua", "hashSweep.lua", "incrExpire.lua", "incrIfExists.lua", "lpush.lua", "queueAck.lua",
+			"queueBatchPop.lua", "queueReap.lua", "queueRequeue.lua", "rateLimit.lua", "renewLocks.lua", "rwReadLock.lua",
+			"rwUnlock.lua", "rwWriteLock.lua", "semaphoreAcquire.lua", "semaphoreAvailable.lua", "semaphoreDrain.lua",
+			"semaphoreRelease.lua", "setExpire.lua", "setnx.lua", "spring-security-auth.lua", "spring-security-multi-auth.lua",
+			"sweeperLock.lua", "tokenBucketLease.lua", "unlock.lua");
+
+	private final JedisOperations operations;
+
+	private final Map<String, Script> scripts = new ConcurrentHashMap<>();
+
+	/**
+	 * 同一时刻只有一次后台重新加载
+	 */
+	private final AtomicBoolean reloading = new AtomicBoolean(false);
+
+	private final ScheduledThreadPoolExecutor loader;
+
+	/**
+	 * 上一次成功加载了所有脚本时的master列表
+	 */
+	private volatile Set<String> topology = Collections.emptySet();
+
+	private final LongAdder fallbacks = new LongAdder();
+	private final LongAdder reloads = new LongAdder();
+
+	/**
+	 * @param operations           执行脚本的JedisOperations
+	 * @param preload              是否预加载随jar发布的脚本
+	 * @param topologyCheckSeconds 多久检查一次master列表, 小于1表示不检查
+	 */
+	public ScriptRegistry(JedisOperations operations, boolean preload, long topologyCheckSeconds) {
+		this.operations = operations;
+		this.loader = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+				.setNameFormat("loser-script-loader-%d")
+				.setDaemon(true)
+				.build());
+		if (preload) {
+			for (String name : BUNDLED) {
+				script(SCRIPT_DIR + name);
+			}
+			checkTopology();
+		}
+		if (topologyCheckSeconds > 0) {
+			this.loader.scheduleWithFixedDelay(this::checkTopology, topologyCheckSeconds, topologyCheckSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * 根据redis.properties创建
+	 * <pre>
+	 * redis.script.preload=true
+	 * redis.script.topologyCheckSeconds=30
+	 * </pre>
+	 *
+	 * @param operations
+	 * @param propertyReader
+	 * @return ScriptRegistry
+	 */
+	public static ScriptRegistry create(JedisOperations operations, PropertyReader propertyReader) {
+		return new ScriptRegistry(operations,
+				propertyReader.getBoolean("redis.script.preload", true),
+				propertyReader.getInt("redis.script.topologyCheckSeconds", 30));
+	}
+
+	@Override
+	public void close() {
+		loader.shutdownNow();
+	}
+
+	/**
+	 * 注册一个脚本并加载到每个master上, 同名的脚本会被替换
+	 *
+	 * @param name   脚本名字, 之后eval的时候用
+	 * @param source 脚本原文
+	 * @return 脚本的SHA1
+	 */
+	public String register(String name, String source) {
+		Script script = new Script(name, source);
+		Script previous = scripts.put(name, script);
+		if (previous == null || !previous.sha1.equals(script.sha1)) {
+			try {
+				operations.scriptLoadAll(source);
+			} catch (Throwable e) {
+				// 加载失败不影响使用, eval的时候会走NOSCRIPT兜底
+				log.warn("Load script {} failed", name, e);
+			}
+		}
+		return script.sha1;
+	}
+
+	/**
+	 * 脚本的SHA1
+	 *
+	 * @param name
+	 * @return String
+	 */
+	public String sha1(String name) {
+		return script(name).sha1;
+	}
+
+	/**
+	 * 执行脚本, 返回值的类型和EVALSHA一样: 整数是Long, 字符串是String, 数组是List
+	 *
+	 * @param name     脚本名字
+	 * @param keyCount params中前keyCount个是key, 余下的是参数
+	 * @param params
+	 * @return T
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T eval(String name, int keyCount, String... params) {
+		Script script = script(name);
+		try {
+			return (T) operations.evalsha(script.sha1, keyCount, params);
+		} catch (RuntimeException e) {
+			if (!isNoScript(e)) {
+				throw e;
+			}
+			onNoScript(script);
+			return (T) operations.eval(script.source, keyCount, params);
+		}
+	}
+
+	/**
+	 * 执行脚本, 返回值的类型和二进制的EVALSHA一样: 整数是Long, 字符串是byte[], 数组是List
+	 *
+	 * @param name     脚本名字
+	 * @param keyCount params中前keyCount个是key, 余下的是参数
+	 * @param params
+	 * @return T
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T eval(String name, int keyCount, byte[]... params) {
+		Script script = script(name);
+		try {
+			return (T) operations.evalsha(script.sha1Bytes, keyCount, params);
+		} catch (RuntimeException e) {
+			if (!isNoScript(e)) {
+				throw e;
+			}
+			onNoScript(script);
+			return (T) operations.eval(script.sourceBytes, keyCount, params);
+		}
+	}
+
+	/**
+	 * 每个key执行一次脚本(脚本里只有KEYS[1]), 集群模式下按hash slot分组, 每个master一个Pipeline并行执行
+	 * <p>
+	 * 只有NOSCRIPT的那几个key改用EVAL重新执行, 已经执行过的不会再执行一遍;
+	 * 其他错误不抛异常, 出错的key对应的返回值是那个RuntimeException, 由调用方处理完成功的结果之后再决定怎么办
+	 *
+	 * @param name 脚本名字
+	 * @param keys
+	 * @param args 第i个key的参数
+	 * @return List<Object> 和keys一一对应, 类型和二进制的EVALSHA一样
+	 */
+	public List<Object> evalEach(String name, List<byte[]> keys, IntFunction<byte[][]> args) {
+		Script script = script(name);
+		List<Object> results = new ArrayList<>(operations.evalshaEach(script.sha1Bytes, keys, args));
+		List<Integer> missing = new ArrayList<>();
+		for (int i = 0; i < results.size(); i++) {
+			Object result = results.get(i);
+			if (result instanceof Throwable && isNoScript((Throwable) result)) {
+				missing.add(i);
+			}
+		}
+		if (missing.isEmpty()) {
+			return results;
+		}
+
+		onNoScript(script);
+		List<byte[]> retryKeys = new ArrayList<>(missing.size());
+		for (Integer i : missing) {
+			retryKeys.add(keys.get(i));
+		}
+		List<Object> retried = operations.evalEach(script.sourceBytes, retryKeys, (j) -> args.apply(missing.get(j)));
+		for (int j = 0; j < missing.size(); j++) {
+			results.set(missing.get(j), retried.get(j));
+		}
+		return results;
+	}
+
+	/**
+	 * 把所有注册过的脚本加载到每个master上, 有一个失败就不再继续(一般是连不上Redis)
+	 *
+	 * @return 是否全部加载成功
+	 */
+	public boolean reload() {
+		reloads.increment();
+		for (Script script : scripts.values()) {
+			try {
+				operations.scriptLoadAll(script.source);
+			} catch (Throwable e) {
+				log.warn("Load script {} failed", script.name, e);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 因为NOSCRIPT改用EVAL执行的次数
+	 *
+	 * @return long
+	 */
+	public long fallbackCount() {
+		return fallbacks.sum();
+	}
+
+	/**
+	 * 重新加载所有脚本的次数, 包括启动时的预加载
+	 *
+	 * @return long
+	 */
+	public long reloadCount() {
+		return reloads.sum();
+	}
+
+	private Script script(String name) {
+		Script script = scripts.get(name);
+		if (script != null) {
+			return script;
+		}
+		if (!name.startsWith("/")) {
+			throw new IllegalArgumentException("Script " + name + " is not registered");
+		}
+		return scripts.computeIfAbsent(name, (x) -> new Script(name, IOUtils.readClassPathFileAsString(name)));
+	}
+
+	private void onNoScript(Script script) {
+		fallbacks.increment();
+		if (!reloading.compareAndSet(false, true)) {
+			return;
+		}
+		log.warn("Script {} not found on redis, reload all scripts", script.name);
+		try {
+			loader.execute(() -> {
+				try {
+					reload();
+				} finally {
+					reloading.set(false);
+				}
+			});
+		} catch (Throwable e) {
+			reloading.set(false);
+		}
+	}
+
+	/**
+	 * master列表变了就重新加载所有脚本, 加载失败的话下一次检查时再试
+	 */
+	private void checkTopology() {
+		try {
+			Set<String> current = new HashSet<>(operations.masters());
+			if (current.equals(topology)) {
+				return;
+			}
+			if (!topology.isEmpty()) {
+				log.info("Redis masters changed from {} to {}, reload all scripts", topology, current);
+			}
+			if (reload()) {
+				topology = current;
+			}
+		} catch (Throwable e) {
+			log.warn("Check redis masters failed", e);
+		}
+	}
+
+	private static boolean isNoScript(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof JedisNoScriptException) {
+				return true;
+			}
+			if (cause.getMessage() != null && cause.getMessage().startsWith("NOSCRIPT")) {
+				return true;
+			}
+			if (cause.getCause() == cause) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private static String sha1Hex(String source) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(UTF_8));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Script {
+
+		private final String name;
+
+		private final String source;
+
+		private final byte[] sourceBytes;
+
+		private final String sha1;
+
+		private final byte[] sha1Bytes;
+
+		private Script(String name, String source) {
+			this.name = name;
+			this.source = source;
+			this.sourceBytes = source.getBytes(UTF_8);
+			this.sha1 = sha1Hex(source);
+			this.sha1Bytes = sha1.getBytes(UTF_8);
+		}
+	}
+}
@@ -1,19 +1,46 @@
 package com.loserico.cache.pool;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.loserico.cache.config.RedisProperties;
+import com.loserico.cache.exception.JedisException;
 import com.loserico.cache.factory.JedisPoolFactories;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 import redis.clients.jedis.util.Pool;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 
 /**
  * 可动态切换的Jedis Pool
  * <p>
+ * 每个Pool还可以配置若干从库做读写分离: read()/getReadResource()按readPolicy在健康的从库之间选一个,
+ * 写命令和Lua脚本(write()/getResource())总是走master; 后台每隔healthCheckMillis检查一遍从库,
+ * 连续失败failureThreshold次(或者和master断开了复制)的从库被摘掉, 恢复以后自动加回来; 没有健康的从库时读也走master。
+ * 从库的数据会落后master, 刚写完马上读、锁、计数器这类需要读到最新值的场景要用write()
+ * <p>
  * Copyright: Copyright (c) 2019-10-17 14:12
  * <p>
  * Company: Sexy Uncle Inc.
@@ -51,6 +78,53 @@ public abstract class AbstractRoutingRedisPool<T> extends Pool<T> {
 	 */
 	private String defaultTargetPoolName;
 
+	/**
+	 * 以JedisPool名字为key, 它的从库的配置属性为value
+	 */
+	private Map<String, List<RedisProperties>> replicaPropertiesMap = new HashMap<>();
+
+	/**
+	 * 读命令怎么在从库之间选
+	 */
+	private ReplicaPolicy readPolicy = ReplicaPolicy.ROUND_ROBIN;
+
+	/**
+	 * 多久检查一次从库
+	 */
+	private long healthCheckMillis = 1000;
+
+	/**
+	 * 从库连续失败多少次摘掉
+	 */
+	private int failureThreshold = 3;
+
+	/**
+	 * 这些命令可以发到从库, 其他的(包括EVAL/EVALSHA)都走master
+	 */
+	private static final Set<String> READ_ONLY_COMMANDS = new HashSet<>(Arrays.asList(
+			"GET", "MGET", "STRLEN", "GETRANGE", "EXISTS", "TTL", "PTTL", "TYPE",
+			"HGET", "HMGET", "HGETALL", "HKEYS", "HVALS", "HLEN", "HEXISTS", "HSTRLEN", "HSCAN",
+			"SMEMBERS", "SISMEMBER", "SCARD", "SRANDMEMBER", "SSCAN",
+			"ZRANGE", "ZREVRANGE", "ZRANGEBYSCORE", "ZREVRANGEBYSCORE", "ZSCORE", "ZRANK", "ZREVRANK", "ZCARD", "ZCOUNT", "ZSCAN",
+			"LRANGE", "LLEN", "LINDEX"));
+
+	/**
+	 * 以JedisPool名字为key, 它的从库为value
+	 */
+	private final Map<Object, Replicas<T>> replicas = new ConcurrentHashMap<>();
+
+	private final ScheduledThreadPoolExecutor healthChecker = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+			.setNameFormat("loser-replica-health-%d")
+			.setDaemon(true)
+			.build());
+
+	private final AtomicBoolean healthCheckStarted = new AtomicBoolean(false);
+
+	/**
+	 * read()/write()每次借到连接后回调借连接花的纳秒数, 包括从库的连接; null表示不统计
+	 */
+	private volatile LongConsumer borrowListener;
+
 	/**
 	 * Specify whether to apply a lenient fallback to the default Pool
 	 * if no specific Pool could be found for the current lookup key.
@@ -91,7 +165,7 @@ public abstract class AbstractRoutingRedisPool<T> extends Pool<T> {
 	 */
 	public Pool<T> determineTargetPool() {
 		Object lookupKey = determineCurrentLookupKey();
-		log.info("Current redis pool {}", lookupKey);
+		log.debug("Current redis pool {}", lookupKey);
 
 		Pool<T> pool = this.targetPools.get(lookupKey);
 
@@ -100,7 +174,7 @@ public abstract class AbstractRoutingRedisPool<T> extends Pool<T> {
 		 */
 		if (pool == null && (this.lenientFallback || lookupKey == null)) {
 			String defaultPoolName = defaultTargetPoolName.toLowerCase();
-			log.info("Switch to default redis pool {}", defaultPoolName);
+			log.debug("Switch to default redis pool {}", defaultPoolName);
 			pool = this.targetPools.get(defaultPoolName);
 		}
 		
@@ -111,6 +185,142 @@ public abstract class AbstractRoutingRedisPool<T> extends Pool<T> {
 	}
 
 
+	/**
+	 * 写连接, 总是当前Pool的master
+	 */
+	@Override
+	public T getResource() {
+		return determineTargetPool().getResource();
+	}
+
+	/**
+	 * 读连接, 按readPolicy选一个健康的从库, 没有的话返回master的连接
+	 * <p>
+	 * 直接拿连接统计不到EWMA延迟和正在执行的命令数, 尽量用read()
+	 *
+	 * @return T
+	 */
+	public T getReadResource() {
+		Replicas<T> group = currentReplicas();
+		ReplicaNode<T> node = group == null ? null : select(group);
+		return node == null ? getResource() : node.getPool().getResource();
+	}
+
+	/**
+	 * 在从库上执行读命令, 从库连不上就摘掉(连续失败failureThreshold次)并改到master上执行
+	 *
+	 * @param command
+	 * @return R
+	 */
+	public <R> R read(Function<T, R> command) {
+		Replicas<T> group = currentReplicas();
+		ReplicaNode<T> node = group == null ? null : select(group);
+		if (node == null) {
+			return write(command);
+		}
+		node.begin();
+		long begin = System.nanoTime();
+		try {
+			R result = executeOn(node.getPool(), command, borrowListener);
+			if (node.success(System.nanoTime() - begin)) {
+				group.refresh();
+			}
+			return result;
+		} catch (JedisConnectionException e) {
+			log.warn("Read from replica {} failed, fall back to master", node.getName(), e);
+			if (node.failure(failureThreshold)) {
+				log.warn("Replica {} removed", node.getName());
+				group.refresh();
+			}
+		} finally {
+			node.end();
+		}
+		return write(command);
+	}
+
+	/**
+	 * 在master上执行
+	 *
+	 * @param command
+	 * @return R
+	 */
+	public <R> R write(Function<T, R> command) {
+		return executeOn(determineTargetPool(), command, borrowListener);
+	}
+
+	/**
+	 * 按命令名路由, 只读命令走read(), 其他的走write()
+	 *
+	 * @param commandName 比如GET, HGETALL
+	 * @param command
+	 * @return R
+	 */
+	public <R> R execute(String commandName, Function<T, R> command) {
+		return isReadOnly(commandName) ? read(command) : write(command);
+	}
+
+	/**
+	 * 这个命令能不能发到从库
+	 *
+	 * @param commandName
+	 * @return boolean
+	 */
+	public static boolean isReadOnly(String commandName) {
+		return commandName != null && READ_ONLY_COMMANDS.contains(commandName.toUpperCase());
+	}
+
+	/**
+	 * 给一个Pool加一个从库
+	 *
+	 * @param poolName    targetPools里的名字
+	 * @param replicaName 从库的名字, 日志里用, 一般是host:port
+	 * @param pool        从库的连接池
+	 */
+	public void addReplica(String poolName, String replicaName, Pool<T> pool) {
+		Replicas<T> group = replicas.computeIfAbsent(poolName.toLowerCase(), (x) -> new Replicas<>());
+		group.nodes.add(new ReplicaNode<>(replicaName, pool));
+		group.refresh();
+		if (healthCheckStarted.compareAndSet(false, true)) {
+			healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckMillis, healthCheckMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 一个Pool的所有从库, 包括被摘掉的
+	 *
+	 * @param poolName
+	 * @return List<ReplicaNode<T>>
+	 */
+	public List<ReplicaNode<T>> replicas(String poolName) {
+		Replicas<T> group = replicas.get(poolName.toLowerCase());
+		return group == null ? Collections.emptyList() : Collections.unmodifiableList(group.nodes);
+	}
+
+	/**
+	 * 检查一个从库是否可用, 失败抛异常
+	 * <p>
+	 * 默认执行INFO replication, 和master断开复制的从库(数据可能已经很旧了)也算不可用
+	 *
+	 * @param pool
+	 */
+	protected void ping(Pool<T> pool) {
+		executeOn(pool, (resource) -> {
+			if (resource instanceof Jedis) {
+				String info = ((Jedis) resource).info("replication");
+				if (info != null && info.contains("master_link_status:down")) {
+					throw new JedisException("master link is down");
+				}
+			}
+			return null;
+		}, null);
+	}
+
+	@PreDestroy
+	public void stopHealthCheck() {
+		healthChecker.shutdownNow();
+	}
+
+
 	@PostConstruct
 	public void init() {
 		if (redisPropertiesMap != null && !redisPropertiesMap.isEmpty()) {
@@ -119,5 +329,134 @@ public abstract class AbstractRoutingRedisPool<T> extends Pool<T> {
 				targetPools.put(entry.getKey().toLowerCase(), pool);
 			}
 		}
+		if (replicaPropertiesMap != null) {
+			for (Entry<String, List<RedisProperties>> entry : replicaPropertiesMap.entrySet()) {
+				for (RedisProperties redisProperties : entry.getValue()) {
+					Pool<T> pool = (Pool<T>) JedisPoolFactories.poolFactory().createPool(redisProperties);
+					addReplica(entry.getKey(), redisProperties.getHost() + ":" + redisProperties.getPort(), pool);
+				}
+			}
+		}
+	}
+
+	private Replicas<T> currentReplicas() {
+		if (replicas.isEmpty()) {
+			return null;
+		}
+		Object lookupKey = determineCurrentLookupKey();
+		Replicas<T> group = lookupKey == null ? null : replicas.get(lookupKey);
+		/*
+		 * 和determineTargetPool()一样, 找不到指定的Pool时用默认Pool的从库
+		 */
+		if (group == null && !targetPools.containsKey(lookupKey) && (lenientFallback || lookupKey == null)
+				&& defaultTargetPoolName != null) {
+			group = replicas.get(defaultTargetPoolName.toLowerCase());
+		}
+		return group;
+	}
+
+	private ReplicaNode<T> select(Replicas<T> group) {
+		List<ReplicaNode<T>> healthy = group.healthy;
+		int size = healthy.size();
+		if (size == 0) {
+			return null;
+		}
+		if (size == 1) {
+			return healthy.get(0);
+		}
+		switch (readPolicy) {
+			case LEAST_OUTSTANDING: {
+				int start = group.next.getAndIncrement() & Integer.MAX_VALUE;
+				ReplicaNode<T> best = null;
+				for (int i = 0; i < size; i++) {
+					ReplicaNode<T> node = healthy.get((start + i) % size);
+					if (best == null || node.getOutstanding() < best.getOutstanding()) {
+						best = node;
+					}
+				}
+				return best;
+			}
+			case LOWEST_LATENCY: {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				int i = random.nextInt(size);
+				int j = random.nextInt(size - 1);
+				if (j >= i) {
+					j++;
+				}
+				ReplicaNode<T> a = healthy.get(i);
+				ReplicaNode<T> b = healthy.get(j);
+				return a.score() <= b.score() ? a : b;
+			}
+			default:
+				return healthy.get((group.next.getAndIncrement() & Integer.MAX_VALUE) % size);
+		}
+	}
+
+	private void checkHealth() {
+		for (Replicas<T> group : replicas.values()) {
+			boolean changed = false;
+			for (ReplicaNode<T> node : group.nodes) {
+				long begin = System.nanoTime();
+				try {
+					ping(node.getPool());
+					if (node.success(System.nanoTime() - begin)) {
+						log.info("Replica {} is back", node.getName());
+						changed = true;
+					}
+				} catch (Throwable e) {
+					if (node.failure(failureThreshold)) {
+						log.warn("Replica {} removed", node.getName(), e);
+						changed = true;
+					}
+				}
+			}
+			if (changed) {
+				group.refresh();
+			}
+		}
+	}
+
+	private static <T, R> R executeOn(Pool<T> pool, Function<T, R> command, LongConsumer borrowListener) {
+		long begin = System.nanoTime();
+		T resource = pool.getResource();
+		if (borrowListener != null) {
+			borrowListener.accept(System.nanoTime() - begin);
+		}
+		try {
+			return command.apply(resource);
+		} finally {
+			if (resource instanceof Closeable) {
+				try {
+					((Closeable) resource).close();
+				} catch (IOException e) {
+					log.warn("Return resource failed", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 一个Pool的从库
+	 */
+	private static final class Replicas<T> {
+
+		private final List<ReplicaNode<T>> nodes = new CopyOnWriteArrayList<>();
+
+		/**
+		 * 健康的从库, 只在健康状态变化时重建, 选从库的时候不用再过滤
+		 */
+		private volatile List<ReplicaNode<T>> healthy = Collections.emptyList();
+
+		private final AtomicInteger next = new AtomicInteger();
+
+		private synchronized void refresh() {
+			List<ReplicaNode<T>> current = new ArrayList<>(nodes.size());
+			for (ReplicaNode<T> node : nodes) {
+				if (node.isHealthy()) {
+					current.add(node);
+				}
+			}
+			healthy = current;
+		}
 	}
 }
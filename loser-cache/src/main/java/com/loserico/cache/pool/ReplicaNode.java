@@ -0,0 +1,123 @@
+package com.loserico.cache.pool;
+
+import redis.clients.jedis.util.Pool;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个从库的连接池, 以及选择从库时用到的状态: 正在执行的命令数、EWMA延迟、是否健康
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 02:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public final class ReplicaNode<T> {
+
+	/**
+	 * EWMA的权重, 新的一次延迟占1/8
+	 */
+	private static final int EWMA_SHIFT = 3;
+
+	private final String name;
+
+	private final Pool<T> pool;
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	/**
+	 * 0表示还没有样本, 选择的时候会被优先选中, 刚加进来的从库很快就有样本了
+	 */
+	private final AtomicLong ewmaNanos = new AtomicLong();
+
+	/**
+	 * 连续失败的次数
+	 */
+	private final AtomicInteger failures = new AtomicInteger();
+
+	private volatile boolean healthy = true;
+
+	ReplicaNode(String name, Pool<T> pool) {
+		this.name = name;
+		this.pool = pool;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Pool<T> getPool() {
+		return pool;
+	}
+
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	public long getEwmaNanos() {
+		return ewmaNanos.get();
+	}
+
+	public boolean isHealthy() {
+		return healthy;
+	}
+
+	void begin() {
+		outstanding.incrementAndGet();
+	}
+
+	void end() {
+		outstanding.decrementAndGet();
+	}
+
+	/**
+	 * 成功一次, 更新EWMA延迟, 不健康的从库重新变成健康
+	 *
+	 * @param elapsedNanos
+	 * @return 是否从不健康变成了健康
+	 */
+	boolean success(long elapsedNanos) {
+		long current;
+		long next;
+		do {
+			current = ewmaNanos.get();
+			next = current == 0 ? elapsedNanos : current + ((elapsedNanos - current) >> EWMA_SHIFT);
+		} while (!ewmaNanos.compareAndSet(current, Math.max(next, 1)));
+		failures.set(0);
+		if (!healthy) {
+			healthy = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 失败一次, 连续失败threshold次摘掉
+	 *
+	 * @param threshold
+	 * @return 是否从健康变成了不健康
+	 */
+	boolean failure(int threshold) {
+		if (failures.incrementAndGet() >= threshold && healthy) {
+			healthy = false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 负载, LOWEST_LATENCY用
+	 */
+	long score() {
+		return ewmaNanos.get() * (outstanding.get() + 1);
+	}
+
+	@Override
+	public String toString() {
+		return name + (healthy ? "" : "(down)");
+	}
+}
@@ -0,0 +1,30 @@
+package com.loserico.cache.pool;
+
+/**
+ * 读命令在多个从库之间怎么选
+ * <p>
+ * Copyright: Copyright (c) 2026-10-18 02:00
+ * <p>
+ * Company: Sexy Uncle Inc.
+ * <p>
+ *
+ * @author Rico Yu  ricoyu520@gmail.com
+ * @version 1.0
+ */
+public enum ReplicaPolicy {
+
+	/**
+	 * 轮询
+	 */
+	ROUND_ROBIN,
+
+	/**
+	 * 正在执行的读命令最少的从库, 一样多的话轮询
+	 */
+	LEAST_OUTSTANDING,
+
+	/**
+	 * 随机挑两个从库, 选 EWMA延迟 * (正在执行的命令数 + 1) 小的那个, 慢的从库自然少分流量, 又不会所有请求都挤到同一个最快的从库上
+	 */
+	LOWEST_LATENCY
+}
@@ -1,10 +1,11 @@
 package com.loserico.cache.utils;
 
+import com.loserico.cache.codec.Codec;
+import com.loserico.cache.codec.Codecs;
 import com.loserico.common.lang.utils.PrimitiveUtils;
 import com.loserico.json.jackson.JacksonUtils;
 
 import java.math.BigDecimal;
-import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -24,6 +25,13 @@ import static java.util.Arrays.asList;
  */
 public class ByteUtils {
 
+	/**
+	 * key、hash field、set/zset member、发布的消息、list元素用这个, 对象、集合永远是不带数据头的JSON,
+	 * 换了全局Codec以后同一个对象得到的还是同一个key/member
+	 *
+	 * @param obj
+	 * @return byte[]
+	 */
 	public static byte[] toBytes(Object obj) {
 		if (obj == null) {
 			return new byte[0];
@@ -34,12 +42,40 @@ public class ByteUtils {
 			return primitive.getBytes(UTF_8);
 		} else if (String.class.isInstance(obj)) {
 			return ((String) obj).getBytes(UTF_8);
-		} else if (Collection.class.isInstance(obj)) {
-			return JacksonUtils.toBytes(obj);
-		} else {// key不可序列化
+		} else {
 			return JacksonUtils.toBytes(obj);
 		}
 	}
+	
+	/**
+	 * 只有value(set、hset的值)用这个, 对象、集合通过全局默认的Codec序列化, 默认是JSON
+	 *
+	 * @param obj
+	 * @return byte[]
+	 */
+	public static byte[] toValueBytes(Object obj) {
+		return toBytes(obj, Codecs.getDefault());
+	}
+	
+	/**
+	 * 指定Codec序列化value, 字符串和原子类型还是直接按文本存
+	 *
+	 * @param obj
+	 * @param codec
+	 * @return byte[]
+	 */
+	public static byte[] toBytes(Object obj, Codec codec) {
+		if (obj == null) {
+			return new byte[0];
+		}
+		String primitive = PrimitiveUtils.toString(obj);
+		if (primitive != null) {
+			return primitive.getBytes(UTF_8);
+		} else if (String.class.isInstance(obj)) {
+			return ((String) obj).getBytes(UTF_8);
+		}
+		return Codecs.encode(obj, codec);
+	}
 
 	public static byte[] toBytes(String value) {
 		if (value == null) {
@@ -1,5 +1,6 @@
 package com.loserico.cache.utils;
 
+import com.loserico.cache.codec.Codecs;
 import com.loserico.common.lang.utils.PrimitiveUtils;
 import com.loserico.json.jackson.JacksonUtils;
 
@@ -26,6 +27,10 @@ public class UnMarshaller {
 		if (data == null || data.length == 0) {
 			return null;
 		}
+		// 带数据头的是通过Codec写进去的, 不带的是以前的文本格式
+		if (Codecs.isFramed(data)) {
+			return Codecs.decode(data, clazz);
+		}
 		if (clazz.equals(String.class)) {
 			return (T) new String(data, UTF_8);
 		}
@@ -40,6 +45,9 @@ public class UnMarshaller {
 		if (value == null || value.length == 0) {
 			return new ArrayList<>();
 		}
+		if (Codecs.isFramed(value)) {
+			return Codecs.decodeList(value, clazz);
+		}
 		String json = toString(value);
 		return JacksonUtils.toList(json, clazz);
 	}
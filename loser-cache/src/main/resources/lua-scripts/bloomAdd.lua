@@ -0,0 +1,16 @@
+-- KEYS[1]: 布隆过滤器的bitmap
+-- ARGV[1]: 每个元素几个bit(k), 后面每k个offset是一个元素
+-- 返回每个元素是否是新加的(原来至少有一个bit是0), 1是新加的, 0是原来可能已经有了
+local k = tonumber(ARGV[1])
+local count = (#ARGV - 1) / k
+local result = {}
+for i = 0, count - 1 do
+  local added = 0
+  for j = 1, k do
+    if redis.call('setbit', KEYS[1], ARGV[1 + i * k + j], 1) == 0 then
+      added = 1
+    end
+  end
+  result[i + 1] = added
+end
+return result
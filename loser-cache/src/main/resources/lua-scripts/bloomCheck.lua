@@ -0,0 +1,17 @@
+-- KEYS[1]: 布隆过滤器的bitmap
+-- ARGV[1]: 每个元素几个bit(k), 后面每k个offset是一个元素
+-- 返回每个元素是否可能存在, 1是可能存在, 0是一定不存在
+local k = tonumber(ARGV[1])
+local count = (#ARGV - 1) / k
+local result = {}
+for i = 0, count - 1 do
+  local exists = 1
+  for j = 1, k do
+    if redis.call('getbit', KEYS[1], ARGV[1 + i * k + j]) == 0 then
+      exists = 0
+      break
+    end
+  end
+  result[i + 1] = exists
+end
+return result
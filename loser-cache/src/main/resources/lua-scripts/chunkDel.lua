@@ -0,0 +1,17 @@
+-- KEYS[1]: 要删除的key
+-- ARGV[1]: 1 用UNLINK, 否则用DEL
+-- 返回 {删除的key数, 被删掉的manifest(不是manifest为nil)}
+local old = false
+if redis.call('type', KEYS[1]).ok == 'string' and redis.call('strlen', KEYS[1]) == 26 then
+  local value = redis.call('get', KEYS[1])
+  if string.byte(value, 1) == 246 and string.byte(value, 2) == 1 then
+    old = value
+  end
+end
+local deleted
+if ARGV[1] == '1' then
+  deleted = redis.call('unlink', KEYS[1])
+else
+  deleted = redis.call('del', KEYS[1])
+end
+return {deleted, old}
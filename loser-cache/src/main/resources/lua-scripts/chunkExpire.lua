@@ -0,0 +1,20 @@
+-- KEYS[1]: key
+-- ARGV[1]: 过期秒数, ARGV[2]为1时是过期的unix时间戳(秒), ARGV[2]为2时不用
+-- ARGV[2]: 0 EXPIRE, 1 EXPIREAT, 2 PERSIST
+-- 返回 {EXPIRE/EXPIREAT/PERSIST的结果, key是manifest的话返回manifest, 否则nil}
+local old = false
+if redis.call('type', KEYS[1]).ok == 'string' and redis.call('strlen', KEYS[1]) == 26 then
+  local value = redis.call('get', KEYS[1])
+  if string.byte(value, 1) == 246 and string.byte(value, 2) == 1 then
+    old = value
+  end
+end
+local result
+if ARGV[2] == '2' then
+  result = redis.call('persist', KEYS[1])
+elseif ARGV[2] == '1' then
+  result = redis.call('expireat', KEYS[1], ARGV[1])
+else
+  result = redis.call('expire', KEYS[1], ARGV[1])
+end
+return {result, old}
@@ -0,0 +1,18 @@
+-- KEYS[1]: key
+-- ARGV[1]: 新的值, 大value是新的manifest(分块都已经写好了), 小value就是值本身
+-- ARGV[2]: 过期秒数, 小于1表示不过期
+-- 返回被替换掉的旧manifest(26字节, 以0xF6 0x01开头), 旧值不是manifest返回nil
+-- 只有长度是26的字符串才GET, 覆盖普通的大value不会在Redis里多复制一遍
+local old = false
+if redis.call('type', KEYS[1]).ok == 'string' and redis.call('strlen', KEYS[1]) == 26 then
+  local value = redis.call('get', KEYS[1])
+  if string.byte(value, 1) == 246 and string.byte(value, 2) == 1 then
+    old = value
+  end
+end
+if tonumber(ARGV[2]) > 0 then
+  redis.call('set', KEYS[1], ARGV[1], 'EX', ARGV[2])
+else
+  redis.call('set', KEYS[1], ARGV[1])
+end
+return old
@@ -0,0 +1,12 @@
+-- KEYS[1]: hash, KEYS[2]: 记录field过期时间的zset(jedis_utils:__timeout__set:hash)
+-- ARGV[1]: 一次最多清理多少个field
+-- 和hash.lua一样用Redis服务器时间(秒)判断过期, 过期的field从hash和zset里一起删掉, 返回删掉的field个数
+local currentTimestamp = redis.call("TIME")[1]
+local expiredFields = redis.call("ZRANGEBYSCORE", KEYS[2], "-inf", currentTimestamp, "LIMIT", 0, tonumber(ARGV[1]))
+if #expiredFields == 0 then
+  return 0
+end
+redis.replicate_commands()
+redis.call("ZREM", KEYS[2], unpack(expiredFields))
+redis.call("HDEL", KEYS[1], unpack(expiredFields))
+return #expiredFields
@@ -0,0 +1,8 @@
+-- KEYS[1]: 本消费者的processing list
+-- ARGV: 处理成功的元素
+-- 返回实际删掉的元素个数
+local removed = 0
+for i = 1, #ARGV do
+  removed = removed + redis.call('lrem', KEYS[1], -1, ARGV[i])
+end
+return removed
@@ -0,0 +1,16 @@
+-- KEYS[1]: 队列, KEYS[2]: 本消费者的processing list, KEYS[3]: 消费者心跳zset
+-- ARGV[1]: 最多取多少个, ARGV[2]: 当前时间(毫秒), ARGV[3]: 消费者id
+-- 生产者LPUSH, 从队尾取最多ARGV[1]个元素放到processing list里, 按入队顺序返回
+redis.call('zadd', KEYS[3], ARGV[2], ARGV[3])
+local items = redis.call('lrange', KEYS[1], -tonumber(ARGV[1]), -1)
+if #items == 0 then
+  return items
+end
+redis.call('ltrim', KEYS[1], 0, -(#items + 1))
+
+local result = {}
+for i = #items, 1, -1 do
+  redis.call('lpush', KEYS[2], items[i])
+  result[#result + 1] = items[i]
+end
+return result
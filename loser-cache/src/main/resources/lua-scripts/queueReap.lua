@@ -0,0 +1,17 @@
+-- KEYS[1]: 队列, KEYS[2]: 消费者心跳zset
+-- ARGV[1]: 心跳早于这个时间(毫秒)的消费者认为已经挂了, ARGV[2]: processing list的前缀, 后面拼上消费者id
+-- 把挂掉的消费者processing list里的元素放回队尾(最先被取到), 返回放回的元素个数
+-- processing list的key是拼出来的, 和队列带同一个hash tag, 集群模式下在同一个slot
+local dead = redis.call('zrangebyscore', KEYS[2], '-inf', ARGV[1])
+local moved = 0
+for _, consumer in ipairs(dead) do
+  local processing = ARGV[2] .. consumer
+  local items = redis.call('lrange', processing, 0, -1)
+  for i = 1, #items do
+    redis.call('rpush', KEYS[1], items[i])
+  end
+  redis.call('del', processing)
+  redis.call('zrem', KEYS[2], consumer)
+  moved = moved + #items
+end
+return moved
@@ -0,0 +1,11 @@
+-- KEYS[1]: 本消费者的processing list, KEYS[2]: 队列
+-- ARGV: 处理失败的元素
+-- 从processing list里删掉, 重新放到队列的队首(最后才会被取到), 返回重新入队的个数
+local requeued = 0
+for i = 1, #ARGV do
+  if redis.call('lrem', KEYS[1], -1, ARGV[i]) > 0 then
+    redis.call('lpush', KEYS[2], ARGV[i])
+    requeued = requeued + 1
+  end
+end
+return requeued
@@ -0,0 +1,28 @@
+-- KEYS: 锁, ARGV[1]: 过期时间(毫秒), ARGV[2]: 当前时间(毫秒), ARGV[3..]: 每把锁对应的value
+-- 锁还是自己的才续期, 返回每把锁是否续期成功
+-- string类型的锁: value一致才续期
+-- zset类型的锁(比如读写锁的读锁): value是member, score是租约过期时间, member还在并且没过期才续期
+local ttl = tonumber(ARGV[1])
+local now = tonumber(ARGV[2])
+local result = {}
+for i, key in ipairs(KEYS) do
+  local value = ARGV[i + 2]
+  local keyType = redis.call('type', key).ok
+  result[i] = 0
+  if keyType == 'string' then
+    if redis.call('get', key) == value then
+      redis.call('pexpire', key, ttl)
+      result[i] = 1
+    end
+  elseif keyType == 'zset' then
+    local score = redis.call('zscore', key, value)
+    if score and tonumber(score) > now then
+      redis.call('zadd', key, 'XX', now + ttl, value)
+      if redis.call('pttl', key) < ttl then
+        redis.call('pexpire', key, ttl)
+      end
+      result[i] = 1
+    end
+  end
+end
+return result
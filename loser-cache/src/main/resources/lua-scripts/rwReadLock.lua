@@ -0,0 +1,19 @@
+-- KEYS[1]: 写锁, KEYS[2]: 读者zset(member是读者token, score是租约过期时间), KEYS[3]: 等待中的写者
+-- ARGV[1]: 当前时间(毫秒), ARGV[2]: 租约有效期(毫秒), ARGV[3]: 读者token
+-- 加锁成功返回-1; 有写者持有锁或者在等锁(写优先)时返回写锁/写者登记还有多少毫秒过期
+local now = tonumber(ARGV[1])
+local leaseMillis = tonumber(ARGV[2])
+local writerTtl = redis.call('pttl', KEYS[1])
+if writerTtl > 0 then
+  return writerTtl
+end
+local intentTtl = redis.call('pttl', KEYS[3])
+if intentTtl > 0 then
+  return intentTtl
+end
+
+redis.call('zadd', KEYS[2], now + leaseMillis, ARGV[3])
+if redis.call('pttl', KEYS[2]) < leaseMillis then
+  redis.call('pexpire', KEYS[2], leaseMillis)
+end
+return -1
@@ -0,0 +1,16 @@
+-- KEYS[1]: 写锁或者读者zset
+-- ARGV[1]: 通知channel, ARGV[2]: token
+-- 解锁成功返回1并通知等锁的客户端, 锁已经不是自己的返回0
+local released = 0
+local keyType = redis.call('type', KEYS[1]).ok
+if keyType == 'string' then
+  if redis.call('get', KEYS[1]) == ARGV[2] then
+    released = redis.call('del', KEYS[1])
+  end
+elseif keyType == 'zset' then
+  released = redis.call('zrem', KEYS[1], ARGV[2])
+end
+if released == 1 then
+  redis.call('publish', ARGV[1], ARGV[2])
+end
+return released
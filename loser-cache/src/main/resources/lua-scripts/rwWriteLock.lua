@@ -0,0 +1,32 @@
+-- KEYS[1]: 写锁, KEYS[2]: 读者zset, KEYS[3]: 等待中的写者
+-- ARGV[1]: 当前时间(毫秒), ARGV[2]: 租约有效期(毫秒), ARGV[3]: 写者token
+-- 加锁成功返回-1; 失败时登记为等待中的写者(之后新来的读者拿不到锁), 返回建议等待的毫秒数, 0表示不确定
+local now = tonumber(ARGV[1])
+local leaseMillis = tonumber(ARGV[2])
+local token = ARGV[3]
+redis.call('zremrangebyscore', KEYS[2], '-inf', now)
+
+local intent = redis.call('get', KEYS[3])
+local free = redis.call('exists', KEYS[1]) == 0 and redis.call('zcard', KEYS[2]) == 0
+if free and (not intent or intent == token) then
+  redis.call('set', KEYS[1], token, 'PX', leaseMillis)
+  if intent then
+    redis.call('del', KEYS[3])
+  end
+  return -1
+end
+
+-- 同一时刻只登记一个等待中的写者, 其他写者排在它后面
+if not intent or intent == token then
+  redis.call('set', KEYS[3], token, 'PX', leaseMillis)
+end
+
+local writerTtl = redis.call('pttl', KEYS[1])
+if writerTtl > 0 then
+  return writerTtl
+end
+local earliest = redis.call('zrange', KEYS[2], 0, 0, 'withscores')
+if #earliest > 0 then
+  return tonumber(earliest[2]) - now
+end
+return 0
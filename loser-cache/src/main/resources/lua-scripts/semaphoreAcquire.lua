@@ -0,0 +1,24 @@
+-- KEYS[1]: 总许可数, KEYS[2]: 租约zset(member是租约id, score是过期时间)
+-- ARGV[1]: 当前时间(毫秒), ARGV[2]: 租约有效期(毫秒), ARGV[3]: 要获取的许可数, ARGV[4]: 租约id前缀
+-- 获取成功返回-1; 失败返回最早的租约还有多少毫秒过期, 没有租约返回0
+local now = tonumber(ARGV[1])
+local leaseMillis = tonumber(ARGV[2])
+local permits = tonumber(ARGV[3])
+local total = tonumber(redis.call('get', KEYS[1]) or '0')
+redis.call('zremrangebyscore', KEYS[2], '-inf', now)
+
+if redis.call('zcard', KEYS[2]) + permits > total then
+  local earliest = redis.call('zrange', KEYS[2], 0, 0, 'withscores')
+  if #earliest == 0 then
+    return 0
+  end
+  return tonumber(earliest[2]) - now
+end
+
+for i = 1, permits do
+  redis.call('zadd', KEYS[2], now + leaseMillis, ARGV[4] .. ':' .. i)
+end
+if redis.call('pttl', KEYS[2]) < leaseMillis then
+  redis.call('pexpire', KEYS[2], leaseMillis)
+end
+return -1
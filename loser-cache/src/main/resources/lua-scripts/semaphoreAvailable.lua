@@ -0,0 +1,5 @@
+-- KEYS[1]: 总许可数, KEYS[2]: 租约zset
+-- ARGV[1]: 当前时间(毫秒)
+-- 返回当前可用的许可数
+local total = tonumber(redis.call('get', KEYS[1]) or '0')
+return total - redis.call('zcount', KEYS[2], '(' .. ARGV[1], '+inf')
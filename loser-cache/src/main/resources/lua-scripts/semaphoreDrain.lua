@@ -0,0 +1,19 @@
+-- KEYS[1]: 总许可数, KEYS[2]: 租约zset
+-- ARGV[1]: 当前时间(毫秒), ARGV[2]: 租约有效期(毫秒), ARGV[3]: 租约id前缀
+-- 拿走当前所有可用的许可, 返回拿到的许可数
+local now = tonumber(ARGV[1])
+local leaseMillis = tonumber(ARGV[2])
+local total = tonumber(redis.call('get', KEYS[1]) or '0')
+redis.call('zremrangebyscore', KEYS[2], '-inf', now)
+
+local available = total - redis.call('zcard', KEYS[2])
+if available <= 0 then
+  return 0
+end
+for i = 1, available do
+  redis.call('zadd', KEYS[2], now + leaseMillis, ARGV[3] .. ':' .. i)
+end
+if redis.call('pttl', KEYS[2]) < leaseMillis then
+  redis.call('pexpire', KEYS[2], leaseMillis)
+end
+return available
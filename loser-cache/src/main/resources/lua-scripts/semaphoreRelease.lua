@@ -0,0 +1,11 @@
+-- KEYS[1]: 总许可数, KEYS[2]: 租约zset
+-- ARGV[1]: 通知channel, ARGV[2..]: 要归还的租约id
+-- 归还租约并通知等待的客户端, 返回实际归还的租约数(已经过期的租约不算)
+local released = 0
+for i = 2, #ARGV do
+  released = released + redis.call('zrem', KEYS[2], ARGV[i])
+end
+if released > 0 then
+  redis.call('publish', ARGV[1], released)
+end
+return released
@@ -0,0 +1,8 @@
+-- KEYS[1]: 锁, ARGV[1]: 持有者token, ARGV[2]: 租约(毫秒)
+-- 锁没人持有或者是自己持有的就(重新)设置租约, 返回1; 别人持有返回0
+local owner = redis.call('get', KEYS[1])
+if (not owner) or owner == ARGV[1] then
+  redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2])
+  return 1
+end
+return 0
@@ -0,0 +1,34 @@
+-- KEYS[1]: 令牌桶, hash {tokens: 剩余令牌, ts: 上次补充令牌的时间(毫秒)}
+-- ARGV[1]: 当前时间(毫秒), ARGV[2]: 每秒产生多少令牌, ARGV[3]: 桶容量, ARGV[4]: 这次要租多少令牌, ARGV[5]: 归还上一次没用完的令牌数
+-- 返回 {租到的令牌数, 租到0个时还要多少毫秒才会有1个令牌}
+local now = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local capacity = tonumber(ARGV[3])
+local requested = tonumber(ARGV[4])
+local returned = tonumber(ARGV[5])
+
+local state = redis.call('hmget', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+if tokens == nil or ts == nil then
+  tokens = capacity
+  ts = now
+end
+-- 各节点时钟不完全一致, 时间倒退时不补充令牌
+if now > ts then
+  tokens = math.min(capacity, tokens + (now - ts) * rate / 1000)
+  ts = now
+end
+tokens = math.min(capacity, tokens + returned)
+
+local granted = math.min(requested, math.floor(tokens))
+tokens = tokens - granted
+local wait = 0
+if granted == 0 then
+  wait = math.ceil((1 - tokens) * 1000 / rate)
+end
+
+redis.call('hmset', KEYS[1], 'tokens', tokens, 'ts', ts)
+-- 桶一直没人用的话, 过了装满所需的时间再多1秒就删掉, 下次当成满桶
+redis.call('pexpire', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+return {granted, wait}
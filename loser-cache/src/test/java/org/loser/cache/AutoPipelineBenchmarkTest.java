@@ -0,0 +1,82 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.operations.AutoPipeline;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 本地Redis上对比同步GET和自动Pipeline的吞吐量
+ * <p>
+ * Copyright: (C), 2026/10/17 17:20
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class AutoPipelineBenchmarkTest {
+
+	private static final int THREADS = 32;
+
+	private static final int OPS_PER_THREAD = 5000;
+
+	@Test
+	public void testSyncVsAutoPipeline() throws Exception {
+		JedisUtils.set("bench:auto-pipeline", "v");
+		AutoPipeline pipeline = JedisUtils.autoPipeline();
+
+		// 预热
+		run(() -> JedisUtils.get("bench:auto-pipeline"));
+		run(() -> pipeline.get("bench:auto-pipeline").join());
+
+		long syncNanos = run(() -> JedisUtils.get("bench:auto-pipeline"));
+		long asyncNanos = run(() -> {
+			List<CompletableFuture<String>> futures = new ArrayList<>(100);
+			for (int i = 0; i < 100; i++) {
+				futures.add(pipeline.get("bench:auto-pipeline"));
+			}
+			for (CompletableFuture<String> future : futures) {
+				assertEquals("v", future.join());
+			}
+		}, OPS_PER_THREAD / 100);
+
+		long total = (long) THREADS * OPS_PER_THREAD;
+		System.out.println(String.format("sync:          %,d ops/s", total * 1_000_000_000L / syncNanos));
+		System.out.println(String.format("auto pipeline: %,d ops/s, avg batch size %.1f",
+				total * 1_000_000_000L / asyncNanos, pipeline.avgBatchSize()));
+		JedisUtils.del("bench:auto-pipeline");
+	}
+
+	private long run(Runnable op) throws InterruptedException {
+		return run(op, OPS_PER_THREAD);
+	}
+
+	private long run(Runnable op, int iterations) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch done = new CountDownLatch(THREADS);
+		long begin = System.nanoTime();
+		for (int t = 0; t < THREADS; t++) {
+			pool.execute(() -> {
+				for (int i = 0; i < iterations; i++) {
+					op.run();
+				}
+				done.countDown();
+			});
+		}
+		done.await(5, TimeUnit.MINUTES);
+		long elapsed = System.nanoTime() - begin;
+		pool.shutdown();
+		return elapsed;
+	}
+}
@@ -0,0 +1,88 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.collection.BloomFilter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Redis布隆过滤器
+ * <p>
+ * Copyright: (C), 2026/10/18 04:50
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class BloomFilterTest {
+	
+	@Test
+	public void testSizing() {
+		//100万个元素, 1%误判率, 大约958万个bit, 7个hash
+		assertEquals(9585059L, BloomFilter.optimalBits(1_000_000, 0.01));
+		assertEquals(7, BloomFilter.optimalHashes(1_000_000, 9585059L));
+		
+		BloomFilter filter = new BloomFilter("test:bloom:sizing", 100_000_000, 0.001);
+		assertEquals(22, filter.getShards());
+		assertTrue(filter.getBitsPerShard() <= BloomFilter.DEFAULT_BITS_PER_SHARD);
+	}
+	
+	@Test
+	public void testAddAndCheck() {
+		BloomFilter filter = new BloomFilter("test:bloom:users", 10_000, 0.01, 4);
+		filter.delete();
+		
+		assertTrue(filter.add(1L));
+		assertFalse(filter.add(1L));
+		assertTrue(filter.mightContain(1L));
+		
+		List<Long> ids = new ArrayList<>();
+		for (long i = 2; i <= 5000; i++) {
+			ids.add(i);
+		}
+		assertTrue(filter.addAll(ids) > 4900);
+		for (boolean contains : filter.mightContainAll(ids)) {
+			assertTrue(contains);
+		}
+		
+		List<Long> absent = new ArrayList<>();
+		for (long i = 1_000_000; i < 1_010_000; i++) {
+			absent.add(i);
+		}
+		long falsePositives = filter.mightContainAll(absent).stream().filter((contains) -> contains).count();
+		System.out.println("false positives: " + falsePositives);
+		assertTrue(falsePositives < 300);
+		filter.delete();
+	}
+	
+	@Test
+	public void testGuardLoader() {
+		BloomFilter filter = new BloomFilter("test:bloom:guard", 1000, 0.01);
+		filter.delete();
+		filter.addAll(Arrays.asList(1L, 2L, 3L));
+		JedisUtils.del("test:bloom:user:2");
+		
+		AtomicInteger loads = new AtomicInteger();
+		assertEquals("user-2", filter.get(2L, "test:bloom:user:2", String.class, () -> {
+			loads.incrementAndGet();
+			return "user-2";
+		}, 1, TimeUnit.MINUTES));
+		//一定不存在的id不回源
+		assertNull(filter.get(404L, "test:bloom:user:404", String.class, () -> {
+			loads.incrementAndGet();
+			return "user-404";
+		}, 1, TimeUnit.MINUTES));
+		assertEquals(1, loads.get());
+		filter.delete();
+		JedisUtils.del("test:bloom:user:2");
+	}
+}
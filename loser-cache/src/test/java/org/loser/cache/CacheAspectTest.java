@@ -0,0 +1,200 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.annotation.CacheEvict;
+import com.loserico.cache.annotation.Cached;
+import com.loserico.cache.annotation.CachedAll;
+import com.loserico.cache.aspect.CacheAspect;
+import com.loserico.cache.aspect.KeyTemplate;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @Cached、@CachedAll、@CacheEvict
+ * <p>
+ * Copyright: (C), 2026/10/18 04:10
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class CacheAspectTest {
+	
+	private UserService userService;
+	
+	@Before
+	public void setUp() {
+		for (long id = 1; id <= 4; id++) {
+			JedisUtils.del("test:aspect:user:" + id);
+		}
+		JedisUtils.del("test:aspect:user:404");
+		JedisUtils.del("test:aspect:users:admin");
+		
+		AspectJProxyFactory factory = new AspectJProxyFactory(new UserService());
+		factory.setProxyTargetClass(true);
+		factory.addAspect(new CacheAspect());
+		userService = factory.getProxy();
+	}
+	
+	@Test
+	public void testKeyTemplate() throws NoSuchMethodException {
+		KeyTemplate constant = KeyTemplate.compile("users:all", UserService.class.getMethod("findById", Long.class));
+		assertTrue(constant.isConstant());
+		assertEquals("users:all", constant.render(new Object[]{1L}));
+		
+		KeyTemplate template = KeyTemplate.compile("user:#{#id}:#{#p0 + 1}",
+				UserService.class.getMethod("findById", Long.class));
+		assertFalse(template.isConstant());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("user:" + i + ":" + (i + 1), template.render(new Object[]{(long) i}));
+		}
+	}
+	
+	@Test
+	public void testCached() {
+		User user = userService.findById(1L);
+		assertEquals("user-1", user.getName());
+		assertEquals(user, userService.findById(1L));
+		assertEquals(1, userService.calls.get());
+		assertEquals(user, JedisUtils.get("test:aspect:user:1", User.class));
+		
+		//null也缓存
+		assertNull(userService.findById(404L));
+		assertNull(userService.findById(404L));
+		assertEquals(2, userService.calls.get());
+		
+		List<User> admins = userService.findByRole("admin");
+		assertEquals(admins, userService.findByRole("admin"));
+		assertEquals(2, admins.size());
+		assertEquals(User.class, admins.get(0).getClass());
+		assertEquals(3, userService.calls.get());
+	}
+	
+	@Test
+	public void testCachedAll() {
+		Map<Long, User> users = userService.findByIds(Arrays.asList(1L, 2L, 3L));
+		assertEquals(Arrays.asList(1L, 2L, 3L), new ArrayList<>(users.keySet()));
+		assertEquals(Arrays.asList(1L, 2L, 3L), userService.batches.get(0));
+		//一次Pipeline回填, 每个key都带过期时间
+		for (long id = 1; id <= 3; id++) {
+			long ttl = JedisUtils.ttl("test:aspect:user:" + id);
+			assertTrue(ttl > 0 && ttl <= 66);
+		}
+		
+		//只有4没缓存
+		users = userService.findByIds(Arrays.asList(4L, 3L, 2L, 404L));
+		assertEquals(Arrays.asList(4L, 3L, 2L), new ArrayList<>(users.keySet()));
+		assertEquals("user-3", users.get(3L).getName());
+		assertEquals(Arrays.asList(4L, 404L), userService.batches.get(1));
+		
+		//都命中了不调用方法, 404缓存成了null
+		users = userService.findByIds(Arrays.asList(1L, 404L));
+		assertEquals(1, users.size());
+		assertEquals(2, userService.batches.size());
+		
+		//@Cached和@CachedAll的key一样的话可以共用
+		assertEquals("user-2", userService.findById(2L).getName());
+		assertEquals(0, userService.calls.get());
+	}
+	
+	/**
+	 * 返回基本类型的方法读到同一个key上缓存的null, 当作没命中重新回源, 不能返回null
+	 */
+	@Test
+	public void testPrimitiveIgnoresCachedNull() {
+		assertNull(userService.findById(404L));
+		assertEquals(8, userService.nameLength(404L));
+		assertEquals(2, userService.calls.get());
+	}
+	
+	@Test
+	public void testCacheEvict() {
+		userService.findById(1L);
+		userService.rename(new User(1L, "rico"));
+		assertEquals("rico", userService.findById(1L).getName());
+		assertEquals(2, userService.calls.get());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testExceptionNotCached() {
+		try {
+			userService.findById(-1L);
+		} finally {
+			assertNull(JedisUtils.get("test:aspect:user:-1"));
+		}
+	}
+	
+	public static class UserService {
+		
+		private final Map<Long, String> names = new HashMap<>();
+		
+		private final AtomicInteger calls = new AtomicInteger();
+		
+		private final List<Collection<Long>> batches = new ArrayList<>();
+		
+		@Cached(key = "test:aspect:user:#{#id}", ttl = 1, timeUnit = TimeUnit.MINUTES)
+		public User findById(Long id) {
+			calls.incrementAndGet();
+			if (id < 0) {
+				throw new IllegalStateException("bad id " + id);
+			}
+			return id == 404L ? null : new User(id, names.getOrDefault(id, "user-" + id));
+		}
+		
+		@Cached(key = "test:aspect:users:#{#role}", jitter = 0)
+		public List<User> findByRole(String role) {
+			calls.incrementAndGet();
+			return Arrays.asList(new User(1L, "user-1"), new User(2L, "user-2"));
+		}
+		
+		@CachedAll(key = "test:aspect:user:#{#id}", ttl = 1, timeUnit = TimeUnit.MINUTES)
+		public Map<Long, User> findByIds(List<Long> ids) {
+			batches.add(new ArrayList<>(ids));
+			Map<Long, User> users = new HashMap<>();
+			for (Long id : ids) {
+				if (id != 404L) {
+					users.put(id, new User(id, "user-" + id));
+				}
+			}
+			return users;
+		}
+		
+		@Cached(key = "test:aspect:user:#{#id}")
+		public int nameLength(Long id) {
+			calls.incrementAndGet();
+			return names.getOrDefault(id, "user-" + id).length();
+		}
+		
+		@CacheEvict(key = "test:aspect:user:#{#user.id}")
+		public void rename(User user) {
+			names.put(user.getId(), user.getName());
+		}
+	}
+	
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class User {
+		
+		private Long id;
+		
+		private String name;
+	}
+}
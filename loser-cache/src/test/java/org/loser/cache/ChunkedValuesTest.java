@@ -0,0 +1,224 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+/**
+ * 大value透明分块存储, 需要本地Redis, 测试配置里超过512KB分块, 每块256KB
+ * <p>
+ * Copyright: (C), 2026/10/18 07:30
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class ChunkedValuesTest {
+
+	@Test
+	public void testSetAndGet() {
+		String key = "test:chunked:report";
+		JedisUtils.mdel(chunkKeys(key));
+		String report = randomText(3 * 1024 * 1024 + 17);
+		assertTrue(JedisUtils.set(key, report));
+
+		//key里只有一个manifest
+		byte[] raw = JedisUtils.execute((jedis) -> jedis.get(key.getBytes(UTF_8)));
+		assertEquals(26, raw.length);
+		assertEquals(13, chunkKeys(key).size());
+		assertEquals(report, JedisUtils.get(key));
+
+		//小value照常SET
+		JedisUtils.set("test:chunked:small", "small");
+		List<String> values = JedisUtils.mget(Arrays.asList(key, "test:chunked:small", "test:chunked:absent"));
+		assertEquals(report, values.get(0));
+		assertEquals("small", values.get(1));
+		assertNull(values.get(2));
+
+		JedisUtils.del("test:chunked:small");
+		JedisUtils.del(key);
+		JedisUtils.mdel(chunkKeys(key));
+	}
+
+	@Test
+	public void testOverwriteRetiresOldChunks() {
+		String key = "test:chunked:overwrite";
+		JedisUtils.mdel(chunkKeys(key));
+		JedisUtils.set(key, randomText(1024 * 1024));
+		List<String> oldChunks = chunkKeys(key);
+		assertEquals(4, oldChunks.size());
+
+		String latest = randomText(600 * 1024);
+		JedisUtils.set(key, latest);
+		assertEquals(latest, JedisUtils.get(key));
+		//旧版本的分块延迟过期, 新版本的不过期
+		for (String chunk : oldChunks) {
+			long ttl = JedisUtils.ttl(chunk);
+			assertTrue(ttl > 0 && ttl <= 30);
+		}
+		List<String> newChunks = chunkKeys(key);
+		newChunks.removeAll(oldChunks);
+		assertEquals(3, newChunks.size());
+		for (String chunk : newChunks) {
+			assertEquals(-1, JedisUtils.ttl(chunk));
+		}
+
+		JedisUtils.del(key);
+		JedisUtils.mdel(chunkKeys(key));
+	}
+
+	@Test
+	public void testDeleteAndSmallOverwriteRetireChunks() {
+		String key = "test:chunked:delete";
+		JedisUtils.mdel(chunkKeys(key));
+		JedisUtils.set(key, randomText(700 * 1024));
+		List<String> deleted = chunkKeys(key);
+		JedisUtils.del(key);
+		assertNull(JedisUtils.get(key));
+		assertRetired(deleted);
+
+		JedisUtils.set(key, randomText(700 * 1024));
+		List<String> overwritten = chunkKeys(key);
+		overwritten.removeAll(deleted);
+		JedisUtils.set(key, "small");
+		assertEquals("small", JedisUtils.get(key));
+		assertRetired(overwritten);
+
+		JedisUtils.set(key, randomText(700 * 1024));
+		List<String> unlinked = chunkKeys(key);
+		unlinked.removeAll(deleted);
+		unlinked.removeAll(overwritten);
+		JedisUtils.unlink(Arrays.asList(key));
+		assertRetired(unlinked);
+
+		JedisUtils.mdel(chunkKeys(key));
+	}
+
+	@Test
+	public void testExpireNow() {
+		String key = "test:chunked:expire-now";
+		JedisUtils.mdel(chunkKeys(key));
+		JedisUtils.set(key, randomText(700 * 1024));
+		List<String> chunks = chunkKeys(key);
+		//不到1秒的过期时间和EXPIRE 0一样, 马上过期而不是不过期
+		JedisUtils.set(key, randomText(700 * 1024), 500, TimeUnit.MILLISECONDS);
+		assertNull(JedisUtils.get(key));
+		assertRetired(chunks);
+		assertEquals(chunks.size(), chunkKeys(key).size());
+
+		JedisUtils.mdel(chunkKeys(key));
+	}
+
+	@Test
+	public void testExpireAndPersist() {
+		String key = "test:chunked:expire";
+		JedisUtils.mdel(chunkKeys(key));
+		String value = randomText(700 * 1024);
+		JedisUtils.set(key, value);
+		assertTrue(JedisUtils.expire(key, 10));
+		for (String chunk : chunkKeys(key)) {
+			long ttl = JedisUtils.ttl(chunk);
+			assertTrue(ttl > 10);
+		}
+		assertTrue(JedisUtils.persist(key));
+		for (String chunk : chunkKeys(key)) {
+			assertEquals(-1, JedisUtils.ttl(chunk));
+		}
+		assertEquals(value, JedisUtils.get(key));
+
+		JedisUtils.del(key);
+		JedisUtils.mdel(chunkKeys(key));
+	}
+
+	@Test
+	public void testExpires() {
+		String key = "test:chunked:expires";
+		JedisUtils.mdel(chunkKeys(key));
+		String value = randomText(700 * 1024);
+		JedisUtils.set(key, value, 10, TimeUnit.SECONDS);
+		long ttl = JedisUtils.ttl(key);
+		assertTrue(ttl > 0 && ttl <= 10);
+		//分块比manifest晚过期
+		for (String chunk : chunkKeys(key)) {
+			assertTrue(JedisUtils.ttl(chunk) > 10);
+		}
+		assertEquals(value, JedisUtils.get(key));
+
+		JedisUtils.del(key);
+		JedisUtils.mdel(chunkKeys(key));
+	}
+
+	@Test
+	public void testStreaming() throws IOException {
+		String key = "test:chunked:stream";
+		JedisUtils.mdel(chunkKeys(key));
+		String value = randomText(2 * 1024 * 1024);
+		JedisUtils.set(key, value);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertTrue(JedisUtils.get(key, out));
+		assertEquals(value, new String(out.toByteArray(), UTF_8));
+
+		//不是分块存的value也能写出去
+		JedisUtils.set("test:chunked:plain", "plain");
+		out.reset();
+		assertTrue(JedisUtils.get("test:chunked:plain", out));
+		assertEquals("plain", new String(out.toByteArray(), UTF_8));
+		assertFalse(JedisUtils.get("test:chunked:absent", new ByteArrayOutputStream()));
+
+		JedisUtils.del("test:chunked:plain");
+		JedisUtils.del(key);
+		JedisUtils.mdel(chunkKeys(key));
+	}
+
+	@Test
+	public void testMset() {
+		JedisUtils.mdel(chunkKeys("test:chunked:mset:large"));
+		String value = randomText(800 * 1024);
+		Map<String, String> keyValues = new HashMap<>();
+		keyValues.put("test:chunked:mset:large", value);
+		keyValues.put("test:chunked:mset:small", "small");
+		JedisUtils.mset(keyValues);
+		assertEquals(value, JedisUtils.get("test:chunked:mset:large"));
+		assertEquals("small", JedisUtils.get("test:chunked:mset:small"));
+
+		JedisUtils.mdel(keyValues.keySet());
+		JedisUtils.mdel(chunkKeys("test:chunked:mset:large"));
+	}
+
+	private static void assertRetired(List<String> chunks) {
+		assertFalse(chunks.isEmpty());
+		for (String chunk : chunks) {
+			long ttl = JedisUtils.ttl(chunk);
+			assertTrue(ttl > 0 && ttl <= 30);
+		}
+	}
+
+	private static List<String> chunkKeys(String key) {
+		return JedisUtils.scan(key + ":chunk:*", 1000)
+				.distinct()
+				.collect(Collectors.toList());
+	}
+
+	private static String randomText(int length) {
+		StringBuilder sb = new StringBuilder(length);
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < length; i++) {
+			sb.append((char) ('a' + random.nextInt(26)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,107 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.codec.Codec;
+import com.loserico.cache.codec.Codecs;
+import com.loserico.cache.utils.ByteUtils;
+import com.loserico.cache.utils.UnMarshaller;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>
+ * Copyright: (C), 2026/10/17 19:40
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class CodecTest {
+
+	@After
+	public void reset() {
+		Codecs.setCompressThreshold(-1);
+		Codecs.setDefault(Codecs.JSON);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		Order order = new Order();
+		order.id = 1L;
+		order.items = Arrays.asList("apple", "pear");
+		for (Codec codec : Arrays.asList(Codecs.JSON, Codecs.SMILE, Codecs.CBOR, Codecs.KRYO, Codecs.PROTOSTUFF)) {
+			byte[] data = ByteUtils.toBytes(order, codec);
+			Order decoded = UnMarshaller.toObject(data, Order.class);
+			assertEquals(codec.name(), order.id, decoded.id);
+			assertEquals(codec.name(), order.items, decoded.items);
+		}
+	}
+
+	@Test
+	public void testLegacyJsonAndCompression() {
+		// 默认JSON不压缩时和以前的格式一样
+		byte[] legacy = ByteUtils.toBytes(Arrays.asList(1, 2, 3));
+		assertEquals("[1,2,3]", new String(legacy));
+
+		Codecs.setCompressThreshold(64);
+		List<Integer> numbers = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			numbers.add(i % 10);
+		}
+		byte[] compressed = ByteUtils.toBytes(numbers, Codecs.SMILE);
+		assertTrue(Codecs.isFramed(compressed));
+		assertTrue(compressed.length < 1000);
+		assertEquals(numbers, UnMarshaller.toList(compressed, Integer.class));
+		assertEquals(numbers, UnMarshaller.toList(legacyList(numbers), Integer.class));
+	}
+
+	@Test
+	public void testCodecOnlyForValues() {
+		Codecs.setDefault(Codecs.KRYO);
+		Order order = new Order();
+		order.id = 2L;
+		//key、field、member、消息不受全局Codec影响
+		byte[] key = ByteUtils.toBytes(order);
+		assertFalse(Codecs.isFramed(key));
+		assertTrue(new String(key).startsWith("{"));
+		byte[] value = ByteUtils.toValueBytes(order);
+		assertTrue(Codecs.isFramed(value));
+		assertEquals(order.id, UnMarshaller.toObject(value, Order.class).id);
+	}
+
+	/**
+	 * List和其他对象一样用配置的Codec存, 需要本地Redis
+	 */
+	@Test
+	public void testListValueUsesCodec() {
+		Codecs.setDefault(Codecs.KRYO);
+		List<Integer> numbers = Arrays.asList(1, 2, 3);
+		JedisUtils.set("test:codec:list", numbers);
+		try {
+			assertTrue(Codecs.isFramed(JedisUtils.getBytes("test:codec:list")));
+			assertEquals(numbers, JedisUtils.getList("test:codec:list", Integer.class));
+		} finally {
+			JedisUtils.del("test:codec:list");
+		}
+	}
+
+	private static byte[] legacyList(List<Integer> numbers) {
+		Codecs.setCompressThreshold(-1);
+		return ByteUtils.toBytes(numbers);
+	}
+
+	public static class Order {
+
+		public Long id;
+
+		public List<String> items;
+	}
+}
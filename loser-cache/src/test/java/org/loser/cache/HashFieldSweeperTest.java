@@ -0,0 +1,57 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.collection.HashFieldSweeper;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 设置了过期时间之后再也不访问的hash field由后台清理掉
+ * <p>
+ * Copyright: (C), 2026/10/17 23:20
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class HashFieldSweeperTest {
+
+	private static final int HASHES = 50;
+
+	private static final int FIELDS = 500;
+
+	@Test
+	public void testSweepUntouchedFields() throws InterruptedException {
+		for (int i = 0; i < HASHES; i++) {
+			String key = "sweep-hash-" + i;
+			JedisUtils.del(key);
+			JedisUtils.del("jedis_utils:__timeout__set:" + key);
+			for (int j = 0; j < FIELDS; j++) {
+				JedisUtils.HASH.hset(key, "field" + j, "value" + j, 1);
+			}
+			//没有过期时间的field不能被清理掉
+			JedisUtils.HASH.hset(key, "forever", "value");
+		}
+		Thread.sleep(2000);
+
+		JedisUtils.enableHashSweeper(100, 20, 100, 100);
+		HashFieldSweeper sweeper = JedisUtils.hashSweeper();
+		long deadline = System.currentTimeMillis() + 30_000;
+		while (sweeper.sweptCount() < HASHES * FIELDS && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+		}
+		JedisUtils.disableHashSweeper();
+
+		System.out.println(String.format("swept %d fields with %d scripts, %d passes",
+				sweeper.sweptCount(), sweeper.scriptCount(), sweeper.passCount()));
+		assertTrue(sweeper.sweptCount() >= HASHES * FIELDS);
+		for (int i = 0; i < HASHES; i++) {
+			String key = "sweep-hash-" + i;
+			assertFalse(JedisUtils.exists("jedis_utils:__timeout__set:" + key));
+			assertEquals(1, JedisUtils.HASH.hlen(key));
+		}
+	}
+}
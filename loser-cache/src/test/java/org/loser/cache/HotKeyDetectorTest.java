@@ -0,0 +1,97 @@
+package org.loser.cache;
+
+import com.loserico.cache.local.HotKeyDetector;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+/**
+ * 热点key探测: 能不能从大量冷key里找出热点key, 以及非热点key每次读多花多少时间
+ * <p>
+ * loader不访问Redis, 不需要启动Redis
+ * <p>
+ * Copyright: (C), 2026/10/17 23:45
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class HotKeyDetectorTest {
+
+	private static final byte[] VALUE = "value".getBytes(UTF_8);
+
+	@Test
+	public void testDetectAndPin() throws InterruptedException {
+		HotKeyDetector detector = new HotKeyDetector(10, 1000, 4, 1000, 2048, 500);
+		LongAdder hotLoads = new LongAdder();
+		byte[] hotKey = "product:hot".getBytes(UTF_8);
+		long hotReads = 0;
+		long deadline = System.currentTimeMillis() + 2000;
+		while (System.currentTimeMillis() < deadline) {
+			//1个热点key, 其他都是只读一两次的冷key
+			for (int i = 0; i < 10; i++) {
+				detector.get(hotKey, key -> {
+					hotLoads.increment();
+					return VALUE;
+				});
+				hotReads++;
+			}
+			byte[] coldKey = ("product:" + ThreadLocalRandom.current().nextInt(100_000)).getBytes(UTF_8);
+			detector.get(coldKey, key -> VALUE);
+		}
+
+		Map<String, Long> hotKeys = detector.hotKeys();
+		System.out.println(hotKeys + " " + detector.stats());
+		System.out.println(String.format("hot key read %d times, loaded %d times", hotReads, hotLoads.sum()));
+		assertEquals(1, hotKeys.size());
+		assertTrue(hotKeys.containsKey("product:hot"));
+		assertTrue(hotLoads.sum() < hotReads / 10);
+		detector.close();
+	}
+
+	@Test
+	public void testColdPathOverhead() {
+		HotKeyDetector detector = new HotKeyDetector(100, 1000, 16, 5000, 2048, 1000);
+		int keyCount = 10_000;
+		byte[][] keys = new byte[keyCount][];
+		for (int i = 0; i < keyCount; i++) {
+			keys[i] = ("product:" + i).getBytes(UTF_8);
+		}
+		int rounds = 5_000_000;
+		long sink = 0;
+		//预热
+		for (int i = 0; i < rounds; i++) {
+			sink += detector.get(keys[i % keyCount], key -> VALUE).length;
+			sink += loadDirectly(keys[i % keyCount]).length;
+		}
+
+		long begin = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			sink += loadDirectly(keys[i % keyCount]).length;
+		}
+		long baseline = System.nanoTime() - begin;
+
+		begin = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			sink += detector.get(keys[i % keyCount], key -> VALUE).length;
+		}
+		long detected = System.nanoTime() - begin;
+
+		double overheadNanos = (double) (detected - baseline) / rounds;
+		System.out.println(String.format("overhead per read: %.1f ns (%d)", overheadNanos, sink));
+		assertTrue(detector.hotKeys().isEmpty());
+		assertTrue(overheadNanos < 300);
+		detector.close();
+	}
+
+	private static byte[] loadDirectly(byte[] key) {
+		return VALUE;
+	}
+}
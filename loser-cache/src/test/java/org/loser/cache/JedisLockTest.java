@@ -2,8 +2,17 @@ package org.loser.cache;
 
 import com.loserico.cache.JedisUtils;
 import com.loserico.cache.concurrent.Lock;
+import com.loserico.cache.concurrent.LockManagerStats;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
 /**
  * <p>
  * Copyright: (C), 2020/4/1 9:22
@@ -23,4 +32,59 @@ public class JedisLockTest {
 		System.out.println("...do some work");
 		lock.unlock();
 	}
+	
+	/**
+	 * 50个线程抢同一把锁, 共用一个订阅连接和一个续期线程, 不会耗光连接池
+	 */
+	@Test
+	public void testBlockingLockContention() throws InterruptedException {
+		int threads = 50;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch done = new CountDownLatch(threads);
+		AtomicInteger inside = new AtomicInteger();
+		AtomicInteger maxInside = new AtomicInteger();
+		for (int i = 0; i < threads; i++) {
+			pool.execute(() -> {
+				Lock lock = JedisUtils.blockingLock("lock002");
+				lock.lock();
+				try {
+					maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+					Thread.sleep(20);
+					inside.decrementAndGet();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					lock.unlock();
+					done.countDown();
+				}
+			});
+		}
+		
+		assertTrue(done.await(60, TimeUnit.SECONDS));
+		pool.shutdown();
+		assertEquals(1, maxInside.get());
+		
+		LockManagerStats stats = JedisUtils.lockManagerStats();
+		System.out.println(stats);
+		assertEquals(0, stats.getWaiterCount());
+		assertEquals(0, stats.getHeldLockCount());
+	}
+	
+	/**
+	 * 持有锁的时间超过锁有效期, 由LockManager续期, 锁不会被别人拿走
+	 */
+	@Test
+	public void testBlockingLockRenewal() throws InterruptedException {
+		Lock lock = JedisUtils.blockingLock("lock003");
+		lock.lock();
+		assertEquals(1, JedisUtils.lockManagerStats().getHeldLockCount());
+		
+		int leaseSeconds = JedisUtils.lockManager().leaseSeconds();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(leaseSeconds) + 1000);
+		assertTrue(JedisUtils.exists("loser:blk:lock003:lock"));
+		assertTrue(JedisUtils.lockManagerStats().getRenewCount() > 0);
+		
+		lock.unlock();
+		assertEquals(0, JedisUtils.lockManagerStats().getHeldLockCount());
+	}
 }
@@ -7,8 +7,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
@@ -286,4 +289,44 @@ public class JedisUtilsTests {
 		Boolean v1 = JedisUtils.get("k1", Boolean.class);
 		assertTrue(v1.booleanValue());
 	}
+	
+	@Test
+	public void testBatchOps() {
+		Map<String, Object> keyValues = new LinkedHashMap<>();
+		keyValues.put("batch:k1", "v1");
+		keyValues.put("batch:k2", 2);
+		keyValues.put("batch:k3", "v3");
+		JedisUtils.mset(keyValues);
+		
+		List<String> values = JedisUtils.mget(Arrays.asList("batch:k3", "batch:missing", "batch:k1"));
+		assertEquals(Arrays.asList("v3", null, "v1"), values);
+		
+		JedisUtils.HASH.hset("batch:h1", "f1", "a");
+		List<Map<String, String>> maps = JedisUtils.HASH.hgetAll(Arrays.asList("batch:missing", "batch:h1"));
+		assertTrue(maps.get(0).isEmpty());
+		assertEquals("a", maps.get(1).get("f1"));
+		
+		long deleted = JedisUtils.mdel(Arrays.asList("batch:k1", "batch:k2", "batch:k3", "batch:h1", "batch:missing"));
+		assertEquals(4L, deleted);
+	}
+	
+	@Test
+	public void testScanStreams() {
+		for (int i = 0; i < 1000; i++) {
+			JedisUtils.HASH.hset("scan:h1", "f" + i, i);
+			JedisUtils.SET.sadd("scan:s1", "m" + i);
+		}
+		
+		long fields = JedisUtils.HASH.hscan("scan:h1", "f1*", 50, String.class, Integer.class)
+				.map(Map.Entry::getKey)
+				.distinct()
+				.count();
+		assertEquals(111L, fields);
+		
+		long members = JedisUtils.SET.sscan("scan:s1", String.class).distinct().count();
+		assertEquals(1000L, members);
+		
+		assertTrue(JedisUtils.scan("scan:*", 100).anyMatch("scan:h1"::equals));
+		JedisUtils.mdel(Arrays.asList("scan:h1", "scan:s1"));
+	}
 }
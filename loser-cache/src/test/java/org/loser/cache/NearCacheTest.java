@@ -0,0 +1,77 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.local.NearCacheStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>
+ * Copyright: (C), 2026/10/17 11:05
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class NearCacheTest {
+
+	@Before
+	public void enable() {
+		JedisUtils.enableNearCache(1000, 30, TimeUnit.SECONDS);
+	}
+
+	@After
+	public void disable() {
+		JedisUtils.disableNearCache();
+	}
+
+	@Test
+	public void testHitAndInvalidate() {
+		JedisUtils.set("near:k1", "v1");
+		assertEquals("v1", JedisUtils.get("near:k1"));
+		for (int i = 0; i < 100; i++) {
+			assertEquals("v1", JedisUtils.get("near:k1"));
+		}
+
+		JedisUtils.set("near:k1", "v2");
+		assertEquals("v2", JedisUtils.get("near:k1"));
+
+		NearCacheStats stats = JedisUtils.nearCacheStats();
+		System.out.println(stats);
+		assertTrue(stats.getHitRate() > 0.9);
+	}
+
+	@Test
+	public void testHashField() {
+		JedisUtils.HASH.hset("near:h1", "f1", 1L);
+		assertEquals(Long.valueOf(1L), JedisUtils.HASH.hget("near:h1", "f1", Long.class));
+		JedisUtils.HASH.hset("near:h1", "f1", 2L);
+		assertEquals(Long.valueOf(2L), JedisUtils.HASH.hget("near:h1", "f1", Long.class));
+		JedisUtils.del("near:h1");
+		assertNull(JedisUtils.HASH.hget("near:h1", "f1", Long.class));
+	}
+
+	@Test
+	public void testBatchInvalidate() {
+		JedisUtils.set("near:b1", "v1");
+		JedisUtils.set("near:b2", "v2");
+		JedisUtils.HASH.hset("near:b3", "f1", 1L);
+		assertEquals("v1", JedisUtils.get("near:b1"));
+		assertEquals(Long.valueOf(1L), JedisUtils.HASH.hget("near:b3", "f1", Long.class));
+
+		long before = JedisUtils.nearCacheStats().getInvalidationCount();
+		JedisUtils.mdel(Arrays.asList("near:b1", "near:b2", "near:b3"));
+		assertEquals(before + 3, JedisUtils.nearCacheStats().getInvalidationCount());
+		assertNull(JedisUtils.get("near:b1"));
+		//整个key失效的时候它下面的field也一起失效
+		assertNull(JedisUtils.HASH.hget("near:b3", "f1", Long.class));
+	}
+}
@@ -0,0 +1,102 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.collection.PatternDeleter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+/**
+ * SCAN + UNLINK按pattern删除, 需要本地Redis
+ * <p>
+ * Copyright: (C), 2026/10/18 08:10
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class PatternDeleterTest {
+
+	@Test
+	public void testDeleteByPattern() {
+		prepare("test:pattern:delete:", 1000);
+		JedisUtils.set("test:pattern:keep", "keep");
+
+		assertEquals(1000, JedisUtils.deleteByPattern("test:pattern:delete:*", 100));
+		assertEquals(0, count("test:pattern:delete:*"));
+		assertEquals("keep", JedisUtils.get("test:pattern:keep"));
+		JedisUtils.del("test:pattern:keep");
+	}
+
+	@Test
+	public void testThrottle() {
+		prepare("test:pattern:throttle:", 300);
+		long begin = System.currentTimeMillis();
+		assertEquals(300, JedisUtils.deleteByPattern("test:pattern:throttle:*", 50, 1000, null));
+		//每秒最多1000个, 300个至少要0.3秒
+		assertTrue(System.currentTimeMillis() - begin >= 250);
+	}
+
+	@Test
+	public void testCancel() {
+		prepare("test:pattern:cancel:", 1000);
+		AtomicInteger batches = new AtomicInteger();
+		long deleted = JedisUtils.deleteByPattern("test:pattern:cancel:*", 100, 0,
+				(master, scanned, count) -> batches.incrementAndGet() < 2);
+		assertEquals(2, batches.get());
+		assertEquals(1000 - deleted, count("test:pattern:cancel:*"));
+		assertTrue(deleted > 0 && deleted < 1000);
+
+		PatternDeleter deleter = new PatternDeleter("test:pattern:cancel:*", 100, 0, null);
+		deleter.cancel();
+		assertEquals(0, deleter.execute());
+		assertEquals(0, deleter.scannedCount());
+
+		JedisUtils.deleteByPattern("test:pattern:cancel:*", 100);
+		assertEquals(0, count("test:pattern:cancel:*"));
+	}
+
+	/**
+	 * 不是合法UTF-8的二进制key也要删掉, 不能只算扫描到
+	 */
+	@Test
+	public void testBinaryKeys() {
+		List<byte[]> keys = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			byte[] key = Arrays.copyOf("test:pattern:binary:".getBytes(UTF_8), 23);
+			key[20] = (byte) 0xFF;
+			key[21] = (byte) 0xFE;
+			key[22] = (byte) i;
+			keys.add(key);
+			JedisUtils.set(key, "binary".getBytes(UTF_8));
+		}
+
+		assertEquals(10, JedisUtils.deleteByPattern("test:pattern:binary:*", 100));
+		for (byte[] key : keys) {
+			assertFalse(JedisUtils.execute((jedis) -> jedis.exists(key)));
+		}
+	}
+
+	private static void prepare(String prefix, int count) {
+		JedisUtils.deleteByPattern(prefix + "*", 500);
+		Map<String, String> keyValues = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			keyValues.put(prefix + i, String.valueOf(i));
+		}
+		JedisUtils.mset(keyValues);
+	}
+
+	private static long count(String pattern) {
+		return JedisUtils.scan(pattern, 1000).distinct().count();
+	}
+}
@@ -0,0 +1,140 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.concurrent.Lock;
+import com.loserico.cache.concurrent.ReadWriteLock;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * 读多写少(95%读)的场景下对比读写锁和独占的BlockingLock
+ * <p>
+ * Copyright: (C), 2026/10/17 21:40
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class ReadWriteLockBenchmarkTest {
+
+	private static final int THREADS = 32;
+
+	private static final int OPS_PER_THREAD = 100;
+
+	private static final int WRITE_PERCENT = 5;
+
+	/**
+	 * 持有锁期间模拟读配置的耗时
+	 */
+	private static final long WORK_MILLIS = 2;
+
+	@Test
+	public void testReadersShareWriterExcludes() throws InterruptedException {
+		ReadWriteLock rwLock = JedisUtils.readWriteLock("rw-basic");
+		Lock reader1 = rwLock.readLock();
+		Lock reader2 = rwLock.readLock();
+		reader1.lock();
+		reader2.lock();
+		assertTrue(reader1.locked() && reader2.locked());
+
+		CountDownLatch writerLocked = new CountDownLatch(1);
+		Thread writer = new Thread(() -> {
+			Lock writeLock = rwLock.writeLock();
+			writeLock.lock();
+			writerLocked.countDown();
+			writeLock.unlock();
+		});
+		writer.start();
+		assertFalse(writerLocked.await(300, TimeUnit.MILLISECONDS));
+
+		//写者在等, 新来的读者要排在它后面
+		AtomicInteger lateReaderOrder = new AtomicInteger();
+		Thread lateReader = new Thread(() -> {
+			Lock readLock = rwLock.readLock();
+			readLock.lock();
+			lateReaderOrder.set(writerLocked.getCount() == 0 ? 2 : 1);
+			readLock.unlock();
+		});
+		lateReader.start();
+		Thread.sleep(300);
+
+		reader1.unlock();
+		reader2.unlock();
+		assertTrue(writerLocked.await(5, TimeUnit.SECONDS));
+		lateReader.join(5000);
+		assertEquals(2, lateReaderOrder.get());
+	}
+
+	@Test
+	public void testReadHeavy() throws InterruptedException {
+		ReadWriteLock rwLock = JedisUtils.readWriteLock("rw-bench");
+		AtomicInteger readers = new AtomicInteger();
+		AtomicInteger writers = new AtomicInteger();
+		AtomicInteger violations = new AtomicInteger();
+
+		long exclusiveNanos = run(() -> JedisUtils.blockingLock("rw-bench-exclusive"),
+				() -> JedisUtils.blockingLock("rw-bench-exclusive"),
+				readers, writers, violations);
+		long rwNanos = run(rwLock::readLock, rwLock::writeLock, readers, writers, violations);
+
+		long total = (long) THREADS * OPS_PER_THREAD;
+		System.out.println(String.format("exclusive BlockingLock: %,d ops/s", total * 1_000_000_000L / exclusiveNanos));
+		System.out.println(String.format("ReadWriteLock:          %,d ops/s", total * 1_000_000_000L / rwNanos));
+		assertEquals(0, violations.get());
+		assertTrue(rwNanos < exclusiveNanos);
+	}
+
+	private long run(Supplier<Lock> readLocks, Supplier<Lock> writeLocks,
+	                 AtomicInteger readers, AtomicInteger writers, AtomicInteger violations) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch done = new CountDownLatch(THREADS);
+		long begin = System.nanoTime();
+		for (int i = 0; i < THREADS; i++) {
+			pool.execute(() -> {
+				try {
+					for (int j = 0; j < OPS_PER_THREAD; j++) {
+						boolean write = ThreadLocalRandom.current().nextInt(100) < WRITE_PERCENT;
+						Lock lock = write ? writeLocks.get() : readLocks.get();
+						lock.lock();
+						try {
+							if (write) {
+								if (writers.incrementAndGet() > 1 || readers.get() > 0) {
+									violations.incrementAndGet();
+								}
+								Thread.sleep(WORK_MILLIS);
+								writers.decrementAndGet();
+							} else {
+								readers.incrementAndGet();
+								if (writers.get() > 0) {
+									violations.incrementAndGet();
+								}
+								Thread.sleep(WORK_MILLIS);
+								readers.decrementAndGet();
+							}
+						} finally {
+							lock.unlock();
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		assertTrue(done.await(5, TimeUnit.MINUTES));
+		pool.shutdown();
+		return System.nanoTime() - begin;
+	}
+}
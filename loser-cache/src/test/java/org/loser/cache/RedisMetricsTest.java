@@ -0,0 +1,77 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.metrics.CommandStats;
+import com.loserico.cache.metrics.Histogram;
+import com.loserico.cache.metrics.RedisMetricsSnapshot;
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * 命令统计: 直方图的百分位误差, 以及JedisUtils的调用能在统计里看到
+ * <p>
+ * Copyright: (C), 2026/10/18 00:50
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class RedisMetricsTest {
+
+	@Test
+	public void testHistogramPercentiles() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100_000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(100_000, histogram.count());
+		assertEquals(100_000_000L, histogram.max());
+		//相对误差不超过1/16, 而且只会高估
+		long p50 = histogram.percentile(50);
+		long p99 = histogram.percentile(99);
+		assertTrue(p50 >= 50_000_000L && p50 <= 50_000_000L * 17 / 16);
+		assertTrue(p99 >= 99_000_000L && p99 <= 99_000_000L * 17 / 16);
+		assertEquals(100_000_000L, histogram.percentile(100));
+	}
+
+	@Test
+	public void testRecordOverhead() {
+		Histogram histogram = new Histogram();
+		int rounds = 10_000_000;
+		for (int i = 0; i < rounds; i++) {
+			histogram.record(ThreadLocalRandom.current().nextInt(1_000_000));
+		}
+		long begin = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			histogram.record(ThreadLocalRandom.current().nextInt(1_000_000));
+		}
+		double nanos = (double) (System.nanoTime() - begin) / rounds;
+		System.out.println(String.format("record: %.1f ns", nanos));
+		assertTrue(nanos < 200);
+	}
+
+	@Test
+	public void testCommandMetrics() {
+		for (int i = 0; i < 1000; i++) {
+			JedisUtils.set("metrics-key-" + i, "value-" + i);
+			JedisUtils.get("metrics-key-" + i);
+		}
+		RedisMetricsSnapshot snapshot = JedisUtils.redisMetrics();
+		assertNotNull(snapshot);
+		System.out.println(snapshot);
+
+		CommandStats get = snapshot.getCommands().stream()
+				.filter(stats -> "get".equals(stats.getCommand()))
+				.findFirst()
+				.orElse(null);
+		assertNotNull(get);
+		assertTrue(get.getCount() >= 1000);
+		assertTrue(get.getP99Micros() >= get.getP50Micros());
+		assertTrue(get.getResponseBytesMax() >= "value-999".length());
+	}
+}
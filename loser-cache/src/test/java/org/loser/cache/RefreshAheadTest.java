@@ -0,0 +1,44 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>
+ * Copyright: (C), 2026/10/17 16:30
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class RefreshAheadTest {
+
+	@Test
+	public void testStaleWhileRevalidate() throws InterruptedException {
+		String key = "xf:config";
+		JedisUtils.del(key);
+		AtomicInteger version = new AtomicInteger();
+
+		Integer first = JedisUtils.getRefreshAhead(key, Integer.class, version::incrementAndGet, 1, 10, TimeUnit.SECONDS);
+		assertEquals(Integer.valueOf(1), first);
+
+		TimeUnit.MILLISECONDS.sleep(1200);
+		// 逻辑上过期了, 先拿到旧值, 同时后台刷新
+		Integer stale = JedisUtils.getRefreshAhead(key, Integer.class, version::incrementAndGet, 1, 10, TimeUnit.SECONDS);
+		assertEquals(Integer.valueOf(1), stale);
+
+		TimeUnit.MILLISECONDS.sleep(300);
+		Integer refreshed = JedisUtils.getRefreshAhead(key, Integer.class, version::incrementAndGet, 1, 10, TimeUnit.SECONDS);
+		assertEquals(Integer.valueOf(2), refreshed);
+
+		System.out.println(JedisUtils.refreshAheadStats());
+		JedisUtils.del(key);
+	}
+}
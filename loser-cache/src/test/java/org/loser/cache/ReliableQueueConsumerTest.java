@@ -0,0 +1,97 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.collection.ReliableQueueConsumer;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 批量消费多个队列, listener抛异常重新入队, 挂掉的消费者没ack的元素被其他消费者接手
+ * <p>
+ * Copyright: (C), 2026/10/17 22:50
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class ReliableQueueConsumerTest {
+
+	private static final int MESSAGES = 10000;
+
+	@Test
+	public void testBatchConsumeMultiQueues() throws InterruptedException {
+		JedisUtils.mdel(Arrays.asList("rq-orders", "rq-payments", "{rq-orders}:consumers", "{rq-payments}:consumers"));
+		for (int i = 0; i < MESSAGES; i++) {
+			JedisUtils.LIST.lpush(i % 2 == 0 ? "rq-orders" : "rq-payments", String.valueOf(i));
+		}
+
+		Set<String> received = ConcurrentHashMap.newKeySet();
+		CountDownLatch done = new CountDownLatch(MESSAGES);
+		AtomicInteger batches = new AtomicInteger();
+		long begin = System.currentTimeMillis();
+		ReliableQueueConsumer consumer = new ReliableQueueConsumer("rq-batch", Arrays.asList("rq-orders", "rq-payments"),
+				(queue, messages) -> {
+					batches.incrementAndGet();
+					for (String message : messages) {
+						received.add(message);
+						done.countDown();
+					}
+				}, 100, 4, 8, 100, 10_000);
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		long elapsed = System.currentTimeMillis() - begin;
+		consumer.close();
+
+		System.out.println(String.format("%d messages in %d batches, %d ms", MESSAGES, batches.get(), elapsed));
+		assertEquals(MESSAGES, received.size());
+		assertEquals(MESSAGES, consumer.ackedCount());
+		assertEquals(0, JedisUtils.LIST.llen("{rq-orders}:processing:rq-batch"));
+		assertEquals(0, JedisUtils.LIST.llen("{rq-payments}:processing:rq-batch"));
+	}
+
+	@Test
+	public void testRequeueOnFailure() throws InterruptedException {
+		JedisUtils.mdel(Arrays.asList("rq-retry", "{rq-retry}:consumers"));
+		JedisUtils.LIST.lpush("rq-retry", "m1");
+		AtomicBoolean failed = new AtomicBoolean();
+		CountDownLatch done = new CountDownLatch(1);
+		ReliableQueueConsumer consumer = new ReliableQueueConsumer("rq-retry", Collections.singletonList("rq-retry"),
+				(queue, messages) -> {
+					if (failed.compareAndSet(false, true)) {
+						throw new IllegalStateException("第一次处理失败");
+					}
+					done.countDown();
+				}, 10, 1, 1, 50, 10_000);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		consumer.close();
+		assertEquals(1, consumer.requeuedCount());
+		assertEquals(1, consumer.ackedCount());
+	}
+
+	@Test
+	public void testReapDeadConsumer() throws InterruptedException {
+		JedisUtils.mdel(Arrays.asList("rq-reap", "{rq-reap}:consumers"));
+		//模拟一个3秒前就停止心跳的消费者, 手上还有两个没ack的元素
+		JedisUtils.LIST.lpush("{rq-reap}:processing:dead", "m1", "m2");
+		JedisUtils.ZSET.zadd("{rq-reap}:consumers", System.currentTimeMillis() - 3000, "dead");
+
+		CountDownLatch done = new CountDownLatch(2);
+		ReliableQueueConsumer consumer = new ReliableQueueConsumer("rq-alive", Collections.singletonList("rq-reap"),
+				(queue, messages) -> messages.forEach(message -> done.countDown()), 10, 1, 1, 50, 1000);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		consumer.close();
+		assertEquals(2, consumer.reapedCount());
+		assertFalse(JedisUtils.exists("{rq-reap}:processing:dead"));
+	}
+}
@@ -0,0 +1,145 @@
+package org.loser.cache;
+
+import com.loserico.cache.pool.AbstractRoutingRedisPool;
+import com.loserico.cache.pool.ReplicaNode;
+import com.loserico.cache.pool.ReplicaPolicy;
+import org.junit.Test;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.util.Pool;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 读命令在从库之间的分配、从库挂了以后回退到master, 不需要Redis
+ * <p>
+ * Copyright: (C), 2026/10/18 02:30
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class ReplicaRoutingTest {
+
+	@Test
+	public void testRoundRobin() {
+		TestRoutingPool pool = newPool(ReplicaPolicy.ROUND_ROBIN);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 300; i++) {
+			counts.merge(pool.read((node) -> node), 1, Integer::sum);
+		}
+		assertEquals(100, (int) counts.get("replica-1"));
+		assertEquals(100, (int) counts.get("replica-2"));
+		assertEquals(100, (int) counts.get("replica-3"));
+		assertEquals("master", pool.write((node) -> node));
+		assertEquals("master", pool.execute("EVALSHA", (node) -> node));
+		assertNotEquals("master", pool.execute("hgetall", (node) -> node));
+	}
+
+	@Test
+	public void testLeastOutstanding() {
+		TestRoutingPool pool = newPool(ReplicaPolicy.LEAST_OUTSTANDING);
+		//在replica-1上执行的时候再读一次, 应该选别的从库
+		String nested = pool.read((outer) -> pool.read((inner) -> outer + "," + inner));
+		String[] nodes = nested.split(",");
+		assertNotEquals(nodes[0], nodes[1]);
+	}
+
+	@Test
+	public void testLowestLatency() {
+		TestRoutingPool pool = newPool(ReplicaPolicy.LOWEST_LATENCY);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 3000; i++) {
+			counts.merge(pool.read((node) -> {
+				if ("replica-3".equals(node)) {
+					sleepMicros(500);
+				}
+				return node;
+			}), 1, Integer::sum);
+		}
+		System.out.println(counts);
+		assertTrue(counts.getOrDefault("replica-3", 0) < counts.get("replica-1"));
+		assertTrue(counts.getOrDefault("replica-3", 0) < counts.get("replica-2"));
+	}
+
+	@Test
+	public void testFallbackToMaster() {
+		TestRoutingPool pool = newPool(ReplicaPolicy.ROUND_ROBIN);
+		pool.setFailureThreshold(1);
+		for (int i = 0; i < 30; i++) {
+			String node = pool.read((name) -> {
+				if ("replica-2".equals(name)) {
+					throw new JedisConnectionException("connection refused");
+				}
+				return name;
+			});
+			assertNotEquals("replica-2", node);
+		}
+		for (ReplicaNode<String> replica : pool.replicas("default")) {
+			assertEquals(!"replica-2".equals(replica.getName()), replica.isHealthy());
+		}
+
+		//所有从库都挂了读master
+		TestRoutingPool broken = newPool(ReplicaPolicy.ROUND_ROBIN);
+		broken.setFailureThreshold(1);
+		for (int i = 0; i < 3; i++) {
+			assertEquals("master", broken.read((name) -> {
+				if (!"master".equals(name)) {
+					throw new JedisConnectionException("connection refused");
+				}
+				return name;
+			}));
+		}
+		assertEquals("master", broken.read((name) -> name));
+		pool.stopHealthCheck();
+		broken.stopHealthCheck();
+	}
+
+	private static TestRoutingPool newPool(ReplicaPolicy policy) {
+		TestRoutingPool pool = new TestRoutingPool();
+		pool.setReadPolicy(policy);
+		pool.setHealthCheckMillis(60_000);
+		pool.setDefaultTargetPoolName("default");
+		pool.getTargetPools().put("default", new NamedPool("master"));
+		for (int i = 1; i <= 3; i++) {
+			pool.addReplica("default", "replica-" + i, new NamedPool("replica-" + i));
+		}
+		return pool;
+	}
+
+	private static void sleepMicros(long micros) {
+		long deadline = System.nanoTime() + micros * 1000;
+		while (System.nanoTime() < deadline) {
+			Thread.yield();
+		}
+	}
+
+	private static class TestRoutingPool extends AbstractRoutingRedisPool<String> {
+
+		@Override
+		protected Object determineCurrentLookupKey() {
+			return "default";
+		}
+	}
+
+	/**
+	 * 借出来的"连接"就是池子的名字
+	 */
+	private static class NamedPool extends Pool<String> {
+
+		private final String name;
+
+		private NamedPool(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getResource() {
+			return name;
+		}
+	}
+}
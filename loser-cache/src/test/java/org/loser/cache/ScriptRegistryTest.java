@@ -0,0 +1,52 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.operations.ScriptRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * SCRIPT FLUSH之后脚本照样能执行, 并且会在后台重新加载
+ * <p>
+ * Copyright: (C), 2026/10/18 01:40
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class ScriptRegistryTest {
+
+	@Test
+	public void testEvalAfterScriptFlush() throws InterruptedException {
+		ScriptRegistry scripts = JedisUtils.scripts();
+		scripts.register("echo", "return ARGV[1]");
+		JedisUtils.del("script-registry-lock");
+
+		JedisUtils.execute((jedis) -> jedis.scriptFlush());
+		long fallbacks = scripts.fallbackCount();
+
+		assertTrue(JedisUtils.setnx("script-registry-lock", "token", 10, TimeUnit.SECONDS));
+		assertTrue(JedisUtils.unlock("script-registry-lock", "token"));
+		String echo = JedisUtils.evalScript("echo", 0, "hello");
+		assertEquals("hello", echo);
+		assertTrue(scripts.fallbackCount() > fallbacks);
+
+		//后台重新加载完之后不再走EVAL
+		Thread.sleep(1000);
+		fallbacks = scripts.fallbackCount();
+		assertEquals("world", JedisUtils.evalScript("echo", 0, "world"));
+		assertTrue(JedisUtils.setnx("script-registry-lock", "token", 10, TimeUnit.SECONDS));
+		assertTrue(JedisUtils.unlock("script-registry-lock", "token"));
+		assertEquals(fallbacks, scripts.fallbackCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnregisteredScript() {
+		JedisUtils.evalScript("not-registered", 0);
+	}
+}
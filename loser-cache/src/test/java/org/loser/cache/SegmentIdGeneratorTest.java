@@ -0,0 +1,87 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.concurrent.SegmentIdGenerator;
+import lombok.SneakyThrows;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 号段ID生成器, 需要本地Redis
+ * <p>
+ * Copyright: (C), 2026/10/18 05:20
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class SegmentIdGeneratorTest {
+	
+	@SneakyThrows
+	@Test
+	public void testThroughput() {
+		JedisUtils.del("loser:id:test-order");
+		SegmentIdGenerator generator = new SegmentIdGenerator("test-order", 1000, 1000000, 1000, 0.1);
+		int threads = 8;
+		int perThread = 200_000;
+		long[][] ids = new long[threads][perThread];
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch latch = new CountDownLatch(threads);
+		
+		long begin = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			long[] results = ids[t];
+			executor.execute(() -> {
+				for (int i = 0; i < perThread; i++) {
+					results[i] = generator.nextId();
+				}
+				latch.countDown();
+			});
+		}
+		assertTrue(latch.await(60, TimeUnit.SECONDS));
+		long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+		executor.shutdown();
+		System.out.println(String.format("%d ids in %dms, %d ids/s, %d segments, %d sync loads, step %d",
+				threads * perThread, elapsedMillis, threads * perThread * 1000L / elapsedMillis,
+				generator.segmentCount(), generator.syncLoadCount(), generator.getStep()));
+		
+		//每个线程拿到的严格递增
+		for (long[] results : ids) {
+			for (int i = 1; i < results.length; i++) {
+				assertTrue(results[i] > results[i - 1]);
+			}
+		}
+		//所有线程合起来不重复, 而且是连续的, 空洞只可能在最后一个号段和预取的号段里
+		long[] all = Arrays.stream(ids).flatMapToLong(Arrays::stream).sorted().toArray();
+		for (int i = 1; i < all.length; i++) {
+			assertEquals(all[i - 1] + 1, all[i]);
+		}
+		assertEquals(1L, all[0]);
+		assertEquals(threads * perThread, generator.allocatedCount());
+		//消费很快, 号段会变大
+		assertTrue(generator.getStep() > 1000);
+	}
+	
+	@SneakyThrows
+	@Test
+	public void testMultipleNodes() {
+		JedisUtils.del("loser:id:test-nodes");
+		SegmentIdGenerator node1 = new SegmentIdGenerator("test-nodes", 100, 100, 1000, 0.5);
+		SegmentIdGenerator node2 = new SegmentIdGenerator("test-nodes", 100, 100, 1000, 0.5);
+		long[] ids = new long[1000];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i % 2 == 0 ? node1.nextId() : node2.nextId();
+		}
+		assertEquals(ids.length, Arrays.stream(ids).distinct().count());
+		assertTrue(node1.segmentCount() >= 5);
+	}
+}
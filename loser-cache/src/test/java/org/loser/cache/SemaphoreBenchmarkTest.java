@@ -0,0 +1,142 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.concurrent.Semaphore;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分布式信号量: 并发上限、租约过期回收以及高竞争下的吞吐量
+ * <p>
+ * Copyright: (C), 2026/10/17 20:55
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class SemaphoreBenchmarkTest {
+
+	private static final int THREADS = 64;
+
+	private static final int OPS_PER_THREAD = 200;
+
+	private static final int PERMITS = 8;
+
+	@Test
+	public void testMultiPermits() throws InterruptedException {
+		Semaphore semaphore = JedisUtils.semaphore("sem-multi", 5);
+		try {
+			assertTrue(semaphore.isPermitsSetSuccess());
+			assertTrue(semaphore.tryAcquire(3));
+			assertFalse(semaphore.tryAcquire(3));
+			assertEquals(2, semaphore.availablePermits());
+			assertEquals(2, semaphore.drainPermits());
+			assertEquals(0, semaphore.availablePermits());
+			semaphore.release(5);
+			assertEquals(5, semaphore.availablePermits());
+
+			//同名信号量已经存在, 总许可数不会被覆盖
+			assertFalse(JedisUtils.semaphore("sem-multi", 100).isPermitsSetSuccess());
+		} finally {
+			semaphore.delete();
+		}
+	}
+
+	/**
+	 * 只能归还自己拿到的许可, 从别的Semaphore对象多归还不会把总许可数撑大
+	 */
+	@Test
+	public void testReleaseOnlyOwnLeases() throws InterruptedException {
+		Semaphore holder = JedisUtils.semaphore("sem-own", 2);
+		Semaphore other = JedisUtils.semaphore("sem-own", 2);
+		long held = JedisUtils.lockManagerStats().getHeldLockCount();
+		try {
+			assertTrue(holder.tryAcquire(2));
+			//租约交给LockManager续期
+			assertEquals(held + 2, JedisUtils.lockManagerStats().getHeldLockCount());
+			try {
+				other.release(2);
+				fail("other holds no permits");
+			} catch (IllegalStateException e) {
+				//expected
+			}
+			holder.release(2);
+			assertEquals(2, holder.availablePermits());
+			assertEquals(held, JedisUtils.lockManagerStats().getHeldLockCount());
+
+			holder.addPermits(1);
+			assertEquals(3, holder.availablePermits());
+		} finally {
+			holder.delete();
+		}
+	}
+
+	/**
+	 * 持有许可的客户端不释放(相当于挂了), 租约过期后等待的线程能拿到许可
+	 */
+	@Test
+	public void testLeaseExpire() throws InterruptedException {
+		Semaphore crashed = JedisUtils.semaphore("sem-lease", 1, 1, TimeUnit.SECONDS);
+		Semaphore waiter = JedisUtils.semaphore("sem-lease", 1, 1, TimeUnit.SECONDS);
+		try {
+			assertTrue(crashed.tryAcquire());
+			long begin = System.currentTimeMillis();
+			assertTrue(waiter.tryAcquire(3, TimeUnit.SECONDS));
+			long elapsed = System.currentTimeMillis() - begin;
+			System.out.println("Acquired after lease expired in " + elapsed + " ms");
+			assertTrue(elapsed < 2000);
+		} finally {
+			crashed.delete();
+		}
+	}
+
+	@Test
+	public void testContention() throws InterruptedException {
+		Semaphore semaphore = JedisUtils.semaphore("sem-bench", PERMITS);
+		AtomicInteger inside = new AtomicInteger();
+		AtomicInteger maxInside = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch done = new CountDownLatch(THREADS);
+
+		long begin = System.nanoTime();
+		for (int i = 0; i < THREADS; i++) {
+			pool.execute(() -> {
+				try {
+					for (int j = 0; j < OPS_PER_THREAD; j++) {
+						semaphore.acquire();
+						try {
+							maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+							inside.decrementAndGet();
+						} finally {
+							semaphore.release();
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		assertTrue(done.await(5, TimeUnit.MINUTES));
+		long elapsed = System.nanoTime() - begin;
+		pool.shutdown();
+
+		long total = (long) THREADS * OPS_PER_THREAD;
+		System.out.println(String.format("%d threads, %d permits: %,d acquire/release per second, %s",
+				THREADS, PERMITS, total * 1_000_000_000L / elapsed, JedisUtils.lockManagerStats()));
+		assertTrue(maxInside.get() <= PERMITS);
+		assertEquals(PERMITS, semaphore.availablePermits());
+		assertEquals(0, JedisUtils.lockManagerStats().getWaiterCount());
+		semaphore.delete();
+	}
+}
@@ -0,0 +1,135 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.listeners.SharedSubscriber;
+import com.loserico.cache.listeners.SharedSubscriber.Subscription;
+import lombok.SneakyThrows;
+import org.junit.Test;
+import redis.clients.jedis.args.ClientType;
+import redis.clients.jedis.params.ClientKillParams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * 共用订阅连接, 需要本地Redis
+ * <p>
+ * Copyright: (C), 2026/10/18 06:00
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class SharedSubscriberTest {
+	
+	private static final String PROBE = "__probe__";
+	
+	@Test
+	public void testOrdering() {
+		SharedSubscriber subscriber = JedisUtils.subscriber();
+		List<String> slow = Collections.synchronizedList(new ArrayList<>());
+		List<String> fast = Collections.synchronizedList(new ArrayList<>());
+		Subscription slowSubscription = subscriber.subscribe((channel, message) -> {
+			sleep(1);
+			slow.add(message);
+		}, "test:shared:ordering");
+		Subscription fastSubscription = subscriber.subscribe((channel, message) -> fast.add(message), "test:shared:ordering");
+		awaitSubscribed("test:shared:ordering", true);
+		
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			expected.add(String.valueOf(i));
+			JedisUtils.publish("test:shared:ordering", String.valueOf(i));
+		}
+		//慢的监听器不影响快的
+		await(() -> fast.size() == 500);
+		assertTrue(slow.size() < 500);
+		await(() -> slow.size() == 500);
+		assertEquals(expected, fast);
+		assertEquals(expected, slow);
+		
+		slowSubscription.unsubscribe();
+		fastSubscription.unsubscribe();
+		awaitSubscribed("test:shared:ordering", false);
+	}
+	
+	@Test
+	public void testPatternAndUnsubscribe() {
+		SharedSubscriber subscriber = JedisUtils.subscriber();
+		List<String> channels = new CopyOnWriteArrayList<>();
+		Subscription pattern = subscriber.psubscribe((channel, message) -> {
+			if (!PROBE.equals(message)) {
+				channels.add(channel);
+			}
+		}, "test:shared:p:*");
+		Subscription exact = subscriber.subscribe((channel, message) -> {
+			if (!PROBE.equals(message)) {
+				channels.add("exact");
+			}
+		}, "test:shared:p:1");
+		//同一个连接上频道和模式都匹配的话PUBLISH返回2
+		await(() -> JedisUtils.publish("test:shared:p:1", PROBE) == 2);
+		
+		JedisUtils.publish("test:shared:p:1", "hello");
+		JedisUtils.publish("test:shared:p:2", "hello");
+		await(() -> channels.size() == 3);
+		assertTrue(channels.contains("test:shared:p:1"));
+		assertTrue(channels.contains("test:shared:p:2"));
+		assertTrue(channels.contains("exact"));
+		
+		//取消一个不影响另一个
+		exact.unsubscribe();
+		await(() -> JedisUtils.publish("test:shared:p:1", PROBE) == 1);
+		pattern.unsubscribe();
+		await(() -> JedisUtils.publish("test:shared:p:1", PROBE) == 0);
+		assertTrue(pattern.isCancelled());
+	}
+	
+	@Test
+	public void testReconnect() {
+		SharedSubscriber subscriber = JedisUtils.subscriber();
+		List<String> messages = new CopyOnWriteArrayList<>();
+		Subscription subscription = subscriber.subscribe((channel, message) -> messages.add(message), "test:shared:reconnect");
+		awaitSubscribed("test:shared:reconnect", true);
+		long reconnects = subscriber.reconnectCount();
+		
+		//把所有订阅连接踢掉
+		JedisUtils.execute((jedis) -> jedis.clientKill(ClientKillParams.clientKillParams().type(ClientType.PUBSUB)));
+		await(() -> subscriber.reconnectCount() > reconnects && subscriber.isConnected());
+		awaitSubscribed("test:shared:reconnect", true);
+		
+		JedisUtils.publish("test:shared:reconnect", "after-reconnect");
+		await(() -> messages.contains("after-reconnect"));
+		subscription.unsubscribe();
+	}
+	
+	/**
+	 * 订阅是异步生效的, 所有监听器共用一个连接, 所以订阅了的频道PUBSUB NUMSUB是1
+	 */
+	private static void awaitSubscribed(String channel, boolean subscribed) {
+		String expected = subscribed ? "1" : "0";
+		await(() -> expected.equals(JedisUtils.execute((jedis) -> jedis.pubsubNumSub(channel)).get(channel)));
+	}
+	
+	@SneakyThrows
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!condition.getAsBoolean()) {
+			assertTrue("Condition not met in 10 seconds", System.currentTimeMillis() < deadline);
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+	}
+	
+	@SneakyThrows
+	private static void sleep(long millis) {
+		TimeUnit.MILLISECONDS.sleep(millis);
+	}
+}
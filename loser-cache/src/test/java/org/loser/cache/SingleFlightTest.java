@@ -0,0 +1,66 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.concurrent.SingleFlightStats;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>
+ * Copyright: (C), 2026/10/17 15:10
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class SingleFlightTest {
+
+	@Test
+	public void testConcurrentMissLoadsOnce() throws Exception {
+		String key = "sf:user:1";
+		JedisUtils.del(key);
+
+		AtomicInteger loaderCalls = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(20);
+		List<Future<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(pool.submit(() -> {
+				start.await();
+				return JedisUtils.get(key, String.class, () -> {
+					loaderCalls.incrementAndGet();
+					try {
+						TimeUnit.MILLISECONDS.sleep(200);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return "三少爷";
+				}, 1, TimeUnit.MINUTES);
+			}));
+		}
+		start.countDown();
+
+		for (Future<String> future : futures) {
+			assertEquals("三少爷", future.get());
+		}
+		pool.shutdown();
+
+		assertEquals(1, loaderCalls.get());
+		SingleFlightStats stats = JedisUtils.singleFlightStats();
+		System.out.println(stats);
+		assertTrue(stats.getMaxLoadMillis() >= 200);
+		JedisUtils.del(key);
+	}
+}
@@ -0,0 +1,138 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.collection.StreamConsumer;
+import lombok.SneakyThrows;
+import org.junit.Test;
+import redis.clients.jedis.StreamEntry;
+import redis.clients.jedis.StreamEntryID;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.*;
+
+/**
+ * Redis Stream的生产和消费组批量消费, 需要本地Redis
+ * <p>
+ * Copyright: (C), 2026/10/18 06:30
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class StreamConsumerTest {
+
+	@Test
+	public void testBatchProduceAndConsume() {
+		String key = "test:stream:batch";
+		JedisUtils.del(key);
+		List<Map<String, String>> messages = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			messages.add(singletonMap("seq", String.valueOf(i)));
+		}
+		List<String> ids = JedisUtils.STREAM.xadd(key, messages, 0);
+		assertEquals(1000, ids.size());
+		assertEquals(1000L, (long) JedisUtils.STREAM.xlen(key));
+
+		Set<String> received = ConcurrentHashMap.newKeySet();
+		try (StreamConsumer consumer = JedisUtils.STREAM.consume(key, "group", (stream, entries) -> {
+			assertTrue(entries.size() <= 100);
+			for (StreamEntry entry : entries) {
+				received.add(entry.getFields().get("seq"));
+			}
+		})) {
+			await(() -> received.size() == 1000 && consumer.ackedCount() == 1000);
+			assertEquals(1000, consumer.consumedCount());
+			assertTrue(JedisUtils.STREAM.xpending(key, "group", 10, null).isEmpty());
+		}
+		JedisUtils.del(key);
+	}
+
+	@Test
+	public void testTrim() {
+		String key = "test:stream:trim";
+		JedisUtils.del(key);
+		for (int i = 0; i < 2000; i++) {
+			JedisUtils.STREAM.xadd(key, singletonMap("seq", String.valueOf(i)), 100);
+		}
+		//MAXLEN ~ 近似裁剪, 长度不小于100, 但远小于2000
+		long length = JedisUtils.STREAM.xlen(key);
+		assertTrue(length >= 100 && length < 1000);
+		JedisUtils.del(key);
+	}
+
+	@Test
+	public void testReclaimFailedBatch() {
+		String key = "test:stream:reclaim";
+		JedisUtils.del(key);
+		for (int i = 0; i < 50; i++) {
+			JedisUtils.STREAM.xadd(key, singletonMap("seq", String.valueOf(i)));
+		}
+
+		Map<StreamEntryID, AtomicInteger> attempts = new ConcurrentHashMap<>();
+		Set<String> succeeded = ConcurrentHashMap.newKeySet();
+		try (StreamConsumer consumer = new StreamConsumer(key, "group", "reclaimer", (stream, entries) -> {
+			boolean first = false;
+			for (StreamEntry entry : entries) {
+				first |= attempts.computeIfAbsent(entry.getID(), (id) -> new AtomicInteger()).incrementAndGet() == 1;
+			}
+			//第一次投递都失败, 留在pending列表里等重新认领
+			if (first) {
+				throw new IllegalStateException("first delivery");
+			}
+			for (StreamEntry entry : entries) {
+				succeeded.add(entry.getFields().get("seq"));
+			}
+		}, 10, 2, 4, 100, 500, 5)) {
+			await(() -> succeeded.size() == 50);
+			await(() -> JedisUtils.STREAM.xpending(key, "group", 10, null).isEmpty());
+			assertTrue(consumer.failedCount() >= 50);
+			assertTrue(consumer.reclaimedCount() >= 50);
+			assertEquals(0, consumer.deadLetterCount());
+		}
+		JedisUtils.del(key);
+	}
+
+	@Test
+	public void testDeadLetter() {
+		String key = "test:stream:dead";
+		JedisUtils.del(key);
+		Map<String, String> fields = new HashMap<>();
+		fields.put("poison", "true");
+		JedisUtils.STREAM.xadd(key, fields);
+
+		List<StreamEntryID> deliveries = Collections.synchronizedList(new ArrayList<>());
+		try (StreamConsumer consumer = new StreamConsumer(key, "group", "poisoned", (stream, entries) -> {
+			for (StreamEntry entry : entries) {
+				deliveries.add(entry.getID());
+			}
+			throw new IllegalStateException("poison");
+		}, 10, 1, 2, 100, 200, 3)) {
+			await(() -> consumer.deadLetterCount() == 1);
+			assertEquals(3, deliveries.size());
+			assertTrue(JedisUtils.STREAM.xpending(key, "group", 10, null).isEmpty());
+		}
+		JedisUtils.del(key);
+	}
+
+	@SneakyThrows
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 15000;
+		while (!condition.getAsBoolean()) {
+			assertTrue("condition not met in 15 seconds", System.currentTimeMillis() < deadline);
+			TimeUnit.MILLISECONDS.sleep(20);
+		}
+	}
+}
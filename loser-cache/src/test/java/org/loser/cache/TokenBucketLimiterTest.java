@@ -0,0 +1,130 @@
+package org.loser.cache;
+
+import com.loserico.cache.JedisUtils;
+import com.loserico.cache.concurrent.TokenBucketLimiter;
+import com.loserico.cache.concurrent.TokenBucketStats;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.*;
+
+/**
+ * 令牌桶限流的精度和吞吐量: 多个"节点"(多个限流器实例)共用一个桶, 持续超量请求,
+ * 看放行数和理论值(capacity + rate * 时长)差多少, 以及每放行一个请求要访问几次Redis
+ * <p>
+ * Copyright: (C), 2026/10/17 22:20
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class TokenBucketLimiterTest {
+
+	private static final int NODES = 4;
+
+	private static final int THREADS_PER_NODE = 8;
+
+	private static final double RATE = 2000;
+
+	private static final long CAPACITY = 200;
+
+	private static final long DURATION_MILLIS = 5000;
+
+	@Test
+	public void testAccuracyVersusThroughput() throws InterruptedException {
+		System.out.println("leaseMillis maxLeaseSize   allowed  expected   error  redisCalls/permit  requests/s");
+		long[][] configs = {{10, 1}, {50, 20}, {100, 100}, {500, 500}};
+		for (long[] config : configs) {
+			Result result = run("tb-harness-" + config[0] + "-" + config[1], config[0], (int) config[1]);
+			double error = Math.abs(result.allowed - result.expected) * 100.0 / result.expected;
+			System.out.println(String.format("%11d %12d %9d %9d %6.2f%% %18.4f %,11d",
+					config[0], config[1], result.allowed, result.expected, error,
+					(double) result.leaseCalls / Math.max(result.allowed, 1), result.requestsPerSecond));
+			if (config[0] == 100) {
+				//默认配置误差要在10%以内
+				assertTrue(error < 10);
+			}
+		}
+	}
+
+	@Test
+	public void testReturnUnusedPermits() {
+		JedisUtils.del("loser:tb:{tb-return}");
+		TokenBucketLimiter limiter = new TokenBucketLimiter("tb-return", 1, 10, 60_000, 10);
+		//第一次只租1个, 消费速度算出来以后会租满一批
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		limiter.close();
+
+		TokenBucketStats stats = limiter.stats();
+		System.out.println(stats);
+		assertEquals(stats.getLeasedPermits() - 2, stats.getReturnedPermits());
+
+		//还回去的令牌其他节点能用上
+		TokenBucketLimiter other = new TokenBucketLimiter("tb-return", 1, 10, 60_000, 10);
+		for (int i = 0; i < 8; i++) {
+			assertTrue(other.tryAcquire());
+		}
+	}
+
+	private Result run(String name, long leaseMillis, int maxLeaseSize) throws InterruptedException {
+		JedisUtils.del(String.format("loser:tb:{%s}", name));
+		List<TokenBucketLimiter> nodes = new ArrayList<>();
+		for (int i = 0; i < NODES; i++) {
+			nodes.add(new TokenBucketLimiter(name, RATE, CAPACITY, leaseMillis, maxLeaseSize));
+		}
+
+		LongAdder allowed = new LongAdder();
+		LongAdder requests = new LongAdder();
+		ExecutorService pool = Executors.newFixedThreadPool(NODES * THREADS_PER_NODE);
+		CountDownLatch done = new CountDownLatch(NODES * THREADS_PER_NODE);
+		long begin = System.currentTimeMillis();
+		long deadline = begin + DURATION_MILLIS;
+		for (TokenBucketLimiter node : nodes) {
+			for (int i = 0; i < THREADS_PER_NODE; i++) {
+				pool.execute(() -> {
+					while (System.currentTimeMillis() < deadline) {
+						requests.increment();
+						if (node.tryAcquire()) {
+							allowed.increment();
+						}
+					}
+					done.countDown();
+				});
+			}
+		}
+		assertTrue(done.await(DURATION_MILLIS * 2, TimeUnit.MILLISECONDS));
+		long elapsed = System.currentTimeMillis() - begin;
+		pool.shutdown();
+
+		Result result = new Result();
+		result.allowed = allowed.sum();
+		result.expected = CAPACITY + (long) (RATE * elapsed / 1000);
+		result.requestsPerSecond = requests.sum() * 1000 / elapsed;
+		for (TokenBucketLimiter node : nodes) {
+			result.leaseCalls += node.stats().getLeaseCount();
+			node.close();
+		}
+		return result;
+	}
+
+	private static class Result {
+
+		private long allowed;
+
+		private long expected;
+
+		private long leaseCalls;
+
+		private long requestsPerSecond;
+	}
+}
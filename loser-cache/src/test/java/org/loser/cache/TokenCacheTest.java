@@ -0,0 +1,83 @@
+package org.loser.cache;
+
+import com.loserico.cache.auth.AuthUtils;
+import com.loserico.cache.auth.TokenCache;
+import lombok.SneakyThrows;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.*;
+
+/**
+ * 本地token缓存: 命中时不访问Redis, 登出/踢下线时马上失效
+ * <p>
+ * Copyright: (C), 2026/10/18 03:20
+ * <p>
+ * <p>
+ * Company: Sexy Uncle Inc.
+ *
+ * @author Rico Yu ricoyu520@gmail.com
+ * @version 1.0
+ */
+public class TokenCacheTest {
+
+	@Before
+	public void enable() {
+		AuthUtils.enableTokenCache(10, TimeUnit.SECONDS, 1000);
+	}
+
+	@After
+	public void disable() {
+		AuthUtils.disableTokenCache();
+	}
+
+	@Test
+	public void testCachedAuth() {
+		AuthUtils.login("rico", "cached-token", 50, TimeUnit.SECONDS,
+				singletonMap("username", "rico"), Arrays.asList("ROLE_ADMIN", "ROLE_USER"), null);
+		TokenCache cache = AuthUtils.tokenCache();
+
+		assertEquals("rico", AuthUtils.auth("cached-token"));
+		long misses = cache.stats().missCount();
+		for (int i = 0; i < 100; i++) {
+			assertEquals("rico", AuthUtils.auth("cached-token"));
+		}
+		Map<?, ?> userDetails = AuthUtils.userDetails("cached-token", Map.class);
+		assertEquals("rico", userDetails.get("username"));
+		//同一个token解析过一次就不再解析
+		assertSame(userDetails, AuthUtils.userDetails("cached-token", Map.class));
+		List<String> authorities = AuthUtils.authorities("cached-token", String.class);
+		assertEquals(Arrays.asList("ROLE_ADMIN", "ROLE_USER"), authorities);
+		assertEquals(misses, cache.stats().missCount());
+
+		assertTrue(AuthUtils.logout("cached-token"));
+		assertNull(AuthUtils.auth("cached-token"));
+		assertNull(AuthUtils.userDetails("cached-token", Map.class));
+	}
+
+	@SneakyThrows
+	@Test
+	public void testEvictOnSingleSignOn() {
+		AuthUtils.login("rico", "first-token", 50, TimeUnit.SECONDS, null, null, null);
+		assertEquals("rico", AuthUtils.auth("first-token"));
+
+		//在别处登录, first-token被踢下线, 通过AUTH_SINGLE_SIGNON_CHANNEL通知本地失效
+		AuthUtils.login("rico", "second-token", 50, TimeUnit.SECONDS, null, null, null);
+		//本地缓存10秒, 5秒内失效说明是通知删掉的
+		long deadline = System.currentTimeMillis() + 5000;
+		while (AuthUtils.auth("first-token") != null && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertNull(AuthUtils.auth("first-token"));
+		assertTrue(AuthUtils.tokenCache().evictionCount() > 0);
+		assertEquals("rico", AuthUtils.auth("second-token"));
+		AuthUtils.logout("second-token");
+	}
+}